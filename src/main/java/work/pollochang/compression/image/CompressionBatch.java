@@ -3,8 +3,21 @@ package work.pollochang.compression.image;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import work.pollochang.compression.image.cache.H2CacheManager; // 【新增】Import H2CacheManager
+import work.pollochang.compression.image.codec.CodecPool;
+import work.pollochang.compression.image.codec.CodecPoolStats;
+import work.pollochang.compression.image.codec.JpegTilePredictor;
+import work.pollochang.compression.image.codec.PredictionStats;
 import work.pollochang.compression.image.core.CompressionResult;
+import work.pollochang.compression.image.core.EntropyModeSampler;
+import work.pollochang.compression.image.core.EntropyModeStats;
 import work.pollochang.compression.image.core.ImageCompression;
+import work.pollochang.compression.image.core.MemoryGovernor;
+import work.pollochang.compression.image.core.MemoryGovernorStats;
+import work.pollochang.compression.image.io.AtomicFileWriter;
+import work.pollochang.compression.image.io.AtomicFileWriterStats;
+import work.pollochang.compression.image.io.BufferPoolStats;
+import work.pollochang.compression.image.io.RasterPool;
+import work.pollochang.compression.image.io.RasterPoolStats;
 import work.pollochang.compression.image.learn.LearnedParams;
 import work.pollochang.compression.image.learn.jpg.SimilarityKey;
 import work.pollochang.compression.image.report.CompressionParams;
@@ -12,13 +25,14 @@ import work.pollochang.compression.image.report.CompressionReport;
 import work.pollochang.compression.image.tools.FileTools;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
@@ -30,11 +44,26 @@ import java.util.stream.Stream;
 @Slf4j
 public class CompressionBatch {
 
+    /** 未指定同時提交上限時，每個 CPU 核心可排隊的任務數 */
+    private static final int IN_FLIGHT_PER_CORE = 4;
+
     private String fileListPath;
     private String saveDir;
     private CompressionParams compressionParams;
     private long timeOutHr;
 
+    /** 已提交但尚未完成的任務數上限，0 表示依 CPU 核心數自動決定 */
+    private int maxInFlight;
+
+    /** 預讀來源檔的直接記憶體預算，0 表示不使用緩衝區池 */
+    private long prefetchBytes;
+
+    /** 每組 fsync 的輸出檔數，0 表示不 fsync */
+    private int fsyncGroupSize;
+
+    /** 一組 fsync 最多等待的毫秒數 */
+    private long fsyncGroupMillis;
+
     // 【修改】使用 h2CachePath 取代舊的 cachePath 和 Learn 物件
     private Path h2CachePath;
 
@@ -64,45 +93,38 @@ public class CompressionBatch {
             int coreCount = Math.max(1, Runtime.getRuntime().availableProcessors());
             log.info("偵測到 {} 個 CPU 核心，建立固定大小為 {} 的執行緒池。", coreCount, coreCount);
 
-            // 執行緒池和任務提交邏輯 (保持不變)
-            try (ExecutorService executor = Executors.newFixedThreadPool(coreCount)) {
-                log.info("初始化固定大小執行緒執行器，將以 {} 的併發數量處理任務。", coreCount);
+            // 檔案列表逐行讀取，已提交未完成的任務數達上限時暫停讀取，堆積用量不隨列表長度成長
+            int window = maxInFlight > 0 ? maxInFlight : coreCount * IN_FLIGHT_PER_CORE;
+            Semaphore inFlight = new Semaphore(window);
+            long deadline = System.nanoTime() + TimeUnit.HOURS.toNanos(timeOutHr);
+            // 讀取與寫出在虛擬執行緒上等待 I/O，編碼在固定大小的執行緒池上執行
+            AtomicFileWriter outputWriter = new AtomicFileWriter(fsyncGroupSize, fsyncGroupMillis);
+            CompressionPipeline pipeline = new CompressionPipeline(coreCount, window, prefetchBytes, outputWriter, outputDir, compressionParams,
+                    compressionCache, report -> {
+                        counters.get(report.result()).incrementAndGet();
+                        totalOriginalSize.addAndGet(report.originalSize());
+                        totalCompressedSize.addAndGet(report.compressedSize());
+                        inFlight.release();
+                    });
+            try (pipeline) {
+                log.info("初始化分段處理管線，編碼階段以 {} 的併發數量處理任務，同時提交上限 {} 個。", coreCount, window);
 
-                final Map<SimilarityKey, LearnedParams> finalCompressionCache = compressionCache;
                 try (Stream<String> lines = Files.lines(inputListFile)) {
-                    lines.forEach(line -> {
-                        if (line != null && !line.trim().isEmpty()) {
-                            totalFiles.incrementAndGet();
-                            Path inputPath = Paths.get(line.trim());
-                            executor.submit(() -> {
-                                // 傳入從 H2 載入的快取 Map
-                                CompressionReport report = ImageCompression.processImage(
-                                        inputPath,
-                                        outputDir,
-                                        compressionParams,
-                                        finalCompressionCache
-                                );
-                                counters.get(report.result()).incrementAndGet();
-                                totalOriginalSize.addAndGet(report.originalSize());
-                                totalCompressedSize.addAndGet(report.compressedSize());
-                            });
-                        }
-                    });
-                } catch (IOException e) {
+                    totalFiles.addAndGet(submitAll(lines.iterator(), inFlight, deadline, pipeline::submit));
+                } catch (IOException | UncheckedIOException e) {
                     log.error("讀取檔案列表失敗: {}", fileListPath, e);
                     return;
                 }
 
                 log.info("所有任務已提交，等待處理完成...");
-                executor.shutdown();
                 try {
-                    if (!executor.awaitTermination(timeOutHr, TimeUnit.HOURS)) {
-                        log.warn("執行緒池等待逾時，部分任務可能未完成。");
-                        executor.shutdownNow();
+                    if (!awaitAll(inFlight, window, deadline)) {
+                        log.warn("處理管線等待逾時，部分任務可能未完成。");
+                        pipeline.shutdownNow();
                     }
                 } catch (InterruptedException e) {
-                    log.error("執行緒池被中斷。", e);
-                    executor.shutdownNow();
+                    log.error("處理管線被中斷。", e);
+                    pipeline.shutdownNow();
                     Thread.currentThread().interrupt();
                 }
             }
@@ -132,6 +154,59 @@ public class CompressionBatch {
             log.info(" 總空間節省百分比: {} %", String.format("%.2f", savedPercentage));
             log.info("========================================空間統計報告========================================");
 
+            CodecPoolStats codecStats = CodecPool.stats();
+            log.info("編解碼器池 -> Writer 重用: {}, 新建: {}; Reader 重用: {}, 新建: {}",
+                    codecStats.writerHits(), codecStats.writerMisses(),
+                    codecStats.readerHits(), codecStats.readerMisses());
+
+            PredictionStats predictionStats = JpegTilePredictor.stats();
+            if (predictionStats.count() > 0) {
+                log.info("抽樣預測 -> 圖片數: {}, 平均誤差: {}%, 最大誤差: {}%", predictionStats.count(),
+                        String.format("%.2f", predictionStats.meanAbsErrorPercent()),
+                        String.format("%.2f", predictionStats.maxAbsErrorPercent()));
+            }
+
+            EntropyModeStats entropyStats = EntropyModeSampler.stats();
+            if (entropyStats.count() > 0) {
+                log.info("熵編碼 {} -> 抽樣: {} 張, 相較標準 Huffman 表節省: {} ({}%), 編碼 CPU 增加: {}%",
+                        compressionParams.entropyMode().getDescription(), entropyStats.count(),
+                        FileTools.formatFileSize(entropyStats.standardBytes() - entropyStats.modeBytes()),
+                        String.format("%.2f", entropyStats.savedPercent()),
+                        String.format("%.2f", entropyStats.cpuOverheadPercent()));
+            }
+
+            for (StageStats stage : pipeline.stats()) {
+                log.info("處理管線 {} 階段 -> 容量: {}, 完成: {}, 佇列峰值: {}, 交接等待: {} ms",
+                        stage.name(), stage.capacity(), stage.processed(), stage.peakDepth(), stage.waitMillis());
+            }
+
+            BufferPoolStats prefetchStats = pipeline.prefetchStats();
+            if (prefetchStats != null) {
+                log.info("來源預讀 -> 預算: {}, 緩衝區重用: {}, 新建: {}, 等待: {} 次 ({} ms)",
+                        FileTools.formatFileSize(prefetchStats.budgetBytes()), prefetchStats.hits(),
+                        prefetchStats.allocations(), prefetchStats.waits(), prefetchStats.waitMillis());
+            }
+
+            RasterPoolStats rasterStats = RasterPool.stats();
+            if (rasterStats.acquisitions() > 0) {
+                log.info("點陣陣列池 -> 借出: {}, 重用: {} ({}%), 歸還: {}, 丟棄: {}, 保留: {} (峰值 {}, 預算 {})",
+                        rasterStats.acquisitions(), rasterStats.hits(), String.format("%.1f", rasterStats.hitPercent()),
+                        rasterStats.releases(), rasterStats.drops(),
+                        FileTools.formatFileSize(rasterStats.retainedBytes()),
+                        FileTools.formatFileSize(rasterStats.peakRetainedBytes()),
+                        FileTools.formatFileSize(rasterStats.budgetBytes()));
+            }
+
+            AtomicFileWriterStats writerStats = outputWriter.stats();
+            log.info("輸出寫入 -> 檔案: {}, 同步組數: {}, fsync 時間: {} ms",
+                    writerStats.files(), writerStats.groups(), writerStats.syncMillis());
+
+            MemoryGovernorStats memoryStats = MemoryGovernor.stats();
+            log.info("記憶體預算 -> 預算: {}, 預留: {} 次, 等待: {} 次 ({} ms), 同時預留峰值: {}",
+                    FileTools.formatFileSize(memoryStats.budgetBytes()), memoryStats.reservations(),
+                    memoryStats.waits(), memoryStats.waitMillis(),
+                    FileTools.formatFileSize(memoryStats.peakReservedBytes()));
+
         } catch (Exception e) {
             log.error("執行批次壓縮時發生未預期錯誤", e);
             if (e instanceof InterruptedException) {
@@ -146,4 +221,51 @@ public class CompressionBatch {
             h2CacheManager.close();
         }
     }
+
+    /**
+     * 逐行提交檔案列表，已提交未完成的任務數達到 {@code inFlight} 的許可數時暫停讀取。
+     * 每個提交的任務佔用一個許可，由任務完成時的回呼歸還。
+     * @param lines     檔案列表的各行，空白行略過
+     * @param inFlight  同時提交上限的許可
+     * @param deadline  逾時的時間點（{@link System#nanoTime()}），等待空位的時間也計入
+     * @param submitter 提交一張圖片
+     * @return 已提交的檔案數
+     * @throws InterruptedException 等待空位或提交時被中斷
+     */
+    static long submitAll(Iterator<String> lines, Semaphore inFlight, long deadline, Submitter submitter) throws InterruptedException {
+        long submitted = 0;
+        while (lines.hasNext()) {
+            String line = lines.next();
+            if (line == null || line.trim().isEmpty()) {
+                continue;
+            }
+            if (!inFlight.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                log.warn("等待任務完成逾時，停止提交其餘檔案。");
+                break;
+            }
+            submitted++;
+            submitter.submit(Paths.get(line.trim()));
+        }
+        return submitted;
+    }
+
+    /**
+     * 等待所有許可都歸還，此時每個已提交的任務都已完成。
+     * @param inFlight 同時提交上限的許可
+     * @param window   許可總數
+     * @param deadline 逾時的時間點（{@link System#nanoTime()}）
+     * @return 全部完成時為 true，逾時為 false
+     * @throws InterruptedException 等待時被中斷
+     */
+    static boolean awaitAll(Semaphore inFlight, int window, long deadline) throws InterruptedException {
+        return inFlight.tryAcquire(window, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 提交一張圖片到處理管線。
+     */
+    @FunctionalInterface
+    interface Submitter {
+        void submit(Path inputPath) throws InterruptedException;
+    }
 }
\ No newline at end of file
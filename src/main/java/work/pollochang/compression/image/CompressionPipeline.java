@@ -0,0 +1,241 @@
+package work.pollochang.compression.image;
+
+import lombok.extern.slf4j.Slf4j;
+import work.pollochang.compression.image.core.CompressionResult;
+import work.pollochang.compression.image.core.EncodedImage;
+import work.pollochang.compression.image.core.ImageCompression;
+import work.pollochang.compression.image.core.PreparedImage;
+import work.pollochang.compression.image.io.AtomicFileWriter;
+import work.pollochang.compression.image.io.BufferPoolStats;
+import work.pollochang.compression.image.io.DirectBufferPool;
+import work.pollochang.compression.image.learn.LearnedParams;
+import work.pollochang.compression.image.learn.jpg.SimilarityKey;
+import work.pollochang.compression.image.report.CompressionParams;
+import work.pollochang.compression.image.report.CompressionReport;
+import work.pollochang.compression.image.tools.ParallelTools;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 以讀取、編碼、寫出三個階段處理批次中的圖片。
+ *
+ * <p>讀取（檔案檢查、檔頭與預讀）和寫出都阻塞在磁碟或 NFS 上，改在虛擬執行緒執行；
+ * 解碼、縮放與編碼在與 CPU 核心數相同的平台執行緒池上執行，不會因為等待 I/O 而閒置。
+ * 階段之間以有容量上限的交接佇列銜接，下一階段已滿時上一階段就在交接處等待，
+ * 因此等待編碼的預讀結果與等待寫出的檔案內容都有上限。
+ * 編碼執行緒向 {@link ParallelTools} 回報正在處理的圖片數，大圖縮放只借用其餘閒置的核心。</p>
+ *
+ * <p>讀取階段把來源檔整個讀入 {@link DirectBufferPool} 的直接記憶體，解碼直接讀取該緩衝區，
+ * 編碼完成後歸還；池的預算同時限制讀取端最多能領先編碼端多少資料。</p>
+ *
+ * <p>寫出階段直接接手編碼結果的緩衝區，經由 {@link AtomicFileWriter} 寫入暫存檔後原子改名，
+ * 可選擇分組 fsync。</p>
+ *
+ * <p>每張圖片處理完（包含跳過與失敗）都會以最終報告呼叫一次 {@code onComplete}。</p>
+ */
+@Slf4j
+public final class CompressionPipeline implements AutoCloseable {
+
+    /** 編碼與寫出階段的容量約為編碼執行緒數的倍數 */
+    private static final int HAND_OFF_PER_THREAD = 2;
+
+    /** 直接記憶體的上限預設與最大堆積相同，預讀最多使用其中的 1/{@value} */
+    private static final int PREFETCH_MEMORY_DIVISOR = 4;
+
+    private final Path outputDir;
+    private final CompressionParams params;
+    private final Map<SimilarityKey, LearnedParams> cache;
+    private final Consumer<CompressionReport> onComplete;
+    private final DirectBufferPool prefetchPool;
+    private final AtomicFileWriter outputWriter;
+
+    private final Stage read;
+    private final Stage encode;
+    private final Stage write;
+
+    /**
+     * @param cpuThreads    編碼階段的執行緒數
+     * @param readDepth     讀取階段的容量
+     * @param prefetchBytes 預讀緩衝區的預算，0 表示不使用緩衝區池，改以記憶體映射預讀
+     * @param outputWriter  寫出階段使用的寫入器
+     * @param outputDir     輸出目錄
+     * @param params        壓縮參數
+     * @param cache         學習快取
+     * @param onComplete    每張圖片處理完時呼叫，可能在任一階段的執行緒上執行
+     */
+    public CompressionPipeline(int cpuThreads, int readDepth, long prefetchBytes, AtomicFileWriter outputWriter,
+                               Path outputDir, CompressionParams params, Map<SimilarityKey, LearnedParams> cache,
+                               Consumer<CompressionReport> onComplete) {
+        long prefetchBudget = Math.min(prefetchBytes, Runtime.getRuntime().maxMemory() / PREFETCH_MEMORY_DIVISOR);
+        this.prefetchPool = prefetchBudget > 0 ? new DirectBufferPool(prefetchBudget) : null;
+        this.outputWriter = outputWriter;
+        this.outputDir = outputDir;
+        this.params = params;
+        this.cache = cache;
+        this.onComplete = onComplete;
+        int handOffDepth = cpuThreads * HAND_OFF_PER_THREAD;
+        this.read = new Stage("讀取", readDepth,
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("read-", 0).factory()));
+        this.encode = new Stage("編碼", handOffDepth, Executors.newFixedThreadPool(cpuThreads));
+        this.write = new Stage("寫出", handOffDepth,
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("write-", 0).factory()));
+    }
+
+    /**
+     * 提交一張圖片，讀取階段已滿時等待。
+     * @param inputPath 來源檔
+     * @throws InterruptedException 等待時被中斷
+     */
+    public void submit(Path inputPath) throws InterruptedException {
+        read.hand(guarded(inputPath, 0, () -> {
+            PreparedImage prepared = ImageCompression.prepare(inputPath, outputDir, params, prefetchPool);
+            if (prepared.report() != null) {
+                onComplete.accept(prepared.report());
+                return;
+            }
+            handOff(encode, prepared, () -> {
+                EncodedImage encoded;
+                ParallelTools.batchTaskStarted();
+                try (prepared) {
+                    encoded = ImageCompression.encode(prepared, params, cache);
+                } finally {
+                    ParallelTools.batchTaskFinished();
+                }
+                handOff(write, prepared, () -> onComplete.accept(ImageCompression.write(encoded, outputWriter)));
+            });
+        }));
+    }
+
+    /**
+     * @return 讀取、編碼、寫出各階段的統計
+     */
+    public List<StageStats> stats() {
+        return List.of(read.stats(), encode.stats(), write.stats());
+    }
+
+    /**
+     * @return 預讀緩衝區池的統計；未使用緩衝區池時為 null
+     */
+    public BufferPoolStats prefetchStats() {
+        return prefetchPool != null ? prefetchPool.stats() : null;
+    }
+
+    /**
+     * 中斷所有階段，尚未開始的任務不再執行。
+     */
+    public void shutdownNow() {
+        read.executor.shutdownNow();
+        encode.executor.shutdownNow();
+        write.executor.shutdownNow();
+    }
+
+    /**
+     * 依階段順序等待所有已提交的任務完成。
+     */
+    @Override
+    public void close() {
+        read.executor.close();
+        encode.executor.close();
+        write.executor.close();
+    }
+
+    /**
+     * 交給下一階段；交接失敗時歸還預讀緩衝區，並以失敗結束這張圖片。
+     */
+    private void handOff(Stage next, PreparedImage prepared, Runnable task) {
+        try {
+            next.hand(guarded(prepared.inputPath(), prepared.originalSize(), task));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            prepared.close();
+            fail(prepared.inputPath(), prepared.originalSize(), e);
+        } catch (RejectedExecutionException e) {
+            prepared.close();
+            fail(prepared.inputPath(), prepared.originalSize(), e);
+        }
+    }
+
+    /**
+     * 確保任務中未預期的例外與錯誤（包含 {@link OutOfMemoryError}）也會回報結果，
+     * 不會讓批次一直等待已提交任務的許可。
+     */
+    private Runnable guarded(Path inputPath, long originalSize, Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                fail(inputPath, originalSize, e);
+            }
+        };
+    }
+
+    private void fail(Path inputPath, long originalSize, Throwable e) {
+        if (e instanceof OutOfMemoryError) {
+            log.error("{} - 處理檔案時發生記憶體溢位錯誤", inputPath, e);
+            onComplete.accept(new CompressionReport(CompressionResult.FAILED_OUT_OF_MEMORY, originalSize, 0));
+            return;
+        }
+        log.error("{} - 處理檔案時發生未知錯誤", inputPath, e);
+        onComplete.accept(new CompressionReport(CompressionResult.FAILED_UNKNOWN, originalSize, 0));
+    }
+
+    /**
+     * 一個階段：執行器加上限制等待中與執行中任務數的許可。
+     */
+    private static final class Stage {
+        private final String name;
+        private final int capacity;
+        private final ExecutorService executor;
+        private final Semaphore slots;
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicInteger peakDepth = new AtomicInteger();
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+
+        Stage(String name, int capacity, ExecutorService executor) {
+            this.name = name;
+            this.capacity = Math.max(1, capacity);
+            this.executor = executor;
+            this.slots = new Semaphore(this.capacity);
+        }
+
+        void hand(Runnable task) throws InterruptedException {
+            if (!slots.tryAcquire()) {
+                long start = System.nanoTime();
+                slots.acquire();
+                waitNanos.add(System.nanoTime() - start);
+            }
+            peakDepth.accumulateAndGet(depth.incrementAndGet(), Math::max);
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        processed.increment();
+                        depth.decrementAndGet();
+                        slots.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                depth.decrementAndGet();
+                slots.release();
+                throw e;
+            }
+        }
+
+        StageStats stats() {
+            return new StageStats(name, capacity, processed.sum(), peakDepth.get(),
+                    TimeUnit.NANOSECONDS.toMillis(waitNanos.sum()));
+        }
+    }
+}
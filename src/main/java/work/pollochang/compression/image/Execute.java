@@ -4,7 +4,11 @@ import lombok.extern.slf4j.Slf4j;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
+import work.pollochang.compression.image.core.JpegEntropyMode;
+import work.pollochang.compression.image.core.QualitySearchMode;
 import work.pollochang.compression.image.report.CompressionParams;
+import work.pollochang.compression.image.resize.ResizeFilter;
+import work.pollochang.compression.image.resize.SeparableResampler;
 import work.pollochang.compression.image.tools.FileTools;
 
 import java.io.File;
@@ -45,6 +49,42 @@ public class Execute implements Callable<Integer> {
     @Option(names = {"--cache-db"}, defaultValue = "image-compression-cache", description = "H2 學習快取資料庫的檔案路徑。")
     private File h2DbFile;
 
+    @Option(names = {"--search-mode"}, defaultValue = "BINARY", description = "JPG 品質搜尋策略: BINARY (二分搜尋)、INTERPOLATION (模型插值，較少編碼次數) 或 ESTIMATED (DCT 預估後實測確認) (預設: BINARY)。")
+    private QualitySearchMode searchMode;
+
+    @Option(names = {"--predict-min-pixels"}, defaultValue = "8000000", description = "解碼後像素數達此門檻的 JPG 先以抽樣區塊預測起始縮放比例與品質，0 表示停用 (預設: 8000000)。")
+    private long predictionMinPixels;
+
+    @Option(names = {"--requantize"}, negatable = true, defaultValue = "true", fallbackValue = "true", description = "基線 JPG 不需縮放即可達標時，直接在 DCT 係數域重新量化，不經解碼與重新編碼；--no-requantize 停用 (預設: 啟用)。")
+    private boolean requantize;
+
+    @Option(names = {"--parallel-encode-min-pixels"}, defaultValue = "16000000", description = "像素數達此門檻的 JPG 依 MCU 列分段，借用批次中閒置的核心平行編碼，段間以重新同步標記銜接；沒有閒置的核心時以單執行緒編碼，0 表示停用 (預設: 16000000)。")
+    private long parallelEncodeMinPixels;
+
+    @Option(names = {"--entropy-mode"}, defaultValue = "STANDARD", description = "JPG 熵編碼模式: STANDARD (標準 Huffman 表)、OPTIMIZED (最佳化 Huffman 表) 或 PROGRESSIVE (漸進式掃描)；後兩者檔案約小 5-15%，但編碼較耗 CPU (預設: STANDARD)。")
+    private JpegEntropyMode entropyMode;
+
+    @Option(names = {"--stream-decode-min-bytes"}, defaultValue = "268435456", description = "以原始解析度解碼後大小(寬 x 高 x 3 bytes)超過此門檻或放不進堆積預算的基線 JPG，改以 MCU 列串流解碼到一般的參考解析度，仍超過門檻時再縮小到門檻內，不配置完整的點陣圖；預設約在 8900 萬像素以上觸發，0 表示停用 (預設: 268435456, 即 256MB)。")
+    private long streamingDecodeMinBytes;
+
+    @Option(names = {"--resize-filter"}, defaultValue = "JAVA2D", description = "縮放濾波器: JAVA2D (Graphics2D 雙線性)、BOX、TRIANGLE、CATMULL_ROM 或 LANCZOS3；後四者直接在點陣資料上以可分離權重表計算，大幅縮小時不會產生鋸齒，加入 --add-modules jdk.incubator.vector 時以 SIMD 運算。更換濾波器會改變輸出大小，請先清除學習快取 (預設: JAVA2D)。")
+    private ResizeFilter resizeFilter;
+
+    @Option(names = {"--parallel-resize-min-pixels"}, defaultValue = "8000000", description = "來源像素數達此門檻的圖片縮放時依列分段，借用批次中閒置的核心平行處理；批次中每個核心都在處理圖片時不分段，0 表示停用 (預設: 8000000)。")
+    private long parallelResizeMinPixels;
+
+    @Option(names = {"--max-in-flight"}, defaultValue = "0", description = "已提交但尚未完成的任務數上限，達上限時暫停讀取檔案列表，0 表示 CPU 核心數的 4 倍 (預設: 0)。")
+    private int maxInFlight;
+
+    @Option(names = {"--prefetch-bytes"}, defaultValue = "268435456", description = "預讀來源檔使用的直接記憶體預算(bytes)，讀取階段在編碼進行時先把後續檔案整個讀入記憶體，最多使用最大堆積的 1/4，0 表示改以記憶體映射預讀 (預設: 268435456, 即 256MB)。")
+    private long prefetchBytes;
+
+    @Option(names = {"--fsync-group"}, defaultValue = "0", description = "輸出檔先寫入暫存檔再原子改名；大於 0 時每湊滿此數量的檔案（或等待超過 --fsync-interval-ms）就一起 fsync 後改名，0 表示不 fsync (預設: 0)。")
+    private int fsyncGroupSize;
+
+    @Option(names = {"--fsync-interval-ms"}, defaultValue = "100", description = "一組 fsync 最多等待的毫秒數 (預設: 100)。")
+    private long fsyncGroupMillis;
+
     @Override
     public Integer call() throws Exception {
 
@@ -53,10 +93,22 @@ public class Execute implements Callable<Integer> {
         log.info("來源列表: {}", fileList.getAbsolutePath());
         log.info("輸出目錄: {}", saveDir.getAbsolutePath());
         log.info("JPG 壓縮品質: {}", quality);
+        log.info("JPG 品質搜尋策略: {}", searchMode.getDescription());
+        log.info("抽樣預測門檻: {} 像素", predictionMinPixels);
+        log.info("JPG 係數重新量化: {}", requantize ? "啟用" : "停用");
+        log.info("JPG 平行編碼門檻: {} 像素", parallelEncodeMinPixels);
+        log.info("JPG 熵編碼模式: {}", entropyMode.getDescription());
+        log.info("JPG 串流解碼門檻: {}", streamingDecodeMinBytes > 0 ? FileTools.formatFileSize(streamingDecodeMinBytes) : "停用");
+        log.info("縮放濾波器: {}{}", resizeFilter.getDescription(), resizeFilter == ResizeFilter.JAVA2D ? ""
+                : SeparableResampler.isVectorized() ? " (Vector API)" : " (純量運算)");
+        log.info("平行縮放門檻: {}", parallelResizeMinPixels > 0 ? parallelResizeMinPixels + " 像素" : "停用");
         log.info("最小壓縮尺寸: {}x{}", minWidth, minHeight);
         log.info("最小壓縮大小: {}", FileTools.formatFileSize(minSizeBytes));
         log.info("目標檔案大小上限: {}", FileTools.formatFileSize(targetMaxSizeBytes));
         log.info("設定超時執行時間: {} 小時", timeOutHr);
+        log.info("同時提交任務上限: {}", maxInFlight > 0 ? maxInFlight : "自動");
+        log.info("來源預讀預算: {}", prefetchBytes > 0 ? FileTools.formatFileSize(prefetchBytes) : "停用");
+        log.info("輸出同步: {}", fsyncGroupSize > 0 ? "每 " + fsyncGroupSize + " 個檔案或 " + fsyncGroupMillis + " ms 一組 fsync" : "停用");
         log.info("學習快取資料庫: {}", h2DbFile.getAbsolutePath());
         log.info("========================================壓縮程式參數設定========================================");
 
@@ -67,7 +119,15 @@ public class Execute implements Callable<Integer> {
                 minSizeBytes,
                 minWidth,
                 minHeight,
-                targetMaxSizeBytes
+                targetMaxSizeBytes,
+                searchMode,
+                predictionMinPixels,
+                requantize,
+                parallelEncodeMinPixels,
+                entropyMode,
+                streamingDecodeMinBytes,
+                resizeFilter,
+                parallelResizeMinPixels
         );
 
         CompressionBatch compressionBatch = new CompressionBatch();
@@ -75,6 +135,10 @@ public class Execute implements Callable<Integer> {
         compressionBatch.setSaveDir(saveDir.getAbsolutePath());
         compressionBatch.setCompressionParams(params);
         compressionBatch.setTimeOutHr(timeOutHr);
+        compressionBatch.setMaxInFlight(maxInFlight);
+        compressionBatch.setPrefetchBytes(prefetchBytes);
+        compressionBatch.setFsyncGroupSize(fsyncGroupSize);
+        compressionBatch.setFsyncGroupMillis(fsyncGroupMillis);
         compressionBatch.setH2CachePath(h2DbFile.toPath());
         compressionBatch.execute();
 
@@ -0,0 +1,11 @@
+package work.pollochang.compression.image;
+
+/**
+ * {@link CompressionPipeline} 單一階段的統計快照。
+ * @param name       階段名稱
+ * @param capacity   交接佇列容量（等待中與執行中的任務合計）
+ * @param processed  完成的任務數
+ * @param peakDepth  佇列深度的峰值
+ * @param waitMillis 上一階段因佇列已滿而等待的總時間（毫秒）
+ */
+public record StageStats(String name, int capacity, long processed, int peakDepth, long waitMillis) {}
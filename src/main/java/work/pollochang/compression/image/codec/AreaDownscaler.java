@@ -0,0 +1,133 @@
+package work.pollochang.compression.image.codec;
+
+import work.pollochang.compression.image.io.RasterPool;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+
+/**
+ * 以區域平均把串流輸入的像素列縮小到固定尺寸。
+ *
+ * <p>每個輸出像素是其涵蓋的來源矩形的平均值；來源列逐列累加到一列輸出的累加器，
+ * 湊滿一列輸出後立即寫入結果影像。除了結果影像之外只需要一列輸出的累加器，
+ * 因此可搭配 {@link StripJpegDecoder}，不必先解出完整的來源影像。只支援縮小，
+ * 輸出尺寸大於來源時會以來源尺寸為上限。</p>
+ */
+public final class AreaDownscaler implements RowConsumer {
+
+    private final int requestedWidth;
+    private final int requestedHeight;
+
+    private BufferedImage image;
+    private byte[] output;
+    private int sourceWidth;
+    private int sourceHeight;
+    private int width;
+    private int height;
+    private int bands;
+    /** 每個輸出欄對應的來源起始欄，長度為 width + 1 */
+    private int[] columnStarts;
+    private long[] sums;
+    private int outputRow;
+    /** 目前輸出列對應的來源結束列（不含） */
+    private int rowEnd;
+    private int rowsAccumulated;
+
+    /**
+     * @param width  輸出寬度
+     * @param height 輸出高度
+     */
+    public AreaDownscaler(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("輸出尺寸必須大於 0: " + width + "x" + height);
+        }
+        this.requestedWidth = width;
+        this.requestedHeight = height;
+    }
+
+    @Override
+    public void begin(int sourceWidth, int sourceHeight, int bands) {
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.bands = bands;
+        width = Math.min(requestedWidth, sourceWidth);
+        height = Math.min(requestedHeight, sourceHeight);
+        image = RasterPool.acquire(bands == 1 ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR, width, height, true);
+        output = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        columnStarts = new int[width + 1];
+        for (int x = 0; x <= width; x++) {
+            columnStarts[x] = (int) ((long) x * sourceWidth / width);
+        }
+        sums = new long[width * bands];
+        outputRow = 0;
+        rowEnd = rowStart(1);
+        rowsAccumulated = 0;
+    }
+
+    @Override
+    public void rows(byte[] pixels, int firstRow, int rowCount) {
+        int stride = sourceWidth * bands;
+        for (int r = 0; r < rowCount; r++) {
+            accumulate(pixels, r * stride);
+            rowsAccumulated++;
+            if (firstRow + r + 1 == rowEnd) {
+                emitRow();
+            }
+        }
+    }
+
+    /**
+     * @return 縮小後的影像；所有來源列都交付後才完整
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    private int rowStart(int row) {
+        return (int) ((long) row * sourceHeight / height);
+    }
+
+    private void accumulate(byte[] pixels, int offset) {
+        for (int x = 0; x < width; x++) {
+            int from = offset + columnStarts[x] * bands;
+            int to = offset + columnStarts[x + 1] * bands;
+            int sum = x * bands;
+            if (bands == 1) {
+                long s = 0;
+                for (int i = from; i < to; i++) {
+                    s += pixels[i] & 0xFF;
+                }
+                sums[sum] += s;
+            } else {
+                long s0 = 0;
+                long s1 = 0;
+                long s2 = 0;
+                for (int i = from; i < to; i += 3) {
+                    s0 += pixels[i] & 0xFF;
+                    s1 += pixels[i + 1] & 0xFF;
+                    s2 += pixels[i + 2] & 0xFF;
+                }
+                sums[sum] += s0;
+                sums[sum + 1] += s1;
+                sums[sum + 2] += s2;
+            }
+        }
+    }
+
+    private void emitRow() {
+        int out = outputRow * width * bands;
+        for (int x = 0; x < width; x++) {
+            long area = (long) (columnStarts[x + 1] - columnStarts[x]) * rowsAccumulated;
+            for (int b = 0; b < bands; b++) {
+                output[out++] = (byte) ((sums[x * bands + b] + area / 2) / area);
+            }
+        }
+        Arrays.fill(sums, 0);
+        rowsAccumulated = 0;
+        outputRow++;
+        if (outputRow < height) {
+            rowEnd = rowStart(outputRow + 1);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package work.pollochang.compression.image.codec;
+
+import java.io.IOException;
+
+/**
+ * 接收 {@link JpegCoefficientReader} 解出的量化 DCT 區塊。
+ */
+public interface BlockConsumer {
+
+    /**
+     * 讀到 SOF 時呼叫，此時已知影像尺寸與分量配置。
+     * @param frame 影格資訊
+     * @throws IOException 不支援此影格時拋出
+     */
+    void begin(JpegFrame frame) throws IOException;
+
+    /**
+     * 每解出一個 8x8 區塊呼叫一次。陣列會被重複使用，實作不可保留參考。
+     * @param component    分量索引（SOF 中的順序）
+     * @param blockCol     區塊欄位
+     * @param blockRow     區塊列位
+     * @param coefficients 64 個量化後的係數，自然順序
+     * @param quantTable   此分量的量化表，自然順序
+     * @throws IOException 輸出失敗時拋出
+     */
+    void block(int component, int blockCol, int blockRow, short[] coefficients, int[] quantTable) throws IOException;
+
+    /**
+     * 每個掃描（SOS）開始解碼前呼叫。
+     * @param components  此掃描包含的分量索引，依掃描中的順序
+     * @param quantTables 各分量（SOF 順序）目前使用的量化表，自然順序
+     * @throws IOException 無法處理此掃描時拋出
+     */
+    default void beginScan(int[] components, int[][] quantTables) throws IOException {
+    }
+
+    /**
+     * 每個掃描解碼完成後呼叫。
+     * @throws IOException 輸出失敗時拋出
+     */
+    default void endScan() throws IOException {
+    }
+}
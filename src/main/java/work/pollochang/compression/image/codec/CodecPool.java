@@ -0,0 +1,187 @@
+package work.pollochang.compression.image.codec;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ImageReader} / {@link ImageWriter} 的執行緒區域物件池。
+ *
+ * <p>{@code ImageIO.getImageWritersByFormatName} 與 {@code ImageIO.getImageReaders}
+ * 每次呼叫都會走訪 SPI 註冊表並建立新的外掛實例（含原生 libjpeg 結構），
+ * 一張圖的品質搜尋動輒數十次。本類別將 SPI 查詢結果快取，並把用完的實例
+ * {@code reset()} 後留在目前執行緒中供下次借用，每種格式最多保留 {@value #MAX_IDLE_PER_FORMAT} 個。</p>
+ *
+ * <p>借出的實例只能在同一個執行緒中使用並歸還；池中實例不會跨執行緒共用，因此無需同步。</p>
+ */
+@Slf4j
+public final class CodecPool {
+
+    private static final int MAX_IDLE_PER_FORMAT = 2;
+
+    private static final ThreadLocal<Map<ImageWriterSpi, Deque<ImageWriter>>> IDLE_WRITERS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<ImageReaderSpi, Deque<ImageReader>>> IDLE_READERS = ThreadLocal.withInitial(HashMap::new);
+
+    private static final Map<String, ImageWriterSpi> WRITER_SPIS = new ConcurrentHashMap<>();
+    private static volatile List<ImageReaderSpi> readerSpis;
+
+    private static final LongAdder WRITER_HITS = new LongAdder();
+    private static final LongAdder WRITER_MISSES = new LongAdder();
+    private static final LongAdder READER_HITS = new LongAdder();
+    private static final LongAdder READER_MISSES = new LongAdder();
+
+    private CodecPool() {}
+
+    /**
+     * 借出指定格式的 {@link ImageWriter}，用畢須呼叫 {@link #releaseWriter(ImageWriter)}。
+     * @param formatName 格式名稱，如 "jpg"、"png"
+     * @return 可用的 writer
+     * @throws IIOException 找不到對應格式的 writer
+     */
+    public static ImageWriter borrowWriter(String formatName) throws IOException {
+        ImageWriterSpi spi = WRITER_SPIS.get(formatName);
+        if (spi == null) {
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(formatName);
+            if (!writers.hasNext()) {
+                throw new IIOException("找不到格式 " + formatName + " 的 ImageWriter");
+            }
+            ImageWriter writer = writers.next();
+            spi = writer.getOriginatingProvider();
+            if (spi != null) {
+                WRITER_SPIS.putIfAbsent(formatName, spi);
+            }
+            WRITER_MISSES.increment();
+            return writer;
+        }
+
+        Deque<ImageWriter> idle = IDLE_WRITERS.get().get(spi);
+        ImageWriter writer = idle == null ? null : idle.pollFirst();
+        if (writer != null) {
+            WRITER_HITS.increment();
+            return writer;
+        }
+        WRITER_MISSES.increment();
+        return spi.createWriterInstance();
+    }
+
+    /**
+     * 歸還 writer；會先 {@code reset()} 清除輸出、監聽器等狀態，池滿時直接 {@code dispose()}。
+     * @param writer 由 {@link #borrowWriter(String)} 借出的 writer，可為 null
+     */
+    public static void releaseWriter(ImageWriter writer) {
+        if (writer == null) {
+            return;
+        }
+        ImageWriterSpi spi = writer.getOriginatingProvider();
+        try {
+            writer.reset();
+        } catch (RuntimeException e) {
+            log.debug("重設 ImageWriter 失敗，直接釋放", e);
+            writer.dispose();
+            return;
+        }
+        Deque<ImageWriter> idle = spi == null ? null : IDLE_WRITERS.get().computeIfAbsent(spi, k -> new ArrayDeque<>());
+        if (idle == null || idle.size() >= MAX_IDLE_PER_FORMAT) {
+            writer.dispose();
+        } else {
+            idle.offerFirst(writer);
+        }
+    }
+
+    /**
+     * 依輸入串流內容找出可解碼的 {@link ImageReader} 並借出，用畢須呼叫 {@link #releaseReader(ImageReader)}。
+     * @param in 圖片輸入串流
+     * @return 可用的 reader；若沒有任何外掛能解碼則回傳 null
+     * @throws IOException 讀取串流判斷格式時發生錯誤
+     */
+    public static ImageReader borrowReader(ImageInputStream in) throws IOException {
+        for (ImageReaderSpi spi : readerSpis()) {
+            if (spi.canDecodeInput(in)) {
+                return borrowReader(spi);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 借出指定 SPI 的 {@link ImageReader}。
+     * @param spi reader 外掛的提供者
+     * @return 可用的 reader
+     * @throws IOException 建立 reader 失敗
+     */
+    public static ImageReader borrowReader(ImageReaderSpi spi) throws IOException {
+        Deque<ImageReader> idle = IDLE_READERS.get().get(spi);
+        ImageReader reader = idle == null ? null : idle.pollFirst();
+        if (reader != null) {
+            READER_HITS.increment();
+            return reader;
+        }
+        READER_MISSES.increment();
+        return spi.createReaderInstance();
+    }
+
+    /**
+     * 歸還 reader；會先 {@code reset()} 清除輸入等狀態，池滿時直接 {@code dispose()}。
+     * @param reader 由 {@link #borrowReader} 借出的 reader，可為 null
+     */
+    public static void releaseReader(ImageReader reader) {
+        if (reader == null) {
+            return;
+        }
+        ImageReaderSpi spi = reader.getOriginatingProvider();
+        try {
+            reader.reset();
+        } catch (RuntimeException e) {
+            log.debug("重設 ImageReader 失敗，直接釋放", e);
+            reader.dispose();
+            return;
+        }
+        Deque<ImageReader> idle = spi == null ? null : IDLE_READERS.get().computeIfAbsent(spi, k -> new ArrayDeque<>());
+        if (idle == null || idle.size() >= MAX_IDLE_PER_FORMAT) {
+            reader.dispose();
+        } else {
+            idle.offerFirst(reader);
+        }
+    }
+
+    /**
+     * @return 目前的命中/建立統計
+     */
+    public static CodecPoolStats stats() {
+        return new CodecPoolStats(WRITER_HITS.sum(), WRITER_MISSES.sum(), READER_HITS.sum(), READER_MISSES.sum());
+    }
+
+    /**
+     * 依 {@link IIORegistry} 的排序快取所有 reader SPI，與 {@code ImageIO.getImageReaders} 的挑選順序一致。
+     */
+    private static List<ImageReaderSpi> readerSpis() {
+        List<ImageReaderSpi> spis = readerSpis;
+        if (spis == null) {
+            spis = new ArrayList<>();
+            Iterator<ImageReaderSpi> it = IIORegistry.getDefaultInstance().getServiceProviders(ImageReaderSpi.class, true);
+            while (it.hasNext()) {
+                spis.add(it.next());
+            }
+            readerSpis = List.copyOf(spis);
+        }
+        return spis;
+    }
+
+}
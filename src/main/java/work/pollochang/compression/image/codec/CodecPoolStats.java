@@ -0,0 +1,10 @@
+package work.pollochang.compression.image.codec;
+
+/**
+ * {@link CodecPool} 的統計快照。
+ * @param writerHits   由池中取得 writer 的次數
+ * @param writerMisses 新建 writer 的次數
+ * @param readerHits   由池中取得 reader 的次數
+ * @param readerMisses 新建 reader 的次數
+ */
+public record CodecPoolStats(long writerHits, long writerMisses, long readerHits, long readerMisses) {}
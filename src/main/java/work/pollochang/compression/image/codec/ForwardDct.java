@@ -0,0 +1,93 @@
+package work.pollochang.compression.image.codec;
+
+/**
+ * 8x8 正向 DCT（浮點 AAN 演算法，對應 libjpeg 的 {@code jfdctflt.c}）。
+ *
+ * <p>輸出為未量化的 DCT 係數（自然順序），已除去 AAN 的縮放因子，與 JPEG 規格中
+ * {@code F(u,v) = 1/4 C(u) C(v) ΣΣ f(x,y) cos(...) cos(...)} 相同，
+ * 因此除以量化表即為實際寫入檔案的量化值。</p>
+ */
+public final class ForwardDct {
+
+    /** 1 / (8 × aanscale[v] × aanscale[u])，將 AAN 輸出還原為標準 DCT 係數 */
+    private static final float[] DESCALE = new float[64];
+
+    static {
+        double[] aan = new double[8];
+        aan[0] = 1.0;
+        for (int k = 1; k < 8; k++) {
+            aan[k] = Math.cos(k * Math.PI / 16.0) * Math.sqrt(2.0);
+        }
+        for (int v = 0; v < 8; v++) {
+            for (int u = 0; u < 8; u++) {
+                DESCALE[v * 8 + u] = (float) (1.0 / (8.0 * aan[v] * aan[u]));
+            }
+        }
+    }
+
+    private ForwardDct() {}
+
+    /**
+     * 就地轉換一個 8x8 區塊。
+     * @param block 64 個已減去 128 的樣本（自然順序），完成後為 DCT 係數
+     */
+    public static void forward(float[] block) {
+        for (int i = 0; i < 8; i++) {
+            pass(block, i * 8, 1);
+        }
+        for (int i = 0; i < 8; i++) {
+            pass(block, i, 8);
+        }
+        for (int k = 0; k < 64; k++) {
+            block[k] *= DESCALE[k];
+        }
+    }
+
+    /**
+     * 一維 AAN DCT，處理 {@code offset} 起、間隔 {@code step} 的 8 個樣本。
+     */
+    private static void pass(float[] d, int offset, int step) {
+        int i0 = offset, i1 = offset + step, i2 = offset + 2 * step, i3 = offset + 3 * step;
+        int i4 = offset + 4 * step, i5 = offset + 5 * step, i6 = offset + 6 * step, i7 = offset + 7 * step;
+
+        float tmp0 = d[i0] + d[i7];
+        float tmp7 = d[i0] - d[i7];
+        float tmp1 = d[i1] + d[i6];
+        float tmp6 = d[i1] - d[i6];
+        float tmp2 = d[i2] + d[i5];
+        float tmp5 = d[i2] - d[i5];
+        float tmp3 = d[i3] + d[i4];
+        float tmp4 = d[i3] - d[i4];
+
+        // 偶數部分
+        float tmp10 = tmp0 + tmp3;
+        float tmp13 = tmp0 - tmp3;
+        float tmp11 = tmp1 + tmp2;
+        float tmp12 = tmp1 - tmp2;
+
+        d[i0] = tmp10 + tmp11;
+        d[i4] = tmp10 - tmp11;
+
+        float z1 = (tmp12 + tmp13) * 0.707106781f;
+        d[i2] = tmp13 + z1;
+        d[i6] = tmp13 - z1;
+
+        // 奇數部分
+        tmp10 = tmp4 + tmp5;
+        tmp11 = tmp5 + tmp6;
+        tmp12 = tmp6 + tmp7;
+
+        float z5 = (tmp10 - tmp12) * 0.382683433f;
+        float z2 = 0.541196100f * tmp10 + z5;
+        float z4 = 1.306562965f * tmp12 + z5;
+        float z3 = tmp11 * 0.707106781f;
+
+        float z11 = tmp7 + z3;
+        float z13 = tmp7 - z3;
+
+        d[i5] = z13 + z2;
+        d[i3] = z13 - z2;
+        d[i1] = z11 + z4;
+        d[i7] = z11 - z4;
+    }
+}
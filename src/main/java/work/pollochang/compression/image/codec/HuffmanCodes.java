@@ -0,0 +1,168 @@
+package work.pollochang.compression.image.codec;
+
+import javax.imageio.plugins.jpeg.JPEGHuffmanTable;
+import java.util.Arrays;
+
+/**
+ * 編碼用的 Huffman 碼表：符號 → (碼, 碼長)。
+ *
+ * <p>除了標準表，也可依實際的符號次數以 ITU T.81 Annex K.2 的演算法產生最佳化的碼表。</p>
+ */
+final class HuffmanCodes {
+
+    static final HuffmanCodes DC_LUMINANCE = new HuffmanCodes(JPEGHuffmanTable.StdDCLuminance);
+    static final HuffmanCodes AC_LUMINANCE = new HuffmanCodes(JPEGHuffmanTable.StdACLuminance);
+    static final HuffmanCodes DC_CHROMINANCE = new HuffmanCodes(JPEGHuffmanTable.StdDCChrominance);
+    static final HuffmanCodes AC_CHROMINANCE = new HuffmanCodes(JPEGHuffmanTable.StdACChrominance);
+
+    final JPEGHuffmanTable table;
+    final int[] codes = new int[256];
+    final int[] sizes = new int[256];
+
+    /** Annex K.2 的碼長上限 */
+    private static final int MAX_CODE_LENGTH = 16;
+
+    private HuffmanCodes(JPEGHuffmanTable table) {
+        this.table = table;
+        short[] counts = table.getLengths();
+        short[] values = table.getValues();
+        int code = 0;
+        int k = 0;
+        for (int len = 1; len <= counts.length; len++) {
+            for (int i = 0; i < counts[len - 1]; i++, k++, code++) {
+                int symbol = values[k] & 0xFF;
+                codes[symbol] = code;
+                sizes[symbol] = len;
+            }
+            code <<= 1;
+        }
+    }
+
+    /**
+     * 累計一個區塊的 DC 類別與 AC (連零長度, 類別) 符號次數，與 {@link JpegEntropyEncoder#writeBlock} 的符號一致。
+     * @param coefficients  量化後的係數，自然順序；DC 為絕對值
+     * @param previousDc    同一分量上一個區塊的 DC 值
+     * @param dcFrequencies DC 符號次數，長度 256
+     * @param acFrequencies AC 符號次數，長度 256
+     */
+    static void count(short[] coefficients, int previousDc, long[] dcFrequencies, long[] acFrequencies) {
+        dcFrequencies[JpegTables.category(coefficients[0] - previousDc)]++;
+        int run = 0;
+        for (int k = 1; k < 64; k++) {
+            int value = coefficients[JpegTables.ZIGZAG[k]];
+            if (value == 0) {
+                run++;
+                continue;
+            }
+            while (run > 15) {
+                acFrequencies[0xF0]++;
+                run -= 16;
+            }
+            acFrequencies[(run << 4) | JpegTables.category(value)]++;
+            run = 0;
+        }
+        if (run > 0) {
+            acFrequencies[0x00]++;
+        }
+    }
+
+    /**
+     * 依符號次數產生最佳化的碼表（同 libjpeg 的 {@code jpeg_gen_optimal_table}）。
+     * @param frequencies 符號次數，長度 256，不會被修改
+     * @return 碼長不超過 16 且不含全 1 碼字的碼表
+     */
+    static HuffmanCodes optimal(long[] frequencies) {
+        long[] freq = new long[257];
+        System.arraycopy(frequencies, 0, freq, 0, 256);
+        boolean used = false;
+        for (int i = 0; i < 256; i++) {
+            used |= freq[i] > 0;
+        }
+        if (!used) {
+            // 沒有任何符號時仍需一個合法的碼表
+            freq[0] = 1;
+        }
+        // 保留一個符號，確保不會產生全 1 的碼字
+        freq[256] = 1;
+
+        int[] codeSize = new int[257];
+        int[] others = new int[257];
+        Arrays.fill(others, -1);
+        while (true) {
+            // 找出次數最小的兩個符號，次數相同時取編號較大者
+            int c1 = -1;
+            long v = Long.MAX_VALUE;
+            for (int i = 0; i <= 256; i++) {
+                if (freq[i] > 0 && freq[i] <= v) {
+                    v = freq[i];
+                    c1 = i;
+                }
+            }
+            int c2 = -1;
+            v = Long.MAX_VALUE;
+            for (int i = 0; i <= 256; i++) {
+                if (freq[i] > 0 && freq[i] <= v && i != c1) {
+                    v = freq[i];
+                    c2 = i;
+                }
+            }
+            if (c2 < 0) {
+                break;
+            }
+            freq[c1] += freq[c2];
+            freq[c2] = 0;
+            codeSize[c1]++;
+            while (others[c1] >= 0) {
+                c1 = others[c1];
+                codeSize[c1]++;
+            }
+            others[c1] = c2;
+            codeSize[c2]++;
+            while (others[c2] >= 0) {
+                c2 = others[c2];
+                codeSize[c2]++;
+            }
+        }
+
+        int[] bits = new int[33];
+        for (int i = 0; i <= 256; i++) {
+            if (codeSize[i] > 0) {
+                bits[codeSize[i]]++;
+            }
+        }
+        // 將超過 16 位元的碼調整到 16 位元以內
+        for (int i = 32; i > MAX_CODE_LENGTH; i--) {
+            while (bits[i] > 0) {
+                int j = i - 2;
+                while (bits[j] == 0) {
+                    j--;
+                }
+                bits[i] -= 2;
+                bits[i - 1]++;
+                bits[j + 1] += 2;
+                bits[j]--;
+            }
+        }
+        // 移除保留的符號（它一定是最長的碼之一）
+        int longest = MAX_CODE_LENGTH;
+        while (bits[longest] == 0) {
+            longest--;
+        }
+        bits[longest]--;
+
+        short[] lengths = new short[MAX_CODE_LENGTH];
+        for (int i = 1; i <= MAX_CODE_LENGTH; i++) {
+            lengths[i - 1] = (short) bits[i];
+        }
+        short[] values = new short[256];
+        int count = 0;
+        for (int size = 1; size <= 32; size++) {
+            for (int symbol = 0; symbol < 256; symbol++) {
+                if (codeSize[symbol] == size) {
+                    values[count++] = (short) symbol;
+                }
+            }
+        }
+        return new HuffmanCodes(new JPEGHuffmanTable(lengths, Arrays.copyOf(values, count)));
+    }
+}
@@ -0,0 +1,13 @@
+package work.pollochang.compression.image.codec;
+
+/**
+ * {@link ImageHeaderScanner} 可辨識的圖片格式。
+ */
+public enum ImageFormat {
+    JPEG,
+    PNG,
+    GIF,
+    BMP,
+    TIFF,
+    WEBP
+}
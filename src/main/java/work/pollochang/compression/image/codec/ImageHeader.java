@@ -0,0 +1,12 @@
+package work.pollochang.compression.image.codec;
+
+/**
+ * 只讀取檔頭得到的圖片資訊。
+ * @param format      圖片格式
+ * @param width       寬度（像素）
+ * @param height      高度（像素）
+ * @param bitDepth    每個樣本或每像素的位元數，依格式而定（JPEG 為樣本精度、BMP 為每像素位元數）
+ * @param progressive 漸進式 JPEG，或隔行掃描的 PNG/GIF
+ */
+public record ImageHeader(ImageFormat format, int width, int height, int bitDepth, boolean progressive) {
+}
@@ -0,0 +1,313 @@
+package work.pollochang.compression.image.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 只讀取檔頭取得圖片格式、尺寸、位元深度與漸進式/隔行旗標，不建立 {@link javax.imageio.ImageReader}。
+ *
+ * <p>支援 JPEG（SOFn）、PNG（IHDR）、GIF（第一個影像描述區塊）、BMP（DIB 檔頭）、
+ * TIFF（第一個 IFD）與 WebP（VP8/VP8L/VP8X）。檔案以 {@value #WINDOW_SIZE} bytes 的視窗讀取，
+ * 一般只需要讀第一個視窗；JPEG 前面有大型 EXIF 區段或 TIFF 的 IFD 在檔尾時才會跳到其他位置再讀一次。</p>
+ */
+public final class ImageHeaderScanner {
+
+    /** 每次從檔案讀取的大小 */
+    private static final int WINDOW_SIZE = 8 * 1024;
+
+    private ImageHeaderScanner() {
+    }
+
+    /**
+     * 讀取檔頭。
+     * @param file 圖片檔案
+     * @return 檔頭資訊；無法辨識的格式、損毀或缺少尺寸（如 JPEG 的 DNL）時回傳 {@code null}
+     * @throws IOException 無法開啟或讀取檔案
+     */
+    public static ImageHeader scan(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Source source = new Source(channel);
+            return scan(source);
+        } catch (EOFException e) {
+            // 檔頭不完整
+            return null;
+        }
+    }
+
+    private static ImageHeader scan(Source in) throws IOException {
+        if (in.size < 12) {
+            return null;
+        }
+        int b0 = in.u8(0);
+        int b1 = in.u8(1);
+        if (b0 == 0xFF && b1 == 0xD8) {
+            return scanJpeg(in);
+        }
+        if (b0 == 0x89 && b1 == 'P' && in.u8(2) == 'N' && in.u8(3) == 'G') {
+            return scanPng(in);
+        }
+        if (b0 == 'G' && b1 == 'I' && in.u8(2) == 'F') {
+            return scanGif(in);
+        }
+        if (b0 == 'B' && b1 == 'M') {
+            return scanBmp(in);
+        }
+        if ((b0 == 'I' && b1 == 'I') || (b0 == 'M' && b1 == 'M')) {
+            return scanTiff(in, b0 == 'I');
+        }
+        if (b0 == 'R' && b1 == 'I' && in.u8(2) == 'F' && in.u8(3) == 'F' && in.u32be(8) == 0x57454250L) {
+            return scanWebp(in);
+        }
+        return null;
+    }
+
+    private static ImageHeader scanJpeg(Source in) throws IOException {
+        long pos = 2;
+        while (true) {
+            if (in.u8(pos) != 0xFF) {
+                return null;
+            }
+            int marker = in.u8(pos + 1);
+            // 標記前可以有多個填充用的 0xFF
+            while (marker == 0xFF) {
+                pos++;
+                marker = in.u8(pos + 1);
+            }
+            pos += 2;
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                // 掃描開始前沒有 SOF
+                return null;
+            }
+            int length = in.u16be(pos);
+            if (isSof(marker)) {
+                int precision = in.u8(pos + 2);
+                int height = in.u16be(pos + 3);
+                int width = in.u16be(pos + 5);
+                if (width == 0 || height == 0) {
+                    return null;
+                }
+                boolean progressive = marker == 0xC2 || marker == 0xC6 || marker == 0xCA || marker == 0xCE;
+                return new ImageHeader(ImageFormat.JPEG, width, height, precision, progressive);
+            }
+            if (length < 2) {
+                return null;
+            }
+            pos += length;
+        }
+    }
+
+    /**
+     * SOF0-SOF15，排除 DHT（C4）、JPG（C8）與 DAC（CC）。
+     */
+    private static boolean isSof(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    private static ImageHeader scanPng(Source in) throws IOException {
+        // 8 bytes 簽章之後第一個區塊必須是 IHDR
+        if (in.u32be(12) != 0x49484452L) {
+            return null;
+        }
+        long width = in.u32be(16);
+        long height = in.u32be(20);
+        if (width <= 0 || height <= 0 || width > Integer.MAX_VALUE || height > Integer.MAX_VALUE) {
+            return null;
+        }
+        return new ImageHeader(ImageFormat.PNG, (int) width, (int) height, in.u8(24), in.u8(28) == 1);
+    }
+
+    private static ImageHeader scanGif(Source in) throws IOException {
+        int packed = in.u8(10);
+        int colorResolution = ((packed >> 4) & 0x07) + 1;
+        long pos = 13;
+        if ((packed & 0x80) != 0) {
+            pos += 3L * (1 << ((packed & 0x07) + 1));
+        }
+        // 跳過擴充區塊，直到第一個影像描述區塊（ImageReader 回報的是第一張影像的尺寸）
+        while (true) {
+            int introducer = in.u8(pos);
+            if (introducer == 0x2C) {
+                int width = in.u16le(pos + 5);
+                int height = in.u16le(pos + 7);
+                boolean interlaced = (in.u8(pos + 9) & 0x40) != 0;
+                if (width == 0 || height == 0) {
+                    return null;
+                }
+                return new ImageHeader(ImageFormat.GIF, width, height, colorResolution, interlaced);
+            }
+            if (introducer != 0x21) {
+                return null;
+            }
+            pos += 2;
+            int blockSize;
+            while ((blockSize = in.u8(pos)) != 0) {
+                pos += blockSize + 1;
+            }
+            pos++;
+        }
+    }
+
+    private static ImageHeader scanBmp(Source in) throws IOException {
+        long dibSize = in.u32le(14);
+        int width;
+        int height;
+        int bitDepth;
+        if (dibSize == 12) {
+            // OS/2 BITMAPCOREHEADER
+            width = in.u16le(18);
+            height = in.u16le(20);
+            bitDepth = in.u16le(24);
+        } else if (dibSize >= 40) {
+            width = (int) in.u32le(18);
+            // 高度為負值代表由上而下儲存
+            height = Math.abs((int) in.u32le(22));
+            bitDepth = in.u16le(28);
+        } else {
+            return null;
+        }
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        return new ImageHeader(ImageFormat.BMP, width, height, bitDepth, false);
+    }
+
+    private static ImageHeader scanTiff(Source in, boolean littleEndian) throws IOException {
+        if (u16(in, 2, littleEndian) != 42) {
+            // BigTIFF 等變體交給 ImageReader
+            return null;
+        }
+        long ifd = u32(in, 4, littleEndian);
+        int entries = u16(in, ifd, littleEndian);
+        long width = -1;
+        long height = -1;
+        int bitDepth = 1;
+        for (int i = 0; i < entries; i++) {
+            long entry = ifd + 2 + 12L * i;
+            int tag = u16(in, entry, littleEndian);
+            int type = u16(in, entry + 2, littleEndian);
+            long count = u32(in, entry + 4, littleEndian);
+            switch (tag) {
+                case 256 -> width = tiffValue(in, entry + 8, type, littleEndian);
+                case 257 -> height = tiffValue(in, entry + 8, type, littleEndian);
+                case 258 -> {
+                    // BitsPerSample 超過兩個值時，欄位內存的是偏移量
+                    long valuePos = count > 2 ? u32(in, entry + 8, littleEndian) : entry + 8;
+                    bitDepth = u16(in, valuePos, littleEndian);
+                }
+                default -> {
+                }
+            }
+        }
+        if (width <= 0 || height <= 0 || width > Integer.MAX_VALUE || height > Integer.MAX_VALUE) {
+            return null;
+        }
+        return new ImageHeader(ImageFormat.TIFF, (int) width, (int) height, bitDepth, false);
+    }
+
+    private static long tiffValue(Source in, long pos, int type, boolean littleEndian) throws IOException {
+        return switch (type) {
+            case 3 -> u16(in, pos, littleEndian);  // SHORT
+            case 4 -> u32(in, pos, littleEndian);  // LONG
+            default -> -1;
+        };
+    }
+
+    private static ImageHeader scanWebp(Source in) throws IOException {
+        long chunk = in.u32be(12);
+        if (chunk == 0x56503820L) {
+            // "VP8 "：有損，關鍵影格起始碼 9D 01 2A 之後是 14 位元的寬高
+            if (in.u8(23) != 0x9D || in.u8(24) != 0x01 || in.u8(25) != 0x2A) {
+                return null;
+            }
+            return new ImageHeader(ImageFormat.WEBP, in.u16le(26) & 0x3FFF, in.u16le(28) & 0x3FFF, 8, false);
+        }
+        if (chunk == 0x5650384CL) {
+            // "VP8L"：無損，簽章 0x2F 之後依序為 14 位元的寬 - 1 與高 - 1
+            if (in.u8(20) != 0x2F) {
+                return null;
+            }
+            long bits = in.u32le(21);
+            int width = (int) (bits & 0x3FFF) + 1;
+            int height = (int) ((bits >> 14) & 0x3FFF) + 1;
+            return new ImageHeader(ImageFormat.WEBP, width, height, 8, false);
+        }
+        if (chunk == 0x56503858L) {
+            // "VP8X"：延伸格式，畫布寬高 - 1 各 24 位元
+            int width = (in.u8(24) | (in.u8(25) << 8) | (in.u8(26) << 16)) + 1;
+            int height = (in.u8(27) | (in.u8(28) << 8) | (in.u8(29) << 16)) + 1;
+            return new ImageHeader(ImageFormat.WEBP, width, height, 8, false);
+        }
+        return null;
+    }
+
+    private static int u16(Source in, long pos, boolean littleEndian) throws IOException {
+        return littleEndian ? in.u16le(pos) : in.u16be(pos);
+    }
+
+    private static long u32(Source in, long pos, boolean littleEndian) throws IOException {
+        return littleEndian ? in.u32le(pos) : in.u32be(pos);
+    }
+
+    /**
+     * 以固定大小的視窗隨機讀取檔案，位置落在視窗外時才重新讀取。
+     */
+    private static final class Source {
+        private final FileChannel channel;
+        private final long size;
+        private final ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE);
+        private long windowStart = -1;
+        private int windowLength;
+
+        Source(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        int u8(long pos) throws IOException {
+            if (pos < 0 || pos >= size) {
+                throw new EOFException();
+            }
+            if (windowStart < 0 || pos < windowStart || pos >= windowStart + windowLength) {
+                fill(pos);
+            }
+            return window.get((int) (pos - windowStart)) & 0xFF;
+        }
+
+        int u16be(long pos) throws IOException {
+            return (u8(pos) << 8) | u8(pos + 1);
+        }
+
+        int u16le(long pos) throws IOException {
+            return u8(pos) | (u8(pos + 1) << 8);
+        }
+
+        long u32be(long pos) throws IOException {
+            return ((long) u16be(pos) << 16) | u16be(pos + 2);
+        }
+
+        long u32le(long pos) throws IOException {
+            return u16le(pos) | ((long) u16le(pos + 2) << 16);
+        }
+
+        private void fill(long pos) throws IOException {
+            window.clear();
+            long position = pos;
+            while (window.hasRemaining()) {
+                int n = channel.read(window, position);
+                if (n < 0) {
+                    break;
+                }
+                position += n;
+            }
+            windowStart = pos;
+            windowLength = window.position();
+        }
+    }
+}
@@ -0,0 +1,531 @@
+package work.pollochang.compression.image.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 基線（baseline / extended sequential Huffman, 8-bit）JPEG 的熵解碼器。
+ *
+ * <p>只解析標記與 Huffman 資料，將每個 8x8 區塊的量化係數交給 {@link BlockConsumer}，
+ * 不做反量化與 IDCT，讓呼叫端依需求決定要保留多少資訊（例如縮小解碼只需要低頻係數）。
+ * 支援交錯與非交錯掃描、DRI/RSTn；漸進式、算術編碼、12-bit 與四分量影像會拋出
+ * {@link UnsupportedJpegException}。</p>
+ */
+public final class JpegCoefficientReader {
+
+    /** Huffman 快速查表的位元數 */
+    private static final int LOOKAHEAD = 9;
+
+    private final ByteBuffer data;
+    private final int limit;
+    private int position;
+
+    private final int[][] quantTables = new int[4][];
+    private final HuffmanTable[] dcTables = new HuffmanTable[4];
+    private final HuffmanTable[] acTables = new HuffmanTable[4];
+    private int restartInterval;
+    private int adobeTransform = -1;
+    private JpegFrame frame;
+    private boolean scanDecoded;
+    /** 只讀取到 SOF 為止 */
+    private boolean frameOnly;
+
+    // 位元讀取狀態：bitBuffer 的最高位為下一個要讀的位元
+    private long bitBuffer;
+    private int bitCount;
+    private boolean markerReached;
+
+    private final short[] coefficients = new short[64];
+
+    private JpegCoefficientReader(ByteBuffer data) {
+        this.data = data;
+        this.position = data.position();
+        this.limit = data.limit();
+    }
+
+    /**
+     * 解碼整個 JPEG 串流，依序將區塊交給 {@code consumer}。
+     * @param data     JPEG 檔案內容，從目前 position 讀到 limit，不會改變其 position
+     * @param consumer 區塊接收者
+     * @return 影格資訊
+     * @throws UnsupportedJpegException 使用了不支援的編碼方式
+     * @throws IOException              資料損毀
+     */
+    public static JpegFrame read(ByteBuffer data, BlockConsumer consumer) throws IOException {
+        JpegCoefficientReader reader = new JpegCoefficientReader(data);
+        reader.readMarkers(consumer);
+        return reader.frame;
+    }
+
+    /**
+     * 只解析到 SOF，取得影格資訊而不解碼任何掃描。
+     * @param data JPEG 檔案內容，不會改變其 position
+     * @return 影格資訊
+     * @throws UnsupportedJpegException 使用了不支援的編碼方式
+     * @throws IOException              不是 JPEG 或找不到 SOF
+     */
+    public static JpegFrame readFrame(ByteBuffer data) throws IOException {
+        JpegCoefficientReader reader = new JpegCoefficientReader(data);
+        reader.frameOnly = true;
+        reader.readMarkers(null);
+        if (reader.frame == null) {
+            throw new IOException("JPEG 缺少 SOF");
+        }
+        return reader.frame;
+    }
+
+    private void readMarkers(BlockConsumer consumer) throws IOException {
+        if (position + 1 >= limit || u8(position) != 0xFF || u8(position + 1) != 0xD8) {
+            throw new IOException("不是 JPEG 檔案 (缺少 SOI)");
+        }
+        position += 2;
+        while (true) {
+            int marker = nextMarker();
+            switch (marker) {
+                case -1, 0xD9 -> {
+                    // 檔案截斷時，已解出的部分仍可使用
+                    if (!scanDecoded && !frameOnly) {
+                        throw new IOException("JPEG 資料不完整，未包含任何掃描");
+                    }
+                    return;
+                }
+                case 0xC0, 0xC1 -> {
+                    parseFrame();
+                    if (frameOnly) {
+                        return;
+                    }
+                    consumer.begin(frame);
+                }
+                case 0xC2, 0xC3, 0xC5, 0xC6, 0xC7, 0xC9, 0xCA, 0xCB, 0xCD, 0xCE, 0xCF ->
+                        throw new UnsupportedJpegException(String.format("不支援的 JPEG 編碼 (SOF%d)", marker - 0xC0));
+                case 0xC4 -> readHuffmanTables();
+                case 0xDB -> readQuantTables();
+                case 0xDD -> {
+                    segmentLength();
+                    restartInterval = u16(position);
+                    position += 2;
+                }
+                case 0xDA -> readScan(consumer);
+                case 0xEE -> readAdobe();
+                default -> {
+                    if (marker >= 0xD0 && marker <= 0xD7 || marker == 0x01) {
+                        continue; // 無參數的標記
+                    }
+                    position += segmentLength();
+                }
+            }
+        }
+    }
+
+    /**
+     * 尋找下一個標記，跳過填充的 0xFF 與掃描後可能殘留的垃圾位元組。
+     * @return 標記代碼；讀到檔尾時回傳 -1
+     */
+    private int nextMarker() {
+        while (position + 1 < limit) {
+            if (u8(position) == 0xFF) {
+                int code = u8(position + 1);
+                if (code != 0x00 && code != 0xFF) {
+                    position += 2;
+                    return code;
+                }
+            }
+            position++;
+        }
+        return -1;
+    }
+
+    /**
+     * 讀取區段長度並將 position 移到長度欄位之後。
+     * @return 扣除長度欄位後的資料長度
+     */
+    private int segmentLength() throws IOException {
+        if (position + 2 > limit) {
+            throw new IOException("JPEG 區段超出檔案範圍");
+        }
+        int length = u16(position);
+        if (length < 2 || position + length > limit) {
+            throw new IOException("JPEG 區段長度錯誤: " + length);
+        }
+        position += 2;
+        return length - 2;
+    }
+
+    private void parseFrame() throws IOException {
+        if (frame != null) {
+            throw new UnsupportedJpegException("不支援多個 SOF 的 JPEG");
+        }
+        int length = segmentLength();
+        int end = position + length;
+        int precision = u8(position);
+        int height = u16(position + 1);
+        int width = u16(position + 3);
+        int count = u8(position + 5);
+        if (precision != 8) {
+            throw new UnsupportedJpegException("不支援 " + precision + "-bit JPEG");
+        }
+        if (height == 0 || width == 0) {
+            throw new UnsupportedJpegException("不支援以 DNL 定義高度的 JPEG");
+        }
+        if (count != 1 && count != 3) {
+            throw new UnsupportedJpegException("不支援 " + count + " 個分量的 JPEG");
+        }
+        if (length < 6 + 3 * count) {
+            throw new IOException("SOF 區段長度錯誤");
+        }
+
+        int[] ids = new int[count];
+        int[] h = new int[count];
+        int[] v = new int[count];
+        int[] tq = new int[count];
+        int maxH = 1;
+        int maxV = 1;
+        for (int i = 0; i < count; i++) {
+            int p = position + 6 + 3 * i;
+            ids[i] = u8(p);
+            h[i] = u8(p + 1) >> 4;
+            v[i] = u8(p + 1) & 0x0F;
+            tq[i] = u8(p + 2) & 0x03;
+            if (h[i] < 1 || h[i] > 4 || v[i] < 1 || v[i] > 4) {
+                throw new IOException("SOF 取樣因子錯誤");
+            }
+            maxH = Math.max(maxH, h[i]);
+            maxV = Math.max(maxV, v[i]);
+        }
+        List<JpegComponent> components = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int componentWidth = ceilDiv(width * h[i], maxH);
+            int componentHeight = ceilDiv(height * v[i], maxV);
+            components.add(new JpegComponent(ids[i], h[i], v[i], tq[i], ceilDiv(componentWidth, 8), ceilDiv(componentHeight, 8)));
+        }
+        frame = new JpegFrame(width, height, List.copyOf(components), maxH, maxV,
+                ceilDiv(width, 8 * maxH), ceilDiv(height, 8 * maxV), adobeTransform);
+        position = end;
+    }
+
+    private void readQuantTables() throws IOException {
+        int length = segmentLength();
+        int end = position + length;
+        while (position < end) {
+            int pq = u8(position) >> 4;
+            int tq = u8(position) & 0x0F;
+            position++;
+            if (tq > 3) {
+                throw new IOException("DQT 表格編號錯誤: " + tq);
+            }
+            int[] table = new int[64];
+            for (int k = 0; k < 64; k++) {
+                int value = pq == 0 ? u8(position + k) : u16(position + 2 * k);
+                table[JpegTables.ZIGZAG[k]] = value;
+            }
+            position += pq == 0 ? 64 : 128;
+            quantTables[tq] = table;
+        }
+        position = end;
+    }
+
+    private void readHuffmanTables() throws IOException {
+        int length = segmentLength();
+        int end = position + length;
+        while (position < end) {
+            int tc = u8(position) >> 4;
+            int th = u8(position) & 0x0F;
+            if (tc > 1 || th > 3) {
+                throw new IOException("DHT 表格編號錯誤");
+            }
+            int[] counts = new int[17];
+            int total = 0;
+            for (int len = 1; len <= 16; len++) {
+                counts[len] = u8(position + len);
+                total += counts[len];
+            }
+            if (total > 256 || position + 17 + total > end) {
+                throw new IOException("DHT 表格長度錯誤");
+            }
+            int[] values = new int[total];
+            for (int i = 0; i < total; i++) {
+                values[i] = u8(position + 17 + i);
+            }
+            position += 17 + total;
+            (tc == 0 ? dcTables : acTables)[th] = new HuffmanTable(counts, values);
+        }
+        position = end;
+    }
+
+    private void readAdobe() throws IOException {
+        int length = segmentLength();
+        if (length >= 12 && u8(position) == 'A' && u8(position + 1) == 'd' && u8(position + 2) == 'o'
+                && u8(position + 3) == 'b' && u8(position + 4) == 'e') {
+            adobeTransform = u8(position + 11);
+        }
+        position += length;
+    }
+
+    private void readScan(BlockConsumer consumer) throws IOException {
+        if (frame == null) {
+            throw new IOException("SOS 出現在 SOF 之前");
+        }
+        int length = segmentLength();
+        int end = position + length;
+        int count = u8(position);
+        if (count < 1 || count > frame.components().size() || length < 4 + 2 * count) {
+            throw new IOException("SOS 分量數錯誤");
+        }
+        int[] scanComponents = new int[count];
+        HuffmanTable[] dc = new HuffmanTable[count];
+        HuffmanTable[] ac = new HuffmanTable[count];
+        for (int i = 0; i < count; i++) {
+            int id = u8(position + 1 + 2 * i);
+            int tables = u8(position + 2 + 2 * i);
+            scanComponents[i] = componentIndex(id);
+            dc[i] = dcTables[(tables >> 4) & 0x03];
+            ac[i] = acTables[tables & 0x03];
+            if (dc[i] == null || ac[i] == null) {
+                throw new IOException("SOS 引用了未定義的 Huffman 表");
+            }
+            if (quantTables[frame.components().get(scanComponents[i]).quantTableId()] == null) {
+                throw new IOException("引用了未定義的量化表");
+            }
+        }
+        position = end;
+
+        int[][] componentTables = new int[frame.components().size()][];
+        for (int c = 0; c < componentTables.length; c++) {
+            componentTables[c] = quantTables[frame.components().get(c).quantTableId()];
+        }
+        consumer.beginScan(scanComponents, componentTables);
+
+        resetBits();
+        int[] predictors = new int[count];
+        if (count == 1) {
+            decodeNonInterleaved(consumer, scanComponents[0], dc[0], ac[0], predictors);
+        } else {
+            decodeInterleaved(consumer, scanComponents, dc, ac, predictors);
+        }
+        scanDecoded = true;
+        resetBits();
+        consumer.endScan();
+    }
+
+    private int componentIndex(int id) throws IOException {
+        List<JpegComponent> components = frame.components();
+        for (int i = 0; i < components.size(); i++) {
+            if (components.get(i).id() == id) {
+                return i;
+            }
+        }
+        throw new IOException("SOS 引用了不存在的分量: " + id);
+    }
+
+    private void decodeInterleaved(BlockConsumer consumer, int[] scanComponents, HuffmanTable[] dc, HuffmanTable[] ac,
+                                   int[] predictors) throws IOException {
+        int count = scanComponents.length;
+        int[] h = new int[count];
+        int[] v = new int[count];
+        int[][] tables = new int[count][];
+        for (int i = 0; i < count; i++) {
+            JpegComponent component = frame.components().get(scanComponents[i]);
+            h[i] = component.horizontalSampling();
+            v[i] = component.verticalSampling();
+            tables[i] = quantTables[component.quantTableId()];
+        }
+        int mcus = 0;
+        for (int mcuY = 0; mcuY < frame.mcusPerColumn(); mcuY++) {
+            for (int mcuX = 0; mcuX < frame.mcusPerLine(); mcuX++) {
+                if (restartInterval > 0 && mcus > 0 && mcus % restartInterval == 0) {
+                    restart(predictors);
+                }
+                for (int i = 0; i < count; i++) {
+                    for (int by = 0; by < v[i]; by++) {
+                        for (int bx = 0; bx < h[i]; bx++) {
+                            predictors[i] = decodeBlock(dc[i], ac[i], predictors[i]);
+                            consumer.block(scanComponents[i], mcuX * h[i] + bx, mcuY * v[i] + by, coefficients, tables[i]);
+                        }
+                    }
+                }
+                mcus++;
+            }
+        }
+    }
+
+    private void decodeNonInterleaved(BlockConsumer consumer, int component, HuffmanTable dc, HuffmanTable ac,
+                                      int[] predictors) throws IOException {
+        JpegComponent info = frame.components().get(component);
+        int[] table = quantTables[info.quantTableId()];
+        int mcus = 0;
+        for (int row = 0; row < info.blocksPerColumn(); row++) {
+            for (int col = 0; col < info.blocksPerLine(); col++) {
+                if (restartInterval > 0 && mcus > 0 && mcus % restartInterval == 0) {
+                    restart(predictors);
+                }
+                predictors[0] = decodeBlock(dc, ac, predictors[0]);
+                consumer.block(component, col, row, coefficients, table);
+                mcus++;
+            }
+        }
+    }
+
+    /**
+     * 解出一個區塊的量化係數到 {@link #coefficients}（自然順序）。
+     * @return 更新後的 DC 預測值
+     */
+    private int decodeBlock(HuffmanTable dc, HuffmanTable ac, int predictor) throws IOException {
+        short[] block = coefficients;
+        Arrays.fill(block, (short) 0);
+
+        if (bitCount < 32) fill();
+        int s = decodeSymbol(dc);
+        if (s != 0) {
+            predictor += receiveExtend(s);
+        }
+        block[0] = (short) predictor;
+
+        for (int k = 1; k < 64; ) {
+            if (bitCount < 32) fill();
+            int rs = decodeSymbol(ac);
+            int r = rs >> 4;
+            s = rs & 0x0F;
+            if (s != 0) {
+                k += r;
+                if (k > 63) {
+                    throw new IOException("JPEG 係數索引超出範圍");
+                }
+                block[JpegTables.ZIGZAG[k]] = (short) receiveExtend(s);
+                k++;
+            } else if (r == 15) {
+                k += 16;
+            } else {
+                break; // EOB
+            }
+        }
+        return predictor;
+    }
+
+    private int decodeSymbol(HuffmanTable table) throws IOException {
+        int peek = (int) (bitBuffer >>> (64 - LOOKAHEAD));
+        int entry = table.lookup[peek];
+        if (entry != 0) {
+            consume(entry >> 8);
+            return entry & 0xFF;
+        }
+        for (int len = LOOKAHEAD + 1; len <= 16; len++) {
+            int code = (int) (bitBuffer >>> (64 - len));
+            if (code <= table.maxCode[len]) {
+                consume(len);
+                return table.values[table.valueOffset[len] + code];
+            }
+        }
+        throw new IOException("JPEG Huffman 碼錯誤");
+    }
+
+    private int receiveExtend(int s) {
+        int value = (int) (bitBuffer >>> (64 - s));
+        consume(s);
+        return value < (1 << (s - 1)) ? value - (1 << s) + 1 : value;
+    }
+
+    private void consume(int bits) {
+        bitBuffer <<= bits;
+        bitCount -= bits;
+    }
+
+    /**
+     * 補充位元至至少 57 位。遇到標記時以 0 填補，且不越過標記。
+     */
+    private void fill() {
+        while (bitCount <= 56) {
+            int b = 0;
+            if (!markerReached && position < limit) {
+                b = u8(position);
+                if (b == 0xFF) {
+                    int next = position + 1 < limit ? u8(position + 1) : 0xD9;
+                    if (next == 0x00) {
+                        position += 2;
+                    } else {
+                        markerReached = true;
+                        b = 0;
+                    }
+                } else {
+                    position++;
+                }
+            }
+            bitBuffer |= (long) b << (56 - bitCount);
+            bitCount += 8;
+        }
+    }
+
+    private void resetBits() {
+        bitBuffer = 0;
+        bitCount = 0;
+        markerReached = false;
+    }
+
+    /**
+     * 處理 RSTn：丟棄剩餘位元、跳過標記並重設 DC 預測值。
+     */
+    private void restart(int[] predictors) {
+        resetBits();
+        while (position + 1 < limit) {
+            if (u8(position) == 0xFF) {
+                int code = u8(position + 1);
+                if (code >= 0xD0 && code <= 0xD7) {
+                    position += 2;
+                    break;
+                }
+                if (code != 0x00 && code != 0xFF) {
+                    break; // 其他標記：資料截斷，保留給 nextMarker 處理
+                }
+            }
+            position++;
+        }
+        Arrays.fill(predictors, 0);
+    }
+
+    private int u8(int index) {
+        return data.get(index) & 0xFF;
+    }
+
+    private int u16(int index) {
+        return (u8(index) << 8) | u8(index + 1);
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+
+    /**
+     * 解碼用的 Huffman 表：{@value #LOOKAHEAD} 位元的快速查表，較長的碼以 maxCode 逐位比對。
+     */
+    private static final class HuffmanTable {
+        /** (碼長 << 8) | 符號，0 表示需走慢速路徑 */
+        final int[] lookup = new int[1 << LOOKAHEAD];
+        final int[] maxCode = new int[18];
+        final int[] valueOffset = new int[18];
+        final int[] values;
+
+        HuffmanTable(int[] counts, int[] values) {
+            this.values = values;
+            int code = 0;
+            int k = 0;
+            for (int len = 1; len <= 16; len++) {
+                valueOffset[len] = k - code;
+                for (int i = 0; i < counts[len]; i++, k++, code++) {
+                    if (len <= LOOKAHEAD) {
+                        int shift = LOOKAHEAD - len;
+                        int base = code << shift;
+                        int entry = (len << 8) | values[k];
+                        for (int fillIndex = 0; fillIndex < (1 << shift); fillIndex++) {
+                            lookup[base + fillIndex] = entry;
+                        }
+                    }
+                }
+                maxCode[len] = counts[len] == 0 ? -1 : code - 1;
+                code <<= 1;
+            }
+            maxCode[17] = Integer.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package work.pollochang.compression.image.codec;
+
+/**
+ * SOF 中的單一色彩分量。
+ * @param id                   分量 ID
+ * @param horizontalSampling   水平取樣因子
+ * @param verticalSampling     垂直取樣因子
+ * @param quantTableId         使用的量化表編號
+ * @param blocksPerLine        每列實際的區塊數（非交錯掃描使用）
+ * @param blocksPerColumn      每欄實際的區塊數（非交錯掃描使用）
+ */
+public record JpegComponent(int id, int horizontalSampling, int verticalSampling, int quantTableId,
+                            int blocksPerLine, int blocksPerColumn) {
+}
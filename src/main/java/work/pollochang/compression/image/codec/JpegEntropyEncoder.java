@@ -0,0 +1,114 @@
+package work.pollochang.compression.image.codec;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 基線 JPEG 的 Huffman 熵編碼器，處理 0xFF 位元組填充與 RSTn 標記。
+ *
+ * <p>輸出先累積在內部緩衝區，滿了才寫入 {@link DataOutput}，
+ * 因此寫入標記或檔頭前必須先呼叫 {@link #flush()}。</p>
+ */
+final class JpegEntropyEncoder {
+
+    private final DataOutput out;
+    private final byte[] buffer = new byte[8192];
+    private int count;
+
+    // 尚未輸出的位元放在 bits 的低 bitCount 位
+    private long bits;
+    private int bitCount;
+
+    JpegEntropyEncoder(DataOutput out) {
+        this.out = out;
+    }
+
+    /**
+     * 編碼一個區塊。
+     * @param coefficients 量化後的係數，自然順序；DC 為絕對值
+     * @param previousDc   同一分量上一個區塊的 DC 值
+     * @param dc           DC Huffman 碼表
+     * @param ac           AC Huffman 碼表
+     * @throws IOException 寫入失敗
+     */
+    void writeBlock(short[] coefficients, int previousDc, HuffmanCodes dc, HuffmanCodes ac) throws IOException {
+        int diff = coefficients[0] - previousDc;
+        int size = JpegTables.category(diff);
+        writeBits(dc.codes[size], dc.sizes[size]);
+        if (size > 0) {
+            writeBits(diff < 0 ? diff - 1 : diff, size);
+        }
+
+        int run = 0;
+        for (int k = 1; k < 64; k++) {
+            int value = coefficients[JpegTables.ZIGZAG[k]];
+            if (value == 0) {
+                run++;
+                continue;
+            }
+            while (run > 15) {
+                writeBits(ac.codes[0xF0], ac.sizes[0xF0]);
+                run -= 16;
+            }
+            size = JpegTables.category(value);
+            int symbol = (run << 4) | size;
+            writeBits(ac.codes[symbol], ac.sizes[symbol]);
+            writeBits(value < 0 ? value - 1 : value, size);
+            run = 0;
+        }
+        if (run > 0) {
+            writeBits(ac.codes[0x00], ac.sizes[0x00]);
+        }
+    }
+
+    /**
+     * 以 1 填滿最後一個位元組後寫出 RSTn 標記。
+     * @param index 0 到 7
+     * @throws IOException 寫入失敗
+     */
+    void writeRestart(int index) throws IOException {
+        padToByte();
+        put(0xFF);
+        put(0xD0 + (index & 7));
+    }
+
+    /**
+     * 以 1 填滿最後一個位元組，並將緩衝區寫入輸出。
+     * @throws IOException 寫入失敗
+     */
+    void flush() throws IOException {
+        padToByte();
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void padToByte() throws IOException {
+        if (bitCount > 0) {
+            int pad = 8 - bitCount;
+            writeBits((1 << pad) - 1, pad);
+        }
+    }
+
+    private void writeBits(int value, int size) throws IOException {
+        bits = (bits << size) | (value & ((1L << size) - 1));
+        bitCount += size;
+        while (bitCount >= 8) {
+            bitCount -= 8;
+            int b = (int) (bits >>> bitCount) & 0xFF;
+            put(b);
+            if (b == 0xFF) {
+                put(0x00);
+            }
+        }
+    }
+
+    private void put(int b) throws IOException {
+        if (count == buffer.length) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+        buffer[count++] = (byte) b;
+    }
+}
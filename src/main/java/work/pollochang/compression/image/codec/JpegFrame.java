@@ -0,0 +1,50 @@
+package work.pollochang.compression.image.codec;
+
+import java.util.List;
+
+/**
+ * JPEG 影格（SOF）資訊。
+ * @param width            影像寬度
+ * @param height           影像高度
+ * @param components       色彩分量
+ * @param maxHorizontal    最大水平取樣因子
+ * @param maxVertical      最大垂直取樣因子
+ * @param mcusPerLine      每列 MCU 數
+ * @param mcusPerColumn    每欄 MCU 數
+ * @param adobeTransform   APP14 Adobe 標記的色彩轉換值，沒有此標記時為 -1
+ */
+public record JpegFrame(int width, int height, List<JpegComponent> components, int maxHorizontal, int maxVertical,
+                        int mcusPerLine, int mcusPerColumn, int adobeTransform) {
+
+    /**
+     * 交錯掃描時，分量在每列包含填補區塊的區塊數。
+     * @param component 分量索引
+     * @return 區塊數
+     */
+    public int paddedBlocksPerLine(int component) {
+        return mcusPerLine * components.get(component).horizontalSampling();
+    }
+
+    /**
+     * 交錯掃描時，分量在每欄包含填補區塊的區塊數。
+     * @param component 分量索引
+     * @return 區塊數
+     */
+    public int paddedBlocksPerColumn(int component) {
+        return mcusPerColumn * components.get(component).verticalSampling();
+    }
+
+    /**
+     * 三個分量是否直接儲存 RGB（Adobe transform=0，或沒有標記且分量 ID 為 'R','G','B'）。
+     * @return true 表示不需做 YCbCr 轉換
+     */
+    public boolean isRgb() {
+        if (components.size() != 3) {
+            return false;
+        }
+        if (adobeTransform >= 0) {
+            return adobeTransform == 0;
+        }
+        return components.get(0).id() == 'R' && components.get(1).id() == 'G' && components.get(2).id() == 'B';
+    }
+}
@@ -0,0 +1,105 @@
+package work.pollochang.compression.image.codec;
+
+import javax.imageio.plugins.jpeg.JPEGHuffmanTable;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 寫出基線 JPEG 的標記區段（SOI、JFIF、DQT、SOF0、DHT、DRI、SOS、EOI）。
+ */
+final class JpegMarkerWriter {
+
+    private JpegMarkerWriter() {}
+
+    static void writeSoi(DataOutput out) throws IOException {
+        out.writeShort(0xFFD8);
+    }
+
+    static void writeEoi(DataOutput out) throws IOException {
+        out.writeShort(0xFFD9);
+    }
+
+    /**
+     * JFIF 1.01，長寬比 1:1，無縮圖。
+     */
+    static void writeJfif(DataOutput out) throws IOException {
+        out.writeShort(0xFFE0);
+        out.writeShort(16);
+        out.write(new byte[]{'J', 'F', 'I', 'F', 0, 1, 1, 0, 0, 1, 0, 1, 0, 0});
+    }
+
+    /**
+     * @param id    表格編號 0-3
+     * @param table 64 個量化值（1-255），自然順序
+     */
+    static void writeDqt(DataOutput out, int id, int[] table) throws IOException {
+        out.writeShort(0xFFDB);
+        out.writeShort(2 + 1 + 64);
+        out.writeByte(id);
+        for (int k = 0; k < 64; k++) {
+            out.writeByte(table[JpegTables.ZIGZAG[k]]);
+        }
+    }
+
+    /**
+     * @param width        影像寬度
+     * @param height       影像高度
+     * @param components   分量，使用其 ID、取樣因子與量化表編號
+     */
+    static void writeSof0(DataOutput out, int width, int height, List<JpegComponent> components) throws IOException {
+        out.writeShort(0xFFC0);
+        out.writeShort(2 + 6 + 3 * components.size());
+        out.writeByte(8);
+        out.writeShort(height);
+        out.writeShort(width);
+        out.writeByte(components.size());
+        for (JpegComponent component : components) {
+            out.writeByte(component.id());
+            out.writeByte((component.horizontalSampling() << 4) | component.verticalSampling());
+            out.writeByte(component.quantTableId());
+        }
+    }
+
+    /**
+     * @param tableClass 0 為 DC，1 為 AC
+     * @param id         表格編號 0-3
+     */
+    static void writeDht(DataOutput out, int tableClass, int id, JPEGHuffmanTable table) throws IOException {
+        short[] lengths = table.getLengths();
+        short[] values = table.getValues();
+        out.writeShort(0xFFC4);
+        out.writeShort(2 + 1 + 16 + values.length);
+        out.writeByte((tableClass << 4) | id);
+        for (int i = 0; i < 16; i++) {
+            out.writeByte(i < lengths.length ? lengths[i] : 0);
+        }
+        for (short value : values) {
+            out.writeByte(value);
+        }
+    }
+
+    static void writeDri(DataOutput out, int interval) throws IOException {
+        out.writeShort(0xFFDD);
+        out.writeShort(4);
+        out.writeShort(interval);
+    }
+
+    /**
+     * 寫出基線掃描的 SOS（Ss=0, Se=63, Ah=Al=0）。
+     * @param componentIds 掃描中的分量 ID
+     * @param tableIds     各分量的 Huffman 表編號（DC 與 AC 相同）
+     */
+    static void writeSos(DataOutput out, int[] componentIds, int[] tableIds) throws IOException {
+        out.writeShort(0xFFDA);
+        out.writeShort(2 + 1 + 2 * componentIds.length + 3);
+        out.writeByte(componentIds.length);
+        for (int i = 0; i < componentIds.length; i++) {
+            out.writeByte(componentIds[i]);
+            out.writeByte((tableIds[i] << 4) | tableIds[i]);
+        }
+        out.writeByte(0);
+        out.writeByte(63);
+        out.writeByte(0);
+    }
+}
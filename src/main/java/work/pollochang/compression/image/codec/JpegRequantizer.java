@@ -0,0 +1,225 @@
+package work.pollochang.compression.image.codec;
+
+import javax.imageio.stream.ImageOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 在 DCT 係數域重新量化 JPEG，不經過 IDCT、色彩轉換與重新 DCT。
+ *
+ * <p>以 {@link JpegCoefficientReader} 逐區塊解出原本的量化係數，換算到較粗的量化表後，
+ * 立即以標準 Huffman 表重新熵編碼寫出。區塊不會暫存，整個過程只需要原檔與輸出的緩衝區，
+ * 也不會有解碼再編碼造成的世代損失。</p>
+ *
+ * <p>新量化表取原表與目標品質表的較大值，只會變得更粗；取樣因子與掃描結構沿用原檔，
+ * 原檔的重新同步間隔不保留（DC 預測延續整個掃描）。直接儲存 RGB 的 JPEG 會拋出
+ * {@link UnsupportedJpegException}。</p>
+ *
+ * <p>要求最佳化 Huffman 表時會多讀一次原檔，只累計重新量化後的符號次數而不輸出，
+ * 再以產生的碼表編碼。</p>
+ */
+public final class JpegRequantizer implements BlockConsumer {
+
+    private final float quality;
+    /** 為 {@code null} 時只累計符號次數 */
+    private final ImageOutputStream out;
+    private final JpegEntropyEncoder encoder;
+    /** 亮度 [0] 與色度 [1] 的 Huffman 碼表 */
+    private final HuffmanCodes[] dcTables;
+    private final HuffmanCodes[] acTables;
+    private final long[][] dcFrequencies = new long[2][256];
+    private final long[][] acFrequencies = new long[2][256];
+
+    private JpegFrame frame;
+    private boolean headerWritten;
+    /** 各分量的新量化表與換算用的原量化表（自然順序） */
+    private int[][] sourceTables;
+    private int[][] targetTables;
+    private int[] previousDc;
+    private final short[] requantized = new short[64];
+
+    private JpegRequantizer(float quality, ImageOutputStream out, HuffmanCodes[] dcTables, HuffmanCodes[] acTables) {
+        this.quality = quality;
+        this.out = out;
+        this.encoder = out == null ? null : new JpegEntropyEncoder(out);
+        this.dcTables = dcTables;
+        this.acTables = acTables;
+    }
+
+    /**
+     * 以指定品質的量化表重新量化 JPEG 並寫入 {@code out}。
+     * @param source  原始 JPEG 內容，不會改變其 position
+     * @param quality 目標品質，語意與 {@link javax.imageio.ImageWriteParam#setCompressionQuality(float)} 相同
+     * @param out     輸出串流；若為 {@link work.pollochang.compression.image.io.BoundedImageOutputStream}，
+     *                超過上限時會拋出 {@link work.pollochang.compression.image.io.OutputLimitExceededException}
+     * @throws UnsupportedJpegException 非基線或 RGB JPEG
+     * @throws IOException              資料損毀或寫入失敗
+     */
+    public static void transcode(ByteBuffer source, float quality, ImageOutputStream out) throws IOException {
+        transcode(source, quality, out, false);
+    }
+
+    /**
+     * 以指定品質的量化表重新量化 JPEG 並寫入 {@code out}，可選擇以最佳化的 Huffman 表編碼。
+     * @param source          原始 JPEG 內容，不會改變其 position
+     * @param quality         目標品質
+     * @param out             輸出串流
+     * @param optimizeHuffman {@code true} 時先累計符號次數並產生最佳化的 Huffman 表
+     * @throws UnsupportedJpegException 非基線或 RGB JPEG
+     * @throws IOException              資料損毀或寫入失敗
+     */
+    public static void transcode(ByteBuffer source, float quality, ImageOutputStream out,
+                                 boolean optimizeHuffman) throws IOException {
+        HuffmanCodes[] dcTables = {HuffmanCodes.DC_LUMINANCE, HuffmanCodes.DC_CHROMINANCE};
+        HuffmanCodes[] acTables = {HuffmanCodes.AC_LUMINANCE, HuffmanCodes.AC_CHROMINANCE};
+        if (optimizeHuffman) {
+            JpegRequantizer counter = new JpegRequantizer(quality, null, null, null);
+            JpegCoefficientReader.read(source, counter);
+            for (int t = 0; t < 2; t++) {
+                dcTables[t] = HuffmanCodes.optimal(counter.dcFrequencies[t]);
+                acTables[t] = HuffmanCodes.optimal(counter.acFrequencies[t]);
+            }
+        }
+        JpegRequantizer requantizer = new JpegRequantizer(quality, out, dcTables, acTables);
+        JpegCoefficientReader.read(source, requantizer);
+        if (!requantizer.headerWritten) {
+            throw new IOException("JPEG 缺少掃描資料");
+        }
+        JpegMarkerWriter.writeEoi(out);
+    }
+
+    @Override
+    public void begin(JpegFrame frame) throws IOException {
+        if (frame.isRgb()) {
+            throw new UnsupportedJpegException("不支援直接儲存 RGB 的 JPEG");
+        }
+        this.frame = frame;
+        int count = frame.components().size();
+        sourceTables = new int[count][];
+        targetTables = new int[count][];
+        previousDc = new int[count];
+    }
+
+    @Override
+    public void beginScan(int[] components, int[][] quantTables) throws IOException {
+        if (!headerWritten) {
+            selectTables(quantTables);
+            if (out != null) {
+                writeHeader();
+            }
+            headerWritten = true;
+        } else {
+            for (int c = 0; c < quantTables.length; c++) {
+                if (!Arrays.equals(quantTables[c], sourceTables[c])) {
+                    throw new UnsupportedJpegException("不支援掃描之間更換量化表的 JPEG");
+                }
+            }
+        }
+        int[] ids = new int[components.length];
+        int[] tables = new int[components.length];
+        for (int i = 0; i < components.length; i++) {
+            ids[i] = frame.components().get(components[i]).id();
+            tables[i] = components[i] == 0 ? 0 : 1;
+            previousDc[components[i]] = 0;
+        }
+        if (out != null) {
+            JpegMarkerWriter.writeSos(out, ids, tables);
+        }
+    }
+
+    /**
+     * 依第一個掃描使用的量化表決定新表。
+     */
+    private void selectTables(int[][] quantTables) throws IOException {
+        List<JpegComponent> components = frame.components();
+        int[] luminance = JpegTables.quantTable(quality, true);
+        int[] chrominance = JpegTables.quantTable(quality, false);
+        boolean[] selected = new boolean[4];
+        for (int c = 0; c < components.size(); c++) {
+            int[] source = quantTables[c];
+            if (source == null) {
+                throw new IOException("分量 " + c + " 沒有量化表");
+            }
+            int[] reference = c == 0 ? luminance : chrominance;
+            int[] target = new int[64];
+            for (int k = 0; k < 64; k++) {
+                target[k] = Math.min(255, Math.max(source[k], reference[k]));
+            }
+            int id = components.get(c).quantTableId();
+            // 共用同一張表的分量必須得到相同的新表，以第一個使用該表的分量為準
+            if (selected[id]) {
+                target = findTarget(id, c);
+            } else {
+                selected[id] = true;
+            }
+            sourceTables[c] = source;
+            targetTables[c] = target;
+        }
+    }
+
+    /**
+     * 寫出 SOI 到 DHT 的檔頭。
+     */
+    private void writeHeader() throws IOException {
+        List<JpegComponent> components = frame.components();
+        JpegMarkerWriter.writeSoi(out);
+        JpegMarkerWriter.writeJfif(out);
+        boolean[] written = new boolean[4];
+        for (int c = 0; c < components.size(); c++) {
+            int id = components.get(c).quantTableId();
+            if (!written[id]) {
+                JpegMarkerWriter.writeDqt(out, id, targetTables[c]);
+                written[id] = true;
+            }
+        }
+        JpegMarkerWriter.writeSof0(out, frame.width(), frame.height(), components);
+        JpegMarkerWriter.writeDht(out, 0, 0, dcTables[0].table);
+        JpegMarkerWriter.writeDht(out, 1, 0, acTables[0].table);
+        if (components.size() > 1) {
+            JpegMarkerWriter.writeDht(out, 0, 1, dcTables[1].table);
+            JpegMarkerWriter.writeDht(out, 1, 1, acTables[1].table);
+        }
+    }
+
+    private int[] findTarget(int quantTableId, int before) {
+        for (int c = 0; c < before; c++) {
+            if (frame.components().get(c).quantTableId() == quantTableId) {
+                return targetTables[c];
+            }
+        }
+        throw new IllegalStateException("找不到量化表 " + quantTableId);
+    }
+
+    @Override
+    public void block(int component, int blockCol, int blockRow, short[] coefficients, int[] quantTable) throws IOException {
+        int[] source = sourceTables[component];
+        int[] target = targetTables[component];
+        for (int k = 0; k < 64; k++) {
+            int value = coefficients[k];
+            if (value == 0) {
+                requantized[k] = 0;
+                continue;
+            }
+            // 四捨五入：round(value × 原量化值 / 新量化值)
+            int scaled = value * source[k];
+            int divisor = target[k];
+            requantized[k] = (short) (scaled >= 0 ? (scaled + divisor / 2) / divisor : -((-scaled + divisor / 2) / divisor));
+        }
+        int table = component == 0 ? 0 : 1;
+        if (out == null) {
+            HuffmanCodes.count(requantized, previousDc[component], dcFrequencies[table], acFrequencies[table]);
+        } else {
+            encoder.writeBlock(requantized, previousDc[component], dcTables[table], acTables[table]);
+        }
+        previousDc[component] = requantized[0];
+    }
+
+    @Override
+    public void endScan() throws IOException {
+        if (encoder != null) {
+            encoder.flush();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package work.pollochang.compression.image.codec;
+
+import javax.imageio.plugins.jpeg.JPEGHuffmanTable;
+import java.awt.image.BufferedImage;
+
+/**
+ * 「DCT 一次、量化多次」的 JPEG 大小預估器。
+ *
+ * <p>建構時將影像轉為 YCbCr 並計算所有 8x8 區塊的 DCT 係數（以 1/4 精度的 {@code short} 保存，
+ * 約每像素 3 bytes）。之後每次 {@link #estimate(float)} 只需以該品質的量化表量化，
+ * 並依標準 Huffman 表累加 DC 差值、AC 連零長度與 EOB 的位元數，不必真正產生 JPEG。
+ * 結果與 JDK writer 的實際大小通常相差數個百分點，
+ * 呼叫端應以一次真實編碼校正比例後再使用。</p>
+ */
+public final class JpegSizeEstimator {
+
+    /** 係數以 4 倍定點保存 */
+    private static final float COEFFICIENT_SCALE = 4f;
+
+    private static final int[] DC_LUMA = JpegTables.codeLengths(JPEGHuffmanTable.StdDCLuminance);
+    private static final int[] AC_LUMA = JpegTables.codeLengths(JPEGHuffmanTable.StdACLuminance);
+    private static final int[] DC_CHROMA = JpegTables.codeLengths(JPEGHuffmanTable.StdDCChrominance);
+    private static final int[] AC_CHROMA = JpegTables.codeLengths(JPEGHuffmanTable.StdACChrominance);
+
+    private final int width;
+    private final int height;
+    /** 每個色彩分量的係數，依編碼順序排列的區塊，每區塊 64 個 zig-zag 順序的係數 */
+    private final short[][] coefficients;
+
+    private JpegSizeEstimator(int width, int height, short[][] coefficients) {
+        this.width = width;
+        this.height = height;
+        this.coefficients = coefficients;
+    }
+
+    /**
+     * 計算影像的 DCT 係數並建立預估器。
+     * @param image 要預估的影像
+     * @return 預估器
+     */
+    public static JpegSizeEstimator of(BufferedImage image) {
+        return of(YCbCrImage.from(image));
+    }
+
+    /**
+     * 由已轉換的 YCbCr 平面建立預估器。
+     * @param image YCbCr 平面影像
+     * @return 預估器
+     */
+    public static JpegSizeEstimator of(YCbCrImage image) {
+        int mcuCols = image.getMcuCols();
+        int mcuRows = image.getMcuRows();
+        int components = image.componentCount();
+        int lumaBlocksPerMcu = image.isGrayscale() ? 1 : 4;
+        int mcus = mcuCols * mcuRows;
+
+        short[][] coefficients = new short[components][];
+        coefficients[0] = new short[mcus * lumaBlocksPerMcu * 64];
+        for (int c = 1; c < components; c++) {
+            coefficients[c] = new short[mcus * 64];
+        }
+
+        float[] block = new float[64];
+        int[] written = new int[components];
+        for (int my = 0; my < mcuRows; my++) {
+            for (int mx = 0; mx < mcuCols; mx++) {
+                if (image.isGrayscale()) {
+                    written[0] = transform(image, 0, mx, my, coefficients[0], written[0], block);
+                    continue;
+                }
+                // 4:2:0 MCU：左上、右上、左下、右下四個亮度區塊，接著 Cb、Cr 各一
+                for (int by = 0; by < 2; by++) {
+                    for (int bx = 0; bx < 2; bx++) {
+                        written[0] = transform(image, 0, mx * 2 + bx, my * 2 + by, coefficients[0], written[0], block);
+                    }
+                }
+                written[1] = transform(image, 1, mx, my, coefficients[1], written[1], block);
+                written[2] = transform(image, 2, mx, my, coefficients[2], written[2], block);
+            }
+        }
+        return new JpegSizeEstimator(image.getWidth(), image.getHeight(), coefficients);
+    }
+
+    private static int transform(YCbCrImage image, int component, int blockX, int blockY,
+                                 short[] out, int offset, float[] block) {
+        image.loadBlock(component, blockX, blockY, block);
+        ForwardDct.forward(block);
+        for (int k = 0; k < 64; k++) {
+            float v = block[JpegTables.ZIGZAG[k]] * COEFFICIENT_SCALE;
+            out[offset + k] = (short) (v < 0 ? v - 0.5f : v + 0.5f);
+        }
+        return offset + 64;
+    }
+
+    /**
+     * 預估指定品質下以標準 Huffman 表編碼的 JPEG 檔案大小。
+     * @param quality 壓縮品質 0.0f - 1.0f
+     * @return 預估的檔案大小（bytes）
+     */
+    public long estimate(float quality) {
+        return estimate(quality, Long.MAX_VALUE);
+    }
+
+    /**
+     * 預估檔案大小；累計超過 {@code limitBytes} 時提前結束並回傳目前累計值。
+     * @param quality    壓縮品質
+     * @param limitBytes 提前結束的門檻
+     * @return 預估大小，超過門檻時為不精確的部分值（必定大於門檻）
+     */
+    public long estimate(float quality, long limitBytes) {
+        int headerBytes = JpegTables.headerBytes(coefficients.length);
+        long limitBits = limitBytes == Long.MAX_VALUE ? Long.MAX_VALUE : (limitBytes - headerBytes) * 8;
+        long bits = 0;
+        for (int c = 0; c < coefficients.length && bits <= limitBits; c++) {
+            boolean lumaComponent = c == 0;
+            int[] table = JpegTables.quantTable(quality, lumaComponent);
+            bits += componentBits(coefficients[c], reciprocalTable(table), zeroThresholdTable(table),
+                    lumaComponent ? DC_LUMA : DC_CHROMA, lumaComponent ? AC_LUMA : AC_CHROMA, limitBits - bits);
+        }
+        long entropyBytes = (bits + 7) / 8;
+        // 熵編碼資料中每個 0xFF 需補一個 0x00，隨機資料約為 1/256
+        return headerBytes + entropyBytes + entropyBytes / 256;
+    }
+
+    /**
+     * 以 16 位元定點表示的 1 / (量化值 × 係數倍率)，zig-zag 順序。
+     */
+    private static int[] reciprocalTable(int[] naturalTable) {
+        int[] reciprocal = new int[64];
+        for (int k = 0; k < 64; k++) {
+            reciprocal[k] = Math.round(65536f / (naturalTable[JpegTables.ZIGZAG[k]] * COEFFICIENT_SCALE));
+        }
+        return reciprocal;
+    }
+
+    /**
+     * 絕對值小於此門檻的係數量化後必為 0，可跳過乘法，zig-zag 順序。
+     */
+    private static int[] zeroThresholdTable(int[] naturalTable) {
+        int[] threshold = new int[64];
+        for (int k = 0; k < 64; k++) {
+            threshold[k] = (int) Math.ceil(naturalTable[JpegTables.ZIGZAG[k]] * COEFFICIENT_SCALE / 2f);
+        }
+        return threshold;
+    }
+
+    private static long componentBits(short[] coefficients, int[] reciprocal, int[] zeroThreshold,
+                                      int[] dcLengths, int[] acLengths, long limitBits) {
+        long bits = 0;
+        int previousDc = 0;
+        int eob = acLengths[0x00];
+        int zrl = acLengths[0xF0];
+        for (int base = 0; base < coefficients.length; base += 64) {
+            int dc = quantize(coefficients[base], reciprocal[0]);
+            int dcCategory = JpegTables.category(dc - previousDc);
+            bits += dcLengths[dcCategory] + dcCategory;
+            previousDc = dc;
+
+            int run = 0;
+            for (int k = 1; k < 64; k++) {
+                int c = coefficients[base + k];
+                int abs = c < 0 ? -c : c;
+                // 只有類別 (位元數) 影響大小，因此以絕對值量化即可
+                int v = abs < zeroThreshold[k] ? 0 : (abs * reciprocal[k] + 32768) >>> 16;
+                if (v == 0) {
+                    run++;
+                    continue;
+                }
+                while (run > 15) {
+                    bits += zrl;
+                    run -= 16;
+                }
+                int category = JpegTables.category(v);
+                bits += acLengths[(run << 4) | category] + category;
+                run = 0;
+            }
+            if (run > 0) {
+                bits += eob;
+            }
+            if (bits > limitBits) {
+                break;
+            }
+        }
+        return bits;
+    }
+
+    private static int quantize(short coefficient, int reciprocal) {
+        int c = coefficient;
+        return c < 0 ? -((-c * reciprocal + 32768) >>> 16) : (c * reciprocal + 32768) >>> 16;
+    }
+
+    /**
+     * 在 {@code [minQuality, maxQuality]} 間尋找預估大小不超過 {@code goalBytes} 的最高品質。
+     * @param goalBytes  預估大小的目標
+     * @param minQuality 品質下限
+     * @param maxQuality 品質上限
+     * @return 找到的品質；若下限仍超標則回傳 -1.0f
+     */
+    public float findQuality(long goalBytes, float minQuality, float maxQuality) {
+        if (estimate(maxQuality, goalBytes) <= goalBytes) {
+            return maxQuality;
+        }
+        if (estimate(minQuality, goalBytes) > goalBytes) {
+            return -1.0f;
+        }
+        float low = minQuality;
+        float high = maxQuality;
+        // 預估只需整數運算，二分到 0.002 的精度仍遠比一次實際編碼便宜
+        while (high - low > 0.002f) {
+            float mid = (low + high) / 2f;
+            if (estimate(mid, goalBytes) <= goalBytes) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,19 @@
+package work.pollochang.compression.image.codec;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * 以實際編碼取得 JPEG 大小的函式，由呼叫端提供，確保預測與最終輸出使用同一條編碼路徑。
+ */
+@FunctionalInterface
+public interface JpegSizeProbe {
+
+    /**
+     * @param image   要編碼的影像
+     * @param quality 壓縮品質
+     * @return 編碼後的位元組數
+     * @throws IOException 編碼失敗
+     */
+    long encodedSize(BufferedImage image, float quality) throws IOException;
+}
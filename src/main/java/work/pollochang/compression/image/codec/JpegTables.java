@@ -0,0 +1,89 @@
+package work.pollochang.compression.image.codec;
+
+import javax.imageio.plugins.jpeg.JPEGHuffmanTable;
+import javax.imageio.plugins.jpeg.JPEGQTable;
+
+/**
+ * JPEG 基線編碼使用的共用表格：Zig-zag 順序、依品質縮放的量化表與標準 Huffman 碼長。
+ *
+ * <p>量化表的縮放與 JDK {@code JPEGImageWriter} 在 {@code MODE_EXPLICIT} 下的行為一致，
+ * 確保預估與實際編碼使用同一組量化表。</p>
+ */
+public final class JpegTables {
+
+    /** ZIGZAG[i] 為 zig-zag 第 i 個係數在自然順序中的位置 */
+    public static final int[] ZIGZAG = {
+            0, 1, 8, 16, 9, 2, 3, 10,
+            17, 24, 32, 25, 18, 11, 4, 5,
+            12, 19, 26, 33, 40, 48, 41, 34,
+            27, 20, 13, 6, 7, 14, 21, 28,
+            35, 42, 49, 56, 57, 50, 43, 36,
+            29, 22, 15, 23, 30, 37, 44, 51,
+            58, 59, 52, 45, 38, 31, 39, 46,
+            53, 60, 61, 54, 47, 55, 62, 63
+    };
+
+    /** 彩色：SOI、JFIF APP0、兩張 DQT、SOF0、四張標準 DHT、SOS 與 EOI 的大小 */
+    private static final int COLOR_HEADER_BYTES = 2 + 18 + 2 * 69 + 19 + 420 + 14 + 2;
+
+    /** 灰階：只有一張 DQT 與亮度的兩張 DHT */
+    private static final int GRAY_HEADER_BYTES = 2 + 18 + 69 + 13 + 212 + 10 + 2;
+
+    private JpegTables() {}
+
+    /**
+     * JDK writer 以標準表輸出時，檔頭與檔尾（不含熵編碼資料）的大約位元組數。
+     * @param components 色彩分量數，1 為灰階
+     * @return 檔頭與檔尾的位元組數
+     */
+    public static int headerBytes(int components) {
+        return components == 1 ? GRAY_HEADER_BYTES : COLOR_HEADER_BYTES;
+    }
+
+    /**
+     * 將 {@link javax.imageio.ImageWriteParam} 的品質值轉為 {@link JPEGQTable#getScaledInstance} 的縮放倍率（IJG 換算）。
+     * @param quality 壓縮品質 0.0f - 1.0f
+     * @return 量化表縮放倍率
+     */
+    public static float linearQuality(float quality) {
+        float q = Math.max(0.01f, Math.min(1.0f, quality));
+        return q < 0.5f ? 0.5f / q : 2.0f - q * 2.0f;
+    }
+
+    /**
+     * 取得指定品質下的量化表（自然順序），與 JDK JPEG writer 的 {@code MODE_EXPLICIT} 相同。
+     * @param quality   壓縮品質
+     * @param luminance true 為亮度表，false 為色度表
+     * @return 64 個量化值，自然順序
+     */
+    public static int[] quantTable(float quality, boolean luminance) {
+        JPEGQTable base = luminance ? JPEGQTable.K1Luminance : JPEGQTable.K2Chrominance;
+        return base.getScaledInstance(linearQuality(quality), true).getTable();
+    }
+
+    /**
+     * 由 Huffman 表的 BITS/HUFFVAL 計算每個符號的碼長。
+     * @param table Huffman 表
+     * @return 長度 256 的陣列，索引為符號值，未定義的符號為 0
+     */
+    public static int[] codeLengths(JPEGHuffmanTable table) {
+        int[] lengths = new int[256];
+        short[] counts = table.getLengths();
+        short[] values = table.getValues();
+        int k = 0;
+        for (int len = 1; len <= counts.length; len++) {
+            for (int i = 0; i < counts[len - 1]; i++) {
+                lengths[values[k++] & 0xff] = len;
+            }
+        }
+        return lengths;
+    }
+
+    /**
+     * 回傳數值所需的位元數（JPEG 的 SSSS 類別）。
+     */
+    public static int category(int value) {
+        int v = value < 0 ? -value : value;
+        return v == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(v);
+    }
+}
@@ -0,0 +1,212 @@
+package work.pollochang.compression.image.codec;
+
+import lombok.extern.slf4j.Slf4j;
+import work.pollochang.compression.image.resize.ResizeFilter;
+import work.pollochang.compression.image.tools.ImageTools;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * 以分層抽樣的 MCU 對齊區塊預測大圖的 JPEG 檔案大小。
+ *
+ * <p>將影像切成 {@code n x n} 個區域，每個區域取一塊 {@value #TILE_SIZE}px 的區塊（對齊 16px 的 MCU 邊界），
+ * 拼成一張約為原圖 1/{@value #SAMPLE_DIVISOR} 面積的馬賽克。對馬賽克實際編碼後，
+ * 依像素比例外插完整影像的熵編碼大小。因為區塊對齊 MCU，其 DCT 區塊與原圖完全相同，
+ * 通常只有數個百分點的誤差，而每次預測的成本僅為完整編碼的一小部分。</p>
+ */
+@Slf4j
+public final class JpegTilePredictor {
+
+    private static final int TILE_SIZE = 64;
+    private static final int SAMPLE_DIVISOR = 16;
+    private static final int MIN_TILES = 16;
+
+    /** 判斷縮放級距時稍微樂觀，避免因預測誤差跳過實際可行的比例 */
+    private static final double SCALE_OPTIMISM = 1.05;
+    /** 預測品質的落點：目標大小的 95% */
+    private static final double QUALITY_GOAL_RATIO = 0.95;
+
+    private static final AtomicLong ERROR_COUNT = new AtomicLong();
+    /** 以萬分比累計的絕對誤差 */
+    private static final AtomicLong ERROR_SUM_BP = new AtomicLong();
+    private static final LongAccumulator ERROR_MAX_BP = new LongAccumulator(Math::max, 0);
+
+    private final BufferedImage mosaic;
+    private final long fullPixels;
+    private final int components;
+    private final JpegSizeProbe probe;
+    private final ResizeFilter filter;
+    private final Map<Double, BufferedImage> scaledMosaics = new HashMap<>();
+
+    private JpegTilePredictor(BufferedImage mosaic, long fullPixels, int components, JpegSizeProbe probe,
+                              ResizeFilter filter) {
+        this.mosaic = mosaic;
+        this.fullPixels = fullPixels;
+        this.components = components;
+        this.probe = probe;
+        this.filter = filter;
+    }
+
+    /**
+     * 從影像中分層抽樣區塊並建立預測器。
+     * @param image  完整影像
+     * @param filter 縮放馬賽克使用的濾波器，應與實際縮放相同
+     * @param probe  實際編碼取得大小的函式
+     * @return 預測器
+     */
+    public static JpegTilePredictor sample(BufferedImage image, ResizeFilter filter, JpegSizeProbe probe) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int tilesX = Math.max(1, width / TILE_SIZE);
+        int tilesY = Math.max(1, height / TILE_SIZE);
+        int wanted = Math.max(MIN_TILES, tilesX * tilesY / SAMPLE_DIVISOR);
+        int grid = (int) Math.ceil(Math.sqrt(wanted));
+        int strataX = Math.min(grid, tilesX);
+        int strataY = Math.min(grid, tilesY);
+
+        int tile = Math.min(TILE_SIZE, Math.min(width, height));
+        boolean gray = image.getColorModel().getNumComponents() == 1;
+        BufferedImage mosaic = new BufferedImage(strataX * tile, strataY * tile,
+                gray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_3BYTE_BGR);
+
+        // 固定亂數種子，讓同一張圖每次抽到相同的區塊
+        Random random = new Random(31L * width + height);
+        Graphics2D g = mosaic.createGraphics();
+        try {
+            for (int sy = 0; sy < strataY; sy++) {
+                for (int sx = 0; sx < strataX; sx++) {
+                    int x = pickAligned(random, sx, strataX, width, tile);
+                    int y = pickAligned(random, sy, strataY, height, tile);
+                    g.drawImage(image.getSubimage(x, y, tile, tile), sx * tile, sy * tile, null);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return new JpegTilePredictor(mosaic, (long) width * height, gray ? 1 : 3, probe, filter);
+    }
+
+    /**
+     * 在第 {@code stratum} 個區域內隨機挑選一個對齊 16px 的起點。
+     */
+    private static int pickAligned(Random random, int stratum, int strata, int length, int tile) {
+        int start = (int) ((long) stratum * length / strata);
+        int end = (int) ((long) (stratum + 1) * length / strata) - tile;
+        start = (start + 15) & ~15;
+        if (end <= start) {
+            return Math.max(0, Math.min(start, length - tile));
+        }
+        return start + (random.nextInt(end - start + 1) & ~15);
+    }
+
+    /**
+     * 預測完整影像以指定比例縮放並以指定品質編碼後的大小。
+     * @param scale   縮放比例
+     * @param quality 壓縮品質
+     * @return 預測的檔案大小（bytes）
+     * @throws IOException 編碼失敗
+     */
+    public long predict(double scale, float quality) throws IOException {
+        BufferedImage sample = scale >= 1.0 ? mosaic
+                : scaledMosaics.computeIfAbsent(scale, s -> ImageTools.resizeImage(mosaic, s, filter));
+        long header = JpegTables.headerBytes(components);
+        long sampleBytes = Math.max(0, probe.encodedSize(sample, quality) - header);
+        // 縮放後的像素比例與原尺寸相同：(W·s × H·s) / (w·s × h·s)
+        double scaledFull = fullPixels * scale * scale;
+        double ratio = scaledFull / ((double) sample.getWidth() * sample.getHeight());
+        return header + (long) (sampleBytes * ratio);
+    }
+
+    /**
+     * 預測搜尋的起點：可達標的最大縮放級距，以及該級距下可達標的品質。
+     *
+     * <p>縮放比例沿用 {@code 1.0, step, step², ...} 的級距；以最低品質的預測大小計算每像素位元組數，
+     * 直接跳到預測可行的級距，再於該級距以二分法預測品質。</p>
+     *
+     * <p>馬賽克試壓失敗或得到不合理的大小時預測不可用，回傳 null，呼叫端應改從原尺寸開始搜尋。</p>
+     *
+     * @param targetBytes 目標檔案大小上限
+     * @param minQuality  可接受的最低品質
+     * @param maxQuality  品質上限
+     * @param scaleStep   縮放級距倍率
+     * @return 預測的起始參數；預測不可用時為 null
+     */
+    public SizePrediction predictStart(long targetBytes, float minQuality, float maxQuality, double scaleStep) {
+        try {
+            if (predict(1.0, minQuality) <= JpegTables.headerBytes(components)) {
+                log.warn("抽樣馬賽克試壓的大小不合理，不使用預測");
+                return null;
+            }
+            return searchStart(targetBytes, minQuality, maxQuality, scaleStep);
+        } catch (IOException | RuntimeException e) {
+            log.warn("抽樣預測失敗，不使用預測: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private SizePrediction searchStart(long targetBytes, float minQuality, float maxQuality, double scaleStep) throws IOException {
+        double scale = 1.0;
+        while (scale * scaleStep > 0.1) {
+            long floor = predict(scale, minQuality);
+            if (floor <= targetBytes * SCALE_OPTIMISM) {
+                break;
+            }
+            // 每像素位元組數在相近比例下大致不變，據此計算需要的比例
+            double needed = scale * Math.sqrt((double) targetBytes * SCALE_OPTIMISM / floor);
+            do {
+                scale *= scaleStep;
+            } while (scale * scaleStep >= needed && scale * scaleStep > 0.1);
+        }
+
+        long goal = (long) (targetBytes * QUALITY_GOAL_RATIO);
+        float low = minQuality;
+        float high = maxQuality;
+        if (predict(scale, high) <= goal) {
+            low = high;
+        } else {
+            for (int i = 0; i < 6; i++) {
+                float mid = (low + high) / 2f;
+                if (predict(scale, mid) <= goal) {
+                    low = mid;
+                } else {
+                    high = mid;
+                }
+            }
+        }
+        return new SizePrediction(scale, low, predict(scale, low));
+    }
+
+    /**
+     * 記錄預測值與最終實際大小的誤差，供批次報告使用。
+     * @param predictedBytes 預測大小
+     * @param actualBytes    實際大小
+     * @return 相對誤差（%）
+     */
+    public static double recordError(long predictedBytes, long actualBytes) {
+        if (actualBytes <= 0) {
+            return 0;
+        }
+        double errorPercent = 100.0 * (predictedBytes - actualBytes) / actualBytes;
+        long bp = Math.round(Math.abs(errorPercent) * 100);
+        ERROR_COUNT.incrementAndGet();
+        ERROR_SUM_BP.addAndGet(bp);
+        ERROR_MAX_BP.accumulate(bp);
+        return errorPercent;
+    }
+
+    /**
+     * @return 預測誤差統計
+     */
+    public static PredictionStats stats() {
+        long count = ERROR_COUNT.get();
+        double mean = count == 0 ? 0 : ERROR_SUM_BP.get() / 100.0 / count;
+        return new PredictionStats(count, mean, ERROR_MAX_BP.get() / 100.0);
+    }
+}
@@ -0,0 +1,259 @@
+package work.pollochang.compression.image.codec;
+
+import work.pollochang.compression.image.io.BoundedImageOutputStream;
+import work.pollochang.compression.image.tools.ParallelTools;
+
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 以多核心編碼單張基線 JPEG。
+ *
+ * <p>影像依 MCU 列切成水平分段，由目前執行緒與 {@link ForkJoinPool} 上借到的執行緒輪流領取，各自完成 DCT、量化與熵編碼；
+ * 每段開頭的 DC 預測都從 0 開始，段與段之間以 RSTn 標記銜接，並在檔頭寫入 DRI，
+ * 因此拼接後就是一張合法的基線 JPEG，任何解碼器都能讀取。</p>
+ *
+ * <p>量化表、4:2:0 取樣與標準 Huffman 表都與 JDK writer 的預設相同，同一品質的檔案大小相近，
+ * 只多出每段 2 bytes 的 RST 標記與 6 bytes 的 DRI。</p>
+ */
+public final class ParallelJpegEncoder {
+
+    /** 分段數約為執行緒數的倍數，讓先做完的執行緒可以再接下一段 */
+    private static final int BANDS_PER_THREAD = 2;
+
+    private ParallelJpegEncoder() {
+    }
+
+    /**
+     * 以整個執行緒池編碼影像並寫入 {@code out}，供專用的執行緒池使用。
+     * @see #encode(YCbCrImage, float, ImageOutputStream, long, ForkJoinPool, int)
+     */
+    public static long encode(BufferedImage image, float quality, ImageOutputStream out,
+                              long limitBytes, ForkJoinPool pool) throws IOException {
+        return encode(YCbCrImage.from(image, pool), quality, out, limitBytes, pool, pool.getParallelism());
+    }
+
+    /**
+     * 以整個執行緒池編碼已轉換好的 YCbCr 平面，供專用的執行緒池使用。
+     * @see #encode(YCbCrImage, float, ImageOutputStream, long, ForkJoinPool, int)
+     */
+    public static long encode(YCbCrImage ycc, float quality, ImageOutputStream out,
+                              long limitBytes, ForkJoinPool pool) throws IOException {
+        return encode(ycc, quality, out, limitBytes, pool, pool.getParallelism());
+    }
+
+    /**
+     * 編碼已轉換好的 YCbCr 平面並寫入 {@code out}，同一張圖以不同品質試壓時可重複使用，不必每次重新轉換色彩。
+     *
+     * <p>分段由 {@code threads} 個執行緒（包含目前執行緒）輪流領取，與批次共用執行緒池時，
+     * 應先以 {@link ParallelTools#acquireHelpers(int)} 借到閒置的核心。
+     * 各段完成後才依序寫入 {@code out}；若編碼中途累計大小已超過 {@code limitBytes}，
+     * 其餘分段會提早停止，回傳依已完成比例推估的完整大小，且不寫入任何資料。</p>
+     * @param ycc        來源影像的 YCbCr 平面
+     * @param quality    壓縮品質，語意與 {@link javax.imageio.ImageWriteParam#setCompressionQuality(float)} 相同
+     * @param out        輸出串流
+     * @param limitBytes 大小上限，不限制時傳入 {@link Long#MAX_VALUE}
+     * @param pool       執行分段編碼的執行緒池；{@code threads} 小於 2 時可為 null
+     * @param threads    同時編碼的執行緒數上限，包含目前執行緒
+     * @return 寫入的位元組數；超過上限時為推估值（必定大於 {@code limitBytes}）
+     * @throws IOException 寫入失敗
+     */
+    public static long encode(YCbCrImage ycc, float quality, ImageOutputStream out,
+                              long limitBytes, ForkJoinPool pool, int threads) throws IOException {
+        int mcuCols = ycc.getMcuCols();
+        int mcuRows = ycc.getMcuRows();
+        int rowsPerBand = rowsPerBand(mcuCols, mcuRows, threads);
+        int bands = (mcuRows + rowsPerBand - 1) / rowsPerBand;
+
+        int[] luminance = JpegTables.quantTable(quality, true);
+        int[] chrominance = JpegTables.quantTable(quality, false);
+        BoundedImageOutputStream header = new BoundedImageOutputStream(1024);
+        writeHeader(header, ycc, luminance, chrominance, bands > 1 ? mcuCols * rowsPerBand : 0);
+
+        // 除了熵編碼資料，還有 RST 標記與 EOI
+        long entropyLimit = limitBytes == Long.MAX_VALUE ? Long.MAX_VALUE
+                : limitBytes - header.size() - 2L * bands;
+        float[][] reciprocals = {reciprocal(luminance), reciprocal(chrominance)};
+        BandProgress progress = new BandProgress(entropyLimit);
+
+        BoundedImageOutputStream[] encoded = new BoundedImageOutputStream[bands];
+        AtomicInteger nextBand = new AtomicInteger();
+        try {
+            ParallelTools.runWorkers(pool, Math.min(threads, bands), () -> {
+                for (int band = nextBand.getAndIncrement(); band < bands; band = nextBand.getAndIncrement()) {
+                    int fromRow = band * rowsPerBand;
+                    int toRow = Math.min(mcuRows, fromRow + rowsPerBand);
+                    try {
+                        encoded[band] = encodeBand(ycc, reciprocals, fromRow, toRow, progress);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (progress.exceeded.get()) {
+            long rows = Math.max(1, progress.rows.get());
+            long estimated = header.size() + 2L * bands + progress.bytes.get() * mcuRows / rows;
+            return Math.max(limitBytes + 1, estimated);
+        }
+        long total = header.size() + 2L * bands;
+        for (BoundedImageOutputStream band : encoded) {
+            total += band.size();
+        }
+        if (total > limitBytes) {
+            return total;
+        }
+
+        out.write(header.buffer(), 0, header.size());
+        for (int i = 0; i < bands; i++) {
+            BoundedImageOutputStream band = encoded[i];
+            out.write(band.buffer(), 0, band.size());
+            if (i < bands - 1) {
+                out.write(0xFF);
+                out.write(0xD0 + (i & 7));
+            }
+        }
+        JpegMarkerWriter.writeEoi(out);
+        return total;
+    }
+
+    /**
+     * 每段的 MCU 列數：段數約為執行緒數的 {@link #BANDS_PER_THREAD} 倍，
+     * 且重新同步間隔（每段 MCU 數）不能超過 DRI 的 16 位元上限。
+     */
+    static int rowsPerBand(int mcuCols, int mcuRows, int threads) {
+        int bands = Math.max(1, threads * BANDS_PER_THREAD);
+        int rows = Math.max(1, (mcuRows + bands - 1) / bands);
+        return Math.min(rows, Math.max(1, 0xFFFF / mcuCols));
+    }
+
+    private static void writeHeader(ImageOutputStream out, YCbCrImage ycc, int[] luminance, int[] chrominance,
+                                    int restartInterval) throws IOException {
+        boolean gray = ycc.isGrayscale();
+        JpegMarkerWriter.writeSoi(out);
+        JpegMarkerWriter.writeJfif(out);
+        JpegMarkerWriter.writeDqt(out, 0, luminance);
+        List<JpegComponent> components;
+        if (gray) {
+            components = List.of(new JpegComponent(1, 1, 1, 0, ycc.getMcuCols(), ycc.getMcuRows()));
+        } else {
+            JpegMarkerWriter.writeDqt(out, 1, chrominance);
+            components = List.of(
+                    new JpegComponent(1, 2, 2, 0, ycc.getMcuCols() * 2, ycc.getMcuRows() * 2),
+                    new JpegComponent(2, 1, 1, 1, ycc.getMcuCols(), ycc.getMcuRows()),
+                    new JpegComponent(3, 1, 1, 1, ycc.getMcuCols(), ycc.getMcuRows()));
+        }
+        JpegMarkerWriter.writeSof0(out, ycc.getWidth(), ycc.getHeight(), components);
+        JpegMarkerWriter.writeDht(out, 0, 0, HuffmanCodes.DC_LUMINANCE.table);
+        JpegMarkerWriter.writeDht(out, 1, 0, HuffmanCodes.AC_LUMINANCE.table);
+        if (!gray) {
+            JpegMarkerWriter.writeDht(out, 0, 1, HuffmanCodes.DC_CHROMINANCE.table);
+            JpegMarkerWriter.writeDht(out, 1, 1, HuffmanCodes.AC_CHROMINANCE.table);
+        }
+        if (restartInterval > 0) {
+            JpegMarkerWriter.writeDri(out, restartInterval);
+        }
+        if (gray) {
+            JpegMarkerWriter.writeSos(out, new int[]{1}, new int[]{0});
+        } else {
+            JpegMarkerWriter.writeSos(out, new int[]{1, 2, 3}, new int[]{0, 1, 1});
+        }
+    }
+
+    /**
+     * 編碼 {@code [fromRow, toRow)} 的 MCU 列；超過上限時回傳 {@code null}。
+     */
+    private static BoundedImageOutputStream encodeBand(YCbCrImage ycc, float[][] reciprocals,
+                                                       int fromRow, int toRow, BandProgress progress) throws IOException {
+        if (progress.exceeded.get()) {
+            return null;
+        }
+        BoundedImageOutputStream buffer = new BoundedImageOutputStream(64 * 1024);
+        JpegEntropyEncoder encoder = new JpegEntropyEncoder(buffer);
+        float[] block = new float[64];
+        short[] quantized = new short[64];
+        int[] previousDc = new int[ycc.componentCount()];
+        boolean gray = ycc.isGrayscale();
+        for (int my = fromRow; my < toRow; my++) {
+            for (int mx = 0; mx < ycc.getMcuCols(); mx++) {
+                if (gray) {
+                    previousDc[0] = encodeBlock(ycc, 0, mx, my, reciprocals[0], block, quantized, encoder, previousDc[0]);
+                    continue;
+                }
+                for (int by = 0; by < 2; by++) {
+                    for (int bx = 0; bx < 2; bx++) {
+                        previousDc[0] = encodeBlock(ycc, 0, mx * 2 + bx, my * 2 + by, reciprocals[0],
+                                block, quantized, encoder, previousDc[0]);
+                    }
+                }
+                previousDc[1] = encodeBlock(ycc, 1, mx, my, reciprocals[1], block, quantized, encoder, previousDc[1]);
+                previousDc[2] = encodeBlock(ycc, 2, mx, my, reciprocals[1], block, quantized, encoder, previousDc[2]);
+            }
+            // 其他段已完成的大小加上本段目前的大小超過上限，就不必再編下去
+            if (progress.exceeded.get() || progress.bytes.get() + buffer.size() > progress.limit) {
+                progress.abort(buffer.size(), my - fromRow + 1);
+                return null;
+            }
+        }
+        encoder.flush();
+        progress.complete(buffer.size(), toRow - fromRow);
+        return buffer;
+    }
+
+    private static int encodeBlock(YCbCrImage ycc, int component, int blockX, int blockY, float[] reciprocal,
+                                   float[] block, short[] quantized, JpegEntropyEncoder encoder,
+                                   int previousDc) throws IOException {
+        ycc.loadBlock(component, blockX, blockY, block);
+        ForwardDct.forward(block);
+        for (int k = 0; k < 64; k++) {
+            float v = block[k] * reciprocal[k];
+            quantized[k] = (short) (v < 0 ? v - 0.5f : v + 0.5f);
+        }
+        HuffmanCodes dc = component == 0 ? HuffmanCodes.DC_LUMINANCE : HuffmanCodes.DC_CHROMINANCE;
+        HuffmanCodes ac = component == 0 ? HuffmanCodes.AC_LUMINANCE : HuffmanCodes.AC_CHROMINANCE;
+        encoder.writeBlock(quantized, previousDc, dc, ac);
+        return quantized[0];
+    }
+
+    private static float[] reciprocal(int[] table) {
+        float[] reciprocal = new float[64];
+        for (int k = 0; k < 64; k++) {
+            reciprocal[k] = 1f / table[k];
+        }
+        return reciprocal;
+    }
+
+    /**
+     * 各分段共用的進度：已完成的熵編碼位元組數與 MCU 列數，以及是否已超過上限。
+     */
+    private static final class BandProgress {
+        private final long limit;
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicBoolean exceeded = new AtomicBoolean();
+
+        BandProgress(long limit) {
+            this.limit = limit;
+        }
+
+        void complete(long bandBytes, int bandRows) {
+            bytes.addAndGet(bandBytes);
+            rows.addAndGet(bandRows);
+        }
+
+        void abort(long bandBytes, int bandRows) {
+            complete(bandBytes, bandRows);
+            exceeded.set(true);
+        }
+    }
+}
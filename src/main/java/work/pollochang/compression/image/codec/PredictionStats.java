@@ -0,0 +1,9 @@
+package work.pollochang.compression.image.codec;
+
+/**
+ * {@link JpegTilePredictor} 預測誤差的統計快照。
+ * @param count                 已比對的圖片數
+ * @param meanAbsErrorPercent   平均絕對誤差（%）
+ * @param maxAbsErrorPercent    最大絕對誤差（%）
+ */
+public record PredictionStats(long count, double meanAbsErrorPercent, double maxAbsErrorPercent) {}
@@ -0,0 +1,27 @@
+package work.pollochang.compression.image.codec;
+
+import java.io.IOException;
+
+/**
+ * 依序接收解碼後的像素列，供串流處理使用。
+ */
+public interface RowConsumer {
+
+    /**
+     * 第一列之前呼叫一次。
+     * @param width  影像寬度
+     * @param height 影像高度
+     * @param bands  每像素的位元組數：1 為灰階，3 為 BGR
+     * @throws IOException 無法處理此影像時拋出
+     */
+    void begin(int width, int height, int bands) throws IOException;
+
+    /**
+     * 由上而下依序交付連續的像素列。陣列會被重複使用，實作不可保留參考。
+     * @param pixels   像素資料，每列 {@code width × bands} 個位元組，從索引 0 開始連續排列
+     * @param firstRow 第一列的列號
+     * @param rowCount 列數
+     * @throws IOException 輸出失敗時拋出
+     */
+    void rows(byte[] pixels, int firstRow, int rowCount) throws IOException;
+}
@@ -0,0 +1,192 @@
+package work.pollochang.compression.image.codec;
+
+/**
+ * 縮小輸出的反向 DCT（同 libjpeg 的 scale_num/scale_denom）。
+ *
+ * <p>只使用左上 {@code n x n} 個係數做 n 點 IDCT，直接得到區塊以 8/n 倍縮小後的像素，
+ * 不需要先還原完整的 8x8 區塊再縮放。n=1 時只需要 DC 係數；n=8 使用 AAN 浮點演算法（IJG jidctflt）。</p>
+ *
+ * <p>實例持有暫存區與反量化表的快取，不可跨執行緒共用。</p>
+ */
+final class ScaledIdct {
+
+    /** N4_TABLE[x * 4 + u] = C(u)/2 · cos((2x+1)uπ / 8)，C(0) = 1/√2 */
+    private static final float[] N4_TABLE = new float[16];
+
+    /** AAN 的反量化倍率：aan[k] = cos(kπ/16)·√2（k > 0），aan[0] = 1 */
+    private static final double[] AAN_SCALE = new double[8];
+
+    static {
+        for (int x = 0; x < 4; x++) {
+            for (int u = 0; u < 4; u++) {
+                double c = u == 0 ? Math.sqrt(0.5) : 1.0;
+                N4_TABLE[x * 4 + u] = (float) (c / 2.0 * Math.cos((2 * x + 1) * u * Math.PI / 8));
+            }
+        }
+        AAN_SCALE[0] = 1.0;
+        for (int k = 1; k < 8; k++) {
+            AAN_SCALE[k] = Math.cos(k * Math.PI / 16) * Math.sqrt(2);
+        }
+    }
+
+    private final float[] workspace = new float[64];
+    /** 已換算的反量化表，以量化表陣列本身作為識別（JPEG 最多 4 張） */
+    private final int[][] cachedQuants = new int[4][];
+    private final float[][] dequants = new float[4][64];
+    private int cached;
+
+    /**
+     * 反量化並做 n 點 IDCT，結果加上 128 的位移後寫入 {@code out}。
+     * @param coefficients 量化係數，自然順序
+     * @param quant        量化表，自然順序
+     * @param n            輸出邊長：1、2、4 或 8
+     * @param out          輸出平面
+     * @param offset       區塊左上角在 {@code out} 的位置
+     * @param stride       輸出平面的列寬
+     */
+    void inverse(short[] coefficients, int[] quant, int n, byte[] out, int offset, int stride) {
+        switch (n) {
+            case 1 -> out[offset] = clamp(Math.round(coefficients[0] * quant[0] / 8f) + 128);
+            case 2 -> inverse2(coefficients, quant, out, offset, stride);
+            case 4 -> inverse4(coefficients, quant, out, offset, stride);
+            case 8 -> inverse8(coefficients, quant, out, offset, stride);
+            default -> throw new IllegalArgumentException("不支援的 IDCT 大小: " + n);
+        }
+    }
+
+    /**
+     * 2 點 IDCT 的係數皆為 1/(2√2)，展開後只剩加減。
+     */
+    private static void inverse2(short[] c, int[] q, byte[] out, int offset, int stride) {
+        float a = c[0] * q[0];
+        float b = c[1] * q[1];
+        float d = c[8] * q[8];
+        float e = c[9] * q[9];
+        float top = a + d;
+        float bottom = a - d;
+        float right = b + e;
+        float rightBottom = b - e;
+        out[offset] = clamp(Math.round((top + right) / 8f) + 128);
+        out[offset + 1] = clamp(Math.round((top - right) / 8f) + 128);
+        out[offset + stride] = clamp(Math.round((bottom + rightBottom) / 8f) + 128);
+        out[offset + stride + 1] = clamp(Math.round((bottom - rightBottom) / 8f) + 128);
+    }
+
+    private void inverse4(short[] c, int[] q, byte[] out, int offset, int stride) {
+        float[] ws = workspace;
+        float[] t = N4_TABLE;
+        // 先對每一列（v）做水平方向的 IDCT
+        for (int v = 0; v < 4; v++) {
+            int row = v * 8;
+            float f0 = c[row] * q[row];
+            float f1 = c[row + 1] * q[row + 1];
+            float f2 = c[row + 2] * q[row + 2];
+            float f3 = c[row + 3] * q[row + 3];
+            for (int x = 0; x < 4; x++) {
+                int k = x * 4;
+                ws[v * 4 + x] = t[k] * f0 + t[k + 1] * f1 + t[k + 2] * f2 + t[k + 3] * f3;
+            }
+        }
+        // 再做垂直方向
+        for (int y = 0; y < 4; y++) {
+            int k = y * 4;
+            int dst = offset + y * stride;
+            for (int x = 0; x < 4; x++) {
+                float sum = t[k] * ws[x] + t[k + 1] * ws[4 + x] + t[k + 2] * ws[8 + x] + t[k + 3] * ws[12 + x];
+                out[dst + x] = clamp(Math.round(sum) + 128);
+            }
+        }
+    }
+
+    private void inverse8(short[] c, int[] quant, byte[] out, int offset, int stride) {
+        float[] q = dequantTable(quant);
+        float[] ws = workspace;
+
+        // 垂直方向（逐欄）
+        for (int col = 0; col < 8; col++) {
+            if (c[8 + col] == 0 && c[16 + col] == 0 && c[24 + col] == 0 && c[32 + col] == 0
+                    && c[40 + col] == 0 && c[48 + col] == 0 && c[56 + col] == 0) {
+                float dc = c[col] * q[col];
+                for (int i = 0; i < 64; i += 8) {
+                    ws[i + col] = dc;
+                }
+                continue;
+            }
+            idct8(c[col] * q[col], c[8 + col] * q[8 + col], c[16 + col] * q[16 + col], c[24 + col] * q[24 + col],
+                    c[32 + col] * q[32 + col], c[40 + col] * q[40 + col], c[48 + col] * q[48 + col], c[56 + col] * q[56 + col],
+                    ws, col, 8);
+        }
+        // 水平方向（逐列），結果除以 8 並位移 128
+        for (int row = 0; row < 64; row += 8) {
+            idct8(ws[row], ws[row + 1], ws[row + 2], ws[row + 3], ws[row + 4], ws[row + 5], ws[row + 6], ws[row + 7],
+                    ws, row, 1);
+            int dst = offset + (row >> 3) * stride;
+            for (int x = 0; x < 8; x++) {
+                out[dst + x] = clamp(Math.round(ws[row + x] / 8f) + 128);
+            }
+        }
+    }
+
+    /**
+     * 一維 8 點 AAN IDCT，輸入已乘上 AAN 倍率，結果寫回 {@code ws[base + i * step]}。
+     */
+    private static void idct8(float in0, float in1, float in2, float in3, float in4, float in5, float in6, float in7,
+                              float[] ws, int base, int step) {
+        // 偶數部分
+        float tmp10 = in0 + in4;
+        float tmp11 = in0 - in4;
+        float tmp13 = in2 + in6;
+        float tmp12 = (in2 - in6) * 1.414213562f - tmp13;
+        float tmp0 = tmp10 + tmp13;
+        float tmp3 = tmp10 - tmp13;
+        float tmp1 = tmp11 + tmp12;
+        float tmp2 = tmp11 - tmp12;
+
+        // 奇數部分
+        float z13 = in5 + in3;
+        float z10 = in5 - in3;
+        float z11 = in1 + in7;
+        float z12 = in1 - in7;
+        float tmp7 = z11 + z13;
+        float tmp11b = (z11 - z13) * 1.414213562f;
+        float z5 = (z10 + z12) * 1.847759065f;
+        float tmp10b = 1.082392200f * z12 - z5;
+        float tmp12b = -2.613125930f * z10 + z5;
+        float tmp6 = tmp12b - tmp7;
+        float tmp5 = tmp11b - tmp6;
+        float tmp4 = tmp10b + tmp5;
+
+        ws[base] = tmp0 + tmp7;
+        ws[base + 7 * step] = tmp0 - tmp7;
+        ws[base + step] = tmp1 + tmp6;
+        ws[base + 6 * step] = tmp1 - tmp6;
+        ws[base + 2 * step] = tmp2 + tmp5;
+        ws[base + 5 * step] = tmp2 - tmp5;
+        ws[base + 4 * step] = tmp3 + tmp4;
+        ws[base + 3 * step] = tmp3 - tmp4;
+    }
+
+    /**
+     * 取得乘上 AAN 倍率的量化表，每張量化表只換算一次。
+     */
+    private float[] dequantTable(int[] quant) {
+        for (int i = 0; i < cached; i++) {
+            if (cachedQuants[i] == quant) {
+                return dequants[i];
+            }
+        }
+        int slot = cached < cachedQuants.length ? cached++ : 0;
+        float[] dequant = dequants[slot];
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                dequant[row * 8 + col] = (float) (quant[row * 8 + col] * AAN_SCALE[row] * AAN_SCALE[col]);
+            }
+        }
+        cachedQuants[slot] = quant;
+        return dequant;
+    }
+
+    private static byte clamp(int value) {
+        return (byte) (value < 0 ? 0 : Math.min(value, 255));
+    }
+}
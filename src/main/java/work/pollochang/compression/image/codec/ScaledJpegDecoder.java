@@ -0,0 +1,156 @@
+package work.pollochang.compression.image.codec;
+
+import work.pollochang.compression.image.io.RasterPool;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 直接從 DCT 區塊以 1/2、1/4 或 1/8 解析度解碼基線 JPEG。
+ *
+ * <p>與 {@code ImageReadParam.setSourceSubsampling} 先完整解碼再丟棄像素不同，
+ * 這裡每個 8x8 區塊只用左上的低頻係數做縮小的 IDCT（見 {@link ScaledIdct}），
+ * 解碼時的像素平面也只配置縮小後的大小，可同時降低 CPU 與記憶體用量。
+ * 降低取樣的色度分量改用較大的 IDCT（例如 4:2:0 在 1/4 輸出時色度以 4 點 IDCT 解碼），
+ * 直接得到與亮度相同的解析度，無法如此時才以最近鄰方式上取樣。
+ * 輸出 {@link BufferedImage#TYPE_3BYTE_BGR} 或 {@link BufferedImage#TYPE_BYTE_GRAY}。</p>
+ */
+public final class ScaledJpegDecoder implements BlockConsumer {
+
+    /** 支援的最大縮小倍率 */
+    public static final int MAX_SCALE_DENOMINATOR = 8;
+
+    private final int denominator;
+    private final int blockSize;
+    private final ScaledIdct idct = new ScaledIdct();
+
+    private JpegFrame frame;
+    private byte[][] planes;
+    private int[] strides;
+    /** 各分量每個區塊解出的邊長 */
+    private int[] componentBlockSizes;
+
+    private ScaledJpegDecoder(int denominator) {
+        this.denominator = denominator;
+        this.blockSize = 8 / denominator;
+    }
+
+    /**
+     * 以 1/{@code denominator} 的解析度解碼 JPEG。
+     * @param data        JPEG 檔案內容
+     * @param denominator 縮小倍率：1、2、4 或 8
+     * @return 解碼後的影像，寬高為原尺寸除以倍率後無條件進位
+     * @throws UnsupportedJpegException 非基線 JPEG 等不支援的格式
+     * @throws IOException              資料損毀
+     */
+    public static BufferedImage decode(ByteBuffer data, int denominator) throws IOException {
+        if (denominator != 1 && denominator != 2 && denominator != 4 && denominator != 8) {
+            throw new IllegalArgumentException("縮小倍率必須為 1、2、4 或 8: " + denominator);
+        }
+        ScaledJpegDecoder decoder = new ScaledJpegDecoder(denominator);
+        JpegCoefficientReader.read(data, decoder);
+        if (decoder.frame == null) {
+            throw new IOException("JPEG 缺少 SOF");
+        }
+        return decoder.toImage();
+    }
+
+    @Override
+    public void begin(JpegFrame frame) {
+        this.frame = frame;
+        int count = frame.components().size();
+        planes = new byte[count][];
+        strides = new int[count];
+        componentBlockSizes = new int[count];
+        for (int c = 0; c < count; c++) {
+            JpegComponent component = frame.components().get(c);
+            int size = blockSize;
+            int ratioH = frame.maxHorizontal() / component.horizontalSampling();
+            int ratioV = frame.maxVertical() / component.verticalSampling();
+            // 取樣比例整除且兩個方向相同時，以較大的 IDCT 直接解出輸出解析度
+            if (ratioH == ratioV && ratioH * component.horizontalSampling() == frame.maxHorizontal()
+                    && ratioV * component.verticalSampling() == frame.maxVertical()
+                    && (ratioH == 1 || ratioH == 2 || ratioH == 4 || ratioH == 8) && blockSize * ratioH <= 8) {
+                size = blockSize * ratioH;
+            }
+            componentBlockSizes[c] = size;
+            strides[c] = frame.paddedBlocksPerLine(c) * size;
+            planes[c] = new byte[strides[c] * frame.paddedBlocksPerColumn(c) * size];
+        }
+    }
+
+    @Override
+    public void block(int component, int blockCol, int blockRow, short[] coefficients, int[] quantTable) {
+        int stride = strides[component];
+        int size = componentBlockSizes[component];
+        idct.inverse(coefficients, quantTable, size, planes[component], blockRow * size * stride + blockCol * size, stride);
+    }
+
+    private BufferedImage toImage() {
+        int width = (frame.width() + denominator - 1) / denominator;
+        int height = (frame.height() + denominator - 1) / denominator;
+        List<JpegComponent> components = frame.components();
+
+        if (components.size() == 1) {
+            BufferedImage image = RasterPool.acquire(BufferedImage.TYPE_BYTE_GRAY, width, height, false);
+            byte[] dst = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(planes[0], y * strides[0], dst, y * width, width);
+            }
+            return image;
+        }
+
+        // 每個分量在輸出座標下對應的欄與列（解析度不足時為最近鄰上取樣）
+        int[][] columns = new int[3][width];
+        int[] rowNumerators = new int[3];
+        for (int c = 0; c < 3; c++) {
+            int h = components.get(c).horizontalSampling() * componentBlockSizes[c];
+            for (int x = 0; x < width; x++) {
+                columns[c][x] = x * h / (frame.maxHorizontal() * blockSize);
+            }
+            rowNumerators[c] = components.get(c).verticalSampling() * componentBlockSizes[c];
+        }
+        int rowDenominator = frame.maxVertical() * blockSize;
+        boolean rgb = frame.isRgb();
+        BufferedImage image = RasterPool.acquire(BufferedImage.TYPE_3BYTE_BGR, width, height, false);
+        byte[] dst = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < height; y++) {
+            int row0 = (y * rowNumerators[0] / rowDenominator) * strides[0];
+            int row1 = (y * rowNumerators[1] / rowDenominator) * strides[1];
+            int row2 = (y * rowNumerators[2] / rowDenominator) * strides[2];
+            int out = y * width * 3;
+            for (int x = 0; x < width; x++, out += 3) {
+                int a = planes[0][row0 + columns[0][x]] & 0xFF;
+                int b = planes[1][row1 + columns[1][x]] & 0xFF;
+                int c = planes[2][row2 + columns[2][x]] & 0xFF;
+                if (rgb) {
+                    dst[out] = (byte) c;
+                    dst[out + 1] = (byte) b;
+                    dst[out + 2] = (byte) a;
+                } else {
+                    writeYCbCr(dst, out, a, b - 128, c - 128);
+                }
+            }
+        }
+        return image;
+    }
+
+    /**
+     * JFIF 的 YCbCr → RGB（BGR 排列），以 16-bit 定點數計算。
+     */
+    static void writeYCbCr(byte[] dst, int out, int y, int cb, int cr) {
+        int r = y + ((91881 * cr + 32768) >> 16);
+        int g = y - ((22554 * cb + 46802 * cr + 32768) >> 16);
+        int b = y + ((116130 * cb + 32768) >> 16);
+        dst[out] = clamp(b);
+        dst[out + 1] = clamp(g);
+        dst[out + 2] = clamp(r);
+    }
+
+    private static byte clamp(int value) {
+        return (byte) (value < 0 ? 0 : Math.min(value, 255));
+    }
+}
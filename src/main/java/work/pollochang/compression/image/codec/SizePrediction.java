@@ -0,0 +1,9 @@
+package work.pollochang.compression.image.codec;
+
+/**
+ * 抽樣預測得到的起始壓縮參數。
+ * @param scale          預測可達標的最大縮放比例
+ * @param quality        該比例下預測可達標的最高品質
+ * @param predictedBytes 以該參數預測的完整檔案大小
+ */
+public record SizePrediction(double scale, float quality, long predictedBytes) {}
@@ -0,0 +1,190 @@
+package work.pollochang.compression.image.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 以 MCU 列為單位串流解碼基線 JPEG，每解完一列 MCU 就把對應的像素列交給 {@link RowConsumer}。
+ *
+ * <p>與 {@link ScaledJpegDecoder} 使用相同的縮小 IDCT 與色彩轉換，輸出的像素完全相同，
+ * 但各分量的像素平面只保留一列 MCU 的高度，記憶體用量為 O(寬 × MCU 高) 而非 O(寬 × 高)。
+ * 串流需要所有分量在同一個交錯掃描中（或只有一個分量），分量分開掃描的 JPEG 會拋出
+ * {@link UnsupportedJpegException}。</p>
+ */
+public final class StripJpegDecoder implements BlockConsumer {
+
+    private final int denominator;
+    private final int blockSize;
+    private final RowConsumer consumer;
+    private final ScaledIdct idct = new ScaledIdct();
+
+    private JpegFrame frame;
+    private int width;
+    private int height;
+    private int bands;
+    /** 一列 MCU 的像素平面 */
+    private byte[][] planes;
+    private int[] strides;
+    private int[] componentBlockSizes;
+    /** 各分量在一列 MCU 中的區塊列數 */
+    private int[] blockRowsPerMcuRow;
+    /** 一列 MCU 對應的輸出列數 */
+    private int rowsPerMcuRow;
+    private int[][] columns;
+    private int[] rowNumerators;
+    private int rowDenominator;
+    private byte[] rowBuffer;
+
+    /** 一列 MCU 的最後一個區塊所屬的分量與欄位 */
+    private int lastComponent;
+    private int lastBlockCol;
+    private int mcuRow;
+    private int nextRow;
+    private boolean scanned;
+
+    private StripJpegDecoder(int denominator, RowConsumer consumer) {
+        this.denominator = denominator;
+        this.blockSize = 8 / denominator;
+        this.consumer = consumer;
+    }
+
+    /**
+     * 以 1/{@code denominator} 的解析度串流解碼 JPEG。
+     * @param data        JPEG 檔案內容
+     * @param denominator 縮小倍率：1、2、4 或 8
+     * @param consumer    像素列接收者
+     * @throws UnsupportedJpegException 非基線或分量分開掃描的 JPEG
+     * @throws IOException              資料損毀或 {@code consumer} 輸出失敗
+     */
+    public static void decode(ByteBuffer data, int denominator, RowConsumer consumer) throws IOException {
+        if (denominator != 1 && denominator != 2 && denominator != 4 && denominator != 8) {
+            throw new IllegalArgumentException("縮小倍率必須為 1、2、4 或 8: " + denominator);
+        }
+        StripJpegDecoder decoder = new StripJpegDecoder(denominator, consumer);
+        JpegCoefficientReader.read(data, decoder);
+        if (decoder.frame == null) {
+            throw new IOException("JPEG 缺少 SOF");
+        }
+    }
+
+    @Override
+    public void begin(JpegFrame frame) throws IOException {
+        this.frame = frame;
+        List<JpegComponent> components = frame.components();
+        int count = components.size();
+        width = (frame.width() + denominator - 1) / denominator;
+        height = (frame.height() + denominator - 1) / denominator;
+        bands = count == 1 ? 1 : 3;
+
+        planes = new byte[count][];
+        strides = new int[count];
+        componentBlockSizes = new int[count];
+        blockRowsPerMcuRow = new int[count];
+        for (int c = 0; c < count; c++) {
+            JpegComponent component = components.get(c);
+            int size = blockSize;
+            int ratioH = frame.maxHorizontal() / component.horizontalSampling();
+            int ratioV = frame.maxVertical() / component.verticalSampling();
+            // 與 ScaledJpegDecoder 相同：取樣比例整除且兩個方向相同時，以較大的 IDCT 直接解出輸出解析度
+            if (count > 1 && ratioH == ratioV && ratioH * component.horizontalSampling() == frame.maxHorizontal()
+                    && ratioV * component.verticalSampling() == frame.maxVertical()
+                    && (ratioH == 1 || ratioH == 2 || ratioH == 4 || ratioH == 8) && blockSize * ratioH <= 8) {
+                size = blockSize * ratioH;
+            }
+            componentBlockSizes[c] = size;
+            // 單一分量的掃描不以 MCU 為單位，一列 MCU 就是一列區塊
+            blockRowsPerMcuRow[c] = count == 1 ? 1 : component.verticalSampling();
+            strides[c] = frame.paddedBlocksPerLine(c) * size;
+            planes[c] = new byte[strides[c] * blockRowsPerMcuRow[c] * size];
+        }
+        rowsPerMcuRow = count == 1 ? blockSize : frame.maxVertical() * blockSize;
+
+        if (count > 1) {
+            columns = new int[count][width];
+            rowNumerators = new int[count];
+            for (int c = 0; c < count; c++) {
+                int h = components.get(c).horizontalSampling() * componentBlockSizes[c];
+                for (int x = 0; x < width; x++) {
+                    columns[c][x] = x * h / (frame.maxHorizontal() * blockSize);
+                }
+                rowNumerators[c] = components.get(c).verticalSampling() * componentBlockSizes[c];
+            }
+            rowDenominator = frame.maxVertical() * blockSize;
+        }
+        rowBuffer = new byte[width * bands * rowsPerMcuRow];
+        consumer.begin(width, height, bands);
+    }
+
+    @Override
+    public void beginScan(int[] components, int[][] quantTables) throws IOException {
+        if (scanned || components.length != frame.components().size()) {
+            throw new UnsupportedJpegException("分量分開掃描的 JPEG 無法串流解碼");
+        }
+        scanned = true;
+        lastComponent = components[components.length - 1];
+        JpegComponent last = frame.components().get(lastComponent);
+        lastBlockCol = components.length == 1 ? last.blocksPerLine() - 1
+                : frame.mcusPerLine() * last.horizontalSampling() - 1;
+    }
+
+    @Override
+    public void block(int component, int blockCol, int blockRow, short[] coefficients, int[] quantTable) throws IOException {
+        int stride = strides[component];
+        int size = componentBlockSizes[component];
+        int localRow = blockRow - mcuRow * blockRowsPerMcuRow[component];
+        idct.inverse(coefficients, quantTable, size, planes[component], localRow * size * stride + blockCol * size, stride);
+        if (component == lastComponent && blockCol == lastBlockCol && localRow == blockRowsPerMcuRow[component] - 1) {
+            emitMcuRow();
+        }
+    }
+
+    @Override
+    public void endScan() throws IOException {
+        // 檔案截斷時，其餘的列以黑色補齊
+        if (nextRow < height) {
+            Arrays.fill(rowBuffer, (byte) 0);
+            while (nextRow < height) {
+                int count = Math.min(rowsPerMcuRow, height - nextRow);
+                consumer.rows(rowBuffer, nextRow, count);
+                nextRow += count;
+            }
+        }
+    }
+
+    private void emitMcuRow() throws IOException {
+        int count = Math.min(rowsPerMcuRow, height - nextRow);
+        mcuRow++;
+        if (count <= 0) {
+            return;
+        }
+        if (bands == 1) {
+            for (int y = 0; y < count; y++) {
+                System.arraycopy(planes[0], y * strides[0], rowBuffer, y * width, width);
+            }
+        } else {
+            boolean rgb = frame.isRgb();
+            for (int y = 0; y < count; y++) {
+                int row0 = (y * rowNumerators[0] / rowDenominator) * strides[0];
+                int row1 = (y * rowNumerators[1] / rowDenominator) * strides[1];
+                int row2 = (y * rowNumerators[2] / rowDenominator) * strides[2];
+                int out = y * width * 3;
+                for (int x = 0; x < width; x++, out += 3) {
+                    int a = planes[0][row0 + columns[0][x]] & 0xFF;
+                    int b = planes[1][row1 + columns[1][x]] & 0xFF;
+                    int c = planes[2][row2 + columns[2][x]] & 0xFF;
+                    if (rgb) {
+                        rowBuffer[out] = (byte) c;
+                        rowBuffer[out + 1] = (byte) b;
+                        rowBuffer[out + 2] = (byte) a;
+                    } else {
+                        ScaledJpegDecoder.writeYCbCr(rowBuffer, out, a, b - 128, c - 128);
+                    }
+                }
+            }
+        }
+        consumer.rows(rowBuffer, nextRow, count);
+        nextRow += count;
+    }
+}
@@ -0,0 +1,16 @@
+package work.pollochang.compression.image.codec;
+
+import java.io.IOException;
+
+/**
+ * JPEG 使用了本專案解碼器不支援的編碼方式（漸進式、算術編碼、12-bit、CMYK 等），
+ * 呼叫端應退回 ImageIO 的解碼流程。
+ */
+public class UnsupportedJpegException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UnsupportedJpegException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,300 @@
+package work.pollochang.compression.image.codec;
+
+import work.pollochang.compression.image.tools.ParallelTools;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 以 JPEG 編碼順序排列的 YCbCr 平面影像。
+ *
+ * <p>彩色影像採用與 JDK JPEG writer 預設相同的 4:2:0 取樣（亮度 2x2、色度 1x1），
+ * 各平面寬高補齊到 MCU 邊界並以邊緣像素延伸；灰階影像只有亮度平面，MCU 為 8x8。
+ * 色彩轉換使用 JFIF/IJG 的定點係數，與 libjpeg 的結果一致。</p>
+ */
+public final class YCbCrImage {
+
+    private final int width;
+    private final int height;
+    private final boolean grayscale;
+    private final int mcuCols;
+    private final int mcuRows;
+    private final int lumaStride;
+    private final int lumaRows;
+    private final int chromaStride;
+    private final int chromaRows;
+    private final byte[] luma;
+    private final byte[] cb;
+    private final byte[] cr;
+
+    private YCbCrImage(int width, int height, boolean grayscale) {
+        this.width = width;
+        this.height = height;
+        this.grayscale = grayscale;
+        int mcuSize = grayscale ? 8 : 16;
+        this.mcuCols = (width + mcuSize - 1) / mcuSize;
+        this.mcuRows = (height + mcuSize - 1) / mcuSize;
+        this.lumaStride = mcuCols * mcuSize;
+        this.lumaRows = mcuRows * mcuSize;
+        this.luma = new byte[lumaStride * lumaRows];
+        if (grayscale) {
+            this.chromaStride = 0;
+            this.chromaRows = 0;
+            this.cb = null;
+            this.cr = null;
+        } else {
+            this.chromaStride = mcuCols * 8;
+            this.chromaRows = mcuRows * 8;
+            this.cb = new byte[chromaStride * chromaRows];
+            this.cr = new byte[chromaStride * chromaRows];
+        }
+    }
+
+    /**
+     * 將任意類型的 {@link BufferedImage} 轉換為 YCbCr 平面。
+     * {@code TYPE_3BYTE_BGR}、{@code TYPE_INT_RGB}、{@code TYPE_INT_ARGB} 與 {@code TYPE_BYTE_GRAY} 直接讀取底層陣列，
+     * 其他類型以 {@link BufferedImage#getRGB} 逐列轉換。
+     * @param image 來源影像
+     * @return 轉換後的平面影像
+     */
+    public static YCbCrImage from(BufferedImage image) {
+        return from(image, null);
+    }
+
+    /**
+     * 將影像轉換為 YCbCr 平面，並以 MCU 列為單位分段在 {@code pool} 上平行轉換，使用整個執行緒池。
+     * @param image 來源影像
+     * @param pool  執行轉換的執行緒池；{@code null} 表示在目前執行緒完成
+     * @return 轉換後的平面影像
+     */
+    public static YCbCrImage from(BufferedImage image, ForkJoinPool pool) {
+        return from(image, pool, pool == null ? 1 : pool.getParallelism());
+    }
+
+    /**
+     * 將影像轉換為 YCbCr 平面，以 MCU 列為單位分段，由 {@code threads} 個執行緒（包含目前執行緒）輪流領取。
+     * @param image   來源影像
+     * @param pool    執行轉換的執行緒池；{@code threads} 小於 2 時可為 null
+     * @param threads 同時轉換的執行緒數上限，包含目前執行緒
+     * @return 轉換後的平面影像
+     */
+    public static YCbCrImage from(BufferedImage image, ForkJoinPool pool, int threads) {
+        boolean gray = image.getColorModel().getNumComponents() == 1
+                && image.getColorModel().getColorSpace().getType() == ColorSpace.TYPE_GRAY;
+        YCbCrImage out = new YCbCrImage(image.getWidth(), image.getHeight(), gray);
+        RowReader reader = new RowReader(image);
+        int mcuSize = gray ? 8 : 16;
+        if (pool == null || threads < 2 || out.mcuRows < 2) {
+            out.convertRows(reader, 0, out.lumaRows);
+            return out;
+        }
+        // 每段至少一個 MCU 列，段數約為執行緒數的 4 倍以平衡負載
+        int rowsPerTask = Math.max(1, out.mcuRows / (threads * 4)) * mcuSize;
+        AtomicInteger nextTask = new AtomicInteger();
+        ParallelTools.runWorkers(pool, threads, () -> {
+            for (int y = nextTask.getAndIncrement() * rowsPerTask; y < out.lumaRows;
+                 y = nextTask.getAndIncrement() * rowsPerTask) {
+                out.convertRows(reader, y, Math.min(out.lumaRows, y + rowsPerTask));
+            }
+        });
+        return out;
+    }
+
+    /**
+     * 轉換 {@code [fromRow, toRow)} 範圍的亮度列，兩端須對齊 MCU 邊界。
+     * 超出原始高度的列沿用最後一列的像素。
+     */
+    private void convertRows(RowReader reader, int fromRow, int toRow) {
+        if (grayscale) {
+            convertGray(reader, fromRow, toRow);
+        } else {
+            convertColor(reader, fromRow, toRow);
+        }
+    }
+
+    private void convertGray(RowReader reader, int fromRow, int toRow) {
+        int[] rgb = new int[lumaStride];
+        for (int y = fromRow; y < toRow; y++) {
+            int offset = y * lumaStride;
+            if (y == fromRow || y < height) {
+                reader.read(Math.min(y, height - 1), rgb, lumaStride);
+                for (int x = 0; x < lumaStride; x++) {
+                    int p = rgb[x];
+                    luma[offset + x] = (byte) lumaOf((p >> 16) & 0xff, (p >> 8) & 0xff, p & 0xff);
+                }
+            } else {
+                System.arraycopy(luma, offset - lumaStride, luma, offset, lumaStride);
+            }
+        }
+    }
+
+    private void convertColor(RowReader reader, int fromRow, int toRow) {
+        int[] rgb = new int[lumaStride];
+        int[] cbSum = new int[chromaStride];
+        int[] crSum = new int[chromaStride];
+        for (int y = fromRow; y < toRow; y++) {
+            int offset = y * lumaStride;
+            if (y == fromRow || y < height) {
+                reader.read(Math.min(y, height - 1), rgb, lumaStride);
+            }
+            for (int x = 0; x < lumaStride; x += 2) {
+                int p0 = rgb[x];
+                int p1 = rgb[x + 1];
+                int r0 = (p0 >> 16) & 0xff, g0 = (p0 >> 8) & 0xff, b0 = p0 & 0xff;
+                int r1 = (p1 >> 16) & 0xff, g1 = (p1 >> 8) & 0xff, b1 = p1 & 0xff;
+                luma[offset + x] = (byte) lumaOf(r0, g0, b0);
+                luma[offset + x + 1] = (byte) lumaOf(r1, g1, b1);
+                int cx = x >> 1;
+                cbSum[cx] += cbOf(r0, g0, b0) + cbOf(r1, g1, b1);
+                crSum[cx] += crOf(r0, g0, b0) + crOf(r1, g1, b1);
+            }
+            if ((y & 1) == 1) {
+                int cOffset = (y >> 1) * chromaStride;
+                for (int cx = 0; cx < chromaStride; cx++) {
+                    cb[cOffset + cx] = (byte) ((cbSum[cx] + 2) >> 2);
+                    cr[cOffset + cx] = (byte) ((crSum[cx] + 2) >> 2);
+                    cbSum[cx] = 0;
+                    crSum[cx] = 0;
+                }
+            }
+        }
+    }
+
+    private static int lumaOf(int r, int g, int b) {
+        return (19595 * r + 38470 * g + 7471 * b + 32768) >> 16;
+    }
+
+    private static int cbOf(int r, int g, int b) {
+        return (-11059 * r - 21709 * g + 32768 * b + (128 << 16) + 32767) >> 16;
+    }
+
+    private static int crOf(int r, int g, int b) {
+        return (32768 * r - 27439 * g - 5329 * b + (128 << 16) + 32767) >> 16;
+    }
+
+    /**
+     * 取出指定平面的一個 8x8 區塊，並減去 128 以供 DCT 使用。
+     * @param component 0 = Y，1 = Cb，2 = Cr
+     * @param blockX    區塊在該平面中的欄索引
+     * @param blockY    區塊在該平面中的列索引
+     * @param dst       長度 64 的輸出陣列（自然順序）
+     */
+    public void loadBlock(int component, int blockX, int blockY, float[] dst) {
+        byte[] plane = plane(component);
+        int stride = component == 0 ? lumaStride : chromaStride;
+        int base = blockY * 8 * stride + blockX * 8;
+        for (int y = 0; y < 8; y++) {
+            int row = base + y * stride;
+            for (int x = 0; x < 8; x++) {
+                dst[y * 8 + x] = (plane[row + x] & 0xff) - 128f;
+            }
+        }
+    }
+
+    public byte[] plane(int component) {
+        return switch (component) {
+            case 0 -> luma;
+            case 1 -> cb;
+            case 2 -> cr;
+            default -> throw new IllegalArgumentException("component: " + component);
+        };
+    }
+
+    public int componentCount() {
+        return grayscale ? 1 : 3;
+    }
+
+    public boolean isGrayscale() {
+        return grayscale;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getMcuCols() {
+        return mcuCols;
+    }
+
+    public int getMcuRows() {
+        return mcuRows;
+    }
+
+    public int getStride(int component) {
+        return component == 0 ? lumaStride : chromaStride;
+    }
+
+    /**
+     * 逐列讀取 RGB，寬度不足 MCU 邊界的部分以最右側像素補齊。
+     */
+    private static final class RowReader {
+        private final BufferedImage image;
+        private final int width;
+        private byte[] bytes;
+        private int[] ints;
+        private int byteStride;
+        private int intStride;
+        private int baseOffset;
+        private int[] bandOffsets;
+
+        RowReader(BufferedImage image) {
+            this.image = image;
+            this.width = image.getWidth();
+            Raster raster = image.getRaster();
+            int tx = -raster.getSampleModelTranslateX();
+            int ty = -raster.getSampleModelTranslateY();
+            int type = image.getType();
+            if ((type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_BYTE_GRAY)
+                    && raster.getSampleModel() instanceof ComponentSampleModel sm
+                    && sm.getPixelStride() == sm.getNumBands()
+                    && raster.getDataBuffer() instanceof DataBufferByte db) {
+                bytes = db.getData();
+                byteStride = sm.getScanlineStride();
+                bandOffsets = sm.getBandOffsets();
+                // getOffset 已包含第 0 個 band 的位移，扣除後作為像素起點
+                baseOffset = db.getOffset() + sm.getOffset(tx, ty) - bandOffsets[0];
+            } else if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                    && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sm
+                    && raster.getDataBuffer() instanceof DataBufferInt db) {
+                ints = db.getData();
+                intStride = sm.getScanlineStride();
+                baseOffset = db.getOffset() + sm.getOffset(tx, ty);
+            }
+        }
+
+        void read(int y, int[] rgb, int paddedWidth) {
+            if (bytes != null && bandOffsets.length == 3) {
+                int p = baseOffset + y * byteStride;
+                int ro = bandOffsets[0], go = bandOffsets[1], bo = bandOffsets[2];
+                for (int x = 0; x < width; x++, p += 3) {
+                    rgb[x] = ((bytes[p + ro] & 0xff) << 16) | ((bytes[p + go] & 0xff) << 8) | (bytes[p + bo] & 0xff);
+                }
+            } else if (bytes != null) {
+                int p = baseOffset + y * byteStride + bandOffsets[0];
+                for (int x = 0; x < width; x++) {
+                    int v = bytes[p + x] & 0xff;
+                    rgb[x] = (v << 16) | (v << 8) | v;
+                }
+            } else if (ints != null) {
+                System.arraycopy(ints, baseOffset + y * intStride, rgb, 0, width);
+            } else {
+                image.getRGB(0, y, width, 1, rgb, 0, width);
+            }
+            int last = rgb[width - 1];
+            for (int x = width; x < paddedWidth; x++) {
+                rgb[x] = last;
+            }
+        }
+    }
+}
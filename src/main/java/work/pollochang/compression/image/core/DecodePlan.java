@@ -0,0 +1,138 @@
+package work.pollochang.compression.image.core;
+
+import work.pollochang.compression.image.codec.ImageFormat;
+import work.pollochang.compression.image.codec.ImageHeader;
+import work.pollochang.compression.image.codec.ScaledJpegDecoder;
+import work.pollochang.compression.image.learn.LearnedParams;
+import work.pollochang.compression.image.learn.jpg.SimilarityKey;
+import work.pollochang.compression.image.report.CompressionParams;
+
+import java.util.Map;
+
+import static work.pollochang.compression.image.tools.CacheTools.createKey;
+
+/**
+ * 解碼時使用的二次取樣倍率。
+ *
+ * <p>「參考解析度」是最長邊縮到接近 {@value #PREFERRED_MAX_DIM}px 的解碼結果，
+ * 學習快取的鍵與縮放比例都以它為準。JPG 輸出只需要目標大小容得下的像素，
+ * 因此基線 JPG 會依需要的輸出解析度改用更粗的縮小 IDCT 倍率；
+ * 之後的搜尋若發現像素不夠，再以參考解析度重新解碼。</p>
+ *
+ * @param subsampling          實際解碼使用的倍率
+ * @param referenceSubsampling 參考解析度的倍率
+ * @param referenceWidth       參考解析度的寬
+ * @param referenceHeight      參考解析度的高
+ */
+record DecodePlan(int subsampling, int referenceSubsampling, int referenceWidth, int referenceHeight) {
+
+    /** 參考解析度的最長邊 */
+    static final int PREFERRED_MAX_DIM = 4096;
+
+    /**
+     * JPEG 以最低品質編碼時每像素的最小位元組數：每個 8x8 區塊至少要有 DC 與 EOB，
+     * 4:2:0 彩色照片與平滑漸層實測約 0.016，取略低的值作為保守下限。
+     */
+    static final double FLOOR_BYTES_PER_PIXEL = 0.015;
+
+    /** 需要的最長邊再乘上的餘裕，留給品質搜尋 */
+    static final double HEADROOM = 1.1;
+
+    /**
+     * 依檔頭、目標大小與學習快取決定解碼倍率。
+     * @param header       檔頭；無法辨識時為 null，交由 ImageReader 決定參考倍率
+     * @param originalSize 原始檔案大小，用於查詢學習快取
+     * @param params       壓縮參數
+     * @param cache        學習快取
+     * @return 解碼計畫；檔頭無法辨識時回傳 null
+     */
+    static DecodePlan of(ImageHeader header, long originalSize, CompressionParams params,
+                         Map<SimilarityKey, LearnedParams> cache) {
+        if (header == null) {
+            return null;
+        }
+        int width = header.width();
+        int height = header.height();
+        int reference = referenceSubsampling(width, height);
+        int referenceWidth = (width + reference - 1) / reference;
+        int referenceHeight = (height + reference - 1) / reference;
+        // 只有基線 JPG 能以縮小 IDCT 解出較粗的解析度；其他格式的整數取樣會產生鋸齒
+        if (header.format() != ImageFormat.JPEG || header.progressive()) {
+            return new DecodePlan(reference, reference, referenceWidth, referenceHeight);
+        }
+
+        long neededMaxDim = neededMaxDimension(referenceWidth, referenceHeight, originalSize, params, cache);
+        int maxDim = Math.max(width, height);
+        int subsampling = reference;
+        while (subsampling * 2 <= ScaledJpegDecoder.MAX_SCALE_DENOMINATOR
+                && (maxDim + subsampling * 2 - 1) / (subsampling * 2) >= neededMaxDim) {
+            subsampling *= 2;
+        }
+        return new DecodePlan(subsampling, reference, referenceWidth, referenceHeight);
+    }
+
+    /**
+     * 最長邊約 {@value #PREFERRED_MAX_DIM}px 的 2 的冪次取樣倍率，用於限制解碼的記憶體用量。
+     */
+    static int referenceSubsampling(int width, int height) {
+        int maxDim = Math.max(width, height);
+        if (maxDim <= PREFERRED_MAX_DIM) {
+            return 1;
+        }
+        return Integer.highestOneBit(maxDim / PREFERRED_MAX_DIM);
+    }
+
+    /**
+     * 輸出需要的最長邊：快取中有相似圖片時取其學到的比例，否則以目標大小除以每像素最小位元組數，
+     * 即最低品質仍能放進目標大小的最大像素數。
+     */
+    private static long neededMaxDimension(int referenceWidth, int referenceHeight, long originalSize,
+                                           CompressionParams params, Map<SimilarityKey, LearnedParams> cache) {
+        int maxDim = Math.max(referenceWidth, referenceHeight);
+        LearnedParams learned = cache.get(createKey(referenceWidth, referenceHeight, originalSize));
+        if (learned != null) {
+            return (long) Math.ceil(maxDim * Math.min(1.0, learned.scale()));
+        }
+        double pixels = params.targetMaxSizeBytes() / FLOOR_BYTES_PER_PIXEL;
+        double aspect = (double) maxDim / Math.min(referenceWidth, referenceHeight);
+        return (long) Math.ceil(Math.sqrt(pixels * aspect) * HEADROOM);
+    }
+
+    /**
+     * 以參考解析度解碼的像素數超過 {@code maxPixels} 時，把參考倍率加倍到放得下為止，
+     * 實際解碼倍率不會比新的參考倍率更細。
+     * @param header    檔頭
+     * @param maxPixels 可接受的最大解碼像素數
+     * @return 放得下的計畫；原本就放得下時回傳自己
+     */
+    DecodePlan fitTo(ImageHeader header, long maxPixels) {
+        int reference = referenceSubsampling;
+        int maxDim = Math.max(header.width(), header.height());
+        while (decodedPixels(header, reference) > maxPixels && reference < maxDim) {
+            reference *= 2;
+        }
+        if (reference == referenceSubsampling) {
+            return this;
+        }
+        return new DecodePlan(Math.max(subsampling, reference), reference,
+                (header.width() + reference - 1) / reference, (header.height() + reference - 1) / reference);
+    }
+
+    private static long decodedPixels(ImageHeader header, int subsampling) {
+        return (long) ((header.width() + subsampling - 1) / subsampling) * ((header.height() + subsampling - 1) / subsampling);
+    }
+
+    /**
+     * @return 是否比參考解析度更粗
+     */
+    boolean isCoarse() {
+        return subsampling > referenceSubsampling;
+    }
+
+    /**
+     * @return 改用參考解析度解碼的計畫
+     */
+    DecodePlan reference() {
+        return new DecodePlan(referenceSubsampling, referenceSubsampling, referenceWidth, referenceHeight);
+    }
+}
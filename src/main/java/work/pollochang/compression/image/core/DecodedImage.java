@@ -1,5 +1,8 @@
 package work.pollochang.compression.image.core;
 
+import work.pollochang.compression.image.codec.CodecPool;
+import work.pollochang.compression.image.io.RasterPool;
+
 import javax.imageio.ImageReader;
 import java.awt.image.BufferedImage;
 
@@ -7,11 +10,9 @@ import java.awt.image.BufferedImage;
 public record DecodedImage(BufferedImage image, ImageReader reader) implements AutoCloseable {
     @Override
     public void close() {
-        if (image != null) {
-            image.flush();
-        }
-        if (reader != null) {
-            reader.dispose();
-        }
+        // 點陣陣列歸還給池，供後續的縮放與解碼重用
+        RasterPool.release(image);
+        // reader 由 CodecPool 借出，歸還後可供同一執行緒的下一個檔案重複使用
+        CodecPool.releaseReader(reader);
     }
 }
@@ -0,0 +1,15 @@
+package work.pollochang.compression.image.core;
+
+import work.pollochang.compression.image.report.CompressionReport;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * 編碼階段的結果，尚未寫入檔案。
+ * @param inputPath  來源檔
+ * @param outputFile 輸出檔
+ * @param report     壓縮結果
+ * @param data       壓縮成功時的檔案內容（編碼緩衝區本身，未複製），其他結果為 null
+ */
+public record EncodedImage(Path inputPath, Path outputFile, CompressionReport report, ByteBuffer data) {}
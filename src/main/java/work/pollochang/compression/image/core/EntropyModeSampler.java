@@ -0,0 +1,58 @@
+package work.pollochang.compression.image.core;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 抽樣比較熵編碼模式的效益：每 {@value #SAMPLE_INTERVAL} 張成功輸出的 JPG，
+ * 以相同品質與尺寸再用標準 Huffman 表編碼一次，累計兩者的大小與 CPU 時間。
+ */
+public class EntropyModeSampler {
+
+    /** 抽樣間隔 */
+    private static final int SAMPLE_INTERVAL = 16;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static final AtomicLong SEEN = new AtomicLong();
+    private static final LongAdder COUNT = new LongAdder();
+    private static final LongAdder MODE_BYTES = new LongAdder();
+    private static final LongAdder STANDARD_BYTES = new LongAdder();
+    private static final LongAdder MODE_CPU = new LongAdder();
+    private static final LongAdder STANDARD_CPU = new LongAdder();
+
+    private EntropyModeSampler() {
+    }
+
+    /**
+     * @return 這次輸出是否要抽樣比較
+     */
+    static boolean shouldSample() {
+        return SEEN.getAndIncrement() % SAMPLE_INTERVAL == 0;
+    }
+
+    /**
+     * 目前執行緒的 CPU 時間；JVM 不支援時退回牆鐘時間。
+     * @return 奈秒
+     */
+    static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    static void record(long modeBytes, long modeCpuNanos, long standardBytes, long standardCpuNanos) {
+        COUNT.increment();
+        MODE_BYTES.add(modeBytes);
+        MODE_CPU.add(modeCpuNanos);
+        STANDARD_BYTES.add(standardBytes);
+        STANDARD_CPU.add(standardCpuNanos);
+    }
+
+    /**
+     * @return 目前累計的比較結果
+     */
+    public static EntropyModeStats stats() {
+        return new EntropyModeStats(COUNT.sum(), MODE_BYTES.sum(), STANDARD_BYTES.sum(), MODE_CPU.sum(), STANDARD_CPU.sum());
+    }
+}
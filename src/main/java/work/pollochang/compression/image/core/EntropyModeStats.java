@@ -0,0 +1,26 @@
+package work.pollochang.compression.image.core;
+
+/**
+ * 非標準熵編碼模式與標準 Huffman 表的抽樣比較結果。
+ * @param count            抽樣的圖片數
+ * @param modeBytes        以設定模式編碼的總大小
+ * @param standardBytes    同品質、同尺寸以標準 Huffman 表編碼的總大小
+ * @param modeCpuNanos     設定模式的編碼 CPU 時間總和
+ * @param standardCpuNanos 標準 Huffman 表的編碼 CPU 時間總和
+ */
+public record EntropyModeStats(long count, long modeBytes, long standardBytes, long modeCpuNanos, long standardCpuNanos) {
+
+    /**
+     * @return 相較標準表節省的大小百分比
+     */
+    public double savedPercent() {
+        return standardBytes == 0 ? 0.0 : (standardBytes - modeBytes) * 100.0 / standardBytes;
+    }
+
+    /**
+     * @return 相較標準表增加的編碼 CPU 時間百分比
+     */
+    public double cpuOverheadPercent() {
+        return standardCpuNanos == 0 ? 0.0 : (modeCpuNanos - standardCpuNanos) * 100.0 / standardCpuNanos;
+    }
+}
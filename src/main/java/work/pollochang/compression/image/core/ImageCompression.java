@@ -1,11 +1,28 @@
 package work.pollochang.compression.image.core;
 
 import lombok.extern.slf4j.Slf4j;
+import work.pollochang.compression.image.codec.AreaDownscaler;
+import work.pollochang.compression.image.codec.CodecPool;
+import work.pollochang.compression.image.codec.ImageFormat;
+import work.pollochang.compression.image.codec.ImageHeader;
+import work.pollochang.compression.image.codec.ImageHeaderScanner;
+import work.pollochang.compression.image.codec.ScaledJpegDecoder;
+import work.pollochang.compression.image.codec.StripJpegDecoder;
+import work.pollochang.compression.image.codec.UnsupportedJpegException;
+import work.pollochang.compression.image.io.AtomicFileWriter;
+import work.pollochang.compression.image.io.DirectBufferPool;
+import work.pollochang.compression.image.io.MappedImageInputStream;
+import work.pollochang.compression.image.io.MappedImageInputStreamSpi;
+import work.pollochang.compression.image.io.OutputCapture;
+import work.pollochang.compression.image.io.OutputSink;
+import work.pollochang.compression.image.io.PooledBuffer;
+import work.pollochang.compression.image.io.RasterPool;
 import work.pollochang.compression.image.learn.LearnedParams;
 import work.pollochang.compression.image.learn.jpg.SimilarityKey;
 import work.pollochang.compression.image.report.CompressionReport;
 import work.pollochang.compression.image.report.CompressionParams;
 import work.pollochang.compression.image.tools.FileTools;
+import work.pollochang.compression.image.tools.ImageTools;
 
 
 import javax.imageio.*;
@@ -14,6 +31,7 @@ import javax.imageio.spi.ImageReaderSpi;
 import javax.imageio.stream.ImageInputStream;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Iterator;
@@ -29,15 +47,20 @@ import static work.pollochang.compression.image.core.ImageCompressionPng.compres
 public final class ImageCompression {
 
     // 註冊 ImageIO 外掛程式，禁用磁碟快取，強制使用記憶體操作，避免 I/O 瓶頸。
+    // 來源檔以 Path 開啟時改用記憶體映射的輸入流，不再經過 InputStream 的額外複製。
     static {
         IIORegistry.getDefaultInstance().registerApplicationClasspathSpis();
+        IIORegistry.getDefaultInstance().registerServiceProvider(new MappedImageInputStreamSpi());
         ImageIO.setUseCache(false);
     }
 
+    /** 逐張處理時使用的輸出寫入器：暫存檔加原子改名，不 fsync */
+    private static final AtomicFileWriter OUTPUT_WRITER = new AtomicFileWriter(0, 0);
+
     private ImageCompression() {}
 
     /**
-     * 簽章
+     * 依序執行讀取、編碼與寫出三個階段處理一張圖片。
      * @param inputPath
      * @param outputDir
      * @param params
@@ -50,79 +73,317 @@ public final class ImageCompression {
             CompressionParams params,
             Map<SimilarityKey, LearnedParams> cache
     ) {
+        EncodedImage encoded;
+        try (PreparedImage prepared = prepare(inputPath, outputDir, params, null)) {
+            if (prepared.report() != null) {
+                return prepared.report();
+            }
+            encoded = encode(prepared, params, cache);
+        }
+        return write(encoded, OUTPUT_WRITER);
+    }
+
+    /**
+     * I/O 階段：確認檔案可讀、讀取大小與檔頭並排除不需壓縮的檔案，再預讀整個來源檔，
+     * 讓編碼階段不必在 CPU 執行緒上等待磁碟或 NFS。
+     *
+     * <p>有緩衝區池時把檔案讀入池中的直接記憶體，解碼直接讀取該緩衝區；
+     * 沒有緩衝區池或檔案大於池的預算時，改以記憶體映射載入頁面快取。</p>
+     * @param inputPath 來源檔
+     * @param outputDir 輸出目錄
+     * @param params    壓縮參數
+     * @param pool      預讀緩衝區池，可為 null
+     * @return 讀取結果，用畢須關閉；{@link PreparedImage#report()} 不為 null 時表示已決定跳過或失敗
+     */
+    public static PreparedImage prepare(Path inputPath, Path outputDir, CompressionParams params, DirectBufferPool pool) {
+        Path outputFile = outputDir.resolve(inputPath.getFileName());
         long originalSize;
         try {
             if (!Files.exists(inputPath) || !Files.isReadable(inputPath)) {
                 log.warn("{} - 檔案不存在或不可讀，跳過", inputPath);
-                return new CompressionReport(CompressionResult.SKIPPED_NOT_FOUND, 0, 0);
+                return skipped(inputPath, outputFile, new CompressionReport(CompressionResult.SKIPPED_NOT_FOUND, 0, 0));
             }
             originalSize = Files.size(inputPath);
         } catch (IOException e) {
             log.warn("{} - 無法讀取檔案大小", inputPath, e);
-            return new CompressionReport(CompressionResult.FAILED_IO_ERROR, 0, 0);
+            return skipped(inputPath, outputFile, new CompressionReport(CompressionResult.FAILED_IO_ERROR, 0, 0));
         }
 
-        try (DecodedImage decodedImage = decodeImageWithSubsampling(inputPath, params, originalSize)) {
-            if (decodedImage == null) {
-                // 如果解碼階段就已決定跳過或失敗，會回傳 null
-                // 檢查是否符合壓縮條件的日誌已在 decodeImageWithSubsampling 內部處理
-                boolean shouldCompress = (originalSize > params.minSizeBytes()); // 簡化判斷，詳細尺寸判斷已在內部
-                return new CompressionReport(
-                        shouldCompress ? CompressionResult.FAILED_UNSUPPORTED_FORMAT : CompressionResult.SKIPPED_CONDITION_NOT_MET,
-                        originalSize, originalSize
-                );
+        if (originalSize <= params.minSizeBytes()) {
+            log.info("{} - 跳過: 檔案大小 {} 未超過最小壓縮門檻 {}", inputPath, FileTools.formatFileSize(originalSize), FileTools.formatFileSize(params.minSizeBytes()));
+            return skipped(inputPath, outputFile, new CompressionReport(CompressionResult.SKIPPED_CONDITION_NOT_MET, originalSize, originalSize));
+        }
+
+        // 只讀檔頭判斷格式與尺寸，不需壓縮的檔案不必建立 ImageReader
+        ImageHeader header = prescan(inputPath);
+        if (header != null) {
+            if (header.format() != ImageFormat.JPEG && header.format() != ImageFormat.PNG) {
+                log.warn("{} - 不支援的檔案格式: {}，跳過", inputPath, header.format());
+                return skipped(inputPath, outputFile, new CompressionReport(CompressionResult.FAILED_UNSUPPORTED_FORMAT, originalSize, originalSize));
             }
+            if (header.width() <= params.minWidth() || header.height() <= params.minHeight()) {
+                log.debug("{} - 跳過: 圖片尺寸 {}x{} 未超過最小壓縮門檻 {}x{}", inputPath, header.width(), header.height(), params.minWidth(), params.minHeight());
+                return skipped(inputPath, outputFile, new CompressionReport(CompressionResult.SKIPPED_CONDITION_NOT_MET, originalSize, originalSize));
+            }
+        }
 
-            Path outputFile = outputDir.resolve(inputPath.getFileName());
-            log.debug("{} - 開始處理", inputPath);
+        PooledBuffer source = prefetch(inputPath, originalSize, pool);
+        return new PreparedImage(inputPath, outputFile, originalSize, header, source, null);
+    }
 
-            boolean success = compressImageIteratively(decodedImage, originalSize, outputFile, params, cache);
+    private static PreparedImage skipped(Path inputPath, Path outputFile, CompressionReport report) {
+        return new PreparedImage(inputPath, outputFile, report.originalSize(), null, null, report);
+    }
 
-            if (success) {
-                long compressedSize = Files.size(outputFile);
-                double ratio = 100.0 * (originalSize - compressedSize) / originalSize;
-                log.info("{} - 處理成功 -> {} (大小: {} -> {}, 節省: {}%)",
-                        inputPath, outputFile,
-                        FileTools.formatFileSize(originalSize), FileTools.formatFileSize(compressedSize), ratio);
-                return new CompressionReport(CompressionResult.COMPRESSED_SUCCESS, originalSize, compressedSize);
+    /**
+     * 預讀整個來源檔；失敗時不影響後續流程，由解碼階段重新讀取並回報錯誤。
+     * @return 緩衝區池中的檔案內容；未使用緩衝區池或改用記憶體映射時為 null
+     */
+    private static PooledBuffer prefetch(Path inputPath, long size, DirectBufferPool pool) {
+        try {
+            if (pool != null) {
+                PooledBuffer source = pool.read(inputPath, size);
+                if (source != null) {
+                    return source;
+                }
+            }
+            if (size <= Integer.MAX_VALUE) {
+                MappedImageInputStream.mapWhole(inputPath).load();
+            }
+        } catch (IOException e) {
+            log.debug("{} - 預讀失敗: {}", inputPath.getFileName(), e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * @return 來源檔的完整內容：預讀的緩衝區，或記憶體映射
+     */
+    private static ByteBuffer sourceBytes(Path inputPath, PooledBuffer source) throws IOException {
+        return source != null ? source.buffer() : MappedImageInputStream.mapWhole(inputPath);
+    }
+
+    /**
+     * CPU 階段：解碼、縮放並編碼到記憶體，不寫入檔案。
+     * @param prepared I/O 階段的結果，{@link PreparedImage#report()} 必須為 null；由呼叫端關閉
+     * @param params   壓縮參數
+     * @param cache    學習快取
+     * @return 編碼結果，由 {@link #write(EncodedImage, AtomicFileWriter)} 寫出
+     */
+    public static EncodedImage encode(PreparedImage prepared, CompressionParams params, Map<SimilarityKey, LearnedParams> cache) {
+        Path inputPath = prepared.inputPath();
+        PooledBuffer source = prepared.source();
+        Path outputFile = prepared.outputFile();
+        long originalSize = prepared.originalSize();
+        ImageHeader header = prepared.header();
+        OutputCapture output = new OutputCapture();
+
+        // 依目標大小與學習快取決定解碼解析度，不解出輸出用不到的像素
+        DecodePlan plan = DecodePlan.of(header, originalSize, params, cache);
+        // 以原始解析度解碼後的點陣圖過大時改以串流方式解碼，避免配置完整的點陣圖；
+        // 整個記憶體預算都容不下時，即使停用了串流也強制使用
+        long budgetLimit = (long) (MemoryGovernor.budgetBytes() / MemoryGovernor.PEAK_FACTOR);
+        long streamingLimit = params.streamingDecodeMinBytes() > 0 ? Math.min(params.streamingDecodeMinBytes(), budgetLimit) : budgetLimit;
+        StreamingPlan streaming = StreamingPlan.of(header, plan, streamingLimit);
+        // 無法串流時改以較粗的倍率解碼，讓單一任務不超過記憶體預算
+        if (header != null) {
+            DecodePlan fitted = plan.fitTo(header, MemoryGovernor.maxDecodedPixels(header));
+            if (fitted != plan) {
+                log.debug("{} - 預估記憶體用量超過預算 {}，參考倍率改為 1/{}", inputPath.getFileName(),
+                        FileTools.formatFileSize(MemoryGovernor.budgetBytes()), fitted.referenceSubsampling());
+                plan = fitted;
+            }
+        }
+        try {
+            // JPG 若不縮放即可達標，直接在係數域重新量化，不必解碼成點陣圖；
+            // 需要以參考倍率縮小解碼的大圖與原本一樣一律縮小，不以原尺寸輸出
+            if (params.requantize() && header != null && header.format() == ImageFormat.JPEG && !header.progressive()
+                    && DecodePlan.referenceSubsampling(header.width(), header.height()) == 1
+                    && tryRequantize(inputPath, source, outputFile, output, params)) {
+                return encoded(prepared, CompressionResult.COMPRESSED_SUCCESS, output.data().remaining(), output.data());
+            }
+
+            TargetSizeOutcome outcome = null;
+            if (streaming != null) {
+                outcome = streamAndCompress(inputPath, source, outputFile, output, originalSize, streaming, params, cache);
+            }
+            if (outcome == null) {
+                outcome = decodeAndCompress(inputPath, source, outputFile, output, originalSize, header, plan, params, cache);
+            }
+            if (outcome == TargetSizeOutcome.NEEDS_MORE_PIXELS) {
+                log.debug("{} - 以 1/{} 解碼的像素不足，改以 1/{} 重新解碼", inputPath.getFileName(),
+                        plan.subsampling(), plan.referenceSubsampling());
+                outcome = decodeAndCompress(inputPath, source, outputFile, output, originalSize, header, plan.reference(), params, cache);
+            }
+            if (outcome == null) {
+                // 如果解碼階段就已決定跳過或失敗，會回傳 null
+                // 檔頭無法辨識時，尺寸判斷與日誌在 decodeImageWithSubsampling 內部處理
+                return encoded(prepared, CompressionResult.FAILED_UNSUPPORTED_FORMAT, originalSize, null);
+            }
+
+            if (outcome == TargetSizeOutcome.COMPRESSED) {
+                return encoded(prepared, CompressionResult.COMPRESSED_SUCCESS, output.data().remaining(), output.data());
             } else {
                 log.warn("{} - 無法在目標大小限制下完成壓縮", inputPath);
-                // 即使壓縮失敗，也應該清除可能已建立的空檔案或不完整檔案
-                Files.deleteIfExists(outputFile);
-                return new CompressionReport(CompressionResult.FAILED_COMPRESSION, originalSize, 0);
+                return encoded(prepared, CompressionResult.FAILED_COMPRESSION, 0, null);
             }
         } catch (IOException e) {
             log.warn("{} - 處理圖片時發生 I/O 錯誤 (可能非支援格式或檔案損毀)", inputPath, e);
-            return new CompressionReport(CompressionResult.FAILED_IO_ERROR, originalSize, 0);
+            return encoded(prepared, CompressionResult.FAILED_IO_ERROR, 0, null);
         } catch (OutOfMemoryError e) {
             // 儘管已經做了二次取樣，極端情況下仍可能發生。
             log.error("{} - 處理檔案時發生記憶體溢位錯誤 (圖片可能過大或格式有問題)", inputPath, e);
-            return new CompressionReport(CompressionResult.FAILED_OUT_OF_MEMORY, originalSize, 0);
+            return encoded(prepared, CompressionResult.FAILED_OUT_OF_MEMORY, 0, null);
         } catch (Exception e) {
             log.error("{} - 處理檔案時發生未知錯誤", inputPath, e);
-            return new CompressionReport(CompressionResult.FAILED_UNKNOWN, originalSize, 0);
+            return encoded(prepared, CompressionResult.FAILED_UNKNOWN, 0, null);
+        }
+    }
+
+    private static EncodedImage encoded(PreparedImage prepared, CompressionResult result, long compressedSize, ByteBuffer data) {
+        return new EncodedImage(prepared.inputPath(), prepared.outputFile(),
+                new CompressionReport(result, prepared.originalSize(), compressedSize), data);
+    }
+
+    /**
+     * I/O 階段：經由暫存檔與原子改名寫出編碼結果；無法達標時清除可能殘留的舊輸出檔。
+     * @param encoded 編碼結果
+     * @param writer  輸出寫入器
+     * @return 最終的處理報告
+     */
+    public static CompressionReport write(EncodedImage encoded, AtomicFileWriter writer) {
+        Path inputPath = encoded.inputPath();
+        Path outputFile = encoded.outputFile();
+        CompressionReport report = encoded.report();
+        try {
+            if (encoded.data() != null) {
+                writer.write(outputFile, encoded.data());
+                long originalSize = report.originalSize();
+                long compressedSize = report.compressedSize();
+                double ratio = 100.0 * (originalSize - compressedSize) / originalSize;
+                log.info("{} - 處理成功 -> {} (大小: {} -> {}, 節省: {}%)",
+                        inputPath, outputFile,
+                        FileTools.formatFileSize(originalSize), FileTools.formatFileSize(compressedSize), ratio);
+            } else if (report.result() == CompressionResult.FAILED_COMPRESSION) {
+                // 即使壓縮失敗，也應該清除可能已建立的空檔案或不完整檔案
+                Files.deleteIfExists(outputFile);
+            }
+            return report;
+        } catch (IOException e) {
+            log.warn("{} - 寫入輸出檔失敗: {}", inputPath, outputFile, e);
+            return new CompressionReport(CompressionResult.FAILED_IO_ERROR, report.originalSize(), 0);
         }
     }
 
-    private static DecodedImage decodeImageWithSubsampling(Path inputPath, CompressionParams params, long fileSize) throws IOException {
-        if (fileSize <= params.minSizeBytes()) {
-            log.info("{} - 跳過: 檔案大小 {} 未超過最小壓縮門檻 {}", inputPath, FileTools.formatFileSize(fileSize), FileTools.formatFileSize(params.minSizeBytes()));
+    /**
+     * 讀取檔頭；無法辨識或讀取失敗時回傳 null，交由 ImageReader 判斷。
+     */
+    private static ImageHeader prescan(Path inputPath) {
+        try {
+            ImageHeader header = ImageHeaderScanner.scan(inputPath);
+            if (header == null) {
+                log.debug("{} - 無法由檔頭辨識格式，改用 ImageReader 判斷", inputPath.getFileName());
+            }
+            return header;
+        } catch (IOException e) {
+            log.debug("{} - 讀取檔頭失敗: {}", inputPath.getFileName(), e.getMessage());
             return null;
         }
+    }
 
-        try (ImageInputStream in = ImageIO.createImageInputStream(Files.newInputStream(inputPath))) {
+    /**
+     * 嘗試以係數域重新量化處理 JPG，呼叫前已由檔頭確認為尺寸達門檻的非漸進式 JPG。
+     * @return 是否成功；不支援或需要縮放時回傳 false，交回一般流程
+     */
+    private static boolean tryRequantize(Path inputPath, PooledBuffer source, Path outputFile, OutputSink sink, CompressionParams params) {
+        try {
+            float quality = ImageCompressionJpg.requantizeToTarget(sourceBytes(inputPath, source), outputFile, sink, params);
+            if (quality <= 0) {
+                return false;
+            }
+            log.info("{} - 重新量化成功 (q={})", inputPath, String.format("%.3f", quality));
+            return true;
+        } catch (UnsupportedJpegException e) {
+            log.debug("{} - {}，改用一般流程", inputPath.getFileName(), e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            log.debug("{} - 重新量化失敗，改用一般流程: {}", inputPath.getFileName(), e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * 以 MCU 列串流解碼基線 JPG，逐列縮小到串流計畫的輸出尺寸後再壓縮。
+     * 縮小後的尺寸就是此檔案的參考解析度，不會再要求更多像素。
+     * @return 壓縮結果；串流解碼不支援或失敗時回傳 null，交回一般流程
+     */
+    private static TargetSizeOutcome streamAndCompress(Path inputPath, PooledBuffer source, Path outputFile, OutputSink sink, long originalSize, StreamingPlan streaming,
+                                                       CompressionParams params, Map<SimilarityKey, LearnedParams> cache) throws IOException {
+        long footprint = MemoryGovernor.estimate((long) streaming.outputWidth() * streaming.outputHeight(), 3, params.targetMaxSizeBytes());
+        MemoryGovernor.Reservation reservation = MemoryGovernor.reserve(footprint);
+        try {
+            AreaDownscaler downscaler = new AreaDownscaler(streaming.outputWidth(), streaming.outputHeight());
+            try {
+                StripJpegDecoder.decode(sourceBytes(inputPath, source), streaming.denominator(), downscaler);
+            } catch (UnsupportedJpegException e) {
+                log.debug("{} - {}，改用一般流程", inputPath.getFileName(), e.getMessage());
+                return null;
+            } catch (IOException e) {
+                log.warn("{} - 串流解碼失敗，改用一般流程: {}", inputPath.getFileName(), e.getMessage());
+                return null;
+            }
+
+            BufferedImage image = downscaler.getImage();
+            log.debug("{} - 以串流方式解碼並縮小至 {}x{}", inputPath.getFileName(), image.getWidth(), image.getHeight());
+            try {
+                return compressJpgWithTargetSize(image, image.getWidth(), image.getHeight(), originalSize, outputFile, sink, params, cache);
+            } finally {
+                RasterPool.release(image);
+            }
+        } finally {
+            reservation.close();
+        }
+    }
+
+    /**
+     * 依解碼計畫解碼並壓縮，解碼前先向 {@link MemoryGovernor} 預留預估的峰值用量。
+     * @param header 檔頭；無法辨識時為 null，此時無法預估用量
+     * @return 壓縮結果；解碼階段決定跳過或失敗時回傳 null
+     */
+    private static TargetSizeOutcome decodeAndCompress(Path inputPath, PooledBuffer source, Path outputFile, OutputSink sink, long originalSize, ImageHeader header,
+                                                       DecodePlan plan, CompressionParams params,
+                                                       Map<SimilarityKey, LearnedParams> cache) throws IOException {
+        long footprint = header == null ? 0 : MemoryGovernor.estimate(header, plan.subsampling(), params.targetMaxSizeBytes());
+        MemoryGovernor.Reservation reservation = MemoryGovernor.reserve(footprint);
+        try (DecodedImage decodedImage = decodeImageWithSubsampling(inputPath, source, params, plan)) {
+            if (decodedImage == null) {
+                return null;
+            }
+            log.debug("{} - 開始處理", inputPath);
+            return compressImageIteratively(decodedImage, originalSize, outputFile, sink, plan, params, cache);
+        } finally {
+            reservation.close();
+        }
+    }
+
+    /**
+     * @param source 預讀的檔案內容；為 null 時由檔案讀取
+     * @param plan   解碼計畫；為 null 時依 ImageReader 讀到的尺寸取參考解析度
+     */
+    private static DecodedImage decodeImageWithSubsampling(Path inputPath, PooledBuffer source, CompressionParams params,
+                                                           DecodePlan plan) throws IOException {
+        try (ImageInputStream in = source != null ? source.openStream() : ImageIO.createImageInputStream(inputPath)) {
             if (in == null) {
                 log.warn("{} - 無法建立圖片輸入流，跳過", inputPath);
                 return null;
             }
 
-            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
-            if (!readers.hasNext()) {
+            // 由 CodecPool 借出 reader，避免每個檔案都重新建立外掛實例
+            ImageReader reader = CodecPool.borrowReader(in);
+            if (reader == null) {
                 log.warn("{} - 找不到對應的圖片讀取器，跳過", inputPath);
                 return null;
             }
 
-            ImageReader reader = readers.next();
             reader.setInput(in, true, true);
 
             try {
@@ -130,41 +391,103 @@ public final class ImageCompression {
                 int height = reader.getHeight(0);
                 if (width <= params.minWidth() || height <= params.minHeight()) {
                     log.debug("{} - 跳過: 圖片尺寸 {}x{} 未超過最小壓縮門檻 {}x{}", inputPath, width, height, params.minWidth(), params.minHeight());
-                    reader.dispose();
+                    CodecPool.releaseReader(reader);
                     return null;
                 }
 
                 ImageReadParam param = reader.getDefaultReadParam();
                 // 核心優化：計算取樣率以降低記憶體使用
-                // 目標是讓圖片最長邊接近 4K (4096px) 進行初步讀取，可根據實際情況調整
-                int subsampling = 1;
-                int maxDim = Math.max(width, height);
-                final int PREFERRED_MAX_DIM = 4096;
-                if (maxDim > PREFERRED_MAX_DIM) {
-                    subsampling = (int) Math.floor((double) maxDim / PREFERRED_MAX_DIM);
-                }
+                // 參考解析度讓圖片最長邊接近 4K (4096px)；JPG 可依目標大小改用更粗的倍率，見 DecodePlan
+                int subsampling = plan != null ? plan.subsampling() : DecodePlan.referenceSubsampling(width, height);
 
                 // ImageIO 的 subsampling 只支援整數，並且對於某些格式(如隔行掃描的 JPG)有特定要求
+                // 取樣率是 2 的冪，對某些 JPG 解碼器更友好
                 if (subsampling > 1) {
-                    // 確保取樣率是 2 的冪，對某些 JPG 解碼器更友好
-                    subsampling = Integer.highestOneBit(subsampling);
+                    // 基線 JPG 直接以縮小的 IDCT 解出 1/2、1/4、1/8 解析度，不必先完整解碼再丟棄像素
+                    if (isJpeg(reader) && subsampling <= ScaledJpegDecoder.MAX_SCALE_DENOMINATOR) {
+                        BufferedImage scaled = decodeJpegScaled(inputPath, source, subsampling);
+                        if (scaled != null) {
+                            return new DecodedImage(scaled, reader);
+                        }
+                    }
+
                     log.debug("{} - 對圖片應用二次取樣，比率: {}", inputPath.getFileName(), subsampling);
                     param.setSourceSubsampling(subsampling, subsampling, 0, 0);
                 }
 
+                param.setDestination(pooledDestination(reader, width, height, Math.max(1, subsampling)));
                 BufferedImage image = reader.read(0, param);
-                // 注意：此時返回的 reader 不能關閉，因為 DecodedImage 的 AutoCloseable 會負責關閉
+                if (isJpeg(reader)) {
+                    image = normalizeJpegLayout(inputPath, image);
+                }
+                // 注意：此時返回的 reader 不能歸還，因為 DecodedImage 的 AutoCloseable 會負責歸還
                 return new DecodedImage(image, reader);
 
             } catch (Exception e) {
-                // 如果在讀取尺寸或應用取樣時出錯，安全地釋放 reader
-                reader.dispose();
+                // 如果在讀取尺寸或應用取樣時出錯，安全地歸還 reader
+                CodecPool.releaseReader(reader);
                 throw e; // 重新拋出異常，讓外層捕捉
             }
         }
     }
 
-    private static boolean compressImageIteratively(DecodedImage decodedImage, long originalSize, Path outputFile, CompressionParams params, Map<SimilarityKey, LearnedParams> cache) throws IOException {
+    /**
+     * 依讀取器預設的輸出類型向 {@link RasterPool} 借出目的影像，解碼直接寫入重用的點陣陣列。
+     * @return 目的影像；預設類型不經過池時為 null，由讀取器自行配置
+     */
+    private static BufferedImage pooledDestination(ImageReader reader, int width, int height, int subsampling) throws IOException {
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        if (!types.hasNext()) {
+            return null;
+        }
+        int type = types.next().getBufferedImageType();
+        if (!RasterPool.isPooled(type)) {
+            return null;
+        }
+        // 尺寸與 ImageReader 計算二次取樣後目的區域的方式相同；截斷的檔案不會寫入每個像素，重用的陣列需先清空
+        return RasterPool.acquire(type, (width + subsampling - 1) / subsampling, (height + subsampling - 1) / subsampling, true);
+    }
+
+    /**
+     * 解碼後立即轉為 JPEG 編碼最快的像素排列，之後的縮放與每次試壓都直接使用，不必各自再轉換一次；
+     * 轉換後原本的圖片歸還給 {@link RasterPool}。
+     */
+    private static BufferedImage normalizeJpegLayout(Path inputPath, BufferedImage image) {
+        BufferedImage normalized = ImageTools.toJpegLayout(image);
+        if (normalized != image) {
+            log.debug("{} - 像素排列由類型 {} 轉為 {}", inputPath.getFileName(), image.getType(), normalized.getType());
+            RasterPool.release(image);
+        }
+        return normalized;
+    }
+
+    private static boolean isJpeg(ImageReader reader) {
+        String formatName = reader.getOriginatingProvider().getFormatNames()[0].toLowerCase();
+        return "jpeg".equals(formatName) || "jpg".equals(formatName);
+    }
+
+    /**
+     * 以縮小的 IDCT 解碼 JPG。
+     * @param inputPath   JPG 檔案
+     * @param source      預讀的檔案內容，可為 null
+     * @param denominator 縮小倍率：2、4 或 8
+     * @return 解碼後的圖片；格式不支援或資料有誤時回傳 null，由呼叫端退回 ImageIO
+     */
+    private static BufferedImage decodeJpegScaled(Path inputPath, PooledBuffer source, int denominator) {
+        try {
+            BufferedImage image = ScaledJpegDecoder.decode(sourceBytes(inputPath, source), denominator);
+            log.debug("{} - 以 1/{} 解析度直接解碼 JPG", inputPath.getFileName(), denominator);
+            return image;
+        } catch (UnsupportedJpegException e) {
+            log.debug("{} - {}，改用 ImageIO 解碼", inputPath.getFileName(), e.getMessage());
+        } catch (IOException e) {
+            log.warn("{} - 縮小解碼失敗，改用 ImageIO 解碼: {}", inputPath.getFileName(), e.getMessage());
+        }
+        return null;
+    }
+
+    private static TargetSizeOutcome compressImageIteratively(DecodedImage decodedImage, long originalSize, Path outputFile, OutputSink sink, DecodePlan plan,
+                                                              CompressionParams params, Map<SimilarityKey, LearnedParams> cache) throws IOException {
         ImageReaderSpi spi = decodedImage.reader().getOriginatingProvider();
         String formatName = spi.getFormatNames()[0].toLowerCase();
         BufferedImage initialImage = decodedImage.image();
@@ -173,12 +496,14 @@ public final class ImageCompression {
             case "jpeg":
             case "jpg":
                 // *** 傳入 originalSize 和 cache ***
-                return compressJpgWithTargetSize(initialImage, originalSize, outputFile, params, cache);
+                int referenceWidth = plan != null ? plan.referenceWidth() : initialImage.getWidth();
+                int referenceHeight = plan != null ? plan.referenceHeight() : initialImage.getHeight();
+                return compressJpgWithTargetSize(initialImage, referenceWidth, referenceHeight, originalSize, outputFile, sink, params, cache);
             case "png":
-                return compressPngWithTargetSize(initialImage, outputFile, params);
+                return compressPngWithTargetSize(initialImage, outputFile, sink, params) ? TargetSizeOutcome.COMPRESSED : TargetSizeOutcome.FAILED;
             default:
                 log.warn("不支援的檔案格式: {} ...", formatName);
-                return false;
+                return TargetSizeOutcome.FAILED;
         }
     }
 
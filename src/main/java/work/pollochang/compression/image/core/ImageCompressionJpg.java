@@ -1,21 +1,32 @@
 package work.pollochang.compression.image.core;
 
 import lombok.extern.slf4j.Slf4j;
+import work.pollochang.compression.image.codec.CodecPool;
+import work.pollochang.compression.image.codec.JpegRequantizer;
+import work.pollochang.compression.image.codec.JpegSizeEstimator;
+import work.pollochang.compression.image.codec.JpegTilePredictor;
+import work.pollochang.compression.image.codec.ParallelJpegEncoder;
+import work.pollochang.compression.image.codec.SizePrediction;
+import work.pollochang.compression.image.codec.UnsupportedJpegException;
+import work.pollochang.compression.image.io.BoundedImageOutputStream;
+import work.pollochang.compression.image.io.OutputLimitExceededException;
+import work.pollochang.compression.image.io.OutputSink;
+import work.pollochang.compression.image.io.RasterPool;
 import work.pollochang.compression.image.learn.LearnedParams;
 import work.pollochang.compression.image.learn.jpg.SimilarityKey;
 import work.pollochang.compression.image.report.CompressionParams;
 import work.pollochang.compression.image.tools.FileTools;
+import work.pollochang.compression.image.tools.ParallelTools;
 
 import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
+import javax.imageio.event.IIOWriteProgressListener;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
 import javax.imageio.stream.ImageOutputStream;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.Map;
 
@@ -29,7 +40,7 @@ import static work.pollochang.compression.image.tools.ImageTools.resizeImage;
  * <ul>
  *   <li>根據最大目標檔案大小，自動尋找最佳 JPEG 壓縮品質。</li>
  *   <li>依據歷史學習（快取）資料加速壓縮流程。</li>
- *   <li>若快取失效，會進行圖片縮放與二分搜尋品質的標準壓縮流程。</li>
+ *   <li>若快取失效，會進行圖片縮放與品質搜尋（二分搜尋或模型插值）的標準壓縮流程。</li>
  * </ul>
  *
  * <p>壓縮流程大致如下：
@@ -57,11 +68,43 @@ import static work.pollochang.compression.image.tools.ImageTools.resizeImage;
 @Slf4j
 public class ImageCompressionJpg {
 
+    /** 搜尋時允許的最低品質 */
+    private static final float MIN_QUALITY = 0.01f;
+
+    /** 插值搜尋最多的試壓次數 */
+    private static final int INTERPOLATION_MAX_PROBES = 6;
+
+    /** 插值搜尋的落點：目標大小的 97% */
+    private static final double INTERPOLATION_GOAL_RATIO = 0.97;
+
+    /** 插值搜尋的收斂條件：結果達目標大小的 92% 即停止 */
+    private static final double INTERPOLATION_ACCEPT_RATIO = 0.92;
+
+    /** 尚無割線資料時，ln(檔案大小) 對 {@link #toLogScale(float)} 的先驗斜率 */
+    private static final double INTERPOLATION_PRIOR_SLOPE = 0.9;
+
+    /** DCT 預估搜尋最多的實際編碼次數 */
+    private static final int ESTIMATION_MAX_ENCODES = 4;
+
+    /** 固定級距縮放的倍率，也是每次跳躍至少要縮小的幅度 */
+    private static final double SCALE_STEP = 0.85;
+
+    /** 允許的最小縮放比例 */
+    private static final double MIN_SCALE = 0.1;
+
+    /** 依每像素位元組數跳躍的最多次數，超過後退回固定級距 */
+    private static final int SCALE_MAX_JUMPS = 4;
+
+    /** 跳躍的落點：最低品質的大小為目標的 92%，預留縮小後每像素位元組數上升的空間 */
+    private static final double SCALE_GOAL_RATIO = 0.92;
+
     /**
      * 將指定的 {@link BufferedImage} 壓縮為 JPEG 格式，並嘗試在不超過目標檔案大小的情況下輸出到指定路徑。
      *
      * <p>此方法會優先使用快取中學習到的最佳壓縮參數（品質與縮放比例）進行快速壓縮；
-     * 若無法滿足目標大小，則會透過多輪圖片縮放與品質二分搜尋，嘗試動態尋找一組可行的壓縮參數。</p>
+     * 若無法滿足目標大小，則會聯合搜尋縮放比例與品質：某個比例在最低品質下仍超標時，
+     * 以量到的每像素位元組數直接計算下一個可能達標的比例，而非逐級縮小 15%；
+     * 跳躍 {@value #SCALE_MAX_JUMPS} 次仍未達標時退回固定級距。</p>
      *
      * <p>壓縮成功後，會將圖片寫入指定的 {@code outputFile}，並將該參數加入學習快取中，
      * 以利未來處理相似圖片時直接重用。</p>
@@ -75,118 +118,545 @@ public class ImageCompressionJpg {
      * @throws IOException         當發生 I/O 錯誤（如檔案寫入失敗、壓縮過程錯誤等）時拋出。
      */
     public static boolean compressJpgWithTargetSize(BufferedImage originalImage, long originalSize, Path outputFile, CompressionParams params, Map<SimilarityKey, LearnedParams> cache) throws IOException {
+        return compressJpgWithTargetSize(originalImage, originalImage.getWidth(), originalImage.getHeight(),
+                originalSize, outputFile, OutputSink.FILE, params, cache) == TargetSizeOutcome.COMPRESSED;
+    }
+
+    /**
+     * 同 {@link #compressJpgWithTargetSize(BufferedImage, long, Path, CompressionParams, Map)}，
+     * 但圖片可能是以比參考解析度更粗的倍率解碼（見 {@link DecodePlan}）。
+     *
+     * <p>快取鍵與學到的縮放比例都換算回參考解析度。較粗的解碼在全尺寸、最低品質下若已能達標，
+     * 代表以參考解析度會保留更多像素，此時不寫出檔案並回傳 {@link TargetSizeOutcome#NEEDS_MORE_PIXELS}。</p>
+     *
+     * @param originalImage   解碼後的圖片
+     * @param referenceWidth  參考解析度的寬
+     * @param referenceHeight 參考解析度的高
+     * @param sink            壓縮結果的去處
+     * @return 壓縮結果
+     */
+    static TargetSizeOutcome compressJpgWithTargetSize(BufferedImage originalImage, int referenceWidth, int referenceHeight,
+                                                       long originalSize, Path outputFile, OutputSink sink,
+                                                       CompressionParams params, Map<SimilarityKey, LearnedParams> cache) throws IOException {
+        // 解碼圖片相對於參考解析度的比例
+        double referenceScale = Math.min(1.0, (double) Math.max(originalImage.getWidth(), originalImage.getHeight())
+                / Math.max(referenceWidth, referenceHeight));
+
         // 1. 產生快取 Key
-        SimilarityKey key = createKey(originalImage, originalSize);
+        SimilarityKey key = createKey(referenceWidth, referenceHeight, originalSize);
         LearnedParams cachedParams = cache.get(key);
 
         if (cachedParams != null) {
-            if (tryCachedParams(originalImage, outputFile, params, cachedParams)) {
+            double cachedScale = cachedParams.scale() / referenceScale;
+            if (cachedScale > 1.0) {
+                return TargetSizeOutcome.NEEDS_MORE_PIXELS;
+            }
+            if (tryCachedParams(originalImage, outputFile, sink, params, new LearnedParams(cachedParams.quality(), cachedScale))) {
                 log.info("快取成功: {} 使用學習參數直接達成目標。", outputFile.getFileName());
-                return true;
+                return TargetSizeOutcome.COMPRESSED;
             } else {
                 log.warn("快取失效: {} 使用學習參數後檔案仍超標，退回標準流程。", outputFile.getFileName());
             }
         }
 
-        final double SCALE_STEP = 0.85;
+        long target = params.targetMaxSizeBytes();
+        // 較粗的解碼先確認全尺寸的最低品質仍超標，否則需要更多像素
+        long coarseFloor = -1L;
+        if (referenceScale < 1.0) {
+            try (BoundedImageOutputStream probe = new BoundedImageOutputStream((int) target, target)) {
+                coarseFloor = probeJpgSize(originalImage, probe, MIN_QUALITY, JpegEncoding.of(originalImage, params)).bytes();
+            }
+            if (coarseFloor <= target) {
+                log.debug("{} - 解碼解析度 {}% 在最低品質下已達標，需要更多像素", outputFile.getFileName(),
+                        (int) (referenceScale * 100));
+                return TargetSizeOutcome.NEEDS_MORE_PIXELS;
+            }
+        }
+
         BufferedImage currentImage = originalImage;
-        boolean isOriginal = true;
 
-        try {
-            for (double scale = 1.0; scale > 0.1; scale = (scale == 1.0) ? SCALE_STEP : scale * SCALE_STEP) {
+        // 大圖先以抽樣區塊預測起始的縮放比例與品質，省去從 1.0 開始逐級試壓
+        double startScale = 1.0;
+        float qualityHint = -1.0f;
+        JpegTilePredictor predictor = null;
+        if (params.predictionMinPixels() > 0
+                && (long) originalImage.getWidth() * originalImage.getHeight() >= params.predictionMinPixels()) {
+            predictor = JpegTilePredictor.sample(originalImage, params.resizeFilter(),
+                    (tile, quality) -> encodedSize(tile, quality, params.entropyMode()));
+            SizePrediction prediction = predictor.predictStart(params.targetMaxSizeBytes(), MIN_QUALITY, params.quality(), SCALE_STEP);
+            if (prediction == null) {
+                // 預測不可用時照原本的方式從原尺寸開始搜尋
+                predictor = null;
+            } else {
+                startScale = prediction.scale();
+                qualityHint = prediction.quality();
+                log.debug("{} - 抽樣預測起點 -> (q={}, s={}), 預測大小: {}", outputFile.getFileName(),
+                        String.format("%.3f", qualityHint), String.format("%.2f", startScale),
+                        FileTools.formatFileSize(prediction.predictedBytes()));
+            }
+        }
+
+        double scale = startScale;
+        // 每個比例都從不小於它的最小一層縮放，不必每次重新讀取整張原圖
+        try (ProbeBuffers buffers = new ProbeBuffers(target);
+             ResizePyramid pyramid = new ResizePyramid(originalImage, params.resizeFilter(),
+                     params.parallelResizeMinPixels())) {
+            for (int step = 0; scale >= MIN_SCALE; step++) {
+                buffers.reset();
                 if (scale < 1.0) {
-                    if (!isOriginal) currentImage.flush();
-                    currentImage = resizeImage(originalImage, scale);
-                    isOriginal = false;
+                    currentImage = pyramid.resize(scale);
                     log.debug("檔案仍然過大，縮放至 {}%", (int) (scale * 100));
                 }
 
-                // ==================== 【修改核心】 ====================
-                // 刪除舊的 for-loop，改為呼叫二分搜尋法
-                float bestQuality = findBestQualityByBinarySearch(currentImage, params.targetMaxSizeBytes(), params.quality());
+                JpegEncoding encoding = JpegEncoding.of(currentImage, params);
+                // 先以最低品質確認這個比例可行，超標時不必搜尋品質；較粗的解碼已試壓過全尺寸
+                long floorSize = step == 0 && scale == 1.0 && coarseFloor >= 0 ? coarseFloor
+                        : probeFloor(currentImage, buffers, target, encoding);
+                float bestQuality = -1.0f;
+                if (floorSize <= target) {
+                    // 依設定的搜尋策略尋找品質，預測的品質只作為第一個縮放比例的起點
+                    bestQuality = findBestQuality(currentImage, params, step == 0 ? qualityHint : -1.0f, encoding, buffers);
+                    if (bestQuality <= 0) {
+                        bestQuality = MIN_QUALITY;
+                    }
+                }
 
                 // 如果找到了合適的品質 (bestQuality > 0)
                 if (bestQuality > 0) {
-                    saveCompressedImage(currentImage, outputFile, bestQuality, params.targetMaxSizeBytes());
-                    cache.put(key, new LearnedParams(bestQuality, scale));
-                    log.info("{} - 學習並儲存新參數 -> (q={}, s={})", outputFile.getFileName(), String.format("%.3f", bestQuality), String.format("%.2f", scale));
-                    return true;
+                    long savedSize = saveCompressedImage(currentImage, outputFile, sink, bestQuality, buffers, encoding);
+                    if (predictor != null) {
+                        long predicted = predictor.predict(scale, bestQuality);
+                        double error = JpegTilePredictor.recordError(predicted, savedSize);
+                        log.debug("{} - 抽樣預測誤差: {}% (預測 {}, 實際 {})", outputFile.getFileName(), String.format("%.1f", error),
+                                FileTools.formatFileSize(predicted), FileTools.formatFileSize(savedSize));
+                    }
+                    cache.put(key, new LearnedParams(bestQuality, scale * referenceScale));
+                    log.info("{} - 學習並儲存新參數 -> (q={}, s={})", outputFile.getFileName(), String.format("%.3f", bestQuality), String.format("%.2f", scale * referenceScale));
+                    return TargetSizeOutcome.COMPRESSED;
                 }
+
+                scale = nextScale(scale, floorSize, target, step);
             }
-        } finally {
-            if (!isOriginal && currentImage != null) currentImage.flush();
         }
 
         log.warn("無法在目標大小限制下完成壓縮: {}", outputFile.getFileName());
-        return false;
+        return TargetSizeOutcome.FAILED;
+    }
+
+    /**
+     * 以最低品質試壓一次；達標時保留在 {@code buffers} 中，搜尋不到更高的品質時可直接輸出。
+     */
+    private static long probeFloor(BufferedImage image, ProbeBuffers buffers, long target,
+                                   JpegEncoding encoding) throws IOException {
+        long size = probeJpgSize(image, buffers.probe(), MIN_QUALITY, encoding).bytes();
+        if (size <= target) {
+            buffers.keep(MIN_QUALITY);
+        }
+        return size;
+    }
+
+    /**
+     * 計算下一個要嘗試的縮放比例。
+     *
+     * <p>同一張圖在相近比例下每像素位元組數大致不變，因此檔案大小約與比例平方成正比：
+     * {@code next = scale × √(goal / floorSize)}。結果不大於固定級距，確保每次至少縮小 15%；
+     * 跳躍次數用完後只走固定級距。</p>
+     *
+     * @param scale      目前的縮放比例
+     * @param floorSize  目前比例以最低品質編碼的大小（超標時為推估值）
+     * @param target     目標檔案大小上限
+     * @param step       目前是第幾次嘗試（從 0 開始）
+     * @return 下一個縮放比例，小於 {@link #MIN_SCALE} 表示放棄
+     */
+    static double nextScale(double scale, long floorSize, long target, int step) {
+        double geometric = scale * SCALE_STEP;
+        if (step >= SCALE_MAX_JUMPS || floorSize <= 0) {
+            return geometric;
+        }
+        double jump = scale * Math.sqrt(target * SCALE_GOAL_RATIO / floorSize);
+        return Math.min(geometric, Math.max(MIN_SCALE, jump));
     }
 
     /**
      * 將指定的 {@link BufferedImage} 圖像以指定的壓縮品質轉換為 JPEG 格式，
-     * 並寫入至指定的 {@link OutputStream} 輸出串流。
+     * 並寫入至指定的 {@link ImageOutputStream} 輸出串流。
      *
-     * <p>此方法會使用 Java 的 {@link ImageIO} API 和 {@link ImageWriter}
-     * 對圖像進行 JPEG 壓縮，並設置明確的壓縮模式與品質等級。</p>
+     * <p>此方法會使用由 {@link CodecPool} 借出的 {@link ImageWriter}
+     * 對圖像進行 JPEG 壓縮，並設置明確的壓縮模式與品質等級。
+     * 若 {@code ios} 為 {@link BoundedImageOutputStream}，超過上限時會拋出
+     * {@link OutputLimitExceededException} 並立即中止編碼。</p>
      *
-     * @param image   要壓縮的圖片，必須為非 null 的 {@link BufferedImage}。
-     * @param os      輸出串流，用來接收 JPEG 壓縮後的影像資料。
-     * @param quality 壓縮品質，數值範圍為 0.0f（最低品質，最大壓縮）到 1.0f（最高品質，最小壓縮）。
-     * @throws IOException 如果在建立輸出串流或圖像寫入過程中發生 I/O 錯誤。
+     * @param image    要壓縮的圖片，必須為非 null 的 {@link BufferedImage}。
+     * @param ios      輸出串流，用來接收 JPEG 壓縮後的影像資料。
+     * @param quality  壓縮品質，數值範圍為 0.0f（最低品質，最大壓縮）到 1.0f（最高品質，最小壓縮）。
+     * @param mode     熵編碼模式
+     * @param listener 編碼進度監聽器，可為 null。
+     * @throws IOException 如果在圖像寫入過程中發生 I/O 錯誤。
      */
-    private static void compressJpgToStream(BufferedImage image, OutputStream os, float quality) throws IOException {
-        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
-        try (ImageOutputStream ios = ImageIO.createImageOutputStream(os)) {
+    private static void compressJpgToStream(BufferedImage image, ImageOutputStream ios, float quality,
+                                            JpegEntropyMode mode, IIOWriteProgressListener listener) throws IOException {
+        ImageWriter writer = CodecPool.borrowWriter("jpg");
+        try {
+            if (listener != null) {
+                writer.addIIOWriteProgressListener(listener);
+            }
             writer.setOutput(ios);
             ImageWriteParam param = writer.getDefaultWriteParam();
             param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
             param.setCompressionQuality(quality);
+            if (mode == JpegEntropyMode.PROGRESSIVE) {
+                // 漸進式掃描一律使用最佳化的 Huffman 表
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            } else if (mode == JpegEntropyMode.OPTIMIZED && param instanceof JPEGImageWriteParam jpegParam) {
+                jpegParam.setOptimizeHuffmanTables(true);
+            }
             writer.write(null, new IIOImage(image, null, null), param);
         } finally {
-            writer.dispose();
+            // 歸還前會 reset()，一併移除進度監聽器
+            CodecPool.releaseWriter(writer);
+        }
+    }
+
+    /**
+     * 以指定品質試壓一次並回傳 JPEG 大小。
+     *
+     * <p>輸出寫入具上限的 {@code out}，一旦超過 {@link BoundedImageOutputStream#getLimit()} 即中止編碼。
+     * 中止時依已寫入的位元組數與編碼進度推估完整大小，回傳值必定大於上限，
+     * 呼叫端只需以 {@code size <= limit} 判斷是否達標。最佳化 Huffman 表與漸進式模式會在讀完整張圖後才輸出，
+     * 中止時無從推估，回傳值只是大於上限的下限，並以 {@link ProbeSize#lowerBound()} 標示。</p>
+     *
+     * @param image    要壓縮的圖片
+     * @param out      可重複使用的輸出緩衝區，呼叫前內容會被清空
+     * @param quality  壓縮品質
+     * @param encoding 編碼方式
+     * @return 實際大小；若超過上限則為推估的完整大小或下限
+     * @throws IOException IO 錯誤
+     */
+    private static ProbeSize probeJpgSize(BufferedImage image, BoundedImageOutputStream out, float quality,
+                                          JpegEncoding encoding) throws IOException {
+        out.clear();
+        if (encoding.parallel()) {
+            // 只借用批次中閒置的核心；批次各核心都在處理圖片時改以 ImageIO 在目前執行緒編碼
+            int helpers = ParallelTools.acquireHelpers(ParallelTools.pool().getParallelism() - 1);
+            try {
+                if (helpers > 0) {
+                    // 分段編碼自行在超過上限時停止並推估完整大小
+                    long size = ParallelJpegEncoder.encode(encoding.planes().of(image, helpers + 1), quality, out,
+                            out.getLimit(), ParallelTools.pool(), helpers + 1);
+                    return new ProbeSize(size, size == out.getLimit() + 1);
+                }
+            } finally {
+                ParallelTools.releaseHelpers(helpers);
+            }
+        }
+        EncodeProgress progress = new EncodeProgress();
+        try {
+            compressJpgToStream(image, out, quality, encoding.entropyMode(), progress);
+            return new ProbeSize(out.size(), false);
+        } catch (OutputLimitExceededException e) {
+            log.trace(" 試壓超過上限，於進度 {}% 中止", (int) progress.percentageDone);
+            if (encoding.entropyMode() != JpegEntropyMode.STANDARD) {
+                // 整段掃描在最後才輸出，寫入量與進度無關
+                return new ProbeSize(e.getLimit() + 1, true);
+            }
+            // 寫入的位元組約與已處理的掃描線成正比，據此外插完整大小
+            float done = progress.percentageDone / 100.0f;
+            long estimated = done > 0.05f ? (long) (e.getBytesWritten() / done) : 0L;
+            return estimated > e.getLimit() ? new ProbeSize(estimated, false) : new ProbeSize(e.getLimit() + 1, true);
         }
     }
 
+    /**
+     * 依 {@link CompressionParams#searchMode()} 選擇品質搜尋策略。
+     *
+     * @param image        要壓縮的圖片
+     * @param params       壓縮參數，提供目標大小、品質上限與搜尋策略
+     * @param startQuality 預測的起始品質，小於等於 0 表示沒有預測
+     * @param encoding     這個尺寸的編碼方式，與最低品質試壓及最終輸出共用
+     * @param buffers      試壓緩衝區，搜尋結束時保存找到的品質的編碼結果
+     * @return 找到的最佳品質，如果找不到則返回 -1.0f
+     * @throws IOException IO 錯誤
+     */
+    private static float findBestQuality(BufferedImage image, CompressionParams params, float startQuality,
+                                         JpegEncoding encoding, ProbeBuffers buffers) throws IOException {
+        return switch (params.searchMode()) {
+            case INTERPOLATION -> findBestQualityByInterpolation(image, params.targetMaxSizeBytes(), params.quality(), startQuality, encoding, buffers);
+            // DCT 預估本身即可定位品質，不需要起點
+            case ESTIMATED -> findBestQualityByEstimation(image, params.targetMaxSizeBytes(), params.quality(), encoding, buffers);
+            case BINARY -> findBestQualityByBinarySearch(image, params.targetMaxSizeBytes(), params.quality(), startQuality, encoding, buffers);
+        };
+    }
+
+    /**
+     * 以「檔案大小對品質」的模型插值尋找能滿足目標檔案大小的最佳壓縮品質。
+     *
+     * <p>JPEG 的量化表與 {@link #toLogScale(float)} 所得的 x 成指數關係，
+     * 因此 ln(檔案大小) 對 x 大致呈線性。本方法先以品質上限試壓一次，
+     * 之後以割線（只有單側資料時）或區間內插（已夾住目標時）直接跳到預測的品質，
+     * 通常 2-4 次編碼即可收斂，取代二分搜尋固定的 7-8 次編碼。</p>
+     *
+     * <p>超標的試壓只得到大小的下限時（見 {@link ProbeSize}），該點不能用來內插或計算斜率：
+     * 尚無達標的試壓時往呼叫端已確認可達標的最低品質二分；已有達標的試壓時，
+     * 以實際量到的點的割線斜率由達標端外插，並限制在區間內。</p>
+     *
+     * @param image              要壓縮的圖片
+     * @param targetMaxSizeBytes 目標檔案大小上限
+     * @param initialQuality     初始的最高品質（搜尋範圍的上限）
+     * @param startQuality       第一次試壓的品質，小於等於 0 時使用品質上限
+     * @param encoding           試壓使用的編碼方式
+     * @param buffers            試壓緩衝區，保存達標的最高品質的編碼結果
+     * @return 找到的最佳品質，如果找不到則返回 -1.0f
+     * @throws IOException IO 錯誤
+     */
+    private static float findBestQualityByInterpolation(BufferedImage image, long targetMaxSizeBytes, float initialQuality,
+                                                        float startQuality, JpegEncoding encoding,
+                                                        ProbeBuffers buffers) throws IOException {
+        log.trace("開始插值搜尋品質，目標大小: <= {}", FileTools.formatFileSize(targetMaxSizeBytes));
+        final float maxQuality = Math.min(1.0f, initialQuality);
+        // 以略低於上限的大小為落點，避免預測誤差使結果再次超標
+        final double goal = Math.log(targetMaxSizeBytes * INTERPOLATION_GOAL_RATIO);
+
+        float lowQuality = -1.0f;   // 已知達標的最高品質
+        double lowX = 0, lowY = 0;
+        float highQuality = -1.0f;  // 已知超標的最低品質
+        double highX = 0, highY = 0;
+        boolean highBound = false;  // 超標端的大小只是下限
+        // 最近兩個實際量到大小（非下限）的點，用於割線斜率
+        double lastX = Double.NaN, lastY = Double.NaN;
+        double prevX = Double.NaN, prevY = Double.NaN;
+        float probe = startQuality > 0 ? Math.max(MIN_QUALITY, Math.min(maxQuality, startQuality)) : maxQuality;
+
+        for (int i = 0; i < INTERPOLATION_MAX_PROBES; i++) {
+            // 超標的試壓會提前中止，回傳推估的完整大小供割線使用
+            ProbeSize probed = probeJpgSize(image, buffers.probe(), probe, encoding);
+            long currentSize = probed.bytes();
+            double x = toLogScale(probe);
+            double y = Math.log(Math.max(1L, currentSize));
+
+            log.trace(" 測試品質: {}, 檔案大小: {}{}", String.format("%.3f", probe), FileTools.formatFileSize(currentSize),
+                    probed.lowerBound() ? " (下限)" : "");
+            if (!probed.lowerBound()) {
+                prevX = lastX;
+                prevY = lastY;
+                lastX = x;
+                lastY = y;
+            }
+
+            if (currentSize <= targetMaxSizeBytes) {
+                if (probe > lowQuality) {
+                    lowQuality = probe;
+                    buffers.keep(probe);
+                    lowX = x;
+                    lowY = y;
+                }
+                // 已達品質上限，或已足夠接近目標大小
+                if (probe >= maxQuality || currentSize >= targetMaxSizeBytes * INTERPOLATION_ACCEPT_RATIO) {
+                    break;
+                }
+            } else {
+                if (highQuality < 0 || probe < highQuality) {
+                    highQuality = probe;
+                    highX = x;
+                    highY = y;
+                    highBound = probed.lowerBound();
+                }
+                // 最低品質仍超標，此尺寸無解
+                if (probe <= MIN_QUALITY) {
+                    break;
+                }
+            }
+
+            if (lowQuality > 0 && highQuality > 0 && (highQuality - lowQuality) < 0.01f) {
+                break;
+            }
+
+            // 以最近兩個量到的點的割線斜率外插，不足兩點時使用先驗斜率
+            double slope = Double.isNaN(prevX) || Math.abs(lastX - prevX) < 1e-6 ? INTERPOLATION_PRIOR_SLOPE : (lastY - prevY) / (lastX - prevX);
+            if (slope < 0.05) {
+                slope = INTERPOLATION_PRIOR_SLOPE;
+            }
+            double nextX;
+            if (highBound && lowQuality < 0) {
+                // 超標端只知道大於目標，以它外插會停滯在原地：往確認可達標的最低品質二分
+                nextX = (toLogScale(MIN_QUALITY) + highX) / 2;
+            } else if (lowQuality > 0 && highQuality > 0) {
+                // 已夾住目標：在區間內內插，並避開端點以免收斂停滯；超標端只是下限時改由達標端外插
+                double t = highBound ? (goal - lowY) / slope / (highX - lowX) : (goal - lowY) / (highY - lowY);
+                t = Math.max(0.1, Math.min(0.9, t));
+                nextX = lowX + t * (highX - lowX);
+            } else {
+                // 只有單側資料，且這次的大小是量到的
+                nextX = x + (goal - y) / slope;
+            }
+
+            float next = Math.max(MIN_QUALITY, Math.min(maxQuality, fromLogScale(nextX)));
+            if (Math.abs(next - probe) < 0.002f) {
+                break;
+            }
+            probe = next;
+        }
+
+        if (lowQuality > 0) {
+            log.trace("插值搜尋找到最佳品質: {}", String.format("%.3f", lowQuality));
+        } else {
+            log.trace("插值搜尋未能找到滿足條件的品質。");
+        }
+
+        return lowQuality;
+    }
+
+    /**
+     * 以 {@link JpegSizeEstimator} 縮小品質區間，再以少數幾次實際編碼確認。
+     *
+     * <p>DCT 係數只計算一次，每個候選品質僅需量化並累計 Huffman 位元數，
+     * 因此可在預估值上做細緻的二分搜尋；每次完整的實際編碼後以「實際 / 預估」的比例校正下一輪的目標，
+     * 通常 1-2 次實際編碼即可確認結果。</p>
+     *
+     * <p>超標的試壓會提前中止，只有推估值或下限（見 {@link ProbeSize}），不用來校正；
+     * 有超標的試壓後改在區間內二分，尚無達標的試壓時以呼叫端已確認可達標的最低品質為下端，
+     * 校正後的預估落在中點以下時才採用預估。</p>
+     *
+     * @param image              要壓縮的圖片
+     * @param targetMaxSizeBytes 目標檔案大小上限
+     * @param initialQuality     初始的最高品質（搜尋範圍的上限）
+     * @param encoding           試壓使用的編碼方式
+     * @param buffers            試壓緩衝區，保存達標的最高品質的編碼結果
+     * @return 找到的最佳品質，如果找不到則返回 -1.0f
+     * @throws IOException IO 錯誤
+     */
+    private static float findBestQualityByEstimation(BufferedImage image, long targetMaxSizeBytes, float initialQuality,
+                                                     JpegEncoding encoding, ProbeBuffers buffers) throws IOException {
+        log.trace("開始 DCT 預估搜尋品質，目標大小: <= {}", FileTools.formatFileSize(targetMaxSizeBytes));
+        final float maxQuality = Math.min(1.0f, initialQuality);
+        JpegSizeEstimator estimator = JpegSizeEstimator.of(image);
+
+        double calibration = 1.0;   // 實際大小 / 預估大小
+        float lowQuality = -1.0f;   // 已確認達標的最高品質
+        float highQuality = -1.0f;  // 已確認超標的最低品質
+
+        for (int encodes = 0; encodes < ESTIMATION_MAX_ENCODES; ) {
+            float lower = lowQuality > 0 ? lowQuality : MIN_QUALITY;
+            long goal = (long) (targetMaxSizeBytes * INTERPOLATION_GOAL_RATIO / calibration);
+            float probe;
+            if (highQuality > 0) {
+                // 已有超標的試壓：預估在超標端已失準，改在區間內二分；以達標端校正的預估落在中點以下時採用預估
+                float middle = (lower + highQuality) / 2.0f;
+                float estimated = estimator.findQuality(goal, lower, highQuality - 0.002f);
+                probe = estimated > lower ? Math.min(middle, estimated) : middle;
+                probe = Math.max(probe, lower + (highQuality - lower) * 0.1f);
+            } else {
+                probe = estimator.findQuality(goal, lower, maxQuality);
+                if (probe < 0) {
+                    // 預估連下限都超標，仍以下限實測一次確認
+                    probe = lower;
+                }
+            }
+            if (lowQuality > 0 && probe <= lowQuality + 0.001f) {
+                break;
+            }
+
+            // 呼叫端以最低品質試壓過的結果仍在緩衝區中時直接沿用，不計入編碼次數
+            boolean reused = buffers.holds(probe);
+            long currentSize;
+            if (reused) {
+                currentSize = buffers.best().size();
+            } else {
+                currentSize = probeJpgSize(image, buffers.probe(), probe, encoding).bytes();
+                encodes++;
+            }
+            log.trace(" 測試品質: {}, 檔案大小: {}", String.format("%.3f", probe), FileTools.formatFileSize(currentSize));
+
+            if (currentSize <= targetMaxSizeBytes) {
+                lowQuality = probe;
+                if (!reused) {
+                    buffers.keep(probe);
+                }
+                if (probe >= maxQuality || currentSize >= targetMaxSizeBytes * INTERPOLATION_ACCEPT_RATIO) {
+                    break;
+                }
+                calibration = (double) currentSize / Math.max(1L, estimator.estimate(probe));
+            } else {
+                highQuality = probe;
+                if (probe <= MIN_QUALITY) {
+                    break;
+                }
+            }
+
+            if (lowQuality > 0 && highQuality > 0 && (highQuality - lowQuality) < 0.01f) {
+                break;
+            }
+        }
+
+        if (lowQuality > 0) {
+            log.trace("DCT 預估搜尋找到最佳品質: {}", String.format("%.3f", lowQuality));
+        } else {
+            log.trace("DCT 預估搜尋未能找到滿足條件的品質。");
+        }
+
+        return lowQuality;
+    }
+
+    /**
+     * 將 {@link ImageWriteParam} 的品質值轉換為插值用的座標：
+     * 依 IJG 的換算取得量化表縮放倍率 s，回傳 -ln(s)，品質越高值越大。
+     */
+    static double toLogScale(float quality) {
+        float q = Math.max(MIN_QUALITY, Math.min(1.0f, quality));
+        double linear = q < 0.5f ? 0.5 / q : 2.0 - 2.0 * q;
+        return -Math.log(Math.max(0.01, linear));
+    }
+
+    /**
+     * {@link #toLogScale(float)} 的反函數。
+     */
+    static float fromLogScale(double x) {
+        double linear = Math.exp(-x);
+        return (float) (linear > 1.0 ? 0.5 / linear : 1.0 - linear / 2.0);
+    }
+
     /**
      * 使用二分搜尋法尋找能滿足目標檔案大小的最佳壓縮品質。
      *
      * @param image              要壓縮的圖片
      * @param targetMaxSizeBytes 目標檔案大小上限
      * @param initialQuality     初始的最高品質（搜尋範圍的上限）
+     * @param startQuality       第一次試壓的品質，小於等於 0 時從區間中點開始
+     * @param encoding           試壓使用的編碼方式
+     * @param buffers            試壓緩衝區，保存達標的最高品質的編碼結果
      * @return 找到的最佳品質，如果找不到則返回 -1.0f
      * @throws IOException IO 錯誤
      */
-    private static float findBestQualityByBinarySearch(BufferedImage image, long targetMaxSizeBytes, float initialQuality) throws IOException {
+    private static float findBestQualityByBinarySearch(BufferedImage image, long targetMaxSizeBytes, float initialQuality,
+                                                       float startQuality, JpegEncoding encoding,
+                                                       ProbeBuffers buffers) throws IOException {
         log.trace("開始二分搜尋品質，目標大小: <= {}", FileTools.formatFileSize(targetMaxSizeBytes));
         float lowQuality = 0.0f;
         float highQuality = initialQuality;
         float bestQuality = -1.0f;
 
         // 通常 7-8 次迭代對於 0-1.0 的範圍已經有足夠的精度
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream((int) targetMaxSizeBytes)) {
-            // 通常 7-8 次迭代對於 0-1.0 的範圍已經有足夠的精度
-            for (int i = 0; i < 8; i++) {
-                float midQuality = (lowQuality + highQuality) / 2.0f;
+        for (int i = 0; i < 8; i++) {
+            float midQuality = (i == 0 && startQuality > 0) ? Math.min(startQuality, highQuality) : (lowQuality + highQuality) / 2.0f;
 
-                if (midQuality < 0.01f) {
-                    break;
-                }
+            if (midQuality < MIN_QUALITY) {
+                break;
+            }
 
-                bos.reset(); // 【優化】重置串流，準備下次寫入
-                compressJpgToStream(image, bos, midQuality);
-                long currentSize = bos.size();
+            // 超過目標大小時提前中止編碼，不必寫完整張圖
+            long currentSize = probeJpgSize(image, buffers.probe(), midQuality, encoding).bytes();
 
-                log.trace(" 測試品質: {:.3f}, 檔案大小: {}", midQuality, FileTools.formatFileSize(currentSize));
+            log.trace(" 測試品質: {:.3f}, 檔案大小: {}", midQuality, FileTools.formatFileSize(currentSize));
 
-                if (currentSize <= targetMaxSizeBytes) {
-                    bestQuality = midQuality;
-                    lowQuality = midQuality;
-                } else {
-                    highQuality = midQuality;
-                }
+            if (currentSize <= targetMaxSizeBytes) {
+                bestQuality = midQuality;
+                lowQuality = midQuality;
+                buffers.keep(midQuality);
+            } else {
+                highQuality = midQuality;
+            }
 
-                if ((highQuality - lowQuality) < 0.01f) {
-                    break;
-                }
+            if ((highQuality - lowQuality) < 0.01f) {
+                break;
             }
         }
 
@@ -199,6 +669,91 @@ public class ImageCompressionJpg {
         return bestQuality;
     }
 
+    /**
+     * 不縮放尺寸，直接在 DCT 係數域重新量化 JPG 以達到目標大小。
+     *
+     * <p>先以品質上限試轉，達標即完成；否則確認最低品質可以達標後，以二分搜尋找出最高的可行品質。
+     * 最低品質仍超標代表必須縮放，回傳 -1 交回一般的解碼流程。每次試轉都寫入有上限的緩衝區，超標即中止。</p>
+     *
+     * @param source     原始 JPG 檔案內容
+     * @param outputFile 輸出的檔案路徑
+     * @param sink       壓縮結果的去處
+     * @param params     壓縮參數，提供目標大小、品質上限與熵編碼模式
+     * @return 成功時為使用的品質，否則為 -1.0f
+     * @throws UnsupportedJpegException 非基線或 RGB JPG
+     * @throws IOException              資料損毀或寫入失敗
+     */
+    public static float requantizeToTarget(ByteBuffer source, Path outputFile, OutputSink sink, CompressionParams params) throws IOException {
+        long target = params.targetMaxSizeBytes();
+        // 係數域只能輸出基線掃描，漸進式模式退而使用最佳化的 Huffman 表
+        boolean optimize = params.entropyMode() != JpegEntropyMode.STANDARD;
+        try (BoundedImageOutputStream bos = new BoundedImageOutputStream((int) target, target)) {
+            float bestQuality = -1.0f;
+            if (requantizedFits(source, params.quality(), optimize, bos)) {
+                bestQuality = params.quality();
+            } else if (requantizedFits(source, MIN_QUALITY, optimize, bos)) {
+                float lowQuality = MIN_QUALITY;
+                float highQuality = params.quality();
+                bestQuality = MIN_QUALITY;
+                boolean bufferHoldsBest = true;
+                for (int i = 0; i < 7 && (highQuality - lowQuality) >= 0.01f; i++) {
+                    float midQuality = (lowQuality + highQuality) / 2.0f;
+                    if (requantizedFits(source, midQuality, optimize, bos)) {
+                        bestQuality = midQuality;
+                        lowQuality = midQuality;
+                        bufferHoldsBest = true;
+                    } else {
+                        highQuality = midQuality;
+                        bufferHoldsBest = false;
+                    }
+                }
+                // 最後一次試轉失敗時，緩衝區內不是最佳結果，需要重新轉一次
+                if (!bufferHoldsBest && !requantizedFits(source, bestQuality, optimize, bos)) {
+                    return -1.0f;
+                }
+            } else {
+                log.debug("{} - 最低品質重新量化仍超過目標大小，需要縮放", outputFile.getFileName());
+                return -1.0f;
+            }
+            sink.write(outputFile, bos);
+            if (optimize && EntropyModeSampler.shouldSample()) {
+                sampleRequantizedModes(source, bestQuality);
+            }
+            log.trace("重新量化找到最佳品質: {}", bestQuality);
+            return bestQuality;
+        }
+    }
+
+    /**
+     * 以指定品質重新量化一次，回傳是否未超過緩衝區的上限。
+     */
+    private static boolean requantizedFits(ByteBuffer source, float quality, boolean optimizeHuffman,
+                                           BoundedImageOutputStream out) throws IOException {
+        out.clear();
+        try {
+            JpegRequantizer.transcode(source, quality, out, optimizeHuffman);
+            return true;
+        } catch (OutputLimitExceededException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 以最佳化與標準 Huffman 表各重新量化一次，記錄大小與 CPU 時間的差異。
+     */
+    private static void sampleRequantizedModes(ByteBuffer source, float quality) throws IOException {
+        try (BoundedImageOutputStream bos = new BoundedImageOutputStream(source.remaining())) {
+            long start = EntropyModeSampler.cpuTime();
+            JpegRequantizer.transcode(source, quality, bos, true);
+            long optimizedCpu = EntropyModeSampler.cpuTime() - start;
+            long optimizedBytes = bos.size();
+            bos.clear();
+            start = EntropyModeSampler.cpuTime();
+            JpegRequantizer.transcode(source, quality, bos, false);
+            EntropyModeSampler.record(optimizedBytes, optimizedCpu, bos.size(), EntropyModeSampler.cpuTime() - start);
+        }
+    }
+
     /**
      * 嘗試使用快取中的學習參數（品質與縮放比例）對原始圖片進行壓縮，
      * 並判斷是否能在目標檔案大小限制內成功輸出壓縮結果。
@@ -208,29 +763,31 @@ public class ImageCompressionJpg {
      *
      * @param originalImage 原始未壓縮的 {@link BufferedImage} 影像。
      * @param outputFile    壓縮後輸出的檔案路徑。
+     * @param sink          壓縮結果的去處。
      * @param params        壓縮參數，包含目標檔案大小等限制。
      * @param cachedParams  快取中學習到的壓縮參數（品質與縮放比例）。
      * @return 如果使用快取參數成功壓縮並寫入檔案且滿足檔案大小限制，則回傳 {@code true}；否則回傳 {@code false}。
      * @throws IOException 如果在壓縮或寫入檔案過程中發生 I/O 錯誤時拋出。
      */
-    private static boolean tryCachedParams(BufferedImage originalImage, Path outputFile, CompressionParams params,
+    private static boolean tryCachedParams(BufferedImage originalImage, Path outputFile, OutputSink sink, CompressionParams params,
                                            LearnedParams cachedParams) throws IOException {
         BufferedImage imageToCompress = originalImage;
         boolean resized = false;
 
         if (cachedParams.scale() < 1.0) {
-            imageToCompress = resizeImage(originalImage, cachedParams.scale());
+            imageToCompress = resizeImage(originalImage, cachedParams.scale(), params.resizeFilter(),
+                    params.parallelResizeMinPixels());
             resized = true;
         }
 
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-            compressJpgToStream(imageToCompress, bos, cachedParams.quality());
-            if (bos.size() <= params.targetMaxSizeBytes()) {
-                Files.write(outputFile, bos.toByteArray());
+        long target = params.targetMaxSizeBytes();
+        try (BoundedImageOutputStream bos = new BoundedImageOutputStream((int) target, target)) {
+            if (probeJpgSize(imageToCompress, bos, cachedParams.quality(), JpegEncoding.of(imageToCompress, params)).bytes() <= target) {
+                sink.write(outputFile, bos);
                 return true;
             }
         } finally {
-            if (resized && imageToCompress != null) imageToCompress.flush();
+            if (resized) RasterPool.release(imageToCompress);
         }
 
         log.warn("無法在目標大小限制下完成壓縮: {}", outputFile.getFileName());
@@ -241,22 +798,67 @@ public class ImageCompressionJpg {
     /**
      * 將指定的 {@link BufferedImage} 以指定的壓縮品質進行 JPEG 壓縮，並儲存至指定的輸出檔案。
      *
-     * <p>該方法會先將影像以指定品質壓縮至記憶體中的 {@link ByteArrayOutputStream}，
-     * 然後再一次性寫入到檔案系統中的 {@link Path outputFile}。此方式可以有效控制檔案大小，
-     * 並避免直接寫入磁碟造成不必要的 I/O 開銷。</p>
+     * <p>品質搜尋時達標的最高品質結果已保存在 {@code buffers} 中，直接把該緩衝區交給 {@code sink}，
+     * 不再以同一品質重新編碼；保存的結果不是此品質時才重新編碼一次。</p>
      *
-     * @param image         要壓縮的 {@link BufferedImage} 圖片物件。
-     * @param outputFile    壓縮後輸出的檔案路徑。
-     * @param quality       壓縮品質，範圍為 0.0f（最低）到 1.0f（最高）。
-     * @param estimatedSize 預估的輸出檔案大小（以 byte 為單位），
-     *                      用於初始化 {@link ByteArrayOutputStream} 的容量，避免記憶體重分配。
+     * @param image      要壓縮的 {@link BufferedImage} 圖片物件。
+     * @param outputFile 壓縮後輸出的檔案路徑。
+     * @param sink       壓縮結果的去處。
+     * @param quality    壓縮品質，範圍為 0.0f（最低）到 1.0f（最高）。
+     * @param buffers    品質搜尋的試壓緩衝區
+     * @param encoding   編碼方式
+     * @return 寫入的位元組數
      * @throws IOException 當壓縮或寫入檔案時發生 I/O 錯誤時拋出。
      */
-    private static void saveCompressedImage(BufferedImage image, Path outputFile, float quality, long estimatedSize) throws IOException {
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream((int) estimatedSize)) {
-            compressJpgToStream(image, bos, quality);
-            Files.write(outputFile, bos.toByteArray());
+    private static long saveCompressedImage(BufferedImage image, Path outputFile, OutputSink sink, float quality,
+                                            ProbeBuffers buffers, JpegEncoding encoding) throws IOException {
+        if (!buffers.holds(quality)) {
+            buffers.reset();
+            BoundedImageOutputStream probe = buffers.probe();
+            if (probeJpgSize(image, probe, quality, encoding).bytes() > probe.getLimit()) {
+                throw new IOException("以搜尋到的品質重新編碼後超過目標大小: " + outputFile.getFileName());
+            }
+            buffers.keep(quality);
+        }
+        BoundedImageOutputStream bos = buffers.best();
+        long modeCpu = buffers.bestCpuNanos();
+        int size = bos.size();
+        if (encoding.entropyMode() != JpegEntropyMode.STANDARD && EntropyModeSampler.shouldSample()) {
+            long standardStart = EntropyModeSampler.cpuTime();
+            long standardBytes = encodedSize(image, quality, JpegEntropyMode.STANDARD);
+            EntropyModeSampler.record(size, modeCpu, standardBytes, EntropyModeSampler.cpuTime() - standardStart);
+        }
+        sink.write(outputFile, bos);
+        return size;
+    }
+
+    /**
+     * 完整編碼一次並回傳大小，供 {@link JpegTilePredictor} 對抽樣馬賽克試壓，以及熵編碼模式的抽樣比較。
+     */
+    private static long encodedSize(BufferedImage image, float quality, JpegEntropyMode mode) throws IOException {
+        try (BoundedImageOutputStream bos = new BoundedImageOutputStream(64 * 1024)) {
+            compressJpgToStream(image, bos, quality, mode, null);
+            return bos.size();
+        }
+    }
+
+    /**
+     * 記錄 {@link ImageWriter} 回報的編碼進度，用於推估中止時的完整大小。
+     */
+    private static final class EncodeProgress implements IIOWriteProgressListener {
+        private volatile float percentageDone;
+
+        @Override
+        public void imageProgress(ImageWriter source, float percentageDone) {
+            this.percentageDone = percentageDone;
         }
+
+        @Override public void imageStarted(ImageWriter source, int imageIndex) { }
+        @Override public void imageComplete(ImageWriter source) { }
+        @Override public void thumbnailStarted(ImageWriter source, int imageIndex, int thumbnailIndex) { }
+        @Override public void thumbnailProgress(ImageWriter source, float percentageDone) { }
+        @Override public void thumbnailComplete(ImageWriter source) { }
+        @Override public void writeAborted(ImageWriter source) { }
     }
 
 }
@@ -1,9 +1,13 @@
 package work.pollochang.compression.image.core;
 
 import lombok.extern.slf4j.Slf4j;
+import work.pollochang.compression.image.codec.CodecPool;
+import work.pollochang.compression.image.io.BoundedImageOutputStream;
+import work.pollochang.compression.image.io.OutputSink;
+import work.pollochang.compression.image.io.RasterPool;
 import work.pollochang.compression.image.report.CompressionParams;
 
-import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.nio.file.Path;
@@ -35,6 +39,15 @@ public class ImageCompressionPng {
      * @throws NullPointerException 若任何參數為 null
      */
     public static boolean compressPngWithTargetSize(BufferedImage originalImage, Path outputFile, CompressionParams params) throws IOException {
+        return compressPngWithTargetSize(originalImage, outputFile, OutputSink.FILE, params);
+    }
+
+    /**
+     * 同 {@link #compressPngWithTargetSize(BufferedImage, Path, CompressionParams)}，但結果交給 {@code sink} 寫出。
+     * @param sink 壓縮結果的去處
+     */
+    public static boolean compressPngWithTargetSize(BufferedImage originalImage, Path outputFile, OutputSink sink,
+                                                    CompressionParams params) throws IOException {
 
         Objects.requireNonNull(originalImage, "originalImage must not be null");
         Objects.requireNonNull(outputFile, "outputFile must not be null");
@@ -62,15 +75,20 @@ public class ImageCompressionPng {
 
         log.info("PNG 圖片尺寸 {}x{} 超過目標 {}x{}，將以 {} 比例縮放。", originalWidth, originalHeight, targetWidth, targetHeight, String.format("%.2f", scale));
 
-        // 使用現有的 resizeImage 方法進行縮放
-        BufferedImage resizedImage = resizeImage(originalImage, scale);
+        // 依設定的濾波器進行縮放
+        BufferedImage resizedImage = resizeImage(originalImage, scale, params.resizeFilter(), params.parallelResizeMinPixels());
 
-        try {
-            // 將縮放後的圖片寫入檔案
-            return ImageIO.write(resizedImage, "png", outputFile.toFile());
+        ImageWriter writer = CodecPool.borrowWriter("png");
+        try (BoundedImageOutputStream bos = new BoundedImageOutputStream(64 * 1024)) {
+            // 先編碼到記憶體，再交給 sink 寫出
+            writer.setOutput(bos);
+            writer.write(resizedImage);
+            sink.write(outputFile, bos);
+            return true;
         } finally {
-            // 釋放由 resizeImage 產生的新圖片資源
-            resizedImage.flush();
+            CodecPool.releaseWriter(writer);
+            // 由 resizeImage 產生的新圖片歸還給池
+            RasterPool.release(resizedImage);
         }
     }
 }
@@ -0,0 +1,53 @@
+package work.pollochang.compression.image.core;
+
+import work.pollochang.compression.image.codec.ParallelJpegEncoder;
+import work.pollochang.compression.image.codec.YCbCrImage;
+import work.pollochang.compression.image.report.CompressionParams;
+import work.pollochang.compression.image.tools.ParallelTools;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 單一尺寸的圖片在試壓與輸出時使用的 JPEG 編碼方式。
+ * @param entropyMode 熵編碼模式
+ * @param parallel    是否以 {@link ParallelJpegEncoder} 分段平行編碼
+ * @param planes      分段平行編碼時共用的 YCbCr 平面，不平行編碼時為 null
+ */
+record JpegEncoding(JpegEntropyMode entropyMode, boolean parallel, Planes planes) {
+
+    /**
+     * 依壓縮參數與圖片大小決定編碼方式。
+     *
+     * <p>像素數達 {@link CompressionParams#parallelEncodeMinPixels()} 且機器有多個核心時改以分段平行編碼；
+     * 分段編碼只支援標準 Huffman 表，其他熵編碼模式一律使用 ImageIO。
+     * 每次試壓時才借用閒置的核心，借不到時該次改以 ImageIO 編碼。</p>
+     */
+    static JpegEncoding of(BufferedImage image, CompressionParams params) {
+        boolean parallel = params.entropyMode() == JpegEntropyMode.STANDARD
+                && params.parallelEncodeMinPixels() > 0
+                && ParallelTools.isParallelAvailable()
+                && (long) image.getWidth() * image.getHeight() >= params.parallelEncodeMinPixels();
+        return new JpegEncoding(params.entropyMode(), parallel, parallel ? new Planes() : null);
+    }
+
+    /**
+     * 同一尺寸的每次試壓與最終輸出共用的 YCbCr 平面，色彩轉換只做一次。
+     */
+    static final class Planes {
+        private BufferedImage image;
+        private YCbCrImage ycc;
+
+        /**
+         * @param source  要編碼的圖片
+         * @param threads 轉換色彩時同時使用的執行緒數，包含目前執行緒
+         * @return {@code source} 的 YCbCr 平面；與上次是同一張圖時直接沿用
+         */
+        YCbCrImage of(BufferedImage source, int threads) {
+            if (source != image) {
+                ycc = YCbCrImage.from(source, ParallelTools.pool(), threads);
+                image = source;
+            }
+            return ycc;
+        }
+    }
+}
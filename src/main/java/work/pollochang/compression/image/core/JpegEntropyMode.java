@@ -0,0 +1,14 @@
+package work.pollochang.compression.image.core;
+
+/**
+ * JPEG 熵編碼模式。
+ */
+public enum JpegEntropyMode {
+    STANDARD("標準 Huffman 表"),
+    OPTIMIZED("最佳化 Huffman 表"),
+    PROGRESSIVE("漸進式掃描");
+
+    private final String description;
+    JpegEntropyMode(String description) { this.description = description; }
+    public String getDescription() { return description; }
+}
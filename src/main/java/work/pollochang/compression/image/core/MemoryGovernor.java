@@ -0,0 +1,159 @@
+package work.pollochang.compression.image.core;
+
+import work.pollochang.compression.image.codec.ImageFormat;
+import work.pollochang.compression.image.codec.ImageHeader;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 批次中所有解碼任務共用的記憶體預算。
+ *
+ * <p>預算為 {@code -Xmx} 的 {@value #BUDGET_PERCENT}%，其餘留給學習快取、編解碼器與 GC 的空間。
+ * 每個任務解碼前依檔頭尺寸預估峰值用量並預留，預算不足時依先來後到排隊等待，
+ * 而不是讓多個執行緒同時解碼大圖後才以 {@link OutOfMemoryError} 收場。
+ * 單一任務的預估超過整個預算時，呼叫端應先改以串流或較粗的解析度處理（見 {@link #maxDecodedPixels(ImageHeader)}）；
+ * 仍超過時只預留整個預算，讓它獨自執行。</p>
+ */
+public final class MemoryGovernor {
+
+    /** 預算佔最大堆積的百分比 */
+    private static final int BUDGET_PERCENT = 60;
+
+    /**
+     * 峰值相對於解碼後點陣圖的倍數：點陣圖本身、縮放後的副本（第一次縮放約 0.72 倍），
+     * 以及分段編碼的 YCbCr 平面（每像素 1.5 bytes）。
+     */
+    static final double PEAK_FACTOR = 2.5;
+
+    /** 以 KB 為單位換算 {@link Semaphore} 的許可數 */
+    private static final int UNIT_SHIFT = 10;
+
+    private static final long BUDGET_BYTES = budget(Runtime.getRuntime().maxMemory());
+    private static final Semaphore PERMITS = new Semaphore(toUnits(BUDGET_BYTES), true);
+
+    private static final LongAdder RESERVATIONS = new LongAdder();
+    private static final LongAdder WAITS = new LongAdder();
+    private static final LongAdder WAIT_NANOS = new LongAdder();
+    private static final AtomicLong RESERVED_UNITS = new AtomicLong();
+    private static final AtomicLong PEAK_UNITS = new AtomicLong();
+
+    private MemoryGovernor() {
+    }
+
+    /**
+     * @return 全部的預算（bytes）
+     */
+    public static long budgetBytes() {
+        return BUDGET_BYTES;
+    }
+
+    /**
+     * 預估以指定倍率解碼時的峰值用量。
+     * @param header       檔頭
+     * @param subsampling  解碼倍率
+     * @param targetBytes  目標檔案大小，試壓的輸出緩衝約為其兩倍
+     * @return 預估的峰值（bytes）
+     */
+    static long estimate(ImageHeader header, int subsampling, long targetBytes) {
+        long width = (header.width() + subsampling - 1) / subsampling;
+        long height = (header.height() + subsampling - 1) / subsampling;
+        return estimate(width * height, bytesPerPixel(header), targetBytes);
+    }
+
+    /**
+     * @param pixels        解碼後的像素數
+     * @param bytesPerPixel 點陣圖每像素位元組數
+     * @param targetBytes   目標檔案大小
+     * @return 預估的峰值（bytes）
+     */
+    static long estimate(long pixels, int bytesPerPixel, long targetBytes) {
+        return (long) (pixels * bytesPerPixel * PEAK_FACTOR) + 2 * Math.max(0, targetBytes);
+    }
+
+    /**
+     * 整個預算容得下的最大解碼像素數。
+     * @param header 檔頭
+     * @return 像素數
+     */
+    static long maxDecodedPixels(ImageHeader header) {
+        return (long) (BUDGET_BYTES / PEAK_FACTOR / bytesPerPixel(header));
+    }
+
+    /**
+     * 解碼後點陣圖每像素的位元組數：JPG 為 BGR，其他格式可能帶有 Alpha，16-bit 樣本加倍。
+     */
+    static int bytesPerPixel(ImageHeader header) {
+        int bytes = header.format() == ImageFormat.JPEG ? 3 : 4;
+        return header.bitDepth() > 8 ? bytes * 2 : bytes;
+    }
+
+    /**
+     * 預留記憶體，預算不足時排隊等待。
+     * @param bytes 預估用量，超過整個預算時只預留整個預算
+     * @return 預留，用畢須關閉
+     * @throws InterruptedIOException 等待時被中斷
+     */
+    static Reservation reserve(long bytes) throws InterruptedIOException {
+        int units = toUnits(Math.min(bytes, BUDGET_BYTES));
+        RESERVATIONS.increment();
+        try {
+            // 公平的 Semaphore 只有帶逾時的 tryAcquire 才會遵守排隊順序
+            if (!PERMITS.tryAcquire(units, 0, TimeUnit.NANOSECONDS)) {
+                WAITS.increment();
+                long start = System.nanoTime();
+                PERMITS.acquire(units);
+                WAIT_NANOS.add(System.nanoTime() - start);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待記憶體預算時被中斷");
+        }
+        PEAK_UNITS.accumulateAndGet(RESERVED_UNITS.addAndGet(units), Math::max);
+        return new Reservation(units);
+    }
+
+    /**
+     * @return 目前累計的統計
+     */
+    public static MemoryGovernorStats stats() {
+        return new MemoryGovernorStats(BUDGET_BYTES, RESERVATIONS.sum(), WAITS.sum(),
+                TimeUnit.NANOSECONDS.toMillis(WAIT_NANOS.sum()), PEAK_UNITS.get() << UNIT_SHIFT);
+    }
+
+    static long budget(long maxMemory) {
+        if (maxMemory == Long.MAX_VALUE) {
+            // 未限制堆積大小時不設預算
+            return (long) Integer.MAX_VALUE << UNIT_SHIFT;
+        }
+        return Math.min(maxMemory / 100 * BUDGET_PERCENT, (long) Integer.MAX_VALUE << UNIT_SHIFT);
+    }
+
+    private static int toUnits(long bytes) {
+        return (int) Math.max(1, (bytes + (1 << UNIT_SHIFT) - 1) >> UNIT_SHIFT);
+    }
+
+    /**
+     * 一次預留，關閉時歸還，重複關閉無作用。
+     */
+    static final class Reservation implements AutoCloseable {
+        private final int units;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Reservation(int units) {
+            this.units = units;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                RESERVED_UNITS.addAndGet(-units);
+                PERMITS.release(units);
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package work.pollochang.compression.image.core;
+
+/**
+ * {@link MemoryGovernor} 的統計快照。
+ * @param budgetBytes       記憶體預算
+ * @param reservations      預留次數
+ * @param waits             因預算不足而等待的次數
+ * @param waitMillis        等待的總時間（毫秒）
+ * @param peakReservedBytes 同時預留的最大量
+ */
+public record MemoryGovernorStats(long budgetBytes, long reservations, long waits, long waitMillis, long peakReservedBytes) {}
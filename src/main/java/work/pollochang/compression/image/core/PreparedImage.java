@@ -0,0 +1,27 @@
+package work.pollochang.compression.image.core;
+
+import work.pollochang.compression.image.codec.ImageHeader;
+import work.pollochang.compression.image.io.PooledBuffer;
+import work.pollochang.compression.image.report.CompressionReport;
+
+import java.nio.file.Path;
+
+/**
+ * I/O 階段的結果：確認來源檔可讀、讀出大小與檔頭，並已預讀檔案內容。用畢須關閉以歸還預讀緩衝區。
+ * @param inputPath    來源檔
+ * @param outputFile   輸出檔
+ * @param originalSize 來源檔大小
+ * @param header       檔頭；無法辨識時為 null
+ * @param source       預讀的檔案內容；未使用緩衝區池或檔案過大時為 null，改由檔案讀取
+ * @param report       已決定跳過或失敗時的報告，不需再進入編碼階段；否則為 null
+ */
+public record PreparedImage(Path inputPath, Path outputFile, long originalSize, ImageHeader header, PooledBuffer source,
+                            CompressionReport report) implements AutoCloseable {
+
+    @Override
+    public void close() {
+        if (source != null) {
+            source.close();
+        }
+    }
+}
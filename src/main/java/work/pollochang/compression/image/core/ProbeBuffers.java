@@ -0,0 +1,95 @@
+package work.pollochang.compression.image.core;
+
+import work.pollochang.compression.image.io.BoundedImageOutputStream;
+
+import java.io.IOException;
+
+/**
+ * 品質搜尋用的兩個輪替緩衝區：一個保存目前達標的最高品質編碼結果，另一個供下一次試壓使用。
+ *
+ * <p>試壓達標且品質高於已保存的結果時兩者互換，原本保存的緩衝區清空後成為下一次的試壓緩衝區。
+ * 搜尋結束時保存的內容就是最終要輸出的 JPEG，不必再以同一品質重新編碼一次。</p>
+ *
+ * <p>本類別非執行緒安全，每張圖各自建立。</p>
+ */
+final class ProbeBuffers implements AutoCloseable {
+
+    private BoundedImageOutputStream scratch;
+    private BoundedImageOutputStream best;
+    private float bestQuality = -1.0f;
+    private long bestCpuNanos;
+    private long probeCpuStart;
+
+    /**
+     * @param limit 目標檔案大小上限，兩個緩衝區都以此為上限與初始容量
+     */
+    ProbeBuffers(long limit) {
+        int capacity = (int) Math.min(limit, Integer.MAX_VALUE - 8);
+        this.scratch = new BoundedImageOutputStream(capacity, limit);
+        this.best = new BoundedImageOutputStream(capacity, limit);
+    }
+
+    /**
+     * @return 下一次試壓的緩衝區，並開始計算這次試壓的 CPU 時間
+     */
+    BoundedImageOutputStream probe() {
+        probeCpuStart = EntropyModeSampler.cpuTime();
+        return scratch;
+    }
+
+    /**
+     * 剛完成的試壓已達標；品質高於目前保存的結果時改為保存這次的結果。
+     * @param quality 這次試壓的品質
+     */
+    void keep(float quality) {
+        if (quality <= bestQuality) {
+            return;
+        }
+        BoundedImageOutputStream previous = best;
+        best = scratch;
+        scratch = previous;
+        bestQuality = quality;
+        bestCpuNanos = EntropyModeSampler.cpuTime() - probeCpuStart;
+    }
+
+    /**
+     * @param quality 要輸出的品質
+     * @return 保存的結果是否就是以此品質編碼的內容
+     */
+    boolean holds(float quality) {
+        return bestQuality > 0 && bestQuality == quality;
+    }
+
+    /**
+     * @return 保存的編碼結果
+     */
+    BoundedImageOutputStream best() {
+        return best;
+    }
+
+    /**
+     * @return 產生保存結果的那次試壓所用的 CPU 時間（奈秒）
+     */
+    long bestCpuNanos() {
+        return bestCpuNanos;
+    }
+
+    /**
+     * 換到新的縮放比例時捨棄保存的結果。
+     */
+    void reset() {
+        best.clear();
+        bestQuality = -1.0f;
+        bestCpuNanos = 0L;
+    }
+
+    @Override
+    public void close() {
+        try {
+            scratch.close();
+            best.close();
+        } catch (IOException e) {
+            // 記憶體緩衝區關閉不會失敗
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package work.pollochang.compression.image.core;
+
+/**
+ * 一次試壓的大小。
+ *
+ * <p>超過上限而中止的試壓只能推估完整大小：標準 Huffman 表邊編碼邊輸出，可依進度外插；
+ * 最佳化 Huffman 表與漸進式模式讀完整張圖才輸出，中止時只知道大小超過上限，
+ * 此時 {@code lowerBound} 為 true，{@code bytes} 不能用來內插或校正。</p>
+ *
+ * @param bytes      完整編碼的大小；超過上限時為推估值
+ * @param lowerBound {@code bytes} 是否只是下限
+ */
+record ProbeSize(long bytes, boolean lowerBound) {
+}
@@ -0,0 +1,14 @@
+package work.pollochang.compression.image.core;
+
+/**
+ * JPEG 品質搜尋策略。
+ */
+public enum QualitySearchMode {
+    BINARY("二分搜尋"),
+    INTERPOLATION("模型插值"),
+    ESTIMATED("DCT 預估");
+
+    private final String description;
+    QualitySearchMode(String description) { this.description = description; }
+    public String getDescription() { return description; }
+}
@@ -0,0 +1,119 @@
+package work.pollochang.compression.image.core;
+
+import work.pollochang.compression.image.io.RasterPool;
+import work.pollochang.compression.image.resize.ResizeFilter;
+import work.pollochang.compression.image.tools.ImageTools;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 單張圖片逐級縮放時使用的縮小金字塔。
+ *
+ * <p>品質搜尋的縮放比例只會越來越小；每一層是上一層的一半，要求的比例從不小於它的最小一層縮放，
+ * 而不是每次都從原圖讀取全部像素。比例低於 1/2 後每次縮放讀取的像素不到原圖的四分之一，
+ * 往下一層移動時釋放上一層，同時只保留一層。要求的比例比目前這層大時退回從原圖縮放。</p>
+ *
+ * <p>輸出尺寸一律依原圖尺寸與比例計算，與直接從原圖縮放的尺寸相同。
+ * 回傳的圖片由金字塔持有，下一次呼叫 {@link #resize(double)} 或 {@link #close()} 時歸還 {@link RasterPool}，呼叫端不可自行釋放；
+ * 原圖不會被釋放。本類別非執行緒安全，每張圖各自建立。</p>
+ */
+final class ResizePyramid implements AutoCloseable {
+
+    private final BufferedImage original;
+    private final ResizeFilter filter;
+    private final long parallelMinPixels;
+
+    /** 目前這層，null 表示原圖 */
+    private BufferedImage level;
+    private double levelScale = 1.0;
+    /** 上一次回傳且不是金字塔某一層的圖片 */
+    private BufferedImage current;
+    private int levelsBuilt;
+
+    /**
+     * @param original          原圖
+     * @param filter            縮放濾波器
+     * @param parallelMinPixels 分段平行縮放的來源像素數門檻，0 表示不分段
+     */
+    ResizePyramid(BufferedImage original, ResizeFilter filter, long parallelMinPixels) {
+        this.original = original;
+        this.filter = filter;
+        this.parallelMinPixels = parallelMinPixels;
+    }
+
+    /**
+     * 取得依原圖尺寸縮放 {@code scale} 倍的圖片，並釋放上一次回傳的圖片。
+     * @param scale 相對於原圖的縮放比例
+     * @return 縮放後的圖片，比例不小於 1 時為原圖
+     */
+    BufferedImage resize(double scale) {
+        releaseCurrent();
+        if (scale >= 1.0) {
+            return original;
+        }
+        if (scale > levelScale) {
+            releaseLevel();
+        }
+        while (levelScale * 0.5 >= scale) {
+            descend();
+        }
+        BufferedImage base = level != null ? level : original;
+        int width = scaledWidth(scale);
+        int height = scaledHeight(scale);
+        if (base.getWidth() == width && base.getHeight() == height) {
+            return base;
+        }
+        current = ImageTools.resizeImage(base, width, height, filter, parallelMinPixels);
+        return current;
+    }
+
+    /**
+     * @return 目前為止建立的層數
+     */
+    int levelsBuilt() {
+        return levelsBuilt;
+    }
+
+    @Override
+    public void close() {
+        releaseCurrent();
+        releaseLevel();
+    }
+
+    /**
+     * 從目前這層縮小一半建立下一層，並釋放目前這層。
+     */
+    private void descend() {
+        double nextScale = levelScale * 0.5;
+        BufferedImage base = level != null ? level : original;
+        BufferedImage next = ImageTools.resizeImage(base, scaledWidth(nextScale), scaledHeight(nextScale), filter,
+                parallelMinPixels);
+        releaseLevel();
+        level = next;
+        levelScale = nextScale;
+        levelsBuilt++;
+    }
+
+    private int scaledWidth(double scale) {
+        return Math.max(1, (int) (original.getWidth() * scale));
+    }
+
+    private int scaledHeight(double scale) {
+        return Math.max(1, (int) (original.getHeight() * scale));
+    }
+
+    private void releaseCurrent() {
+        if (current != null) {
+            RasterPool.release(current);
+            current = null;
+        }
+    }
+
+    private void releaseLevel() {
+        if (level != null) {
+            RasterPool.release(level);
+            level = null;
+        }
+        levelScale = 1.0;
+    }
+}
@@ -0,0 +1,67 @@
+package work.pollochang.compression.image.core;
+
+import work.pollochang.compression.image.codec.ImageFormat;
+import work.pollochang.compression.image.codec.ImageHeader;
+import work.pollochang.compression.image.codec.ScaledJpegDecoder;
+import work.pollochang.compression.image.report.CompressionParams;
+
+/**
+ * 串流解碼的計畫：以 1/{@code denominator} 的縮小 IDCT 逐列解碼，再以區域平均縮小到輸出尺寸。
+ *
+ * <p>以原始解析度完整解碼的點陣圖預估超過 {@link CompressionParams#streamingDecodeMinBytes()} 時改走串流，
+ * 預設 256MB 約為 8900 萬像素。一般解碼雖會縮到參考解析度，但縮小前仍需保留整張原圖的 DCT 係數與像素平面，
+ * 因此以原始解析度判斷。輸出維持一般解碼的尺寸，超過門檻時再縮到正好放得進門檻，
+ * 峰值記憶體只有輸出影像加上一列 MCU 的像素平面。</p>
+ *
+ * @param denominator  縮小 IDCT 的倍率
+ * @param outputWidth  輸出寬度
+ * @param outputHeight 輸出高度
+ */
+record StreamingPlan(int denominator, int outputWidth, int outputHeight) {
+
+    /** 預估時以 BGR 每像素 3 bytes 計算 */
+    private static final int BYTES_PER_PIXEL = 3;
+
+    /**
+     * @param header 檔頭；無法辨識時為 null
+     * @param plan   一般解碼的計畫
+     * @param params 壓縮參數
+     * @return 串流計畫；停用、非基線 JPG 或預估大小未超過門檻時回傳 null
+     */
+    static StreamingPlan of(ImageHeader header, DecodePlan plan, CompressionParams params) {
+        return of(header, plan, params.streamingDecodeMinBytes());
+    }
+
+    /**
+     * @param header 檔頭；無法辨識時為 null
+     * @param plan   一般解碼的計畫
+     * @param limit  原始解析度解碼後大小的門檻（bytes），0 表示停用
+     * @return 串流計畫；停用、非基線 JPG 或預估大小未超過門檻時回傳 null
+     */
+    static StreamingPlan of(ImageHeader header, DecodePlan plan, long limit) {
+        if (limit <= 0 || header == null || plan == null
+                || header.format() != ImageFormat.JPEG || header.progressive()) {
+            return null;
+        }
+        int width = header.width();
+        int height = header.height();
+        if ((long) width * height * BYTES_PER_PIXEL <= limit) {
+            return null;
+        }
+
+        long decodedWidth = (width + plan.subsampling() - 1) / plan.subsampling();
+        long decodedHeight = (height + plan.subsampling() - 1) / plan.subsampling();
+        long decodedBytes = decodedWidth * decodedHeight * BYTES_PER_PIXEL;
+        double scale = Math.min(1.0, Math.sqrt((double) limit / decodedBytes));
+        int outputWidth = (int) Math.max(1, Math.floor(decodedWidth * scale));
+        int outputHeight = (int) Math.max(1, Math.floor(decodedHeight * scale));
+        // 縮小 IDCT 先做掉能整除的部分，其餘交給區域平均
+        int denominator = 1;
+        while (denominator * 2 <= ScaledJpegDecoder.MAX_SCALE_DENOMINATOR
+                && (width + denominator * 2 - 1) / (denominator * 2) >= outputWidth
+                && (height + denominator * 2 - 1) / (denominator * 2) >= outputHeight) {
+            denominator *= 2;
+        }
+        return new StreamingPlan(denominator, outputWidth, outputHeight);
+    }
+}
@@ -0,0 +1,13 @@
+package work.pollochang.compression.image.core;
+
+/**
+ * 目標大小壓縮的結果。
+ */
+enum TargetSizeOutcome {
+    /** 已寫出不超過目標大小的檔案 */
+    COMPRESSED,
+    /** 無法在目標大小內完成 */
+    FAILED,
+    /** 以較粗的解析度解碼後，全尺寸在最低品質下已能達標，需要改以參考解析度重新解碼 */
+    NEEDS_MORE_PIXELS
+}
@@ -0,0 +1,223 @@
+package work.pollochang.compression.image.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 先寫入同目錄的暫存檔，再以原子性的改名放到目標位置，中途當機不會留下寫到一半的輸出檔。
+ *
+ * <p>啟用同步時，每個暫存檔寫完先各自 fsync，再集合成一組：湊滿 {@code groupSize} 個檔案，
+ * 或第一個檔案等待超過 {@code groupMillis} 毫秒時，由該組第一個檔案的執行緒統一改名，
+ * 並對涉及的目錄各 fsync 一次，目錄的同步次數因此由每個檔案一次降為每組一次。
+ * 呼叫端會等到所屬的組完成才返回，適合在虛擬執行緒上呼叫。</p>
+ *
+ * <p>暫存檔的權限與一般新檔相同，依 umask 決定；覆寫既有檔案時沿用原本的權限。</p>
+ *
+ * <p>當機後目錄中可能殘留以 {@value #TEMP_SUFFIX} 結尾的暫存檔，但目標檔案只會是舊內容或完整的新內容。</p>
+ */
+public final class AtomicFileWriter {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final int groupSize;
+    private final long groupNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition groupFull = lock.newCondition();
+    private final Condition groupDone = lock.newCondition();
+    private List<Pending> pending = new ArrayList<>();
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder groups = new LongAdder();
+    private final LongAdder syncNanos = new LongAdder();
+
+    /**
+     * @param groupSize   每組的檔案數，0 表示不 fsync，寫完暫存檔立即改名
+     * @param groupMillis 一組最多等待的時間（毫秒）
+     */
+    public AtomicFileWriter(int groupSize, long groupMillis) {
+        this.groupSize = Math.max(0, groupSize);
+        this.groupNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, groupMillis));
+    }
+
+    /**
+     * 寫入目標檔案。
+     * @param target 目標檔案
+     * @param data   檔案內容，寫入後 position 會移到 limit
+     * @throws IOException 寫入、同步或改名失敗；失敗時目標檔案維持原狀
+     */
+    public void write(Path target, ByteBuffer data) throws IOException {
+        Path temp;
+        FileChannel created;
+        while (true) {
+            temp = target.toAbsolutePath().resolveSibling("." + target.getFileName() + "."
+                    + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + TEMP_SUFFIX);
+            try {
+                // 不指定權限，讓暫存檔與一般新檔一樣依 umask 決定，而不是 createTempFile 的 0600
+                created = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                break;
+            } catch (FileAlreadyExistsException e) {
+                // 名稱重複時換一個
+            }
+        }
+        try {
+            try (FileChannel channel = created) {
+                copyPermissions(target, temp);
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                if (groupSize > 0) {
+                    long start = System.nanoTime();
+                    channel.force(false);
+                    syncNanos.add(System.nanoTime() - start);
+                }
+            }
+            if (groupSize > 0) {
+                commitInGroup(temp, target);
+            } else {
+                move(temp, target);
+            }
+            files.increment();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * @return 目前累計的統計
+     */
+    public AtomicFileWriterStats stats() {
+        return new AtomicFileWriterStats(files.sum(), groups.sum(), TimeUnit.NANOSECONDS.toMillis(syncNanos.sum()));
+    }
+
+    private void commitInGroup(Path temp, Path target) throws IOException {
+        Pending self = new Pending(temp, target);
+        List<Pending> batch = null;
+        lock.lock();
+        try {
+            pending.add(self);
+            if (pending.size() == 1) {
+                // 第一個檔案負責等待同組其他檔案並統一提交；被中斷時提早提交，不讓同組的檔案一直等待
+                long remaining = groupNanos;
+                try {
+                    while (pending.size() < groupSize && remaining > 0) {
+                        remaining = groupFull.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+            } else {
+                if (pending.size() >= groupSize) {
+                    groupFull.signal();
+                }
+                while (!self.done) {
+                    groupDone.await();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // 尚未被提交就放棄；已被帶走時等該組完成改名與同步，才能回報確定的結果
+            if (pending.remove(self)) {
+                throw new InterruptedIOException("等待同步寫入時被中斷");
+            }
+            while (!self.done) {
+                groupDone.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (batch != null) {
+            commit(batch);
+            lock.lock();
+            try {
+                for (Pending p : batch) {
+                    p.done = true;
+                }
+                groupDone.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (self.error != null) {
+            throw self.error;
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        Set<Path> directories = new LinkedHashSet<>();
+        for (Pending p : batch) {
+            try {
+                move(p.temp, p.target);
+                directories.add(p.target.toAbsolutePath().getParent());
+            } catch (IOException e) {
+                p.error = e;
+            }
+        }
+        long start = System.nanoTime();
+        for (Path directory : directories) {
+            try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                // 部分平台（如 Windows）無法開啟目錄，改名本身仍是原子性的
+            }
+        }
+        syncNanos.add(System.nanoTime() - start);
+        groups.increment();
+    }
+
+    /**
+     * 覆寫既有檔案時沿用其 POSIX 權限，與直接覆寫檔案的結果一致。
+     */
+    private static void copyPermissions(Path target, Path temp) throws IOException {
+        Set<PosixFilePermission> permissions;
+        try {
+            permissions = Files.getPosixFilePermissions(target);
+        } catch (NoSuchFileException | UnsupportedOperationException e) {
+            return;
+        }
+        Files.setPosixFilePermissions(temp, permissions);
+    }
+
+    private static void move(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static final class Pending {
+        private final Path temp;
+        private final Path target;
+        private boolean done;
+        private IOException error;
+
+        Pending(Path temp, Path target) {
+            this.temp = temp;
+            this.target = target;
+        }
+    }
+}
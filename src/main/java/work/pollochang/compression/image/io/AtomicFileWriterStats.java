@@ -0,0 +1,9 @@
+package work.pollochang.compression.image.io;
+
+/**
+ * {@link AtomicFileWriter} 的統計快照。
+ * @param files      寫入的檔案數
+ * @param groups     同步提交的組數，未啟用同步時為 0
+ * @param syncMillis fsync 的總時間（毫秒）
+ */
+public record AtomicFileWriterStats(long files, long groups, long syncMillis) {}
@@ -0,0 +1,165 @@
+package work.pollochang.compression.image.io;
+
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 以記憶體陣列為底、具大小上限的 {@link javax.imageio.stream.ImageOutputStream}。
+ *
+ * <p>當寫入位置超過 {@code limit} 時立即拋出 {@link OutputLimitExceededException}，
+ * 讓 {@link javax.imageio.ImageWriter#write} 在確定超標的當下就停止，
+ * 不必把整張圖編碼完才比較大小。同時直接實作 {@code ImageOutputStream}，
+ * 省去 {@code ImageIO.createImageOutputStream(ByteArrayOutputStream)} 的二次緩衝。</p>
+ *
+ * <p>本類別非執行緒安全，可透過 {@link #clear()} 在多次試壓之間重複使用同一塊緩衝區。</p>
+ */
+public final class BoundedImageOutputStream extends ImageOutputStreamImpl {
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private byte[] buf;
+    private int count;
+    private long limit;
+
+    /**
+     * 建立沒有大小上限的輸出串流。
+     * @param initialCapacity 初始緩衝區大小
+     */
+    public BoundedImageOutputStream(int initialCapacity) {
+        this(initialCapacity, MAX_ARRAY_SIZE);
+    }
+
+    /**
+     * @param initialCapacity 初始緩衝區大小
+     * @param limit           允許寫入的最大位元組數，超過即拋出 {@link OutputLimitExceededException}
+     */
+    public BoundedImageOutputStream(int initialCapacity, long limit) {
+        this.buf = new byte[Math.max(16, initialCapacity)];
+        setLimit(limit);
+    }
+
+    /**
+     * 調整大小上限，供同一個緩衝區在不同目標間重複使用。
+     * @param limit 允許寫入的最大位元組數
+     */
+    public void setLimit(long limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        this.limit = Math.min(limit, MAX_ARRAY_SIZE);
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * 清空內容並回到起點，保留已配置的緩衝區。
+     */
+    public void clear() {
+        count = 0;
+        streamPos = 0;
+        flushedPos = 0;
+        bitOffset = 0;
+    }
+
+    /**
+     * @return 目前已寫入的位元組數
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * 直接取得內部緩衝區，有效資料為 {@code [0, size())}。
+     * 呼叫端不可在下一次 {@link #clear()} 之後繼續使用。
+     */
+    public byte[] buffer() {
+        return buf;
+    }
+
+    /**
+     * 不複製地交出目前的內容，之後串流改用新的緩衝區並回到起點。
+     * @return 內容為 {@code [0, size())} 的 {@link ByteBuffer}，由呼叫端擁有
+     */
+    public ByteBuffer detach() {
+        ByteBuffer data = ByteBuffer.wrap(buf, 0, count);
+        buf = new byte[16];
+        clear();
+        return data;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    public void writeTo(OutputStream os) throws IOException {
+        os.write(buf, 0, count);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        flushBits();
+        ensureCapacity(streamPos + 1);
+        buf[(int) streamPos++] = (byte) b;
+        count = Math.max(count, (int) streamPos);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        flushBits();
+        if (len <= 0) {
+            return;
+        }
+        ensureCapacity(streamPos + len);
+        System.arraycopy(b, off, buf, (int) streamPos, len);
+        streamPos += len;
+        count = Math.max(count, (int) streamPos);
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= count) {
+            return -1;
+        }
+        return buf[(int) streamPos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        int available = (int) (count - streamPos);
+        if (available <= 0) {
+            return -1;
+        }
+        int n = Math.min(len, available);
+        System.arraycopy(buf, (int) streamPos, b, off, n);
+        streamPos += n;
+        return n;
+    }
+
+    @Override
+    public long length() {
+        return count;
+    }
+
+    private void ensureCapacity(long end) throws IOException {
+        checkClosed();
+        if (end > limit) {
+            throw new OutputLimitExceededException(limit, Math.max(count, streamPos));
+        }
+        if (end > buf.length) {
+            long grown = Math.max(end, (long) buf.length << 1);
+            buf = Arrays.copyOf(buf, (int) Math.min(grown, limit));
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package work.pollochang.compression.image.io;
+
+/**
+ * {@link DirectBufferPool} 的統計快照。
+ * @param budgetBytes 預算
+ * @param hits        重用閒置緩衝區的次數
+ * @param allocations 新配置緩衝區的次數
+ * @param waits       因預算不足而等待的次數
+ * @param waitMillis  等待的總時間（毫秒）
+ */
+public record BufferPoolStats(long budgetBytes, long hits, long allocations, long waits, long waitMillis) {}
@@ -0,0 +1,95 @@
+package work.pollochang.compression.image.io;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 直接讀取 {@link ByteBuffer} 的 {@link javax.imageio.stream.ImageInputStream}。
+ *
+ * <p>資料可分散在多個大小相同（2 的次方）的區塊，讓總長度超過單一 {@code ByteBuffer} 的 2GB 上限；
+ * seek 只是改變位置，讀取以絕對索引直接從區塊複製，不像
+ * {@link javax.imageio.stream.MemoryCacheImageInputStream} 再複製一份到堆積上的快取區塊。</p>
+ *
+ * <p>本類別非執行緒安全，也不會改變來源緩衝區的 position。</p>
+ */
+public class ByteBufferImageInputStream extends ImageInputStreamImpl {
+
+    private final ByteBuffer[] chunks;
+    private final int chunkShift;
+    private final long chunkMask;
+    private final long length;
+
+    /**
+     * 讀取單一緩衝區從 position 到 limit 的內容。
+     * @param buffer 來源緩衝區
+     */
+    public ByteBufferImageInputStream(ByteBuffer buffer) {
+        this(new ByteBuffer[]{buffer.slice()}, 31, buffer.remaining());
+    }
+
+    /**
+     * @param chunks     依序排列的區塊，除了最後一個，容量都必須是 {@code 1 << chunkShift}
+     * @param chunkShift 區塊大小的 2 的次方
+     * @param length     總長度
+     */
+    protected ByteBufferImageInputStream(ByteBuffer[] chunks, int chunkShift, long length) {
+        this.chunks = chunks;
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1L << chunkShift) - 1;
+        this.length = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= length) {
+            return -1;
+        }
+        int value = chunks[(int) (streamPos >>> chunkShift)].get((int) (streamPos & chunkMask)) & 0xFF;
+        streamPos++;
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        bitOffset = 0;
+        if (len == 0) {
+            return 0;
+        }
+        if (streamPos >= length) {
+            return -1;
+        }
+        int total = (int) Math.min(len, length - streamPos);
+        int remaining = total;
+        while (remaining > 0) {
+            ByteBuffer chunk = chunks[(int) (streamPos >>> chunkShift)];
+            int index = (int) (streamPos & chunkMask);
+            int n = Math.min(remaining, chunk.limit() - index);
+            chunk.get(index, b, off, n);
+            off += n;
+            remaining -= n;
+            streamPos += n;
+        }
+        return total;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        // 釋放參照，讓映射的記憶體可以盡早被回收
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = null;
+        }
+    }
+}
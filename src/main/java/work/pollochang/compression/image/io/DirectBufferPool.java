@@ -0,0 +1,176 @@
+package work.pollochang.compression.image.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 預讀來源檔用的直接記憶體緩衝區池，所有緩衝區（使用中與閒置）的容量合計不超過預算。
+ *
+ * <p>緩衝區容量取 2 的次方（至少 {@value #MIN_CAPACITY} bytes），歸還後依容量保留供下次重用；
+ * 需要新的緩衝區而預算不足時，先丟棄其他容量的閒置緩衝區，仍不足就等到有人歸還。
+ * 因此讀取端最多領先編碼端預算大小的資料量。</p>
+ *
+ * <p>等待以 {@link ReentrantLock} 實作，不會在虛擬執行緒上佔住載體執行緒。</p>
+ */
+public final class DirectBufferPool {
+
+    private static final int MIN_CAPACITY = 64 * 1024;
+
+    private final long budgetBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Map<Integer, Deque<ByteBuffer>> idle = new HashMap<>();
+    private long allocatedBytes;
+    private long idleBytes;
+
+    private long hits;
+    private long allocations;
+    private long waits;
+    private long waitNanos;
+
+    /**
+     * @param budgetBytes 所有緩衝區容量合計的上限
+     */
+    public DirectBufferPool(long budgetBytes) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("budgetBytes must be positive");
+        }
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * 以大塊的循序讀取把整個檔案讀入池中的緩衝區，預算不足時等待。
+     * @param file 來源檔
+     * @param size 檔案大小
+     * @return 檔案內容，用畢須關閉；所需容量超過整個預算時回傳 null，由呼叫端改用記憶體映射
+     * @throws InterruptedIOException 等待預算時被中斷
+     * @throws IOException            讀取失敗
+     */
+    public PooledBuffer read(Path file, long size) throws IOException {
+        int capacity = capacityFor(size);
+        if (capacity < 0 || capacity > budgetBytes) {
+            return null;
+        }
+        ByteBuffer buffer = acquire(capacity);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer.clear().limit((int) size);
+            long position = 0;
+            while (buffer.hasRemaining()) {
+                int n = channel.read(buffer, position);
+                if (n < 0) {
+                    break;
+                }
+                position += n;
+            }
+            buffer.flip();
+            return new PooledBuffer(this, buffer);
+        } catch (IOException | RuntimeException e) {
+            release(buffer);
+            throw e;
+        }
+    }
+
+    /**
+     * @return 目前累計的統計
+     */
+    public BufferPoolStats stats() {
+        lock.lock();
+        try {
+            return new BufferPoolStats(budgetBytes, hits, allocations, waits, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 容納 {@code size} bytes 的緩衝區容量；超過單一緩衝區上限時為 -1
+     */
+    static int capacityFor(long size) {
+        if (size > 1 << 30) {
+            return -1;
+        }
+        int capacity = MIN_CAPACITY;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private ByteBuffer acquire(int capacity) throws InterruptedIOException {
+        lock.lock();
+        try {
+            long start = 0;
+            while (true) {
+                Deque<ByteBuffer> sameSize = idle.get(capacity);
+                if (sameSize != null && !sameSize.isEmpty()) {
+                    idleBytes -= capacity;
+                    hits++;
+                    return sameSize.pop();
+                }
+                if (allocatedBytes + capacity <= budgetBytes) {
+                    break;
+                }
+                if (idleBytes > 0) {
+                    // 丟棄其他容量的閒置緩衝區，直接記憶體由 GC 回收
+                    evictOne();
+                    continue;
+                }
+                if (start == 0) {
+                    start = System.nanoTime();
+                    waits++;
+                }
+                released.await();
+            }
+            if (start != 0) {
+                waitNanos += System.nanoTime() - start;
+            }
+            allocatedBytes += capacity;
+            allocations++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待預讀緩衝區時被中斷");
+        } finally {
+            lock.unlock();
+        }
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    void release(ByteBuffer buffer) {
+        lock.lock();
+        try {
+            idle.computeIfAbsent(buffer.capacity(), k -> new ArrayDeque<>()).push(buffer);
+            idleBytes += buffer.capacity();
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictOne() {
+        Iterator<Deque<ByteBuffer>> it = idle.values().iterator();
+        while (it.hasNext()) {
+            Deque<ByteBuffer> buffers = it.next();
+            ByteBuffer dropped = buffers.poll();
+            if (buffers.isEmpty()) {
+                it.remove();
+            }
+            if (dropped != null) {
+                idleBytes -= dropped.capacity();
+                allocatedBytes -= dropped.capacity();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package work.pollochang.compression.image.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 以 {@link FileChannel#map} 映射來源檔案的 {@link javax.imageio.stream.ImageInputStream}。
+ *
+ * <p>檔案內容由作業系統的分頁快取直接提供，解碼器讀取時只從映射區複製到它自己的緩衝區，
+ * 不會像 {@code ImageIO.createImageInputStream(InputStream)} 在 {@code setUseCache(false)} 時
+ * 再把每個位元組存進堆積上的快取區塊，也省去逐段 {@code read} 的系統呼叫。
+ * 超過 2GB 的檔案以多個 {@value #CHUNK_SHIFT} 位元大小的區塊映射。</p>
+ *
+ * <p>映射建立後即關閉檔案通道；映射區在串流關閉且不再被參照後由 GC 釋放。</p>
+ */
+public class MappedImageInputStream extends ByteBufferImageInputStream {
+
+    /** 每個映射區塊 1GB */
+    private static final int CHUNK_SHIFT = 30;
+
+    /**
+     * 映射整個檔案。
+     * @param file 來源檔案
+     * @throws IOException 無法開啟或映射檔案
+     */
+    public MappedImageInputStream(Path file) throws IOException {
+        this(map(file));
+    }
+
+    private MappedImageInputStream(Mapping mapping) {
+        super(mapping.chunks(), CHUNK_SHIFT, mapping.length());
+    }
+
+    /**
+     * 映射整個檔案為單一唯讀緩衝區，供直接以 {@link ByteBuffer} 解析的 JPEG 路徑使用。
+     * @param file 來源檔案
+     * @return 唯讀的映射緩衝區
+     * @throws IOException 無法開啟或映射檔案，或檔案超過 2GB
+     */
+    public static MappedByteBuffer mapWhole(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("檔案超過 2GB，無法映射為單一緩衝區: " + file);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    private static Mapping map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunkSize = 1L << CHUNK_SHIFT;
+            int count = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+            ByteBuffer[] chunks = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = i * chunkSize;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, size - start));
+            }
+            return new Mapping(chunks, size);
+        }
+    }
+
+    private record Mapping(ByteBuffer[] chunks, long length) {
+    }
+}
@@ -0,0 +1,34 @@
+package work.pollochang.compression.image.io;
+
+import javax.imageio.spi.ImageInputStreamSpi;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * 讓 {@code ImageIO.createImageInputStream(Path)} 回傳 {@link MappedImageInputStream}。
+ *
+ * <p>以 {@code IIORegistry.getDefaultInstance().registerServiceProvider(new MappedImageInputStreamSpi())} 註冊；
+ * 映射的檔案本身就能隨機存取，不需要快取，因此忽略 {@code useCache} 與快取目錄。</p>
+ */
+public class MappedImageInputStreamSpi extends ImageInputStreamSpi {
+
+    public MappedImageInputStreamSpi() {
+        super("pollochang", "1.0", Path.class);
+    }
+
+    @Override
+    public ImageInputStream createInputStreamInstance(Object input, boolean useCache, File cacheDir) throws IOException {
+        if (!(input instanceof Path path)) {
+            throw new IllegalArgumentException("輸入必須是 Path");
+        }
+        return new MappedImageInputStream(path);
+    }
+
+    @Override
+    public String getDescription(Locale locale) {
+        return "Memory-mapped ImageInputStream for java.nio.file.Path";
+    }
+}
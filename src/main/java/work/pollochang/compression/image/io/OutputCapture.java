@@ -0,0 +1,26 @@
+package work.pollochang.compression.image.io;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * 把寫出的內容保留在記憶體的 {@link OutputSink}，一次只對應一個輸出檔案。
+ *
+ * <p>以 {@link BoundedImageOutputStream#detach()} 接手編碼結果的緩衝區，不複製。本類別非執行緒安全。</p>
+ */
+public final class OutputCapture implements OutputSink {
+
+    private ByteBuffer data;
+
+    @Override
+    public void write(Path file, BoundedImageOutputStream out) {
+        data = out.detach();
+    }
+
+    /**
+     * @return 最後一次寫出的內容；尚未寫出時為 null
+     */
+    public ByteBuffer data() {
+        return data;
+    }
+}
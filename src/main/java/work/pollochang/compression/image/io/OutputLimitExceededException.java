@@ -0,0 +1,33 @@
+package work.pollochang.compression.image.io;
+
+import java.io.IOException;
+
+/**
+ * 寫入資料超過 {@link BoundedImageOutputStream} 的大小上限時拋出，
+ * 用來提前中止注定超標的試壓編碼。
+ */
+public class OutputLimitExceededException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long limit;
+    private final long bytesWritten;
+
+    /**
+     * @param limit        輸出串流的大小上限（bytes）
+     * @param bytesWritten 中止時已寫入的位元組數
+     */
+    public OutputLimitExceededException(long limit, long bytesWritten) {
+        super("輸出大小超過上限 " + limit + " bytes");
+        this.limit = limit;
+        this.bytesWritten = bytesWritten;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+}
@@ -0,0 +1,31 @@
+package work.pollochang.compression.image.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 壓縮結果的去處。
+ *
+ * <p>{@link #FILE} 在編碼的執行緒上直接寫入檔案；批次的分段管線改用 {@link OutputCapture}
+ * 把結果留在記憶體，由寫出階段另外寫入，編碼執行緒不必等待磁碟。</p>
+ */
+@FunctionalInterface
+public interface OutputSink {
+
+    /** 直接寫入檔案，以 {@link BoundedImageOutputStream#writeTo(OutputStream)} 避免額外複製 */
+    OutputSink FILE = (file, data) -> {
+        try (OutputStream os = Files.newOutputStream(file)) {
+            data.writeTo(os);
+        }
+    };
+
+    /**
+     * 寫出一個檔案的完整內容。
+     * @param file 輸出檔案
+     * @param data 檔案內容；呼叫返回後可能被清空重用
+     * @throws IOException 寫入失敗
+     */
+    void write(Path file, BoundedImageOutputStream data) throws IOException;
+}
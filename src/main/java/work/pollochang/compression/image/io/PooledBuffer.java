@@ -0,0 +1,40 @@
+package work.pollochang.compression.image.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 由 {@link DirectBufferPool} 借出、已讀入整個來源檔的緩衝區；關閉時歸還，重複關閉無作用。
+ */
+public final class PooledBuffer implements AutoCloseable {
+
+    private final DirectBufferPool pool;
+    private final ByteBuffer buffer;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    PooledBuffer(DirectBufferPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    /**
+     * @return 檔案內容的唯讀視圖，position 為 0、limit 為檔案長度；每次呼叫都是獨立的視圖
+     */
+    public ByteBuffer buffer() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return 以檔案內容為來源的 {@link javax.imageio.stream.ImageInputStream}
+     */
+    public ByteBufferImageInputStream openStream() {
+        return new ByteBufferImageInputStream(buffer());
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            pool.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package work.pollochang.compression.image.io;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 縮放結果與解碼結果的點陣陣列池，避免每次縮放都配置數十 MB 的新陣列（G1 的 humongous 物件）。
+ *
+ * <p>陣列依長度分級，每一級比前一級大 1/4 以內（每個 2 的次方區間分成四級），浪費不超過 25%；
+ * 小於 {@value #MIN_POOLED_ELEMENTS} 個元素的陣列不經過池。借出時以陣列包成所要尺寸與類型的
+ * {@link BufferedImage}，陣列比所需的長也不影響，因為點陣資料一律依 scanline stride 存取。</p>
+ *
+ * <p>歸還的陣列先留在目前執行緒（最多 {@value #LOCAL_SLOTS} 個），同一張圖的下一次縮放不必取鎖；
+ * 執行緒區域已滿時較舊的一個移到全域池。保留的陣列合計不超過最大堆積的 1/{@value #BUDGET_DIVISOR}，
+ * 超過時先丟棄全域池中其他級距的陣列，仍不足就直接丟棄歸還的陣列。</p>
+ *
+ * <p>只有 {@code TYPE_3BYTE_BGR}、{@code TYPE_4BYTE_ABGR}、{@code TYPE_BYTE_GRAY} 與 {@code TYPE_INT_RGB/ARGB/BGR}
+ * 經過池，其他類型照常配置，歸還時忽略。歸還後影像不可再使用。</p>
+ */
+public final class RasterPool {
+
+    /** 太小的陣列直接配置比較划算 */
+    static final int MIN_POOLED_ELEMENTS = 64 * 1024;
+
+    /** 單一陣列的上限，避免級距計算溢位 */
+    private static final int MAX_POOLED_ELEMENTS = 1 << 30;
+
+    private static final int LOCAL_SLOTS = 2;
+
+    private static final int BUDGET_DIVISOR = 8;
+
+    private static final long BUDGET_BYTES = Runtime.getRuntime().maxMemory() / BUDGET_DIVISOR;
+
+    private static final Map<Integer, BufferedImage> TEMPLATES = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<Deque<Object>> LOCAL = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private static final ReentrantLock LOCK = new ReentrantLock();
+    private static final Map<Integer, Deque<byte[]>> IDLE_BYTES = new HashMap<>();
+    private static final Map<Integer, Deque<int[]>> IDLE_INTS = new HashMap<>();
+
+    private static final AtomicLong RETAINED_BYTES = new AtomicLong();
+    private static final AtomicLong PEAK_RETAINED_BYTES = new AtomicLong();
+    private static final LongAdder ACQUISITIONS = new LongAdder();
+    private static final LongAdder HITS = new LongAdder();
+    private static final LongAdder RELEASES = new LongAdder();
+    private static final LongAdder DROPS = new LongAdder();
+
+    private RasterPool() {
+    }
+
+    /**
+     * 借出指定尺寸與類型的影像，用畢以 {@link #release(BufferedImage)} 歸還。
+     * @param type   {@link BufferedImage} 的類型
+     * @param width  寬
+     * @param height 高
+     * @param clear  是否需要全部為 0 的內容；呼叫端會寫入每個像素時傳入 {@code false}，重用的陣列不必清空
+     * @return 影像；內容在 {@code clear} 為 {@code false} 時未定義
+     */
+    public static BufferedImage acquire(int type, int width, int height, boolean clear) {
+        BufferedImage template = template(type);
+        if (template == null) {
+            return new BufferedImage(width, height, type);
+        }
+        SampleModel sampleModel = template.getSampleModel().createCompatibleSampleModel(width, height);
+        long elements = (long) width * height * sampleModel.getNumDataElements();
+        if (elements < MIN_POOLED_ELEMENTS || elements > MAX_POOLED_ELEMENTS) {
+            return new BufferedImage(width, height, type);
+        }
+        int length = (int) elements;
+        int capacity = capacityFor(length);
+        boolean bytes = template.getRaster().getDataBuffer() instanceof DataBufferByte;
+        ACQUISITIONS.increment();
+
+        Object array = take(bytes, capacity);
+        if (array != null) {
+            HITS.increment();
+            if (clear) {
+                if (bytes) {
+                    Arrays.fill((byte[]) array, 0, length, (byte) 0);
+                } else {
+                    Arrays.fill((int[]) array, 0, length, 0);
+                }
+            }
+        } else {
+            array = bytes ? new byte[capacity] : new int[capacity];
+        }
+        DataBuffer buffer = bytes ? new DataBufferByte((byte[]) array, length) : new DataBufferInt((int[]) array, length);
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, buffer, null);
+        return new BufferedImage(template.getColorModel(), raster, template.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * 歸還影像的點陣陣列；不經過池的類型、子影像或太小的影像只會 {@code flush()}。
+     * @param image 不再使用的影像，可為 null；不限於由本池借出
+     */
+    public static void release(BufferedImage image) {
+        if (image == null) {
+            return;
+        }
+        image.flush();
+        WritableRaster raster = image.getRaster();
+        if (template(image.getType()) == null || raster.getParent() != null
+                || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0) {
+            return;
+        }
+        Object array;
+        int length;
+        if (raster.getDataBuffer() instanceof DataBufferByte buffer && buffer.getNumBanks() == 1 && buffer.getOffset() == 0) {
+            array = buffer.getData();
+            length = buffer.getData().length;
+        } else if (raster.getDataBuffer() instanceof DataBufferInt buffer && buffer.getNumBanks() == 1 && buffer.getOffset() == 0) {
+            array = buffer.getData();
+            length = buffer.getData().length;
+        } else {
+            return;
+        }
+        if (length < MIN_POOLED_ELEMENTS || length > MAX_POOLED_ELEMENTS) {
+            return;
+        }
+        RELEASES.increment();
+        long bytes = byteSize(array);
+        if (!reserve(bytes)) {
+            DROPS.increment();
+            return;
+        }
+        Deque<Object> local = LOCAL.get();
+        local.push(array);
+        if (local.size() > LOCAL_SLOTS) {
+            offer(local.removeLast());
+        }
+    }
+
+    /**
+     * @param type {@link BufferedImage} 的類型
+     * @return 此類型是否經過池
+     */
+    public static boolean isPooled(int type) {
+        return template(type) != null;
+    }
+
+    /**
+     * @return 目前累計的統計
+     */
+    public static RasterPoolStats stats() {
+        return new RasterPoolStats(BUDGET_BYTES, ACQUISITIONS.sum(), HITS.sum(), RELEASES.sum(), DROPS.sum(),
+                RETAINED_BYTES.get(), PEAK_RETAINED_BYTES.get());
+    }
+
+    /**
+     * @return 容納 {@code length} 個元素的級距：不小於 {@code length}、且為其最高位元 1/4 的倍數
+     */
+    static int capacityFor(int length) {
+        int step = Math.max(1, Integer.highestOneBit(length) >> 2);
+        return (length + step - 1) / step * step;
+    }
+
+    /**
+     * @return 長度為 {@code length} 的陣列可以提供的最大級距
+     */
+    static int classOf(int length) {
+        int step = Math.max(1, Integer.highestOneBit(length) >> 2);
+        return length / step * step;
+    }
+
+    private static BufferedImage template(int type) {
+        return switch (type) {
+            case BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY,
+                 BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR ->
+                    TEMPLATES.computeIfAbsent(type, t -> new BufferedImage(1, 1, t));
+            default -> null;
+        };
+    }
+
+    /**
+     * 先找目前執行緒留下的陣列，再找全域池。
+     */
+    private static Object take(boolean bytes, int capacity) {
+        Iterator<Object> it = LOCAL.get().iterator();
+        while (it.hasNext()) {
+            Object array = it.next();
+            if (array instanceof byte[] b ? bytes && classOf(b.length) == capacity
+                    : !bytes && classOf(((int[]) array).length) == capacity) {
+                it.remove();
+                RETAINED_BYTES.addAndGet(-byteSize(array));
+                return array;
+            }
+        }
+        LOCK.lock();
+        try {
+            Deque<?> idle = bytes ? IDLE_BYTES.get(capacity) : IDLE_INTS.get(capacity);
+            Object array = idle == null ? null : idle.poll();
+            if (array != null) {
+                RETAINED_BYTES.addAndGet(-byteSize(array));
+            }
+            return array;
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static void offer(Object array) {
+        LOCK.lock();
+        try {
+            if (array instanceof byte[] b) {
+                IDLE_BYTES.computeIfAbsent(classOf(b.length), k -> new ArrayDeque<>()).push(b);
+            } else {
+                int[] i = (int[]) array;
+                IDLE_INTS.computeIfAbsent(classOf(i.length), k -> new ArrayDeque<>()).push(i);
+            }
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    /**
+     * 將 {@code bytes} 計入保留量；超過預算時先丟棄全域池的陣列，仍不足則不保留。
+     */
+    private static boolean reserve(long bytes) {
+        if (bytes > BUDGET_BYTES) {
+            return false;
+        }
+        while (RETAINED_BYTES.get() + bytes > BUDGET_BYTES) {
+            if (!evictOne()) {
+                return false;
+            }
+        }
+        PEAK_RETAINED_BYTES.accumulateAndGet(RETAINED_BYTES.addAndGet(bytes), Math::max);
+        return true;
+    }
+
+    private static boolean evictOne() {
+        LOCK.lock();
+        try {
+            return evictFrom(IDLE_BYTES) || evictFrom(IDLE_INTS);
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static <T> boolean evictFrom(Map<Integer, Deque<T>> idle) {
+        Iterator<Deque<T>> it = idle.values().iterator();
+        while (it.hasNext()) {
+            Deque<T> arrays = it.next();
+            T dropped = arrays.pollLast();
+            if (arrays.isEmpty()) {
+                it.remove();
+            }
+            if (dropped != null) {
+                RETAINED_BYTES.addAndGet(-byteSize(dropped));
+                DROPS.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long byteSize(Object array) {
+        return array instanceof byte[] b ? b.length : 4L * ((int[]) array).length;
+    }
+}
@@ -0,0 +1,22 @@
+package work.pollochang.compression.image.io;
+
+/**
+ * {@link RasterPool} 的統計快照。
+ * @param budgetBytes        保留陣列的預算
+ * @param acquisitions       經過池的借出次數
+ * @param hits               重用保留陣列的次數
+ * @param releases           歸還的陣列數
+ * @param drops              因預算不足而丟棄的陣列數
+ * @param retainedBytes      目前保留的陣列大小合計
+ * @param peakRetainedBytes  保留大小的峰值
+ */
+public record RasterPoolStats(long budgetBytes, long acquisitions, long hits, long releases, long drops,
+                              long retainedBytes, long peakRetainedBytes) {
+
+    /**
+     * @return 借出時重用保留陣列的百分比
+     */
+    public double hitPercent() {
+        return acquisitions == 0 ? 0.0 : hits * 100.0 / acquisitions;
+    }
+}
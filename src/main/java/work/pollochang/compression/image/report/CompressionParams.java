@@ -1,3 +1,37 @@
 package work.pollochang.compression.image.report;
 
-public record CompressionParams(float quality, long minSizeBytes, int minWidth, int minHeight, long targetMaxSizeBytes) {}
\ No newline at end of file
+import work.pollochang.compression.image.core.JpegEntropyMode;
+import work.pollochang.compression.image.core.QualitySearchMode;
+import work.pollochang.compression.image.resize.ResizeFilter;
+
+public record CompressionParams(float quality, long minSizeBytes, int minWidth, int minHeight, long targetMaxSizeBytes,
+                                QualitySearchMode searchMode, long predictionMinPixels, boolean requantize,
+                                long parallelEncodeMinPixels, JpegEntropyMode entropyMode, long streamingDecodeMinBytes,
+                                ResizeFilter resizeFilter, long parallelResizeMinPixels) {
+
+    /** 預設對 8MP 以上的圖片啟用抽樣預測 */
+    public static final long DEFAULT_PREDICTION_MIN_PIXELS = 8_000_000L;
+
+    /** 預設對 16MP 以上的 JPG 以多核心分段編碼 */
+    public static final long DEFAULT_PARALLEL_ENCODE_MIN_PIXELS = 16_000_000L;
+
+    /** 預設以原始解析度解碼後超過 256MB（約 8900 萬像素）的基線 JPG 改以串流方式解碼 */
+    public static final long DEFAULT_STREAMING_DECODE_MIN_BYTES = 256L * 1024 * 1024;
+
+    /** 預設沿用 Java2D 雙線性縮放；換用其他濾波器會改變輸出大小，學習快取中的比例與品質也就不再適用 */
+    public static final ResizeFilter DEFAULT_RESIZE_FILTER = ResizeFilter.JAVA2D;
+
+    /** 預設來源 8MP 以上的圖片借用閒置的核心分段縮放 */
+    public static final long DEFAULT_PARALLEL_RESIZE_MIN_PIXELS = 8_000_000L;
+
+    public CompressionParams(float quality, long minSizeBytes, int minWidth, int minHeight, long targetMaxSizeBytes) {
+        this(quality, minSizeBytes, minWidth, minHeight, targetMaxSizeBytes, QualitySearchMode.BINARY);
+    }
+
+    public CompressionParams(float quality, long minSizeBytes, int minWidth, int minHeight, long targetMaxSizeBytes,
+                             QualitySearchMode searchMode) {
+        this(quality, minSizeBytes, minWidth, minHeight, targetMaxSizeBytes, searchMode, DEFAULT_PREDICTION_MIN_PIXELS, true,
+                DEFAULT_PARALLEL_ENCODE_MIN_PIXELS, JpegEntropyMode.STANDARD, DEFAULT_STREAMING_DECODE_MIN_BYTES,
+                DEFAULT_RESIZE_FILTER, DEFAULT_PARALLEL_RESIZE_MIN_PIXELS);
+    }
+}
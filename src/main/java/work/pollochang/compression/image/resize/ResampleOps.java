@@ -0,0 +1,18 @@
+package work.pollochang.compression.image.resize;
+
+/**
+ * 重新取樣的內層運算，分為純量與 Vector API 兩種實作。
+ */
+interface ResampleOps {
+
+    /**
+     * {@code out[i] = Σ weights[weightOffset + k] * rows[k][i]}，{@code k} 從 0 到 {@code rows.length - 1}，
+     * {@code i} 從 0 到 {@code length - 1}。
+     */
+    void weightedSum(float[][] rows, float[] weights, int weightOffset, float[] out, int length);
+
+    /**
+     * 水平方向重新取樣一列交錯排列的像素：{@code row[x * channels + c] = Σ w(x, k) * column[(start(x) + k) * channels + c]}。
+     */
+    void resampleRow(float[] column, ResizeKernel kernel, int channels, float[] row, int width);
+}
@@ -0,0 +1,53 @@
+package work.pollochang.compression.image.resize;
+
+/**
+ * 縮放使用的重新取樣濾波器。
+ *
+ * <p>{@link #JAVA2D} 沿用 {@code Graphics2D.drawImage} 的雙線性內插；其他濾波器由 {@link SeparableResampler}
+ * 以可分離的權重表直接在點陣資料上計算，縮小時核心會依比例放寬，涵蓋所有來源像素，大幅縮小也不會產生鋸齒。</p>
+ */
+public enum ResizeFilter {
+    JAVA2D("Java2D 雙線性", 0),
+    BOX("盒狀 (區域平均)", 0.5),
+    TRIANGLE("三角 (線性)", 1),
+    CATMULL_ROM("Catmull-Rom 三次", 2),
+    LANCZOS3("Lanczos3", 3);
+
+    private final String description;
+    private final double radius;
+
+    ResizeFilter(String description, double radius) {
+        this.description = description;
+        this.radius = radius;
+    }
+
+    public String getDescription() { return description; }
+
+    /**
+     * @return 放大時的核心半徑（以來源像素計）
+     */
+    double radius() {
+        return radius;
+    }
+
+    /**
+     * @param x 與取樣中心的距離（以核心尺度計）
+     * @return 該位置的權重，尚未正規化
+     */
+    double weight(double x) {
+        double t = Math.abs(x);
+        return switch (this) {
+            case BOX -> x >= -0.5 && x < 0.5 ? 1.0 : 0.0;
+            case TRIANGLE -> Math.max(0.0, 1.0 - t);
+            case CATMULL_ROM -> t < 1.0 ? (1.5 * t - 2.5) * t * t + 1.0
+                    : t < 2.0 ? ((-0.5 * t + 2.5) * t - 4.0) * t + 2.0 : 0.0;
+            case LANCZOS3 -> t < 1e-8 ? 1.0 : t < 3.0 ? sinc(t) * sinc(t / 3.0) : 0.0;
+            case JAVA2D -> throw new IllegalStateException("JAVA2D 沒有權重表");
+        };
+    }
+
+    private static double sinc(double x) {
+        double px = Math.PI * x;
+        return Math.sin(px) / px;
+    }
+}
@@ -0,0 +1,91 @@
+package work.pollochang.compression.image.resize;
+
+import java.util.Arrays;
+
+/**
+ * 單一方向的重新取樣權重表。
+ *
+ * <p>每個輸出位置固定使用 {@link #taps()} 個連續的來源像素，從 {@link #start(int)} 開始；
+ * 超出邊界的權重併入最靠近的邊緣像素，因此所有輸出位置的權重數相同，內層迴圈不需處理邊界。</p>
+ */
+final class ResizeKernel {
+
+    private final int taps;
+    private final int[] start;
+    private final float[] weights;
+
+    private ResizeKernel(int taps, int[] start, float[] weights) {
+        this.taps = taps;
+        this.start = start;
+        this.weights = weights;
+    }
+
+    /**
+     * 計算權重表。
+     * @param filter    濾波器，不可為 {@link ResizeFilter#JAVA2D}
+     * @param inLength  來源長度
+     * @param outLength 輸出長度
+     * @return 權重表
+     */
+    static ResizeKernel of(ResizeFilter filter, int inLength, int outLength) {
+        double scale = (double) outLength / inLength;
+        // 縮小時依比例放寬核心，讓每個來源像素都有貢獻
+        double filterScale = Math.max(1.0, 1.0 / scale);
+        double support = filter.radius() * filterScale;
+        int taps = Math.min(inLength, (int) Math.ceil(support * 2) + 1);
+
+        int[] start = new int[outLength];
+        float[] weights = new float[outLength * taps];
+        double[] row = new double[taps];
+        for (int i = 0; i < outLength; i++) {
+            // 像素中心位於 j + 0.5
+            double center = (i + 0.5) / scale;
+            int from = (int) Math.ceil(center - support - 0.5);
+            int to = (int) Math.floor(center + support - 0.5);
+            int first = Math.max(0, Math.min(from, inLength - taps));
+            Arrays.fill(row, 0.0);
+            double sum = 0.0;
+            for (int j = from; j <= to; j++) {
+                double w = filter.weight((j + 0.5 - center) / filterScale);
+                if (w == 0.0) {
+                    continue;
+                }
+                row[Math.max(0, Math.min(inLength - 1, j)) - first] += w;
+                sum += w;
+            }
+            start[i] = first;
+            if (sum == 0.0) {
+                // 權重全為 0（盒狀濾波器在放大時可能發生）時改取最近的像素
+                int nearest = Math.max(0, Math.min(taps - 1, (int) center - first));
+                weights[i * taps + nearest] = 1f;
+                continue;
+            }
+            for (int k = 0; k < taps; k++) {
+                weights[i * taps + k] = (float) (row[k] / sum);
+            }
+        }
+        return new ResizeKernel(taps, start, weights);
+    }
+
+    /**
+     * @return 每個輸出位置使用的來源像素數
+     */
+    int taps() {
+        return taps;
+    }
+
+    /**
+     * @param i 輸出位置
+     * @return 第一個來源像素的位置，隨 {@code i} 單調不減
+     */
+    int start(int i) {
+        return start[i];
+    }
+
+    /**
+     * @return 所有輸出位置的權重，第 {@code i} 個位置從 {@code i * taps()} 開始
+     */
+    float[] weights() {
+        return weights;
+    }
+}
@@ -0,0 +1,70 @@
+package work.pollochang.compression.image.resize;
+
+/**
+ * 純量實作，未加入 {@code jdk.incubator.vector} 模組時使用。
+ */
+final class ScalarResampleOps implements ResampleOps {
+
+    @Override
+    public void weightedSum(float[][] rows, float[] weights, int weightOffset, float[] out, int length) {
+        float w = weights[weightOffset];
+        float[] row = rows[0];
+        for (int i = 0; i < length; i++) {
+            out[i] = w * row[i];
+        }
+        for (int k = 1; k < rows.length; k++) {
+            w = weights[weightOffset + k];
+            row = rows[k];
+            for (int i = 0; i < length; i++) {
+                out[i] += w * row[i];
+            }
+        }
+    }
+
+    @Override
+    public void resampleRow(float[] column, ResizeKernel kernel, int channels, float[] row, int width) {
+        int taps = kernel.taps();
+        float[] weights = kernel.weights();
+        // 同一個權重同時套用到像素的所有通道，各通道分別累加；支援的類型只有 1、3、4 個通道
+        for (int x = 0; x < width; x++) {
+            int w = x * taps;
+            int p = kernel.start(x) * channels;
+            int o = x * channels;
+            switch (channels) {
+                case 1 -> {
+                    float s0 = 0f;
+                    for (int k = 0; k < taps; k++, p++) {
+                        s0 += weights[w + k] * column[p];
+                    }
+                    row[o] = s0;
+                }
+                case 3 -> {
+                    float s0 = 0f, s1 = 0f, s2 = 0f;
+                    for (int k = 0; k < taps; k++, p += 3) {
+                        float weight = weights[w + k];
+                        s0 += weight * column[p];
+                        s1 += weight * column[p + 1];
+                        s2 += weight * column[p + 2];
+                    }
+                    row[o] = s0;
+                    row[o + 1] = s1;
+                    row[o + 2] = s2;
+                }
+                default -> {
+                    float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+                    for (int k = 0; k < taps; k++, p += 4) {
+                        float weight = weights[w + k];
+                        s0 += weight * column[p];
+                        s1 += weight * column[p + 1];
+                        s2 += weight * column[p + 2];
+                        s3 += weight * column[p + 3];
+                    }
+                    row[o] = s0;
+                    row[o + 1] = s1;
+                    row[o + 2] = s2;
+                    row[o + 3] = s3;
+                }
+            }
+        }
+    }
+}
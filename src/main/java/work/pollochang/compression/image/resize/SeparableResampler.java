@@ -0,0 +1,348 @@
+package work.pollochang.compression.image.resize;
+
+import lombok.extern.slf4j.Slf4j;
+import work.pollochang.compression.image.io.RasterPool;
+
+import java.awt.Graphics2D;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 可分離的重新取樣縮放，直接讀寫點陣資料陣列，不經過 Java2D 的繪圖迴圈。
+ *
+ * <p>先在垂直方向合成一列，再在水平方向計算輸出像素；兩個方向各自使用 {@link ResizeKernel} 預先算好的權重表。
+ * 垂直方向需要的來源列依原本的通道順序轉成浮點數後放在環狀緩衝區，每個來源列只轉換一次，
+ * 因此額外記憶體只有「核心高度 × 來源寬度」個浮點數，不需要中間影像。
+ * 大圖可將輸出切成水平分段，由多個執行緒各自以自己的環狀緩衝區處理。</p>
+ *
+ * <p>內層的乘加在加入 {@code --add-modules jdk.incubator.vector} 時以 Vector API 計算，否則使用純量迴圈，
+ * 兩者結果只差浮點數的捨入誤差。帶有 Alpha 通道的影像先將顏色乘上 Alpha 再取樣，避免透明像素的顏色滲入邊緣。</p>
+ *
+ * <p>{@code TYPE_3BYTE_BGR}、{@code TYPE_4BYTE_ABGR}、{@code TYPE_BYTE_GRAY} 與 {@code TYPE_INT_RGB/ARGB/BGR}
+ * 直接讀取，輸出相同類型；其他類型（包含 {@code TYPE_CUSTOM}）先轉為 3BYTE_BGR、4BYTE_ABGR 或 BYTE_GRAY。
+ * 輸出影像與轉換用的暫存影像都由 {@link RasterPool} 借出。</p>
+ */
+@Slf4j
+public final class SeparableResampler {
+
+    private static final String VECTOR_OPS = "work.pollochang.compression.image.resize.VectorResampleOps";
+
+    private static final ResampleOps OPS = loadOps();
+
+    /** 分段數約為執行緒數的倍數，讓先做完的執行緒可以再接下一段 */
+    private static final int BANDS_PER_THREAD = 4;
+
+    /** 每段至少的輸出列數，太短的分段重複轉換的交界來源列比例過高 */
+    private static final int MIN_BAND_ROWS = 16;
+
+    private SeparableResampler() {
+    }
+
+    /**
+     * @return 內層運算是否使用 Vector API
+     */
+    public static boolean isVectorized() {
+        return !(OPS instanceof ScalarResampleOps);
+    }
+
+    /**
+     * 將影像縮放為指定尺寸，在目前執行緒完成。
+     * @param source 來源影像
+     * @param width  輸出寬度
+     * @param height 輸出高度
+     * @param filter 濾波器，不可為 {@link ResizeFilter#JAVA2D}
+     * @return 新的影像
+     */
+    public static BufferedImage resize(BufferedImage source, int width, int height, ResizeFilter filter) {
+        return resize(source, width, height, filter, null, 1);
+    }
+
+    /**
+     * 將影像縮放為指定尺寸，輸出依列切成水平分段，由 {@code threads} 個執行緒（包含目前執行緒）輪流領取。
+     *
+     * <p>每段各自從分段的第一列開始填入環狀緩衝區，段與段交界處的來源列會多轉換一次；
+     * 每個輸出列的計算與單執行緒時完全相同，因此結果也完全相同。</p>
+     * @param source  來源影像
+     * @param width   輸出寬度
+     * @param height  輸出高度
+     * @param filter  濾波器，不可為 {@link ResizeFilter#JAVA2D}
+     * @param pool    執行分段的執行緒池；{@code null} 表示在目前執行緒完成
+     * @param threads 同時處理的執行緒數上限，包含目前執行緒
+     * @return 新的影像
+     */
+    public static BufferedImage resize(BufferedImage source, int width, int height, ResizeFilter filter,
+                                       ForkJoinPool pool, int threads) {
+        if (filter == ResizeFilter.JAVA2D) {
+            throw new IllegalArgumentException("JAVA2D 請使用 ImageTools.resizeImage");
+        }
+        BufferedImage src = toSupportedType(source);
+        // 每個輸出像素都會寫入，重用的陣列不必清空
+        BufferedImage dst = RasterPool.acquire(src.getType(), width, height, false);
+        Pixels in = Pixels.of(src);
+        Pixels out = Pixels.of(dst);
+        ResizeKernel horizontal = ResizeKernel.of(filter, src.getWidth(), width);
+        ResizeKernel vertical = ResizeKernel.of(filter, src.getHeight(), height);
+
+        try {
+            resizeBands(in, out, horizontal, vertical, height, pool, threads);
+        } finally {
+            if (src != source) {
+                RasterPool.release(src);
+            }
+        }
+        return dst;
+    }
+
+    private static void resizeBands(Pixels in, Pixels out, ResizeKernel horizontal, ResizeKernel vertical, int height,
+                                    ForkJoinPool pool, int threads) {
+        int bands = pool == null || threads < 2 ? 1
+                : Math.min(threads * BANDS_PER_THREAD, Math.max(1, height / MIN_BAND_ROWS));
+        if (bands < 2) {
+            new BandWorker(in, out, horizontal, vertical).resizeRows(0, height);
+            return;
+        }
+        int rowsPerBand = (height + bands - 1) / bands;
+        AtomicInteger nextBand = new AtomicInteger();
+        Runnable worker = () -> {
+            BandWorker band = new BandWorker(in, out, horizontal, vertical);
+            for (int b = nextBand.getAndIncrement(); b * rowsPerBand < height; b = nextBand.getAndIncrement()) {
+                band.resizeRows(b * rowsPerBand, Math.min(height, (b + 1) * rowsPerBand));
+            }
+        };
+        List<ForkJoinTask<?>> helpers = new ArrayList<>(threads - 1);
+        for (int i = 1; i < threads; i++) {
+            helpers.add(pool.submit(worker));
+        }
+        // 目前執行緒也領取分段，執行緒池忙碌時仍能自行完成全部分段
+        worker.run();
+        for (ForkJoinTask<?> helper : helpers) {
+            helper.join();
+        }
+    }
+
+    /**
+     * 不是可直接讀取的類型時，先以 1:1 繪製轉為 3BYTE_BGR、4BYTE_ABGR 或 BYTE_GRAY。
+     */
+    private static BufferedImage toSupportedType(BufferedImage image) {
+        switch (image.getType()) {
+            case BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY,
+                 BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR -> {
+                return image;
+            }
+            default -> {
+            }
+        }
+        int type;
+        if (image.getColorModel().hasAlpha()) {
+            type = BufferedImage.TYPE_4BYTE_ABGR;
+        } else if (image.getColorModel().getColorSpace().getType() == ColorSpace.TYPE_GRAY) {
+            type = BufferedImage.TYPE_BYTE_GRAY;
+        } else {
+            type = BufferedImage.TYPE_3BYTE_BGR;
+        }
+        BufferedImage converted = RasterPool.acquire(type, image.getWidth(), image.getHeight(), true);
+        Graphics2D g = converted.createGraphics();
+        try {
+            g.drawImage(image, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return converted;
+    }
+
+    private static ResampleOps loadOps() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (ResampleOps) Class.forName(VECTOR_OPS).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                log.debug("無法載入 Vector API 縮放實作，改用純量運算: {}", e.toString());
+            }
+        }
+        return new ScalarResampleOps();
+    }
+
+    /**
+     * 一個執行緒的環狀緩衝區與列緩衝區，依序處理領取到的分段。
+     */
+    private static final class BandWorker {
+        private final Pixels in;
+        private final Pixels out;
+        private final ResizeKernel horizontal;
+        private final ResizeKernel vertical;
+        private final int channels;
+        private final int width;
+        private final int rowLength;
+        private final float[][] ring;
+        private final int[] ringRow;
+        private final float[][] window;
+        private final float[] column;
+        private final float[] row;
+
+        BandWorker(Pixels in, Pixels out, ResizeKernel horizontal, ResizeKernel vertical) {
+            this.in = in;
+            this.out = out;
+            this.horizontal = horizontal;
+            this.vertical = vertical;
+            this.channels = in.channels();
+            this.width = out.width;
+            this.rowLength = in.width * channels;
+            this.ring = new float[vertical.taps()][rowLength];
+            this.ringRow = new int[vertical.taps()];
+            this.window = new float[vertical.taps()][];
+            this.column = new float[rowLength];
+            this.row = new float[width * channels];
+        }
+
+        /**
+         * 計算輸出的 {@code [fromY, toY)} 列。
+         */
+        void resizeRows(int fromY, int toY) {
+            int vTaps = vertical.taps();
+            float[] vWeights = vertical.weights();
+            // 權重表依位置單調前進，連續 vTaps 列在環狀緩衝區中的位置不會重疊
+            Arrays.fill(ringRow, -1);
+            for (int y = fromY; y < toY; y++) {
+                int first = vertical.start(y);
+                for (int k = 0; k < vTaps; k++) {
+                    int sy = first + k;
+                    int slot = sy % vTaps;
+                    if (ringRow[slot] != sy) {
+                        in.readRow(sy, ring[slot]);
+                        ringRow[slot] = sy;
+                    }
+                    window[k] = ring[slot];
+                }
+                OPS.weightedSum(window, vWeights, y * vTaps, column, rowLength);
+                OPS.resampleRow(column, horizontal, channels, row, width);
+                out.writeRow(y, row);
+            }
+        }
+    }
+
+    /**
+     * 以浮點數讀寫一列像素，通道維持點陣資料原本的排列順序（位元組資料）或 band 順序（整數資料）。
+     */
+    private static final class Pixels {
+        private final int width;
+        private final int channels;
+        /** Alpha 在像素內的位置，沒有 Alpha 時為 -1 */
+        private final int alphaIndex;
+        private final byte[] bytes;
+        private final int[] ints;
+        private final int[] shifts;
+        private final int[] masks;
+        private final int scanlineStride;
+        private final int origin;
+
+        private Pixels(int width, int channels, int alphaIndex, byte[] bytes, int[] ints, int[] shifts, int[] masks,
+                       int scanlineStride, int origin) {
+            this.width = width;
+            this.channels = channels;
+            this.alphaIndex = alphaIndex;
+            this.bytes = bytes;
+            this.ints = ints;
+            this.shifts = shifts;
+            this.masks = masks;
+            this.scanlineStride = scanlineStride;
+            this.origin = origin;
+        }
+
+        static Pixels of(BufferedImage image) {
+            WritableRaster raster = image.getRaster();
+            boolean alpha = image.getColorModel().hasAlpha();
+            int translateX = raster.getSampleModelTranslateX();
+            int translateY = raster.getSampleModelTranslateY();
+            if (raster.getSampleModel() instanceof ComponentSampleModel sm
+                    && raster.getDataBuffer() instanceof DataBufferByte buffer) {
+                // 支援的位元組類型每個像素的位元組連續排列（pixelStride 等於通道數）
+                int channels = sm.getNumBands();
+                int origin = buffer.getOffset() - translateY * sm.getScanlineStride() - translateX * channels;
+                int alphaIndex = alpha ? sm.getBandOffsets()[channels - 1] : -1;
+                return new Pixels(image.getWidth(), channels, alphaIndex, buffer.getData(), null, null, null,
+                        sm.getScanlineStride(), origin);
+            }
+            SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+            int channels = sm.getNumBands();
+            int origin = buffer.getOffset() - translateY * sm.getScanlineStride() - translateX;
+            return new Pixels(image.getWidth(), channels, alpha ? channels - 1 : -1, null, buffer.getData(),
+                    sm.getBitOffsets(), sm.getBitMasks(), sm.getScanlineStride(), origin);
+        }
+
+        int channels() {
+            return channels;
+        }
+
+        void readRow(int y, float[] row) {
+            int base = origin + y * scanlineStride;
+            int length = width * channels;
+            if (bytes != null) {
+                // 位元組依原本的排列連續轉換，JIT 可以自動向量化
+                for (int i = 0; i < length; i++) {
+                    row[i] = bytes[base + i] & 0xFF;
+                }
+            } else {
+                for (int x = 0, i = 0; x < width; x++) {
+                    int pixel = ints[base + x];
+                    for (int c = 0; c < channels; c++, i++) {
+                        row[i] = (pixel & masks[c]) >>> shifts[c];
+                    }
+                }
+            }
+            if (alphaIndex >= 0) {
+                for (int i = 0; i < length; i += channels) {
+                    float a = row[i + alphaIndex] * (1f / 255f);
+                    for (int c = 0; c < channels; c++) {
+                        if (c != alphaIndex) {
+                            row[i + c] *= a;
+                        }
+                    }
+                }
+            }
+        }
+
+        void writeRow(int y, float[] row) {
+            int base = origin + y * scanlineStride;
+            int length = width * channels;
+            if (alphaIndex >= 0) {
+                for (int i = 0; i < length; i += channels) {
+                    float a = row[i + alphaIndex];
+                    float scale = a >= 0.5f ? 255f / Math.min(255f, a) : 0f;
+                    for (int c = 0; c < channels; c++) {
+                        if (c != alphaIndex) {
+                            row[i + c] *= scale;
+                        }
+                    }
+                }
+            }
+            if (bytes != null) {
+                for (int i = 0; i < length; i++) {
+                    bytes[base + i] = (byte) clamp(row[i]);
+                }
+            } else {
+                for (int x = 0, i = 0; x < width; x++) {
+                    int pixel = 0;
+                    for (int c = 0; c < channels; c++, i++) {
+                        pixel |= (clamp(row[i]) << shifts[c]) & masks[c];
+                    }
+                    ints[base + x] = pixel;
+                }
+            }
+        }
+
+        private static int clamp(float v) {
+            return v <= 0f ? 0 : v >= 255f ? 255 : (int) (v + 0.5f);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package work.pollochang.compression.image.resize;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 以 Vector API 一次處理一個 SIMD 暫存器寬度的浮點數。
+ *
+ * <p>只由 {@link SeparableResampler} 以反射載入，未加入 {@code jdk.incubator.vector} 模組時不會連結本類別。
+ * 乘加分開計算而不使用 {@code fma}，沒有 FMA 指令的 CPU 上 {@code fma} 會退回很慢的純量運算。</p>
+ */
+final class VectorResampleOps implements ResampleOps {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    /** 多通道的水平取樣每個權重只乘三或四個數，向量化沒有好處，沿用純量實作 */
+    private static final ScalarResampleOps SCALAR = new ScalarResampleOps();
+
+    @Override
+    public void weightedSum(float[][] rows, float[] weights, int weightOffset, float[] out, int length) {
+        int taps = rows.length;
+        int i = 0;
+        // 每一段先在暫存器中累加完所有列再寫回，輸出陣列只寫一次
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector acc = FloatVector.fromArray(SPECIES, rows[0], i).mul(weights[weightOffset]);
+            for (int k = 1; k < taps; k++) {
+                acc = FloatVector.fromArray(SPECIES, rows[k], i).mul(weights[weightOffset + k]).add(acc);
+            }
+            acc.intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            float sum = 0f;
+            for (int k = 0; k < taps; k++) {
+                sum += weights[weightOffset + k] * rows[k][i];
+            }
+            out[i] = sum;
+        }
+    }
+
+    @Override
+    public void resampleRow(float[] column, ResizeKernel kernel, int channels, float[] row, int width) {
+        if (channels != 1) {
+            SCALAR.resampleRow(column, kernel, channels, row, width);
+            return;
+        }
+        // 單通道時權重與來源都是連續的，以向量計算內積
+        int taps = kernel.taps();
+        float[] weights = kernel.weights();
+        for (int x = 0; x < width; x++) {
+            row[x] = dot(weights, x * taps, column, kernel.start(x), taps);
+        }
+    }
+
+    private static float dot(float[] weights, int weightOffset, float[] values, int valueOffset, int length) {
+        int k = 0;
+        float sum = 0f;
+        if (length >= SPECIES.length()) {
+            FloatVector acc = FloatVector.zero(SPECIES);
+            for (int bound = SPECIES.loopBound(length); k < bound; k += SPECIES.length()) {
+                FloatVector w = FloatVector.fromArray(SPECIES, weights, weightOffset + k);
+                acc = FloatVector.fromArray(SPECIES, values, valueOffset + k).mul(w).add(acc);
+            }
+            sum = acc.reduceLanes(VectorOperators.ADD);
+        }
+        for (; k < length; k++) {
+            sum += weights[weightOffset + k] * values[valueOffset + k];
+        }
+        return sum;
+    }
+}
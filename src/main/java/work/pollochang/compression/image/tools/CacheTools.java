@@ -12,10 +12,21 @@ public class CacheTools {
      * @return
      */
     public static SimilarityKey createKey(BufferedImage image, long fileSize) {
+        return createKey(image.getWidth(), image.getHeight(), fileSize);
+    }
+
+    /**
+     * 以寬高產生 Key，可在解碼前由檔頭尺寸查詢快取
+     * @param width
+     * @param height
+     * @param fileSize
+     * @return
+     */
+    public static SimilarityKey createKey(int width, int height, long fileSize) {
         // 調整分桶大小可以改變快取的粒度
         // 寬/高每 100px 一個桶，檔案大小每 100KB (102400 bytes) 一個桶
-        int widthBucket = image.getWidth() / 100;
-        int heightBucket = image.getHeight() / 100;
+        int widthBucket = width / 100;
+        int heightBucket = height / 100;
         long sizeBucket = fileSize / 102400;
         return new SimilarityKey(widthBucket, heightBucket, sizeBucket);
     }
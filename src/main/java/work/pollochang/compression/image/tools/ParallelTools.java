@@ -0,0 +1,131 @@
+package work.pollochang.compression.image.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 單張圖片內部平行處理（分段編碼、縮放等）共用的執行緒池。
+ *
+ * <p>批次處理已經以每核心一個執行緒並行處理多張圖片，這裡的工作執行緒只在少數大圖時使用，
+ * 因此與批次執行緒池分開，避免大圖的分段工作佔住批次佇列。工作執行緒為 daemon，不影響程式結束。</p>
+ *
+ * <p>批次的編碼執行緒以 {@link #batchTaskStarted()} / {@link #batchTaskFinished()} 回報正在處理的圖片數，
+ * 分段縮放與分段編碼以 {@link #acquireHelpers(int)} 只借用其餘閒置的核心；批次前段每個核心都在處理圖片時不會再分段，
+ * 只有批次尾端剩下少數大圖時才平行處理，避免執行緒數超過核心數。</p>
+ */
+public class ParallelTools {
+
+    private static final ForkJoinPool POOL =
+            new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+
+    /** 批次執行緒正在處理的圖片數 */
+    private static final AtomicInteger BATCH_TASKS = new AtomicInteger();
+
+    /** 已借出給分段處理的核心數 */
+    private static final AtomicInteger HELPERS = new AtomicInteger();
+
+    private ParallelTools() {
+    }
+
+    /**
+     * @return 共用的 {@link ForkJoinPool}
+     */
+    public static ForkJoinPool pool() {
+        return POOL;
+    }
+
+    /**
+     * 機器是否有多個核心，單核心時平行處理只會增加額外開銷。
+     * @return 平行度大於 1 時為 {@code true}
+     */
+    public static boolean isParallelAvailable() {
+        return POOL.getParallelism() > 1;
+    }
+
+    /**
+     * 批次執行緒開始處理一張圖片。
+     */
+    public static void batchTaskStarted() {
+        BATCH_TASKS.incrementAndGet();
+    }
+
+    /**
+     * 批次執行緒處理完一張圖片。
+     */
+    public static void batchTaskFinished() {
+        BATCH_TASKS.decrementAndGet();
+    }
+
+    /**
+     * 借用閒置的核心，數量為核心數扣掉正在處理圖片的批次執行緒（至少算目前執行緒一個）與已借出的核心。
+     * @param wanted 希望借用的核心數
+     * @return 實際借到的核心數，可能為 0；使用完畢須以 {@link #releaseHelpers(int)} 歸還
+     */
+    public static int acquireHelpers(int wanted) {
+        while (true) {
+            int lent = HELPERS.get();
+            int idle = POOL.getParallelism() - Math.max(1, BATCH_TASKS.get()) - lent;
+            int granted = Math.min(wanted, idle);
+            if (granted <= 0) {
+                return 0;
+            }
+            if (HELPERS.compareAndSet(lent, lent + granted)) {
+                return granted;
+            }
+        }
+    }
+
+    /**
+     * 歸還 {@link #acquireHelpers(int)} 借到的核心。
+     * @param count 借到的核心數
+     */
+    public static void releaseHelpers(int count) {
+        if (count > 0) {
+            HELPERS.addAndGet(-count);
+        }
+    }
+
+    /**
+     * 由目前執行緒加上 {@code threads - 1} 個工作執行緒同時執行 {@code worker}，全部結束後才返回。
+     *
+     * <p>{@code worker} 應自行從共用的計數器領取分段，執行緒池忙碌、工作執行緒遲遲未開始時，
+     * 目前執行緒仍能自行完成全部分段。</p>
+     *
+     * <p>任一執行緒失敗時，仍會等所有工作執行緒結束才拋出，呼叫端在 finally 中歸還共用的緩衝區時不會還有執行緒在使用。</p>
+     * @param pool    執行緒池；{@code threads} 小於 2 時可為 null
+     * @param threads 同時執行的執行緒數，包含目前執行緒
+     * @param worker  各執行緒執行的工作
+     * @throws RuntimeException 任一執行緒的工作拋出的第一個例外
+     * @throws Error            任一執行緒的工作拋出的第一個錯誤（例如 {@link OutOfMemoryError}），拋出前同樣會等其他執行緒結束
+     */
+    public static void runWorkers(ForkJoinPool pool, int threads, Runnable worker) {
+        List<ForkJoinTask<?>> helpers = new ArrayList<>(Math.max(0, threads - 1));
+        Throwable failure = null;
+        try {
+            for (int i = 1; i < threads; i++) {
+                helpers.add(pool.submit(worker));
+            }
+            worker.run();
+        } catch (Throwable e) {
+            failure = e;
+        }
+        for (ForkJoinTask<?> helper : helpers) {
+            try {
+                helper.join();
+            } catch (Throwable e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure instanceof RuntimeException e) {
+            throw e;
+        }
+        if (failure instanceof Error e) {
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package work.pollochang.compression.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import work.pollochang.compression.image.core.CompressionResult;
+import work.pollochang.compression.image.core.QualitySearchMode;
+import work.pollochang.compression.image.io.AtomicFileWriter;
+import work.pollochang.compression.image.report.CompressionParams;
+import work.pollochang.compression.image.report.CompressionReport;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionBatchTest {
+
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not reached");
+            Thread.sleep(5);
+        }
+    }
+
+    private static boolean isWaiting(Thread thread) {
+        Thread.State state = thread.getState();
+        return state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING;
+    }
+
+    private static Thread startSubmitting(List<String> lines, Semaphore inFlight, CompressionBatch.Submitter submitter,
+                                          AtomicLong submitted, AtomicReference<Throwable> error) {
+        Thread thread = new Thread(() -> {
+            try {
+                submitted.set(CompressionBatch.submitAll(lines.iterator(), inFlight, System.nanoTime() + TIMEOUT_NANOS, submitter));
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * 已提交未完成的任務達到上限時停止提交，有任務完成歸還許可後才繼續；空白行不佔許可
+     */
+    @Test
+    void testSubmitAll_ShouldBlockWhenWindowIsFull() throws Exception {
+        int window = 2;
+        Semaphore inFlight = new Semaphore(window);
+        // 替身階段只記錄提交的檔案並持有許可，由測試決定何時完成
+        List<Path> held = new CopyOnWriteArrayList<>();
+        List<String> lines = List.of("a.jpg", "", "b.jpg", "  ", "c.jpg", "d.jpg", "e.jpg");
+        AtomicLong submitted = new AtomicLong(-1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread producer = startSubmitting(lines, inFlight, held::add, submitted, error);
+
+        awaitCondition(() -> held.size() == window && isWaiting(producer));
+        Thread.sleep(50);
+        assertEquals(window, held.size());
+        assertEquals(0, inFlight.availablePermits());
+
+        inFlight.release();
+        awaitCondition(() -> held.size() == window + 1 && isWaiting(producer));
+        assertEquals(Path.of("c.jpg"), held.get(2));
+
+        inFlight.release(2);
+        producer.join(TimeUnit.NANOSECONDS.toMillis(TIMEOUT_NANOS));
+        assertFalse(producer.isAlive());
+        assertNull(error.get());
+        assertEquals(5, submitted.get());
+        assertEquals(List.of(Path.of("a.jpg"), Path.of("b.jpg"), Path.of("c.jpg"), Path.of("d.jpg"), Path.of("e.jpg")), held);
+
+        inFlight.release(window);
+        assertTrue(CompressionBatch.awaitAll(inFlight, window, System.nanoTime() + TIMEOUT_NANOS));
+    }
+
+    /**
+     * 立即失敗的任務也歸還許可；全部完成後許可數回到上限，等待不會逾時
+     */
+    @Test
+    void testSubmitAll_ShouldReturnPermitsAfterFailures() throws Exception {
+        int window = 3;
+        Semaphore inFlight = new Semaphore(window);
+        List<Path> held = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            lines.add(i % 3 == 0 ? "ok" + i + ".jpg" : "bad" + i + ".jpg");
+        }
+        // 失敗的檔案立即回報並歸還許可，成功的檔案持有許可直到測試放行
+        CompressionBatch.Submitter submitter = inputPath -> {
+            if (inputPath.toString().startsWith("bad")) {
+                inFlight.release();
+            } else {
+                synchronized (held) {
+                    held.add(inputPath);
+                }
+            }
+        };
+        AtomicLong submitted = new AtomicLong(-1);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread producer = startSubmitting(lines, inFlight, submitter, submitted, error);
+
+        // 3 個成功的檔案持有全部許可，之後的提交要等到有許可歸還
+        awaitCondition(() -> {
+            synchronized (held) {
+                return held.size() == window && isWaiting(producer);
+            }
+        });
+        assertEquals(0, inFlight.availablePermits());
+        inFlight.release();
+        producer.join(TimeUnit.NANOSECONDS.toMillis(TIMEOUT_NANOS));
+        assertFalse(producer.isAlive());
+        assertNull(error.get());
+        assertEquals(10, submitted.get());
+
+        inFlight.release(window);
+        assertEquals(window, inFlight.availablePermits());
+        assertTrue(CompressionBatch.awaitAll(inFlight, window, System.nanoTime() + TIMEOUT_NANOS));
+    }
+
+    /**
+     * 以實際的處理管線提交不存在與無法解碼的檔案，每張都回報結果並歸還許可
+     */
+    @Test
+    void testSubmitAll_ShouldReturnPermitsFromPipelineFailures(@TempDir Path tempDir) throws Exception {
+        Path inputDir = Files.createDirectories(tempDir.resolve("in"));
+        Path outputDir = Files.createDirectories(tempDir.resolve("out"));
+        CompressionParams params = new CompressionParams(0.9f, 0, 100, 100, 1024, QualitySearchMode.BINARY);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Path file = inputDir.resolve("broken" + i + ".jpg");
+            if (i % 2 == 0) {
+                Files.write(file, new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0x00, 0x01, 0x02});
+            }
+            lines.add(file.toString());
+        }
+
+        int window = 2;
+        Semaphore inFlight = new Semaphore(window);
+        List<CompressionReport> reports = new CopyOnWriteArrayList<>();
+        try (CompressionPipeline pipeline = new CompressionPipeline(2, window, 1 << 20, new AtomicFileWriter(0, 0), outputDir,
+                params, new ConcurrentHashMap<>(), report -> {
+                    reports.add(report);
+                    inFlight.release();
+                })) {
+            long deadline = System.nanoTime() + TIMEOUT_NANOS;
+            assertEquals(lines.size(), CompressionBatch.submitAll(lines.iterator(), inFlight, deadline, pipeline::submit));
+            assertTrue(CompressionBatch.awaitAll(inFlight, window, deadline));
+        }
+
+        assertEquals(lines.size(), reports.size());
+        assertTrue(reports.stream().noneMatch(r -> r.result() == CompressionResult.COMPRESSED_SUCCESS));
+        assertEquals(0, inFlight.availablePermits());
+        inFlight.release(window);
+        assertEquals(window, inFlight.availablePermits());
+    }
+}
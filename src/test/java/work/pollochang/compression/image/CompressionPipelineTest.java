@@ -0,0 +1,111 @@
+package work.pollochang.compression.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import work.pollochang.compression.image.core.CompressionResult;
+import work.pollochang.compression.image.core.QualitySearchMode;
+import work.pollochang.compression.image.io.AtomicFileWriter;
+import work.pollochang.compression.image.report.CompressionParams;
+import work.pollochang.compression.image.report.CompressionReport;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionPipelineTest {
+
+    private Path writeNoisyJpg(Path dir, String name, int seed) throws IOException {
+        BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        Path file = dir.resolve(name);
+        ImageIO.write(image, "jpg", file.toFile());
+        return file;
+    }
+
+    /**
+     * 每張圖片（成功、跳過、不存在）都恰好回報一次，成功的輸出寫入輸出目錄且不超過目標大小
+     * @param tempDir
+     * @throws Exception
+     */
+    @Test
+    void testSubmit_ShouldReportEveryImageOnce(@TempDir Path tempDir) throws Exception {
+        Path inputDir = Files.createDirectories(tempDir.resolve("in"));
+        Path outputDir = Files.createDirectories(tempDir.resolve("out"));
+        long target = 40 * 1024;
+        CompressionParams params = new CompressionParams(0.9f, 0, 100, 100, target, QualitySearchMode.BINARY);
+
+        List<Path> inputs = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            inputs.add(writeNoisyJpg(inputDir, "img" + i + ".jpg", i));
+        }
+        inputs.add(inputDir.resolve("missing.jpg"));
+
+        List<CompressionReport> reports = new CopyOnWriteArrayList<>();
+        CompressionPipeline pipeline = new CompressionPipeline(2, 3, 1 << 20, new AtomicFileWriter(2, 50), outputDir, params, new ConcurrentHashMap<>(), reports::add);
+        try (pipeline) {
+            for (Path input : inputs) {
+                pipeline.submit(input);
+            }
+        }
+
+        assertEquals(inputs.size(), reports.size());
+        assertEquals(6, reports.stream().filter(r -> r.result() == CompressionResult.COMPRESSED_SUCCESS).count());
+        assertEquals(1, reports.stream().filter(r -> r.result() == CompressionResult.SKIPPED_NOT_FOUND).count());
+        for (int i = 0; i < 6; i++) {
+            Path output = outputDir.resolve("img" + i + ".jpg");
+            assertTrue(Files.size(output) <= target);
+        }
+
+        List<StageStats> stats = pipeline.stats();
+        assertEquals(7, stats.get(0).processed());
+        assertEquals(6, stats.get(1).processed());
+        assertEquals(6, stats.get(2).processed());
+        assertTrue(stats.get(0).peakDepth() <= 3);
+        assertTrue(stats.get(1).peakDepth() <= 4);
+    }
+
+    /**
+     * 任務中拋出的 Error 也會回報結果：記憶體溢位對應到 FAILED_OUT_OF_MEMORY，其他錯誤為 FAILED_UNKNOWN
+     * @param tempDir
+     * @throws Exception
+     */
+    @Test
+    void testSubmit_ShouldReportErrors(@TempDir Path tempDir) throws Exception {
+        Path outputDir = Files.createDirectories(tempDir.resolve("out"));
+        CompressionParams params = new CompressionParams(0.9f, 0, 100, 100, 1024, QualitySearchMode.BINARY);
+
+        // 第一次回報（檔案不存在）時拋出錯誤，模擬任務中途失敗
+        List<CompressionReport> reports = new CopyOnWriteArrayList<>();
+        List<Error> errors = List.of(new OutOfMemoryError("test"), new StackOverflowError("test"));
+        AtomicInteger calls = new AtomicInteger();
+        CompressionPipeline pipeline = new CompressionPipeline(1, 1, 0, new AtomicFileWriter(0, 0), outputDir, params, new ConcurrentHashMap<>(), report -> {
+            int call = calls.getAndIncrement();
+            if (call % 2 == 0) {
+                throw errors.get(call / 2);
+            }
+            reports.add(report);
+        });
+        try (pipeline) {
+            pipeline.submit(tempDir.resolve("missing0.jpg"));
+            pipeline.submit(tempDir.resolve("missing1.jpg"));
+        }
+
+        assertEquals(2, reports.size());
+        assertEquals(CompressionResult.FAILED_OUT_OF_MEMORY, reports.get(0).result());
+        assertEquals(CompressionResult.FAILED_UNKNOWN, reports.get(1).result());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,124 @@
+package work.pollochang.compression.image.codec;
+
+import org.junit.jupiter.api.Test;
+import work.pollochang.compression.image.io.BoundedImageOutputStream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodecPoolTest {
+
+    private byte[] encode(String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(16, 16, BufferedImage.TYPE_3BYTE_BGR), format, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 同一執行緒歸還後再借出，取得同一個 writer 並計為命中
+     */
+    @Test
+    void testBorrowWriter_ShouldReuseOnSameThread() throws IOException {
+        CodecPool.releaseWriter(CodecPool.borrowWriter("jpg"));
+
+        CodecPoolStats before = CodecPool.stats();
+        ImageWriter first = CodecPool.borrowWriter("jpg");
+        CodecPool.releaseWriter(first);
+        ImageWriter second = CodecPool.borrowWriter("jpg");
+        CodecPoolStats after = CodecPool.stats();
+
+        assertSame(first, second);
+        assertEquals(before.writerHits() + 2, after.writerHits());
+        assertEquals(before.writerMisses(), after.writerMisses());
+        CodecPool.releaseWriter(second);
+    }
+
+    /**
+     * 歸還時清除輸出與輸入，下一次借出的實例不帶上一張圖的狀態
+     */
+    @Test
+    void testRelease_ShouldResetBetweenUses() throws IOException {
+        ImageWriter writer = CodecPool.borrowWriter("jpg");
+        try (BoundedImageOutputStream out = new BoundedImageOutputStream(1024)) {
+            writer.setOutput(out);
+            CodecPool.releaseWriter(writer);
+        }
+        ImageWriter reused = CodecPool.borrowWriter("jpg");
+        assertSame(writer, reused);
+        assertNull(reused.getOutput());
+        CodecPool.releaseWriter(reused);
+
+        byte[] jpeg = encode("jpg");
+        ImageReader reader;
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(jpeg))) {
+            reader = CodecPool.borrowReader(in);
+            assertNotNull(reader);
+            reader.setInput(in);
+            assertEquals(16, reader.getWidth(0));
+            CodecPool.releaseReader(reader);
+        }
+        long hits = CodecPool.stats().readerHits();
+        ImageReader again = CodecPool.borrowReader(reader.getOriginatingProvider());
+        assertSame(reader, again);
+        assertNull(again.getInput());
+        assertEquals(hits + 1, CodecPool.stats().readerHits());
+        CodecPool.releaseReader(again);
+    }
+
+    /**
+     * 不同格式各自保存，借出 JPG 不會拿到歸還的 PNG 實例；reader 依內容挑選對應格式
+     */
+    @Test
+    void testBorrow_ShouldKeepFormatsSeparate() throws IOException {
+        ImageWriter png = CodecPool.borrowWriter("png");
+        CodecPool.releaseWriter(png);
+        ImageWriter jpg = CodecPool.borrowWriter("jpg");
+        assertNotSame(png, jpg);
+        assertNotSame(png.getOriginatingProvider(), jpg.getOriginatingProvider());
+        assertSame(png, CodecPool.borrowWriter("png"));
+        CodecPool.releaseWriter(jpg);
+        CodecPool.releaseWriter(png);
+
+        for (String format : new String[]{"jpg", "png"}) {
+            try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(encode(format)))) {
+                ImageReader reader = CodecPool.borrowReader(in);
+                assertTrue(List.of(reader.getOriginatingProvider().getFormatNames()).contains(format), format);
+                CodecPool.releaseReader(reader);
+            }
+        }
+    }
+
+    /**
+     * 每種格式在每個執行緒最多保留兩個實例，多出來的歸還時直接釋放
+     */
+    @Test
+    void testRelease_ShouldBoundIdleInstances() throws IOException {
+        List<ImageWriter> writers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            writers.add(CodecPool.borrowWriter("jpg"));
+        }
+        writers.forEach(CodecPool::releaseWriter);
+
+        CodecPoolStats before = CodecPool.stats();
+        List<ImageWriter> again = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            again.add(CodecPool.borrowWriter("jpg"));
+        }
+        CodecPoolStats after = CodecPool.stats();
+        assertEquals(before.writerHits() + 2, after.writerHits());
+        assertEquals(before.writerMisses() + 1, after.writerMisses());
+        assertTrue(writers.containsAll(again.subList(0, 2)));
+        assertFalse(writers.contains(again.get(2)));
+        again.forEach(CodecPool::releaseWriter);
+    }
+}
@@ -0,0 +1,144 @@
+package work.pollochang.compression.image.codec;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageHeaderScannerTest {
+
+    private BufferedImage createImage(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8);
+            }
+        }
+        return image;
+    }
+
+    private Path write(Path dir, String name, String format, BufferedImage image, boolean progressive) throws IOException {
+        Path file = dir.resolve(name);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (progressive) {
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return file;
+    }
+
+    /**
+     * 由 ImageIO 寫出的各種格式都應讀出正確的格式與尺寸
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testScan_ShouldReadFormatAndDimensions(@TempDir Path tempDir) throws IOException {
+        BufferedImage rgb = createImage(123, 45, BufferedImage.TYPE_3BYTE_BGR);
+
+        ImageHeader jpeg = ImageHeaderScanner.scan(write(tempDir, "a.jpg", "jpg", rgb, false));
+        assertEquals(new ImageHeader(ImageFormat.JPEG, 123, 45, 8, false), jpeg);
+
+        ImageHeader progressive = ImageHeaderScanner.scan(write(tempDir, "p.jpg", "jpg", rgb, true));
+        assertEquals(new ImageHeader(ImageFormat.JPEG, 123, 45, 8, true), progressive);
+
+        ImageHeader png = ImageHeaderScanner.scan(write(tempDir, "a.png", "png", rgb, false));
+        assertEquals(new ImageHeader(ImageFormat.PNG, 123, 45, 8, false), png);
+
+        ImageHeader bmp = ImageHeaderScanner.scan(write(tempDir, "a.bmp", "bmp", rgb, false));
+        assertEquals(new ImageHeader(ImageFormat.BMP, 123, 45, 24, false), bmp);
+
+        ImageHeader gif = ImageHeaderScanner.scan(write(tempDir, "a.gif", "gif",
+                createImage(123, 45, BufferedImage.TYPE_BYTE_INDEXED), false));
+        assertEquals(ImageFormat.GIF, gif.format());
+        assertEquals(123, gif.width());
+        assertEquals(45, gif.height());
+
+        ImageHeader tiff = ImageHeaderScanner.scan(write(tempDir, "a.tif", "tiff", rgb, false));
+        assertEquals(new ImageHeader(ImageFormat.TIFF, 123, 45, 8, false), tiff);
+    }
+
+    /**
+     * JPEG 在 SOF 之前有大型 APP 區段時，應跳過區段讀到後方的 SOF
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testScan_ShouldSkipLargeJpegSegments(@TempDir Path tempDir) throws IOException {
+        byte[] jpeg = Files.readAllBytes(write(tempDir, "a.jpg", "jpg", createImage(64, 32, BufferedImage.TYPE_3BYTE_BGR), false));
+        // 在 SOI 之後插入一個約 60KB 的 APP1 區段
+        int length = 60_000;
+        byte[] withApp = new byte[jpeg.length + 2 + length];
+        withApp[0] = (byte) 0xFF;
+        withApp[1] = (byte) 0xD8;
+        withApp[2] = (byte) 0xFF;
+        withApp[3] = (byte) 0xE1;
+        withApp[4] = (byte) (length >> 8);
+        withApp[5] = (byte) length;
+        System.arraycopy(jpeg, 2, withApp, 4 + length, jpeg.length - 2);
+        Path file = tempDir.resolve("exif.jpg");
+        Files.write(file, withApp);
+
+        assertEquals(new ImageHeader(ImageFormat.JPEG, 64, 32, 8, false), ImageHeaderScanner.scan(file));
+    }
+
+    /**
+     * WebP 三種區塊格式都應讀出畫布尺寸
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testScan_ShouldReadWebpHeaders(@TempDir Path tempDir) throws IOException {
+        byte[] lossy = webp("VP8 ", new byte[]{0, 0, 0, (byte) 0x9D, 0x01, 0x2A, (byte) 200, 0x01, 100, 0x00});
+        // VP8L：簽章 0x2F，寬 - 1 = 299、高 - 1 = 149（各 14 位元，低位元在前）
+        int bits = 299 | (149 << 14);
+        byte[] lossless = webp("VP8L", new byte[]{0x2F, (byte) bits, (byte) (bits >> 8), (byte) (bits >> 16), (byte) (bits >>> 24)});
+        byte[] extended = webp("VP8X", new byte[]{0, 0, 0, 0, (byte) 0xFF, 0x03, 0x00, (byte) 0xC7, 0x00, 0x00});
+
+        assertEquals(new ImageHeader(ImageFormat.WEBP, 456, 100, 8, false), scanBytes(tempDir, lossy));
+        assertEquals(new ImageHeader(ImageFormat.WEBP, 300, 150, 8, false), scanBytes(tempDir, lossless));
+        assertEquals(new ImageHeader(ImageFormat.WEBP, 1024, 200, 8, false), scanBytes(tempDir, extended));
+    }
+
+    /**
+     * 無法辨識或截斷的檔案應回傳 null，交由 ImageReader 處理
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testScan_ShouldReturnNullForUnknownOrTruncated(@TempDir Path tempDir) throws IOException {
+        assertNull(scanBytes(tempDir, "not an image at all".getBytes()));
+        assertNull(scanBytes(tempDir, new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0x00, 0x10, 0, 0, 0, 0, 0, 0}));
+    }
+
+    private ImageHeader scanBytes(Path dir, byte[] data) throws IOException {
+        Path file = Files.createTempFile(dir, "scan", ".bin");
+        Files.write(file, data);
+        return ImageHeaderScanner.scan(file);
+    }
+
+    private byte[] webp(String chunk, byte[] payload) {
+        byte[] data = new byte[20 + payload.length + 16];
+        System.arraycopy("RIFF".getBytes(), 0, data, 0, 4);
+        System.arraycopy("WEBP".getBytes(), 0, data, 8, 4);
+        System.arraycopy(chunk.getBytes(), 0, data, 12, 4);
+        System.arraycopy(payload, 0, data, 20, payload.length);
+        return data;
+    }
+}
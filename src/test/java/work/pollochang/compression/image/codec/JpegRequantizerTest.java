@@ -0,0 +1,128 @@
+package work.pollochang.compression.image.codec;
+
+import org.junit.jupiter.api.Test;
+import work.pollochang.compression.image.io.BoundedImageOutputStream;
+import work.pollochang.compression.image.io.OutputLimitExceededException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JpegRequantizerTest {
+
+    private byte[] encode(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bos.toByteArray();
+    }
+
+    private byte[] transcode(byte[] jpeg, float quality) throws IOException {
+        try (BoundedImageOutputStream out = new BoundedImageOutputStream(jpeg.length)) {
+            JpegRequantizer.transcode(ByteBuffer.wrap(jpeg), quality, out);
+            return out.toByteArray();
+        }
+    }
+
+    private double meanError(BufferedImage a, BufferedImage b) {
+        Raster ra = a.getRaster();
+        Raster rb = b.getRaster();
+        long error = 0;
+        long samples = 0;
+        for (int band = 0; band < ra.getNumBands(); band++) {
+            for (int y = 0; y < a.getHeight(); y++) {
+                for (int x = 0; x < a.getWidth(); x++) {
+                    error += Math.abs(ra.getSample(x, y, band) - rb.getSample(x, y, band));
+                    samples++;
+                }
+            }
+        }
+        return (double) error / samples;
+    }
+
+    /**
+     * 重新量化後應可被 ImageIO 解碼，尺寸不變、檔案變小且畫面接近原圖
+     * @throws IOException
+     */
+    @Test
+    void testTranscode_ShouldShrinkAndStayDecodable() throws IOException {
+        for (int type : new int[]{BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY}) {
+            byte[] source = encode(TestImages.noise(301, 217, type), 0.95f);
+            byte[] result = transcode(source, 0.3f);
+
+            BufferedImage original = ImageIO.read(new ByteArrayInputStream(source));
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(result));
+            assertNotNull(decoded, "type=" + type);
+            assertEquals(original.getWidth(), decoded.getWidth());
+            assertEquals(original.getHeight(), decoded.getHeight());
+            assertTrue(result.length < source.length * 0.6, "type=" + type + " 檔案未明顯變小");
+            assertTrue(meanError(original, decoded) < 8.0, "type=" + type + " 畫面差異過大");
+        }
+    }
+
+    /**
+     * 目標品質高於原檔時，量化表不會變細，結果應與原檔大小相近
+     * @throws IOException
+     */
+    @Test
+    void testTranscode_ShouldNeverRefineQuantization() throws IOException {
+        byte[] source = encode(TestImages.noise(256, 256, BufferedImage.TYPE_3BYTE_BGR), 0.5f);
+        byte[] result = transcode(source, 1.0f);
+        assertEquals(1.0, (double) result.length / source.length, 0.05);
+    }
+
+    /**
+     * 最佳化 Huffman 表應比標準表小，且結果可被 ImageIO 解碼
+     * @throws IOException
+     */
+    @Test
+    void testTranscode_OptimizedHuffmanShouldBeSmaller() throws IOException {
+        for (int type : new int[]{BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY}) {
+            byte[] source = encode(TestImages.noise(301, 217, type), 0.95f);
+            byte[] standard = transcode(source, 0.5f);
+            byte[] optimized;
+            try (BoundedImageOutputStream out = new BoundedImageOutputStream(source.length)) {
+                JpegRequantizer.transcode(ByteBuffer.wrap(source), 0.5f, out, true);
+                optimized = out.toByteArray();
+            }
+
+            assertTrue(optimized.length < standard.length, "type=" + type + " 最佳化後未變小");
+            BufferedImage a = ImageIO.read(new ByteArrayInputStream(standard));
+            BufferedImage b = ImageIO.read(new ByteArrayInputStream(optimized));
+            assertNotNull(b, "type=" + type);
+            // 只換 Huffman 表，解出的像素應完全相同
+            assertEquals(0.0, meanError(a, b), 1e-9, "type=" + type);
+        }
+    }
+
+    /**
+     * 超過輸出上限時應提前中止
+     * @throws IOException
+     */
+    @Test
+    void testTranscode_ShouldAbortOverLimit() throws IOException {
+        byte[] source = encode(TestImages.noise(256, 256, BufferedImage.TYPE_3BYTE_BGR), 0.95f);
+        try (BoundedImageOutputStream out = new BoundedImageOutputStream(1024, 1024)) {
+            assertThrows(OutputLimitExceededException.class,
+                    () -> JpegRequantizer.transcode(ByteBuffer.wrap(source), 0.5f, out));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package work.pollochang.compression.image.codec;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JpegSizeEstimatorTest {
+
+    private long encodedSize(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bos.size();
+    }
+
+    /**
+     * 預估值應接近實際編碼大小
+     * @throws IOException
+     */
+    @Test
+    void testEstimate_ShouldBeCloseToRealEncode() throws IOException {
+        for (int type : new int[]{BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_BYTE_GRAY}) {
+            BufferedImage image = TestImages.noise(333, 250, type);
+            JpegSizeEstimator estimator = JpegSizeEstimator.of(image);
+            for (float quality : new float[]{0.1f, 0.5f, 0.9f}) {
+                long real = encodedSize(image, quality);
+                long estimated = estimator.estimate(quality);
+                assertEquals(1.0, (double) estimated / real, 0.1, "type=" + type + ", q=" + quality);
+            }
+        }
+    }
+
+    /**
+     * 預估大小應隨品質遞增，且 findQuality 的結果不超過目標
+     */
+    @Test
+    void testFindQuality_ShouldRespectGoal() {
+        JpegSizeEstimator estimator = JpegSizeEstimator.of(TestImages.noise(256, 256, BufferedImage.TYPE_INT_RGB));
+        assertTrue(estimator.estimate(0.2f) < estimator.estimate(0.8f));
+
+        long goal = estimator.estimate(0.5f);
+        float quality = estimator.findQuality(goal, 0.01f, 1.0f);
+        assertTrue(quality > 0.45f && quality <= 0.51f, "quality=" + quality);
+        assertTrue(estimator.estimate(quality) <= goal);
+        assertEquals(-1.0f, estimator.findQuality(100, 0.01f, 1.0f));
+    }
+}
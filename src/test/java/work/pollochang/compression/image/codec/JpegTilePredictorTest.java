@@ -0,0 +1,141 @@
+package work.pollochang.compression.image.codec;
+
+import org.junit.jupiter.api.Test;
+import work.pollochang.compression.image.resize.ResizeFilter;
+import work.pollochang.compression.image.tools.ImageTools;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JpegTilePredictorTest {
+
+    private static long encodedSize(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bos.size();
+    }
+
+    /**
+     * 每個像素的顏色記錄自己的座標，從馬賽克的內容可以看出每塊區塊取自原圖的哪個位置
+     */
+    @Test
+    void testSample_ShouldPickMcuAlignedTileFromEachStratum() throws IOException {
+        int width = 1500;
+        int height = 1000;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x << 12) | y);
+            }
+        }
+        List<BufferedImage> probed = new ArrayList<>();
+        JpegTilePredictor predictor = JpegTilePredictor.sample(image, ResizeFilter.BOX, (tile, quality) -> {
+            probed.add(tile);
+            return encodedSize(tile, quality);
+        });
+        predictor.predict(1.0, 0.5f);
+        BufferedImage mosaic = probed.get(0);
+
+        // 23x15 個 64px 區塊取 1/16，每邊 5 個區域
+        int strata = 5;
+        assertEquals(strata * 64, mosaic.getWidth());
+        assertEquals(strata * 64, mosaic.getHeight());
+        for (int sy = 0; sy < strata; sy++) {
+            for (int sx = 0; sx < strata; sx++) {
+                int origin = mosaic.getRGB(sx * 64, sy * 64) & 0xFFFFFF;
+                int x = origin >> 12;
+                int y = origin & 0xFFF;
+                assertEquals(0, x % 16, "x=" + x);
+                assertEquals(0, y % 16, "y=" + y);
+                assertTrue(x >= sx * width / strata && x + 64 <= (sx + 1) * width / strata, "stratum x " + sx);
+                assertTrue(y >= sy * height / strata && y + 64 <= (sy + 1) * height / strata, "stratum y " + sy);
+                // 區塊內容為原圖連續的一塊
+                assertEquals(((x + 63) << 12) | (y + 63), mosaic.getRGB(sx * 64 + 63, sy * 64 + 63) & 0xFFFFFF);
+            }
+        }
+    }
+
+    /**
+     * 外插的大小與完整編碼的實際大小相差在容許範圍內，縮放後亦同
+     */
+    @Test
+    void testPredict_ShouldBeCloseToFullEncode() throws IOException {
+        BufferedImage image = TestImages.noise(1280, 960, BufferedImage.TYPE_3BYTE_BGR);
+        JpegTilePredictor predictor = JpegTilePredictor.sample(image, ResizeFilter.TRIANGLE, JpegTilePredictorTest::encodedSize);
+        for (float quality : new float[]{0.3f, 0.7f}) {
+            long real = encodedSize(image, quality);
+            long predicted = predictor.predict(1.0, quality);
+            assertEquals(real, predicted, real * 0.10, "q=" + quality);
+
+            long scaledReal = encodedSize(ImageTools.resizeImage(image, 0.5, ResizeFilter.TRIANGLE), quality);
+            long scaledPredicted = predictor.predict(0.5, quality);
+            assertEquals(scaledReal, scaledPredicted, scaledReal * 0.15, "q=" + quality + " s=0.5");
+        }
+    }
+
+    /**
+     * 預測的起點在預測大小上不超過目標，且比例與品質在範圍內
+     */
+    @Test
+    void testPredictStart_ShouldFitTarget() throws IOException {
+        BufferedImage image = TestImages.noise(1280, 960, BufferedImage.TYPE_3BYTE_BGR);
+        JpegTilePredictor predictor = JpegTilePredictor.sample(image, ResizeFilter.TRIANGLE, JpegTilePredictorTest::encodedSize);
+        long target = encodedSize(image, 0.1f) / 3;
+        SizePrediction prediction = predictor.predictStart(target, 0.1f, 0.9f, 0.85);
+        assertNotNull(prediction);
+        assertTrue(prediction.scale() < 1.0);
+        assertTrue(prediction.quality() >= 0.1f && prediction.quality() <= 0.9f);
+        assertTrue(prediction.predictedBytes() <= target * 1.05, "predicted=" + prediction.predictedBytes());
+    }
+
+    /**
+     * 誤差以相對值回報並計入統計；實際大小為 0 時不計
+     */
+    @Test
+    void testRecordError_ShouldReportRelativeError() {
+        PredictionStats before = JpegTilePredictor.stats();
+        assertEquals(10.0, JpegTilePredictor.recordError(1100, 1000), 1e-9);
+        assertEquals(-25.0, JpegTilePredictor.recordError(750, 1000), 1e-9);
+        assertEquals(0.0, JpegTilePredictor.recordError(500, 0), 1e-9);
+
+        PredictionStats after = JpegTilePredictor.stats();
+        assertEquals(before.count() + 2, after.count());
+        assertTrue(after.maxAbsErrorPercent() >= 25.0);
+        double sum = after.meanAbsErrorPercent() * after.count() - before.meanAbsErrorPercent() * before.count();
+        assertEquals(35.0, sum, 1e-6);
+    }
+
+    /**
+     * 馬賽克試壓失敗或大小不合理時不提供預測，由呼叫端從原尺寸開始搜尋
+     */
+    @Test
+    void testPredictStart_ShouldReturnNullWhenUnusable() {
+        BufferedImage image = TestImages.noise(640, 480, BufferedImage.TYPE_3BYTE_BGR);
+        JpegTilePredictor failing = JpegTilePredictor.sample(image, ResizeFilter.BOX, (tile, quality) -> {
+            throw new IOException("encoder failure");
+        });
+        assertNull(failing.predictStart(10_000, 0.1f, 0.9f, 0.85));
+
+        JpegTilePredictor empty = JpegTilePredictor.sample(image, ResizeFilter.BOX, (tile, quality) -> 0L);
+        assertNull(empty.predictStart(10_000, 0.1f, 0.9f, 0.85));
+    }
+}
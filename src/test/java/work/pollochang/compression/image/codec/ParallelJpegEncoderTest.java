@@ -0,0 +1,166 @@
+package work.pollochang.compression.image.codec;
+
+import org.junit.jupiter.api.Test;
+import work.pollochang.compression.image.io.BoundedImageOutputStream;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelJpegEncoderTest {
+
+    private byte[] encodeWithImageIO(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bos.toByteArray();
+    }
+
+    private double meanError(BufferedImage a, BufferedImage b) {
+        Raster ra = a.getRaster();
+        Raster rb = b.getRaster();
+        long error = 0;
+        long samples = 0;
+        for (int band = 0; band < ra.getNumBands(); band++) {
+            for (int y = 0; y < a.getHeight(); y++) {
+                for (int x = 0; x < a.getWidth(); x++) {
+                    error += Math.abs(ra.getSample(x, y, band) - rb.getSample(x, y, band));
+                    samples++;
+                }
+            }
+        }
+        return (double) error / samples;
+    }
+
+    /**
+     * 分段編碼的結果應為單一合法 JPEG：ImageIO 與係數讀取器都能解出，大小與 ImageIO 編碼相近，
+     * 解碼結果與 ImageIO 編碼的解碼結果幾乎相同
+     * @throws IOException
+     */
+    @Test
+    void testEncode_ShouldMatchImageIO() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int type : new int[]{BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY}) {
+                BufferedImage image = TestImages.noise(517, 389, type);
+                byte[] reference = encodeWithImageIO(image, 0.75f);
+                byte[] result;
+                try (BoundedImageOutputStream out = new BoundedImageOutputStream(reference.length)) {
+                    long size = ParallelJpegEncoder.encode(image, 0.75f, out, Long.MAX_VALUE, pool);
+                    assertEquals(out.size(), size);
+                    result = out.toByteArray();
+                }
+
+                BufferedImage expected = ImageIO.read(new ByteArrayInputStream(reference));
+                BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(result));
+                assertNotNull(decoded, "type=" + type);
+                assertEquals(image.getWidth(), decoded.getWidth());
+                assertEquals(image.getHeight(), decoded.getHeight());
+                assertEquals(1.0, (double) result.length / reference.length, 0.05, "type=" + type);
+                assertTrue(meanError(expected, decoded) < 1.5, "type=" + type + " 與 ImageIO 結果差異過大");
+
+                JpegFrame frame = JpegCoefficientReader.readFrame(ByteBuffer.wrap(result));
+                assertEquals(image.getWidth(), frame.width());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 超過上限時不寫入任何資料，並回傳大於上限的推估大小
+     * @throws IOException
+     */
+    @Test
+    void testEncode_ShouldStopOverLimit() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try (BoundedImageOutputStream out = new BoundedImageOutputStream(1024, 4096)) {
+            BufferedImage image = TestImages.noise(640, 480, BufferedImage.TYPE_3BYTE_BGR);
+            long size = ParallelJpegEncoder.encode(image, 0.9f, out, out.getLimit(), pool);
+            assertTrue(size > 4096);
+            assertEquals(0, out.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 只借到部分核心或完全沒有執行緒池時，分段數不同但解碼後的像素與使用整個執行緒池時完全相同
+     * @throws IOException
+     */
+    @Test
+    void testEncode_FewerThreadsShouldDecodeIdentically() throws IOException {
+        BufferedImage image = TestImages.noise(400, 300, BufferedImage.TYPE_3BYTE_BGR);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            YCbCrImage ycc = YCbCrImage.from(image, pool, 2);
+            BufferedImage expected;
+            try (BoundedImageOutputStream out = new BoundedImageOutputStream(1024)) {
+                ParallelJpegEncoder.encode(ycc, 0.6f, out, Long.MAX_VALUE, pool);
+                expected = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+            }
+            for (int threads : new int[]{1, 2}) {
+                try (BoundedImageOutputStream out = new BoundedImageOutputStream(1024)) {
+                    ParallelJpegEncoder.encode(YCbCrImage.from(image, null, 1), 0.6f, out, Long.MAX_VALUE,
+                            threads == 1 ? null : pool, threads);
+                    BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+                    assertEquals(0.0, meanError(expected, decoded), "threads=" + threads);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 重複使用同一組 YCbCr 平面以不同品質編碼，結果與每次從圖片重新轉換相同
+     * @throws IOException
+     */
+    @Test
+    void testEncode_ReusedPlanesShouldMatchImage() throws IOException {
+        BufferedImage image = TestImages.noise(245, 181, BufferedImage.TYPE_3BYTE_BGR);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            YCbCrImage ycc = YCbCrImage.from(image, pool);
+            for (float quality : new float[]{0.3f, 0.8f}) {
+                try (BoundedImageOutputStream fromImage = new BoundedImageOutputStream(1024);
+                     BoundedImageOutputStream fromPlanes = new BoundedImageOutputStream(1024)) {
+                    ParallelJpegEncoder.encode(image, quality, fromImage, Long.MAX_VALUE, pool);
+                    ParallelJpegEncoder.encode(ycc, quality, fromPlanes, Long.MAX_VALUE, pool);
+                    assertArrayEquals(fromImage.toByteArray(), fromPlanes.toByteArray(), "quality=" + quality);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 每段的 MCU 數不能超過 DRI 的 16 位元上限
+     */
+    @Test
+    void testRowsPerBand_ShouldFitRestartInterval() {
+        assertEquals(4, ParallelJpegEncoder.rowsPerBand(100, 64, 8));
+        assertEquals(15, ParallelJpegEncoder.rowsPerBand(4096, 1000, 1));
+        assertEquals(1, ParallelJpegEncoder.rowsPerBand(100, 1, 8));
+    }
+}
@@ -0,0 +1,96 @@
+package work.pollochang.compression.image.codec;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScaledJpegDecoderTest {
+
+    private byte[] encode(BufferedImage image, boolean progressive) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.95f);
+            if (progressive) {
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * 以區塊平均縮小參考影像，計算與縮小解碼結果每個樣本的平均絕對誤差（直接比較 raster，避免灰階的色彩空間轉換）
+     */
+    private double meanError(BufferedImage reference, BufferedImage scaled, int denominator) {
+        Raster ref = reference.getRaster();
+        Raster out = scaled.getRaster();
+        long error = 0;
+        long samples = 0;
+        for (int band = 0; band < out.getNumBands(); band++) {
+            for (int y = 0; y < scaled.getHeight(); y++) {
+                for (int x = 0; x < scaled.getWidth(); x++) {
+                    int sum = 0;
+                    int count = 0;
+                    for (int dy = 0; dy < denominator && y * denominator + dy < reference.getHeight(); dy++) {
+                        for (int dx = 0; dx < denominator && x * denominator + dx < reference.getWidth(); dx++) {
+                            sum += ref.getSample(x * denominator + dx, y * denominator + dy, band);
+                            count++;
+                        }
+                    }
+                    error += Math.abs(sum / count - out.getSample(x, y, band));
+                    samples++;
+                }
+            }
+        }
+        return (double) error / samples;
+    }
+
+    /**
+     * 各縮小倍率的輸出尺寸與內容應接近完整解碼後再平均縮小的結果
+     * @throws IOException
+     */
+    @Test
+    void testDecode_ShouldMatchDownscaledReference() throws IOException {
+        for (int type : new int[]{BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY}) {
+            byte[] jpeg = encode(TestImages.noise(333, 250, type), false);
+            BufferedImage reference = ImageIO.read(new ByteArrayInputStream(jpeg));
+
+            for (int denominator : new int[]{1, 2, 4, 8}) {
+                BufferedImage scaled = ScaledJpegDecoder.decode(ByteBuffer.wrap(jpeg), denominator);
+                assertEquals(reference.getType(), scaled.getType());
+                assertEquals((333 + denominator - 1) / denominator, scaled.getWidth());
+                assertEquals((250 + denominator - 1) / denominator, scaled.getHeight());
+                double error = meanError(reference, scaled, denominator);
+                assertTrue(error < 3.0, "type=" + type + ", 1/" + denominator + " 平均誤差過大: " + error);
+            }
+        }
+    }
+
+    /**
+     * 漸進式 JPEG 應拋出 UnsupportedJpegException 讓呼叫端退回 ImageIO
+     * @throws IOException
+     */
+    @Test
+    void testProgressive_ShouldBeUnsupported() throws IOException {
+        byte[] jpeg = encode(TestImages.noise(64, 64, BufferedImage.TYPE_3BYTE_BGR), true);
+        assertThrows(UnsupportedJpegException.class, () -> ScaledJpegDecoder.decode(ByteBuffer.wrap(jpeg), 2));
+    }
+}
@@ -0,0 +1,124 @@
+package work.pollochang.compression.image.codec;
+
+import org.junit.jupiter.api.Test;
+import work.pollochang.compression.image.io.BoundedImageOutputStream;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripJpegDecoderTest {
+
+    private byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.9f);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * 收集所有像素列，並檢查列依序交付
+     */
+    private static final class Collector implements RowConsumer {
+        private byte[] pixels;
+        private int stride;
+        private int nextRow;
+        private int height;
+
+        @Override
+        public void begin(int width, int height, int bands) {
+            this.stride = width * bands;
+            this.height = height;
+            this.pixels = new byte[stride * height];
+        }
+
+        @Override
+        public void rows(byte[] data, int firstRow, int rowCount) {
+            assertEquals(nextRow, firstRow);
+            System.arraycopy(data, 0, pixels, firstRow * stride, rowCount * stride);
+            nextRow += rowCount;
+        }
+    }
+
+    private void assertSameAsScaledDecoder(byte[] jpeg, int denominator) throws IOException {
+        BufferedImage expected = ScaledJpegDecoder.decode(ByteBuffer.wrap(jpeg), denominator);
+        Collector collector = new Collector();
+        StripJpegDecoder.decode(ByteBuffer.wrap(jpeg), denominator, collector);
+        assertEquals(expected.getHeight(), collector.height);
+        assertEquals(expected.getHeight(), collector.nextRow);
+        // 由 RasterPool 借出的陣列可能比像素資料長，只比較像素部分
+        byte[] data = ((DataBufferByte) expected.getRaster().getDataBuffer()).getData();
+        assertArrayEquals(Arrays.copyOf(data, collector.pixels.length), collector.pixels, "denominator=" + denominator);
+    }
+
+    /**
+     * 串流解碼的每一列都應與一次解碼整張的結果相同（彩色 4:2:0、灰階、含 DRI 的分段編碼）
+     * @throws IOException
+     */
+    @Test
+    void testDecode_ShouldMatchScaledDecoder() throws IOException {
+        byte[] color = encode(TestImages.noise(301, 157, BufferedImage.TYPE_3BYTE_BGR));
+        byte[] gray = encode(TestImages.noise(250, 133, BufferedImage.TYPE_BYTE_GRAY));
+        byte[] restart;
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try (BoundedImageOutputStream out = new BoundedImageOutputStream(64 * 1024)) {
+            ParallelJpegEncoder.encode(TestImages.noise(333, 211, BufferedImage.TYPE_3BYTE_BGR), 0.8f, out, Long.MAX_VALUE, pool);
+            restart = out.toByteArray();
+        } finally {
+            pool.shutdown();
+        }
+
+        for (int denominator : new int[]{1, 2, 4, 8}) {
+            assertSameAsScaledDecoder(color, denominator);
+            assertSameAsScaledDecoder(gray, denominator);
+            assertSameAsScaledDecoder(restart, denominator);
+        }
+    }
+
+    /**
+     * 區域平均縮小：每個輸出像素為涵蓋的來源區塊平均
+     * @throws IOException
+     */
+    @Test
+    void testAreaDownscaler_ShouldAverageSourceBlocks() throws IOException {
+        AreaDownscaler downscaler = new AreaDownscaler(2, 2);
+        downscaler.begin(4, 4, 1);
+        byte[] rows = {
+                0, 10, 100, 100,
+                20, 30, 100, 100,
+        };
+        downscaler.rows(rows, 0, 2);
+        byte[] rest = {
+                (byte) 200, (byte) 200, 1, 2,
+                (byte) 200, (byte) 200, 3, 4,
+        };
+        downscaler.rows(rest, 2, 1);
+        downscaler.rows(new byte[]{(byte) 200, (byte) 200, 3, 4}, 3, 1);
+
+        BufferedImage image = downscaler.getImage();
+        assertEquals(2, image.getWidth());
+        assertEquals(15, image.getRaster().getSample(0, 0, 0));
+        assertEquals(100, image.getRaster().getSample(1, 0, 0));
+        assertEquals(200, image.getRaster().getSample(0, 1, 0));
+        assertEquals(3, image.getRaster().getSample(1, 1, 0));
+    }
+}
@@ -0,0 +1,34 @@
+package work.pollochang.compression.image.codec;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * 編解碼測試共用的測試圖片。
+ */
+final class TestImages {
+
+    private TestImages() {
+    }
+
+    /**
+     * 建立帶有平滑漸層與隨機雜訊的圖片，壓縮後的大小與品質、縮放比例都有明顯關係。
+     * 內容由尺寸決定，同樣的參數每次產生相同的圖片。
+     * @param width  寬
+     * @param height 高
+     * @param type   {@link BufferedImage} 的類型
+     * @return 測試圖片
+     */
+    static BufferedImage noise(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(7);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int v = (int) (128 + 90 * Math.sin(x / 19.0) * Math.cos(y / 27.0)) + random.nextInt(24);
+                v = Math.max(0, Math.min(255, v));
+                image.setRGB(x, y, (v << 16) | ((255 - v) << 8) | (y * 255 / height));
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,134 @@
+package work.pollochang.compression.image.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import work.pollochang.compression.image.codec.ImageFormat;
+import work.pollochang.compression.image.codec.ImageHeader;
+import work.pollochang.compression.image.io.OutputSink;
+import work.pollochang.compression.image.learn.LearnedParams;
+import work.pollochang.compression.image.learn.jpg.SimilarityKey;
+import work.pollochang.compression.image.report.CompressionParams;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static work.pollochang.compression.image.tools.CacheTools.createKey;
+
+class DecodePlanTest {
+
+    private CompressionParams params(long target) {
+        return new CompressionParams(0.85f, 0, 100, 100, target, QualitySearchMode.INTERPOLATION);
+    }
+
+    /**
+     * 參考解析度讓最長邊接近 4096px
+     */
+    @Test
+    void testReferenceSubsampling_ShouldTarget4096() {
+        assertEquals(1, DecodePlan.referenceSubsampling(4096, 3000));
+        assertEquals(1, DecodePlan.referenceSubsampling(6000, 4000));
+        assertEquals(2, DecodePlan.referenceSubsampling(8192, 6000));
+        assertEquals(4, DecodePlan.referenceSubsampling(3000, 20000));
+    }
+
+    /**
+     * 目標大小容不下參考解析度的像素時，基線 JPG 改用較粗的倍率；目標夠大或非基線 JPG 時維持參考解析度
+     */
+    @Test
+    void testOf_ShouldPickCoarsestSubsamplingForTarget() {
+        ImageHeader baseline = new ImageHeader(ImageFormat.JPEG, 6000, 4000, 8, false);
+        Map<SimilarityKey, LearnedParams> cache = new HashMap<>();
+
+        // 最低品質約 0.015 bytes/px：1MB 可容納約 7000 萬像素，不需縮小
+        DecodePlan large = DecodePlan.of(baseline, 5_000_000, params(1024 * 1024), cache);
+        assertEquals(1, large.subsampling());
+        assertFalse(large.isCoarse());
+
+        // 40KB 約 270 萬像素，最長邊約 2000px，加上餘裕後 1/2（3000px）仍足夠
+        DecodePlan small = DecodePlan.of(baseline, 5_000_000, params(40 * 1024), cache);
+        assertEquals(2, small.subsampling());
+        assertEquals(1, small.referenceSubsampling());
+        assertEquals(6000, small.referenceWidth());
+        assertEquals(1, small.reference().subsampling());
+
+        DecodePlan progressive = DecodePlan.of(new ImageHeader(ImageFormat.JPEG, 6000, 4000, 8, true),
+                5_000_000, params(40 * 1024), cache);
+        assertFalse(progressive.isCoarse());
+        DecodePlan png = DecodePlan.of(new ImageHeader(ImageFormat.PNG, 6000, 4000, 8, false),
+                5_000_000, params(40 * 1024), cache);
+        assertFalse(png.isCoarse());
+    }
+
+    /**
+     * 快取中有相似圖片時，依學到的縮放比例決定倍率
+     */
+    @Test
+    void testOf_ShouldUseLearnedScale() {
+        ImageHeader header = new ImageHeader(ImageFormat.JPEG, 9000, 6000, 8, false);
+        Map<SimilarityKey, LearnedParams> cache = new HashMap<>();
+        // 參考解析度為 1/2（4500x3000），學到的比例 0.25 -> 最長邊 1125px，可用 1/8（1125px）
+        cache.put(createKey(4500, 3000, 9_000_000), new LearnedParams(0.8f, 0.25));
+
+        DecodePlan plan = DecodePlan.of(header, 9_000_000, params(5 * 1024 * 1024), cache);
+        assertEquals(2, plan.referenceSubsampling());
+        assertEquals(8, plan.subsampling());
+    }
+
+    /**
+     * 較粗的解碼在全尺寸下已能達標時，不寫出檔案並要求更多像素；快取的比例換算回參考解析度
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testCompress_ShouldRequestMorePixelsWhenCoarseDecodeFits(@TempDir Path tempDir) throws IOException {
+        BufferedImage image = new BufferedImage(400, 300, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 300; y++) {
+            for (int x = 0; x < 400; x++) {
+                image.setRGB(x, y, (x * 255 / 400) << 16 | (y * 255 / 300) << 8);
+            }
+        }
+        Path output = tempDir.resolve("out.jpg");
+        Map<SimilarityKey, LearnedParams> cache = new HashMap<>();
+
+        TargetSizeOutcome outcome = ImageCompressionJpg.compressJpgWithTargetSize(image, 800, 600, 1_000_000,
+                output, OutputSink.FILE, params(200 * 1024), cache);
+        assertEquals(TargetSizeOutcome.NEEDS_MORE_PIXELS, outcome);
+        assertFalse(Files.exists(output));
+
+        // 目標小到全尺寸最低品質也超標時，照常縮小，並以參考解析度記錄比例
+        long tiny = 1500;
+        outcome = ImageCompressionJpg.compressJpgWithTargetSize(image, 800, 600, 1_000_000, output, OutputSink.FILE, params(tiny), cache);
+        assertEquals(TargetSizeOutcome.COMPRESSED, outcome);
+        assertTrue(Files.size(output) <= tiny);
+        LearnedParams learned = cache.get(createKey(800, 600, 1_000_000));
+        assertNotNull(learned);
+        assertTrue(learned.scale() < 0.5);
+    }
+
+    /**
+     * 參考解析度的像素超過上限時，參考倍率加倍到放得下，實際倍率不比參考倍率細
+     */
+    @Test
+    void testFitTo_ShouldCoarsenReferenceToFitPixels() {
+        ImageHeader header = new ImageHeader(ImageFormat.JPEG, 6000, 4000, 8, false);
+        DecodePlan plan = new DecodePlan(2, 1, 6000, 4000);
+
+        assertSame(plan, plan.fitTo(header, 24_000_000));
+
+        DecodePlan fitted = plan.fitTo(header, 2_000_000);
+        assertEquals(4, fitted.referenceSubsampling());
+        assertEquals(4, fitted.subsampling());
+        assertEquals(1500, fitted.referenceWidth());
+        assertEquals(1000, fitted.referenceHeight());
+        assertFalse(fitted.isCoarse());
+
+        DecodePlan coarse = new DecodePlan(8, 1, 6000, 4000).fitTo(header, 7_000_000);
+        assertEquals(2, coarse.referenceSubsampling());
+        assertEquals(8, coarse.subsampling());
+    }
+}
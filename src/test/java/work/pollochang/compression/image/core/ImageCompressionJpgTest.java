@@ -0,0 +1,224 @@
+package work.pollochang.compression.image.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import work.pollochang.compression.image.io.BoundedImageOutputStream;
+import work.pollochang.compression.image.learn.LearnedParams;
+import work.pollochang.compression.image.learn.jpg.SimilarityKey;
+import work.pollochang.compression.image.report.CompressionParams;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageCompressionJpgTest {
+
+    /**
+     * 產生帶有漸層與雜訊的測試影像，使 JPEG 大小會隨品質明顯變化
+     */
+    private BufferedImage createNoisyImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / width + random.nextInt(64)) & 0xff;
+                int g = (y * 255 / height + random.nextInt(64)) & 0xff;
+                int b = random.nextInt(256);
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * 兩種搜尋策略皆應產生不超過目標大小的檔案
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testSearchModes_ShouldStayUnderTarget(@TempDir Path tempDir) throws IOException {
+        BufferedImage img = createNoisyImage(640, 480);
+        long target = 60 * 1024;
+
+        for (QualitySearchMode mode : QualitySearchMode.values()) {
+            Path output = tempDir.resolve(mode.name() + ".jpg");
+            Map<SimilarityKey, LearnedParams> cache = new HashMap<>();
+            CompressionParams params = new CompressionParams(0.9f, 0, 100, 100, target, mode);
+
+            boolean result = ImageCompressionJpg.compressJpgWithTargetSize(img, 1024 * 1024, output, params, cache);
+
+            assertTrue(result, mode + " 應壓縮成功");
+            assertTrue(Files.size(output) <= target, mode + " 輸出超過目標大小");
+            assertEquals(1, cache.size());
+        }
+    }
+
+    /**
+     * 各熵編碼模式搭配各搜尋策略皆應產生不超過目標大小、接近目標且可被 ImageIO 解碼的檔案；
+     * 最佳化 Huffman 表與漸進式模式超標時只知道下限，搜尋仍要收斂到目標附近
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testEntropyModes_ShouldStayUnderTarget(@TempDir Path tempDir) throws IOException {
+        BufferedImage img = createNoisyImage(640, 480);
+        long target = 60 * 1024;
+
+        for (JpegEntropyMode mode : JpegEntropyMode.values()) {
+            for (QualitySearchMode searchMode : QualitySearchMode.values()) {
+                String name = mode + "/" + searchMode;
+                Path output = tempDir.resolve(mode.name() + "-" + searchMode.name() + ".jpg");
+                CompressionParams params = new CompressionParams(0.9f, 0, 100, 100, target, searchMode,
+                        CompressionParams.DEFAULT_PREDICTION_MIN_PIXELS, true,
+                        CompressionParams.DEFAULT_PARALLEL_ENCODE_MIN_PIXELS, mode, CompressionParams.DEFAULT_STREAMING_DECODE_MIN_BYTES,
+                        CompressionParams.DEFAULT_RESIZE_FILTER,
+                        CompressionParams.DEFAULT_PARALLEL_RESIZE_MIN_PIXELS);
+
+                boolean result = ImageCompressionJpg.compressJpgWithTargetSize(img, 1024 * 1024, output, params, new HashMap<>());
+
+                assertTrue(result, name + " 應壓縮成功");
+                long size = Files.size(output);
+                assertTrue(size <= target, name + " 輸出超過目標大小");
+                assertTrue(size >= target * 0.85, name + " 輸出離目標太遠: " + size);
+                assertNotNull(ImageIO.read(output.toFile()), name + " 輸出無法解碼");
+            }
+        }
+    }
+
+    /**
+     * DCT 預估搜尋在最佳化 Huffman 表與漸進式模式下，超標的試壓只有下限，不能拿來校正預估；
+     * 夾住目標後仍要在編碼次數內收斂到目標附近，而不是停在最低品質
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testEstimation_ShouldNotCalibrateFromAbortedProbes(@TempDir Path tempDir) throws IOException {
+        BufferedImage img = createNoisyImage(1200, 900);
+        long target = 12_000;
+
+        for (JpegEntropyMode mode : new JpegEntropyMode[]{JpegEntropyMode.OPTIMIZED, JpegEntropyMode.PROGRESSIVE}) {
+            Path output = tempDir.resolve(mode.name() + ".jpg");
+            CompressionParams params = new CompressionParams(0.9f, 0, 100, 100, target, QualitySearchMode.ESTIMATED,
+                    CompressionParams.DEFAULT_PREDICTION_MIN_PIXELS, true,
+                    CompressionParams.DEFAULT_PARALLEL_ENCODE_MIN_PIXELS, mode, CompressionParams.DEFAULT_STREAMING_DECODE_MIN_BYTES,
+                    CompressionParams.DEFAULT_RESIZE_FILTER,
+                    CompressionParams.DEFAULT_PARALLEL_RESIZE_MIN_PIXELS);
+
+            assertTrue(ImageCompressionJpg.compressJpgWithTargetSize(img, 1024 * 1024, output, params, new HashMap<>()), mode + " 應壓縮成功");
+            long size = Files.size(output);
+            assertTrue(size <= target, mode + " 輸出超過目標大小");
+            assertTrue(size >= target * 0.85, mode + " 輸出離目標太遠: " + size);
+        }
+    }
+
+    /**
+     * 品質座標轉換應可互逆
+     */
+    @Test
+    void testLogScale_ShouldRoundTrip() {
+        for (float q = 0.05f; q < 0.99f; q += 0.05f) {
+            assertEquals(q, ImageCompressionJpg.fromLogScale(ImageCompressionJpg.toLogScale(q)), 1e-4f);
+        }
+        assertTrue(ImageCompressionJpg.toLogScale(0.8f) > ImageCompressionJpg.toLogScale(0.2f));
+    }
+
+    /**
+     * 需要大幅縮小時，應以每像素位元組數跳躍找到可行比例
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testHeavyDownscale_ShouldJumpToFeasibleScale(@TempDir Path tempDir) throws IOException {
+        BufferedImage img = createNoisyImage(1200, 900);
+        long target = 4 * 1024;
+        Path output = tempDir.resolve("small.jpg");
+        Map<SimilarityKey, LearnedParams> cache = new HashMap<>();
+
+        boolean result = ImageCompressionJpg.compressJpgWithTargetSize(img, 1024 * 1024, output,
+                new CompressionParams(0.9f, 0, 100, 100, target), cache);
+
+        assertTrue(result);
+        assertTrue(Files.size(output) <= target);
+        assertTrue(cache.values().iterator().next().scale() < 0.5);
+    }
+
+    /**
+     * 下一個縮放比例應至少縮小一個固定級距，且依超標幅度跳躍
+     */
+    @Test
+    void testNextScale_ShouldJumpByBytesPerPixel() {
+        // 超標 4 倍，約需縮小一半
+        double jump = ImageCompressionJpg.nextScale(1.0, 4_000_000, 1_000_000, 0);
+        assertEquals(0.5 * Math.sqrt(0.92), jump, 1e-9);
+        // 只略為超標時仍至少縮小 15%
+        assertEquals(0.85, ImageCompressionJpg.nextScale(1.0, 1_000_001, 1_000_000, 0), 1e-9);
+        // 跳躍次數用完後退回固定級距
+        assertEquals(0.85 * 0.5, ImageCompressionJpg.nextScale(0.5, 40_000_000, 1_000_000, 10), 1e-9);
+    }
+
+    /**
+     * 只保留達標的最高品質結果，較低品質的試壓不會覆蓋，且兩個緩衝區輪替使用
+     * @throws IOException
+     */
+    @Test
+    void testProbeBuffers_ShouldKeepHighestFittingProbe() throws IOException {
+        try (ProbeBuffers buffers = new ProbeBuffers(1024)) {
+            BoundedImageOutputStream first = buffers.probe();
+            first.write(new byte[]{1, 2, 3});
+            buffers.keep(0.5f);
+            assertSame(first, buffers.best());
+
+            BoundedImageOutputStream second = buffers.probe();
+            assertNotSame(first, second);
+            second.write(new byte[]{4});
+            buffers.keep(0.3f);
+            assertSame(first, buffers.best());
+            assertTrue(buffers.holds(0.5f));
+
+            BoundedImageOutputStream third = buffers.probe();
+            assertSame(second, third);
+            third.clear();
+            third.write(new byte[]{5, 6});
+            buffers.keep(0.7f);
+            assertSame(third, buffers.best());
+            assertArrayEquals(new byte[]{5, 6}, buffers.best().toByteArray());
+            assertSame(first, buffers.probe());
+
+            buffers.reset();
+            assertFalse(buffers.holds(0.7f));
+        }
+    }
+
+    /**
+     * 縮放金字塔只在比例低於一半時建立新的一層，輸出尺寸與直接從原圖縮放相同，回傳的圖片不會是原圖
+     */
+    @Test
+    void testResizePyramid_ShouldServeScalesFromNearestLevel() {
+        BufferedImage img = createNoisyImage(801, 601);
+        try (ResizePyramid pyramid = new ResizePyramid(img, CompressionParams.DEFAULT_RESIZE_FILTER, 0)) {
+            for (double scale : new double[]{0.85, 0.72, 0.61}) {
+                BufferedImage resized = pyramid.resize(scale);
+                assertEquals((int) (801 * scale), resized.getWidth());
+                assertEquals((int) (601 * scale), resized.getHeight());
+            }
+            assertEquals(0, pyramid.levelsBuilt());
+
+            assertEquals(400, pyramid.resize(0.5).getWidth());
+            BufferedImage small = pyramid.resize(0.3);
+            assertEquals((int) (801 * 0.3), small.getWidth());
+            assertEquals((int) (601 * 0.3), small.getHeight());
+            assertEquals(1, pyramid.levelsBuilt());
+
+            pyramid.resize(0.2);
+            assertEquals(2, pyramid.levelsBuilt());
+            assertSame(img, pyramid.resize(1.0));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package work.pollochang.compression.image.core;
+
+import org.junit.jupiter.api.Test;
+import work.pollochang.compression.image.codec.ImageFormat;
+import work.pollochang.compression.image.codec.ImageHeader;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MemoryGovernorTest {
+
+    /**
+     * 預算為最大堆積的 60%，未限制堆積時不設預算
+     */
+    @Test
+    void testBudget_ShouldBeShareOfMaxMemory() {
+        assertEquals(600L * 1024 * 1024, MemoryGovernor.budget(1000L * 1024 * 1024));
+        assertEquals((long) Integer.MAX_VALUE << 10, MemoryGovernor.budget(Long.MAX_VALUE));
+    }
+
+    /**
+     * 預估用量依解碼後像素數、每像素位元組數與目標大小計算
+     */
+    @Test
+    void testEstimate_ShouldScaleWithDecodedPixels() {
+        ImageHeader jpeg = new ImageHeader(ImageFormat.JPEG, 6000, 4000, 8, false);
+        ImageHeader png16 = new ImageHeader(ImageFormat.PNG, 6000, 4000, 16, false);
+        assertEquals(3, MemoryGovernor.bytesPerPixel(jpeg));
+        assertEquals(8, MemoryGovernor.bytesPerPixel(png16));
+
+        long full = MemoryGovernor.estimate(jpeg, 1, 0);
+        assertEquals((long) (6000L * 4000 * 3 * MemoryGovernor.PEAK_FACTOR), full);
+        assertEquals(full / 4 + 2 * 1000, MemoryGovernor.estimate(jpeg, 2, 1000));
+    }
+
+    /**
+     * 預留後計入統計，關閉後歸還；重複關閉不會多歸還
+     * @throws IOException
+     */
+    @Test
+    void testReserve_ShouldCountAndRelease() throws IOException {
+        long before = MemoryGovernor.stats().reservations();
+        MemoryGovernor.Reservation reservation = MemoryGovernor.reserve(MemoryGovernor.budgetBytes() * 2);
+        assertEquals(before + 1, MemoryGovernor.stats().reservations());
+        reservation.close();
+        reservation.close();
+
+        // 整個預算都已歸還，可以再次完整預留而不需等待
+        long waits = MemoryGovernor.stats().waits();
+        try (MemoryGovernor.Reservation ignored = MemoryGovernor.reserve(MemoryGovernor.budgetBytes())) {
+            assertEquals(waits, MemoryGovernor.stats().waits());
+        }
+        assertTrue(MemoryGovernor.stats().peakReservedBytes() >= MemoryGovernor.budgetBytes());
+    }
+}
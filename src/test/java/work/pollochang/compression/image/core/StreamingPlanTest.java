@@ -0,0 +1,62 @@
+package work.pollochang.compression.image.core;
+
+import org.junit.jupiter.api.Test;
+import work.pollochang.compression.image.codec.ImageFormat;
+import work.pollochang.compression.image.codec.ImageHeader;
+import work.pollochang.compression.image.report.CompressionParams;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingPlanTest {
+
+    private static final long DEFAULT_LIMIT = CompressionParams.DEFAULT_STREAMING_DECODE_MIN_BYTES;
+
+    /**
+     * 以原始解析度判斷：參考解析度雖在門檻內，原圖超過約 8900 萬像素時仍以預設門檻觸發，輸出維持參考解析度
+     */
+    @Test
+    void testOf_ShouldTriggerOnFullResolutionAtDefault() {
+        ImageHeader header = new ImageHeader(ImageFormat.JPEG, 12000, 9000, 8, false);
+        DecodePlan plan = new DecodePlan(2, 2, 6000, 4500);
+
+        StreamingPlan streaming = StreamingPlan.of(header, plan, DEFAULT_LIMIT);
+        assertNotNull(streaming);
+        assertEquals(6000, streaming.outputWidth());
+        assertEquals(4500, streaming.outputHeight());
+        assertEquals(2, streaming.denominator());
+    }
+
+    /**
+     * 原圖在門檻內、停用、非基線 JPG 或無檔頭時不串流
+     */
+    @Test
+    void testOf_ShouldSkipBelowThresholdOrUnsupported() {
+        ImageHeader small = new ImageHeader(ImageFormat.JPEG, 9000, 6000, 8, false);
+        DecodePlan plan = new DecodePlan(2, 2, 4500, 3000);
+        assertNull(StreamingPlan.of(small, plan, DEFAULT_LIMIT));
+
+        ImageHeader large = new ImageHeader(ImageFormat.JPEG, 12000, 9000, 8, false);
+        DecodePlan largePlan = new DecodePlan(2, 2, 6000, 4500);
+        assertNull(StreamingPlan.of(large, largePlan, 0));
+        assertNull(StreamingPlan.of(null, largePlan, DEFAULT_LIMIT));
+        assertNull(StreamingPlan.of(new ImageHeader(ImageFormat.JPEG, 12000, 9000, 8, true), largePlan, DEFAULT_LIMIT));
+        assertNull(StreamingPlan.of(new ImageHeader(ImageFormat.PNG, 12000, 9000, 8, false), largePlan, DEFAULT_LIMIT));
+    }
+
+    /**
+     * 參考解析度仍超過門檻時縮到正好放得進門檻，剩下的倍率交給區域平均
+     */
+    @Test
+    void testOf_ShouldDownscaleToFitLimit() {
+        ImageHeader header = new ImageHeader(ImageFormat.JPEG, 8000, 6000, 8, false);
+        DecodePlan plan = new DecodePlan(1, 1, 8000, 6000);
+        long limit = 16L * 1024 * 1024;
+
+        StreamingPlan streaming = StreamingPlan.of(header, plan, limit);
+        assertNotNull(streaming);
+        assertTrue((long) streaming.outputWidth() * streaming.outputHeight() * 3 <= limit);
+        assertEquals(4.0 / 3, (double) streaming.outputWidth() / streaming.outputHeight(), 0.01);
+        assertTrue((8000 + streaming.denominator() - 1) / streaming.denominator() >= streaming.outputWidth());
+        assertTrue((8000 + streaming.denominator() * 2 - 1) / (streaming.denominator() * 2) < streaming.outputWidth());
+    }
+}
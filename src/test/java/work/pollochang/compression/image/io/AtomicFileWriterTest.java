@@ -0,0 +1,143 @@
+package work.pollochang.compression.image.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class AtomicFileWriterTest {
+
+    private long tempFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".tmp")).count();
+        }
+    }
+
+    /**
+     * 不同步時直接改名：內容正確、覆寫舊檔，且不留下暫存檔
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testWrite_ShouldReplaceTargetWithoutLeftovers(@TempDir Path tempDir) throws IOException {
+        Path target = Files.write(tempDir.resolve("a.jpg"), new byte[]{9, 9, 9, 9, 9});
+        AtomicFileWriter writer = new AtomicFileWriter(0, 0);
+
+        ByteBuffer data = ByteBuffer.wrap(new byte[]{1, 2, 3});
+        writer.write(target, data);
+
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(target));
+        assertFalse(data.hasRemaining());
+        assertEquals(0, tempFiles(tempDir));
+        assertEquals(new AtomicFileWriterStats(1, 0, 0), writer.stats());
+    }
+
+    /**
+     * 同時寫入的檔案會湊成一組一起改名與同步
+     * @param tempDir
+     * @throws Exception
+     */
+    @Test
+    void testWrite_ShouldCommitConcurrentWritesInGroups(@TempDir Path tempDir) throws Exception {
+        AtomicFileWriter writer = new AtomicFileWriter(4, 1_000);
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 8; i++) {
+                int n = i;
+                futures.add(executor.submit(() -> {
+                    writer.write(tempDir.resolve(n + ".png"), ByteBuffer.wrap(new byte[]{(byte) n}));
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        for (int i = 0; i < 8; i++) {
+            assertArrayEquals(new byte[]{(byte) i}, Files.readAllBytes(tempDir.resolve(i + ".png")));
+        }
+        assertEquals(0, tempFiles(tempDir));
+        assertEquals(8, writer.stats().files());
+        // 搶在第一個檔案提交前加入的檔案會併入同一組，因此最多兩組
+        assertTrue(writer.stats().groups() <= 2);
+    }
+
+    /**
+     * 只有一個檔案時，等待逾時後仍會提交
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testWrite_ShouldCommitPartialGroupAfterTimeout(@TempDir Path tempDir) throws IOException {
+        AtomicFileWriter writer = new AtomicFileWriter(16, 20);
+        Path target = tempDir.resolve("a.jpg");
+
+        writer.write(target, ByteBuffer.wrap(new byte[]{7}));
+
+        assertArrayEquals(new byte[]{7}, Files.readAllBytes(target));
+        assertEquals(1, writer.stats().groups());
+    }
+
+    /**
+     * 改名失敗時保留原本的目標內容，並清除暫存檔
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testWrite_ShouldKeepTargetOnFailure(@TempDir Path tempDir) throws IOException {
+        // 目標是非空目錄，無法以檔案取代
+        Path target = Files.createDirectory(tempDir.resolve("out.jpg"));
+        Files.write(target.resolve("keep"), new byte[]{1});
+        AtomicFileWriter writer = new AtomicFileWriter(0, 0);
+
+        assertThrows(IOException.class, () -> writer.write(target, ByteBuffer.wrap(new byte[]{2})));
+
+        assertTrue(Files.isDirectory(target));
+        assertArrayEquals(new byte[]{1}, Files.readAllBytes(target.resolve("keep")));
+        assertEquals(0, tempFiles(tempDir));
+        assertEquals(0, writer.stats().files());
+    }
+
+    /**
+     * 新檔的權限與一般新建的檔案相同（依 umask），覆寫既有檔案時沿用原本的權限
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testWrite_ShouldKeepUsualPermissions(@TempDir Path tempDir) throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        Set<PosixFilePermission> usual = Files.getPosixFilePermissions(Files.createFile(tempDir.resolve("usual")));
+
+        for (int groupSize : new int[]{0, 1}) {
+            AtomicFileWriter writer = new AtomicFileWriter(groupSize, 0);
+            Path created = tempDir.resolve("new" + groupSize + ".jpg");
+            writer.write(created, ByteBuffer.wrap(new byte[]{1}));
+            assertEquals(usual, Files.getPosixFilePermissions(created));
+
+            Path existing = Files.write(tempDir.resolve("old" + groupSize + ".jpg"), new byte[]{9});
+            Set<PosixFilePermission> shared = PosixFilePermissions.fromString("rw-rw-r--");
+            Files.setPosixFilePermissions(existing, shared);
+            writer.write(existing, ByteBuffer.wrap(new byte[]{2}));
+            assertEquals(shared, Files.getPosixFilePermissions(existing));
+            assertArrayEquals(new byte[]{2}, Files.readAllBytes(existing));
+        }
+        assertEquals(0, tempFiles(tempDir));
+    }
+}
@@ -0,0 +1,73 @@
+package work.pollochang.compression.image.io;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedImageOutputStreamTest {
+
+    /**
+     * 未超過上限時應完整保留寫入內容
+     * @throws IOException
+     */
+    @Test
+    void testWriteWithinLimit_ShouldKeepAllBytes() throws IOException {
+        try (BoundedImageOutputStream out = new BoundedImageOutputStream(4, 100)) {
+            byte[] data = new byte[100];
+            new Random(1).nextBytes(data);
+            out.write(data);
+
+            assertEquals(100, out.size());
+            assertArrayEquals(data, out.toByteArray());
+        }
+    }
+
+    /**
+     * 超過上限時應拋出例外，並可在 clear 後重複使用
+     * @throws IOException
+     */
+    @Test
+    void testWriteOverLimit_ShouldThrowAndBeReusable() throws IOException {
+        try (BoundedImageOutputStream out = new BoundedImageOutputStream(16, 10)) {
+            out.write(new byte[8]);
+            OutputLimitExceededException e = assertThrows(OutputLimitExceededException.class, () -> out.write(new byte[8]));
+            assertEquals(10, e.getLimit());
+            assertEquals(8, e.getBytesWritten());
+
+            out.clear();
+            out.write(new byte[10]);
+            assertEquals(10, out.size());
+        }
+    }
+
+    /**
+     * JPEG 編碼超過上限時應提前中止
+     * @throws IOException
+     */
+    @Test
+    void testJpegWriteOverLimit_ShouldAbortEarly() throws IOException {
+        BufferedImage image = new BufferedImage(512, 512, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(7);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        try (BoundedImageOutputStream out = new BoundedImageOutputStream(1024, 10 * 1024)) {
+            writer.setOutput(out);
+            assertThrows(OutputLimitExceededException.class, () -> writer.write(new IIOImage(image, null, null)));
+            assertTrue(out.size() <= 10 * 1024);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package work.pollochang.compression.image.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectBufferPoolTest {
+
+    private Path writeRandom(Path dir, String name, int size) throws IOException {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return Files.write(dir.resolve(name), data);
+    }
+
+    /**
+     * 讀入的內容與檔案相同，歸還後同容量的緩衝區會被重用
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testRead_ShouldLoadWholeFileAndReuseBuffers(@TempDir Path tempDir) throws IOException {
+        Path file = writeRandom(tempDir, "a.bin", 100_000);
+        DirectBufferPool pool = new DirectBufferPool(1 << 20);
+
+        try (PooledBuffer source = pool.read(file, Files.size(file))) {
+            ByteBuffer buffer = source.buffer();
+            byte[] content = new byte[buffer.remaining()];
+            buffer.get(content);
+            assertArrayEquals(Files.readAllBytes(file), content);
+            assertTrue(buffer.isDirect());
+            assertTrue(buffer.isReadOnly());
+        }
+        try (PooledBuffer ignored = pool.read(file, Files.size(file))) {
+            assertEquals(1, pool.stats().hits());
+            assertEquals(1, pool.stats().allocations());
+        }
+    }
+
+    /**
+     * 預算用盡時等到有緩衝區歸還；容量超過整個預算的檔案回傳 null
+     * @param tempDir
+     * @throws Exception
+     */
+    @Test
+    void testRead_ShouldWaitForBudget(@TempDir Path tempDir) throws Exception {
+        Path small = writeRandom(tempDir, "small.bin", 60_000);
+        Path large = writeRandom(tempDir, "large.bin", 200_000);
+        DirectBufferPool pool = new DirectBufferPool(128 * 1024);
+
+        assertNull(pool.read(large, Files.size(large)));
+
+        PooledBuffer first = pool.read(small, Files.size(small));
+        PooledBuffer second = pool.read(small, Files.size(small));
+        CompletableFuture<PooledBuffer> third = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.read(small, Files.size(small));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(200);
+        assertFalse(third.isDone());
+
+        first.close();
+        first.close();
+        PooledBuffer reused = third.get(5, TimeUnit.SECONDS);
+        assertEquals(60_000, reused.buffer().remaining());
+        assertEquals(1, pool.stats().waits());
+        assertEquals(2, pool.stats().allocations());
+        second.close();
+        reused.close();
+    }
+}
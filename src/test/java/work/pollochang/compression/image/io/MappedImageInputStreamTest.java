@@ -0,0 +1,103 @@
+package work.pollochang.compression.image.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedImageInputStreamTest {
+
+    /**
+     * 讀取、跳轉與整段讀取的結果都應與檔案內容相同
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testRead_ShouldMatchFileContent(@TempDir Path tempDir) throws IOException {
+        byte[] data = new byte[100_000];
+        new Random(3).nextBytes(data);
+        Path file = tempDir.resolve("data.bin");
+        Files.write(file, data);
+
+        try (ImageInputStream in = new MappedImageInputStream(file)) {
+            assertEquals(data.length, in.length());
+            assertEquals(data[0] & 0xFF, in.read());
+
+            in.seek(50_000);
+            byte[] chunk = new byte[1000];
+            in.readFully(chunk);
+            for (int i = 0; i < chunk.length; i++) {
+                assertEquals(data[50_000 + i], chunk[i]);
+            }
+
+            in.seek(10);
+            in.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(ByteBuffer.wrap(data, 10, 4).order(ByteOrder.LITTLE_ENDIAN).getInt(), in.readInt());
+            assertEquals(14, in.getStreamPosition());
+
+            in.seek(data.length - 3);
+            byte[] tail = new byte[10];
+            assertEquals(3, in.read(tail));
+            assertEquals(-1, in.read());
+            assertEquals(-1, in.read(tail));
+        }
+    }
+
+    /**
+     * 多個區塊時跨越區塊邊界讀取也應正確
+     * @throws IOException
+     */
+    @Test
+    void testRead_ShouldCrossChunkBoundaries() throws IOException {
+        byte[] data = new byte[40];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        ByteBuffer[] chunks = new ByteBuffer[3];
+        for (int i = 0; i < 3; i++) {
+            chunks[i] = ByteBuffer.wrap(data, i * 16, Math.min(16, data.length - i * 16)).slice();
+        }
+        try (ImageInputStream in = new ByteBufferImageInputStream(chunks, 4, data.length) {
+        }) {
+            in.seek(12);
+            byte[] buf = new byte[25];
+            in.readFully(buf);
+            for (int i = 0; i < buf.length; i++) {
+                assertEquals(12 + i, buf[i]);
+            }
+            assertEquals(37, in.read());
+        }
+    }
+
+    /**
+     * 註冊 SPI 後，ImageIO 以 Path 開啟的輸入流應能解碼圖片
+     * @param tempDir
+     * @throws IOException
+     */
+    @Test
+    void testSpi_ShouldDecodeThroughImageIO(@TempDir Path tempDir) throws IOException {
+        IIORegistry.getDefaultInstance().registerServiceProvider(new MappedImageInputStreamSpi());
+        BufferedImage image = new BufferedImage(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+        image.setRGB(5, 7, 0x123456);
+        Path file = tempDir.resolve("a.png");
+        ImageIO.write(image, "png", file.toFile());
+
+        ImageInputStream in = ImageIO.createImageInputStream(file);
+        assertTrue(in instanceof MappedImageInputStream);
+        // ImageIO.read 讀完會關閉輸入流
+        BufferedImage decoded = ImageIO.read(in);
+        assertEquals(64, decoded.getWidth());
+        assertEquals(0x123456, decoded.getRGB(5, 7) & 0xFFFFFF);
+    }
+}
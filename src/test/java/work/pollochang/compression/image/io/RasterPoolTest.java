@@ -0,0 +1,77 @@
+package work.pollochang.compression.image.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RasterPoolTest {
+
+    private Object data(BufferedImage image) {
+        return image.getRaster().getDataBuffer() instanceof DataBufferByte b ? b.getData()
+                : ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * 級距不小於所需長度、浪費不超過 25%，且陣列長度所屬的級距就是借出時的級距
+     */
+    @Test
+    void testCapacityFor_ShouldRoundUpToQuarterOctave() {
+        for (int length : new int[]{65536, 65537, 100_000, 1 << 20, (1 << 20) + 1, 36_000_000, (1 << 30) - 1}) {
+            int capacity = RasterPool.capacityFor(length);
+            assertTrue(capacity >= length);
+            assertTrue(capacity <= length * 1.25 + 1, "length=" + length);
+            assertEquals(capacity, RasterPool.classOf(capacity));
+            assertTrue(RasterPool.classOf(length) <= length);
+        }
+    }
+
+    /**
+     * 同一執行緒歸還後再借出同級距的影像時重用同一個陣列，類型與尺寸正確，要求清空時內容為 0
+     */
+    @Test
+    void testAcquire_ShouldReuseReleasedArray() {
+        int[] types = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY,
+                BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR};
+        for (int type : types) {
+            BufferedImage first = RasterPool.acquire(type, 640, 480, false);
+            assertEquals(type, first.getType());
+            first.setRGB(5, 7, 0xFF123456);
+            Object array = data(first);
+            long hits = RasterPool.stats().hits();
+            RasterPool.release(first);
+
+            // 稍小的尺寸落在同一個級距
+            BufferedImage second = RasterPool.acquire(type, 639, 479, true);
+            assertSame(array, data(second), "type=" + type);
+            assertEquals(hits + 1, RasterPool.stats().hits());
+            assertEquals(type, second.getType());
+            assertEquals(639, second.getWidth());
+            assertEquals(479, second.getHeight());
+            assertEquals(0, second.getRGB(5, 7) & 0xFFFFFF);
+
+            second.setRGB(638, 478, 0xFFFFFFFF);
+            assertEquals(0xFFFFFFFF, second.getRGB(638, 478));
+            RasterPool.release(second);
+        }
+    }
+
+    /**
+     * 不經過池的類型、太小的影像與子影像不會被保留
+     */
+    @Test
+    void testRelease_ShouldIgnoreUnpooledImages() {
+        long releases = RasterPool.stats().releases();
+        RasterPool.release(new BufferedImage(640, 480, BufferedImage.TYPE_BYTE_INDEXED));
+        RasterPool.release(new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB));
+        RasterPool.release(new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB).getSubimage(10, 10, 500, 400));
+        RasterPool.release(null);
+        assertEquals(releases, RasterPool.stats().releases());
+
+        BufferedImage indexed = RasterPool.acquire(BufferedImage.TYPE_BYTE_INDEXED, 640, 480, false);
+        assertEquals(BufferedImage.TYPE_BYTE_INDEXED, indexed.getType());
+    }
+}
@@ -0,0 +1,179 @@
+package work.pollochang.compression.image.resize;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeparableResamplerTest {
+
+    private static final ResizeFilter[] FILTERS = {
+            ResizeFilter.BOX, ResizeFilter.TRIANGLE, ResizeFilter.CATMULL_ROM, ResizeFilter.LANCZOS3};
+
+    private BufferedImage fill(int width, int height, int type, int argb) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, argb);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * 每個輸出位置的權重總和為 1，且起點不超出來源範圍
+     */
+    @Test
+    void testKernel_ShouldBeNormalizedAndInRange() {
+        for (ResizeFilter filter : FILTERS) {
+            for (int[] size : new int[][]{{1000, 137}, {137, 1000}, {7, 3}, {3, 1}, {64, 64}}) {
+                ResizeKernel kernel = ResizeKernel.of(filter, size[0], size[1]);
+                for (int i = 0; i < size[1]; i++) {
+                    float sum = 0f;
+                    for (int k = 0; k < kernel.taps(); k++) {
+                        sum += kernel.weights()[i * kernel.taps() + k];
+                    }
+                    assertEquals(1f, sum, 1e-4f, filter + " " + size[0] + "->" + size[1]);
+                    assertTrue(kernel.start(i) >= 0 && kernel.start(i) + kernel.taps() <= size[0]);
+                    if (i > 0) {
+                        assertTrue(kernel.start(i) >= kernel.start(i - 1));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 單色影像縮放後維持相同顏色與影像類型，TYPE_CUSTOM 以外的類型不需轉換
+     */
+    @Test
+    void testResize_ShouldKeepFlatColor() {
+        int[] types = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_BGR,
+                BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_4BYTE_ABGR};
+        for (ResizeFilter filter : FILTERS) {
+            for (int type : types) {
+                BufferedImage source = fill(97, 61, type, 0xFF336699);
+                BufferedImage result = SeparableResampler.resize(source, 31, 123, filter);
+                assertEquals(type, result.getType());
+                assertEquals(31, result.getWidth());
+                assertEquals(123, result.getHeight());
+                assertEquals(0xFF336699, result.getRGB(0, 0), filter + " type=" + type);
+                assertEquals(0xFF336699, result.getRGB(30, 122), filter + " type=" + type);
+            }
+            BufferedImage flat = new BufferedImage(50, 50, BufferedImage.TYPE_BYTE_GRAY);
+            for (int y = 0; y < 50; y++) {
+                for (int x = 0; x < 50; x++) {
+                    flat.getRaster().setSample(x, y, 0, 200);
+                }
+            }
+            assertEquals(200, SeparableResampler.resize(flat, 13, 13, filter).getRaster().getSample(6, 6, 0));
+        }
+    }
+
+    /**
+     * 大幅縮小一像素寬的棋盤格應得到均勻的灰色，而不是鋸齒或摩爾紋
+     */
+    @Test
+    void testResize_ShouldAverageWhenDownscaling() {
+        BufferedImage checker = new BufferedImage(256, 256, BufferedImage.TYPE_BYTE_GRAY);
+        for (int y = 0; y < 256; y++) {
+            for (int x = 0; x < 256; x++) {
+                checker.getRaster().setSample(x, y, 0, ((x + y) & 1) == 0 ? 255 : 0);
+            }
+        }
+        for (ResizeFilter filter : FILTERS) {
+            BufferedImage result = SeparableResampler.resize(checker, 32, 32, filter);
+            for (int y = 0; y < 32; y++) {
+                for (int x = 0; x < 32; x++) {
+                    assertEquals(128, result.getRaster().getSample(x, y, 0), 4, filter + " (" + x + "," + y + ")");
+                }
+            }
+        }
+    }
+
+    /**
+     * 透明像素的顏色不應滲入不透明像素
+     */
+    @Test
+    void testResize_ShouldNotBleedTransparentColor() {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                // 左半邊透明但顏色為紅色，右半邊為不透明的藍色
+                image.setRGB(x, y, x < 32 ? 0x00FF0000 : 0xFF0000FF);
+            }
+        }
+        BufferedImage result = SeparableResampler.resize(image, 16, 16, ResizeFilter.LANCZOS3);
+        int edge = result.getRGB(8, 8);
+        assertTrue((edge >>> 24) > 0 && (edge >>> 24) < 255, "邊緣應為半透明");
+        assertTrue(((edge >> 16) & 0xFF) < 8, "透明的紅色不應滲入");
+        assertEquals(0xFF0000FF, result.getRGB(15, 8));
+    }
+
+    /**
+     * 分段平行縮放的結果與單執行緒完全相同
+     */
+    @Test
+    void testResize_ParallelBandsShouldMatchSerial() {
+        BufferedImage image = new BufferedImage(301, 517, BufferedImage.TYPE_INT_ARGB);
+        Random random = new Random(11);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (ResizeFilter filter : FILTERS) {
+                BufferedImage serial = SeparableResampler.resize(image, 97, 203, filter);
+                BufferedImage parallel = SeparableResampler.resize(image, 97, 203, filter, pool, 4);
+                for (int y = 0; y < 203; y++) {
+                    for (int x = 0; x < 97; x++) {
+                        assertEquals(serial.getRGB(x, y), parallel.getRGB(x, y), filter + " (" + x + "," + y + ")");
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Vector API 與純量實作的結果只差浮點數捨入誤差
+     */
+    @Test
+    void testOps_ShouldMatchScalar() {
+        ResampleOps scalar = new ScalarResampleOps();
+        ResampleOps vector = new VectorResampleOps();
+        Random random = new Random(7);
+        for (int length : new int[]{1, 3, 8, 17, 64, 1001}) {
+            float[][] rows = new float[3][length];
+            for (float[] r : rows) {
+                for (int i = 0; i < length; i++) r[i] = random.nextFloat() * 255f;
+            }
+            float[] weights = {0.2f, 0.5f, 0.3f};
+            float[] a = new float[length];
+            float[] b = new float[length];
+            scalar.weightedSum(rows, weights, 0, a, length);
+            vector.weightedSum(rows, weights, 0, b, length);
+            for (int i = 0; i < length; i++) {
+                assertEquals(a[i], b[i], 1e-3f);
+            }
+        }
+        for (int channels : new int[]{1, 3, 4}) {
+            ResizeKernel kernel = ResizeKernel.of(ResizeFilter.LANCZOS3, 200, 37);
+            float[] column = new float[200 * channels];
+            for (int i = 0; i < 200 * channels; i++) column[i] = random.nextFloat() * 255f;
+            float[] a = new float[37 * channels];
+            float[] b = new float[37 * channels];
+            scalar.resampleRow(column, kernel, channels, a, 37);
+            vector.resampleRow(column, kernel, channels, b, 37);
+            for (int i = 0; i < 37 * channels; i++) {
+                assertEquals(a[i], b[i], 1e-2f, "channels=" + channels);
+            }
+        }
+    }
+}
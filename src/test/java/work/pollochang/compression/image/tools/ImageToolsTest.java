@@ -0,0 +1,39 @@
+package work.pollochang.compression.image.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageToolsTest {
+
+    /**
+     * 3BYTE_BGR 與 BYTE_GRAY 直接沿用原圖，其他類型轉為這兩種之一且顏色不變
+     */
+    @Test
+    void testToJpegLayout_ShouldConvertToByteLayout() {
+        BufferedImage bgr = new BufferedImage(32, 24, BufferedImage.TYPE_3BYTE_BGR);
+        assertSame(bgr, ImageTools.toJpegLayout(bgr));
+        BufferedImage gray = new BufferedImage(32, 24, BufferedImage.TYPE_BYTE_GRAY);
+        assertSame(gray, ImageTools.toJpegLayout(gray));
+
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_BYTE_INDEXED}) {
+            BufferedImage image = new BufferedImage(32, 24, type);
+            image.setRGB(3, 4, 0xFFFF0000);
+            image.setRGB(5, 6, 0xFFFFFFFF);
+            BufferedImage normalized = ImageTools.toJpegLayout(image);
+            assertEquals(BufferedImage.TYPE_3BYTE_BGR, normalized.getType());
+            assertEquals(32, normalized.getWidth());
+            assertEquals(24, normalized.getHeight());
+            assertEquals(image.getRGB(3, 4), normalized.getRGB(3, 4), "type=" + type);
+            assertEquals(0xFFFFFFFF, normalized.getRGB(5, 6), "type=" + type);
+        }
+
+        BufferedImage wideGray = new BufferedImage(32, 24, BufferedImage.TYPE_USHORT_GRAY);
+        wideGray.getRaster().setSample(1, 1, 0, 65535);
+        BufferedImage normalized = ImageTools.toJpegLayout(wideGray);
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, normalized.getType());
+        assertEquals(255, normalized.getRaster().getSample(1, 1, 0));
+    }
+}
@@ -0,0 +1,58 @@
+package work.pollochang.compression.image.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelToolsTest {
+
+    /**
+     * 目前執行緒拋出 Error 時，仍等工作執行緒全部結束後才拋出
+     */
+    @Test
+    void testRunWorkers_ShouldJoinHelpersWhenCallerThrowsError() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            AtomicInteger finished = new AtomicInteger();
+            OutOfMemoryError error = assertThrows(OutOfMemoryError.class, () -> ParallelTools.runWorkers(pool, 3, () -> {
+                if (!(Thread.currentThread() instanceof ForkJoinWorkerThread)) {
+                    throw new OutOfMemoryError("test");
+                }
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                finished.incrementAndGet();
+            }));
+            assertEquals("test", error.getMessage());
+            assertEquals(2, finished.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 工作執行緒拋出的例外在其他執行緒結束後由呼叫端拋出
+     */
+    @Test
+    void testRunWorkers_ShouldRethrowHelperFailure() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            AtomicInteger finished = new AtomicInteger();
+            assertThrows(IllegalStateException.class, () -> ParallelTools.runWorkers(pool, 2, () -> {
+                if (Thread.currentThread() instanceof ForkJoinWorkerThread) {
+                    throw new IllegalStateException("helper");
+                }
+                finished.incrementAndGet();
+            }));
+            assertEquals(1, finished.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}